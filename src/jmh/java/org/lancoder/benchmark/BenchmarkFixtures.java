@@ -0,0 +1,105 @@
+package org.lancoder.benchmark;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+
+import org.lancoder.common.FakeInfo;
+import org.lancoder.common.Node;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.events.Event;
+import org.lancoder.common.events.EventListener;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.master.JobInitiator;
+import org.lancoder.master.MasterConfig;
+import org.lancoder.master.dispatcher.DispatchItem;
+import org.lancoder.master.dispatcher.DispatcherPool;
+
+/**
+ * Shared state of the benchmarks. Jobs are built from the fake source information of the tests so no ffprobe call or
+ * shared folder is needed.
+ */
+public final class BenchmarkFixtures {
+
+	private BenchmarkFixtures() {
+	}
+
+	/**
+	 * Event listener dropping all events.
+	 */
+	public static class NullListener implements EventListener {
+
+		@Override
+		public void handle(Event event) {
+		}
+	}
+
+	/**
+	 * Dispatcher pool keeping the dispatched items instead of sending them to the nodes.
+	 */
+	public static class RecordingDispatcherPool extends DispatcherPool {
+
+		private final ArrayList<DispatchItem> items = new ArrayList<>();
+
+		public RecordingDispatcherPool() {
+			super(new NullListener());
+		}
+
+		@Override
+		public synchronized boolean add(DispatchItem element) {
+			return items.add(element);
+		}
+
+		public synchronized ArrayList<DispatchItem> drain() {
+			ArrayList<DispatchItem> drained = new ArrayList<>(items);
+			items.clear();
+			return drained;
+		}
+	}
+
+	public static MasterConfig masterConfig() {
+		MasterConfig config = new MasterConfig();
+		config.setAbsoluteSharedFolder("/shared");
+		config.setTempEncodingFolder("/tmp");
+		return config;
+	}
+
+	/**
+	 * Create a job of one audio task and two video tasks.
+	 *
+	 * @param name
+	 *            The name of the job
+	 * @return The job
+	 */
+	public static Job job(String name) {
+		JobInitiator initiator = new JobInitiator(null, masterConfig());
+		return initiator.createJob(FakeInfo.fakeAudioEncodeRequest(name), name, new File("source.mkv"), new File(
+				"encodes", name), FakeInfo.fakeFileInfo());
+	}
+
+	public static ArrayList<Job> jobs(int count) {
+		ArrayList<Job> jobs = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			jobs.add(job("job-" + i));
+		}
+		return jobs;
+	}
+
+	/**
+	 * Create a free node able to encode the tasks of the fake jobs.
+	 *
+	 * @param index
+	 *            The index of the node, used for its port and identifier
+	 * @return The node
+	 */
+	public static Node node(int index) {
+		ArrayList<CodecEnum> codecs = new ArrayList<>();
+		codecs.add(CodecEnum.H264);
+		codecs.add(CodecEnum.VORBIS);
+		Node node = new Node(InetAddress.getLoopbackAddress(), 2000 + index, "node-" + index, codecs, 2, "node-"
+				+ index);
+		node.setStatus(NodeState.FREE);
+		return node;
+	}
+}
@@ -0,0 +1,71 @@
+package org.lancoder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.benchmark.BenchmarkFixtures.NullListener;
+import org.lancoder.benchmark.BenchmarkFixtures.RecordingDispatcherPool;
+import org.lancoder.common.Node;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
+import org.lancoder.master.JobManager;
+import org.lancoder.master.NodeManager;
+import org.lancoder.master.dispatcher.DispatchItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of one pass of the dispatching loop of the master. Every invocation starts from the same state: all tasks to
+ * do and all nodes free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JobManagerBenchmark {
+
+	@Param({ "10", "1000" })
+	public int jobCount;
+
+	@Param({ "4", "128" })
+	public int nodeCount;
+
+	private JobManager jobManager;
+	private RecordingDispatcherPool dispatcherPool;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		NullListener listener = new NullListener();
+		NodeManager nodeManager = new NodeManager(listener, BenchmarkFixtures.masterConfig(), null);
+		for (int i = 0; i < nodeCount; i++) {
+			Node node = BenchmarkFixtures.node(i);
+			nodeManager.getNodeHashMap().put(node.getUnid(), node);
+		}
+		dispatcherPool = new RecordingDispatcherPool();
+		jobManager = new JobManager(listener, nodeManager, dispatcherPool, null, null);
+		for (Job job : BenchmarkFixtures.jobs(jobCount)) {
+			jobManager.addJob(job);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void reset() {
+		for (DispatchItem item : dispatcherPool.drain()) {
+			Node node = item.getNode();
+			((TaskRequestMessage) item.getMessage()).getTask().reset();
+			jobManager.unassingAll(node);
+			node.unlock();
+		}
+	}
+
+	@Benchmark
+	public JobManager updateNodesWork() {
+		jobManager.updateNodesWork();
+		return jobManager;
+	}
+}
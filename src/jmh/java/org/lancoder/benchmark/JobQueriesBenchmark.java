@@ -0,0 +1,52 @@
+package org.lancoder.benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.task.audio.ClientAudioTask;
+import org.lancoder.common.task.video.ClientVideoTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Task queries called by the master and the web UI on every job.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JobQueriesBenchmark {
+
+	private Job job;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		job = BenchmarkFixtures.job("queries");
+	}
+
+	@Benchmark
+	public ClientVideoTask getNextVideoTask() {
+		return job.getNextVideoTask();
+	}
+
+	@Benchmark
+	public int getTodoTaskCount() {
+		return job.getTodoTaskCount();
+	}
+
+	@Benchmark
+	public int getTaskDoneCount() {
+		return job.getTaskDoneCount();
+	}
+
+	@Benchmark
+	public ArrayList<ClientAudioTask> getTodoAudioTasks() {
+		return job.getTodoAudioTasks();
+	}
+}
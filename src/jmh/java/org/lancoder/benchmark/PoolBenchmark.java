@@ -0,0 +1,69 @@
+package org.lancoder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.pool.Pool;
+import org.lancoder.common.pool.PoolWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Throughput of the pool hand-off, with workers doing no work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PoolBenchmark {
+
+	@Param({ "1", "4" })
+	public int threadLimit;
+
+	private NoopPool pool;
+	private Thread poolThread;
+
+	@Setup(Level.Trial)
+	public void setup() throws InterruptedException {
+		pool = new NoopPool(threadLimit);
+		poolThread = new Thread(pool);
+		poolThread.start();
+		Thread.sleep(50);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		pool.stop();
+		poolThread.join(1000);
+	}
+
+	@Benchmark
+	public boolean add() {
+		return pool.add(1);
+	}
+
+	static class NoopPool extends Pool<Integer> {
+
+		public NoopPool(int threadLimit) {
+			super(threadLimit);
+		}
+
+		@Override
+		protected PoolWorker<Integer> getPoolWorkerInstance() {
+			return new NoopPoolWorker();
+		}
+	}
+
+	static class NoopPoolWorker extends PoolWorker<Integer> {
+
+		@Override
+		protected void start() {
+		}
+	}
+}
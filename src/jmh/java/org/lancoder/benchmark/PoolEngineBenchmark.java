@@ -0,0 +1,169 @@
+package org.lancoder.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.pool.Pool;
+import org.lancoder.common.pool.PoolWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the work queue pool with the legacy pool, from the call to add() to the completion of the elements by
+ * workers doing no work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoolEngineBenchmark {
+
+	private static final int BURST = 100;
+	/**
+	 * The legacy pool can miss the notification of a completed worker and leave elements queued until the next add(),
+	 * the wait is bounded so such a stall costs one second instead of hanging the benchmark
+	 */
+	private static final long STALL_MSEC = 1000;
+
+	@Param({ "queue", "legacy" })
+	public String engine;
+
+	@Param({ "1", "4" })
+	public int threadLimit;
+
+	private PoolHolder pool;
+
+	@Setup(Level.Trial)
+	public void setup() throws InterruptedException {
+		pool = engine.equals("legacy") ? new LegacyHolder(threadLimit) : new QueueHolder(threadLimit);
+		pool.start();
+		Thread.sleep(50);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		pool.stop();
+	}
+
+	/**
+	 * Latency of a single element, with idle workers.
+	 */
+	@Benchmark
+	public void roundTrip() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		pool.add(done);
+		done.await(STALL_MSEC, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Time per element of a burst added at once, as the dispatchers and the node checker do.
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BURST)
+	public void burst() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(BURST);
+		for (int i = 0; i < BURST; i++) {
+			pool.add(done);
+		}
+		done.await(STALL_MSEC, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs one of the pool engines in its own thread.
+	 */
+	private static abstract class PoolHolder {
+
+		private Thread thread;
+
+		protected abstract Runnable getPool();
+
+		protected abstract boolean add(CountDownLatch element);
+
+		protected abstract void stopPool();
+
+		public void start() {
+			thread = new Thread(getPool());
+			thread.start();
+		}
+
+		public void stop() throws InterruptedException {
+			stopPool();
+			thread.interrupt();
+			thread.join(1000);
+		}
+	}
+
+	private static class QueueHolder extends PoolHolder {
+
+		private final Pool<CountDownLatch> pool;
+
+		public QueueHolder(int threadLimit) {
+			pool = new Pool<CountDownLatch>(threadLimit) {
+				@Override
+				protected PoolWorker<CountDownLatch> getPoolWorkerInstance() {
+					return new CountDownWorker();
+				}
+			};
+		}
+
+		@Override
+		protected Runnable getPool() {
+			return pool;
+		}
+
+		@Override
+		protected boolean add(CountDownLatch element) {
+			return pool.add(element);
+		}
+
+		@Override
+		protected void stopPool() {
+			pool.stop();
+		}
+	}
+
+	private static class LegacyHolder extends PoolHolder {
+
+		private final LegacyPool<CountDownLatch> pool;
+
+		public LegacyHolder(int threadLimit) {
+			pool = new LegacyPool<CountDownLatch>(threadLimit) {
+				@Override
+				protected PoolWorker<CountDownLatch> getPoolWorkerInstance() {
+					return new CountDownWorker();
+				}
+			};
+		}
+
+		@Override
+		protected Runnable getPool() {
+			return pool;
+		}
+
+		@Override
+		protected boolean add(CountDownLatch element) {
+			return pool.add(element);
+		}
+
+		@Override
+		protected void stopPool() {
+			pool.stop();
+		}
+	}
+
+	static class CountDownWorker extends PoolWorker<CountDownLatch> {
+
+		@Override
+		protected void start() {
+			task.countDown();
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package org.lancoder.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.cluster.messages.StatusReport;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskReport;
+import org.lancoder.master.api.web.WebApi;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.gson.Gson;
+
+/**
+ * Serialization of the status reports sent by the workers and of the job list returned by /api/jobs. Gson reflects on
+ * the File fields of the jobs, which newer JVMs only allow with java.io opened.
+ */
+@Fork(jvmArgsAppend = { "-XX:+IgnoreUnrecognizedVMOptions", "--add-opens=java.base/java.io=ALL-UNNAMED" })
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+	@Param({ "10", "100" })
+	public int jobCount;
+
+	private StatusReport report;
+	private byte[] reportBytes;
+	private ArrayList<Job> jobs;
+	private Gson gson;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		jobs = BenchmarkFixtures.jobs(jobCount);
+		gson = WebApi.buildGson();
+
+		// A worker reports the tasks it is working on, at most a few per node
+		ArrayList<TaskReport> taskReports = new ArrayList<>();
+		for (ClientTask task : jobs.get(0).getClientTasks()) {
+			taskReports.add(new TaskReport("node-0", task));
+		}
+		report = new StatusReport(NodeState.WORKING, "node-0", taskReports);
+		reportBytes = write(report);
+	}
+
+	private static byte[] write(Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(o);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] writeStatusReport() throws IOException {
+		return write(report);
+	}
+
+	@Benchmark
+	public Object readStatusReport() throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(reportBytes))) {
+			return in.readObject();
+		}
+	}
+
+	@Benchmark
+	public String jobsToJson() {
+		return gson.toJson(jobs);
+	}
+}
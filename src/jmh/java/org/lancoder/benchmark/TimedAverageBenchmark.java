@@ -0,0 +1,52 @@
+package org.lancoder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.math.average.timed.TimedAverage;
+import org.lancoder.common.math.average.timed.TimedExponentialMovingAverage;
+import org.lancoder.common.math.average.timed.TimedMovingAverage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Progress speed averages, fed with one sample per call like the task progress updates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimedAverageBenchmark {
+
+	@Param({ "moving", "exponential" })
+	public String type;
+
+	private TimedAverage average;
+	private long time;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		average = type.equals("moving") ? new TimedMovingAverage(30000, 1000) : new TimedExponentialMovingAverage(
+				30000, 1000);
+		time = 0;
+		for (int i = 0; i < 2000; i++) {
+			average.add(i % 100, time += 15);
+		}
+	}
+
+	@Benchmark
+	public double addAndAverage() {
+		average.add(time % 100, time += 15);
+		return average.getAverage();
+	}
+
+	@Benchmark
+	public double average() {
+		return average.getAverage();
+	}
+}
@@ -2,7 +2,10 @@ package org.lancoder.common;
 
 import java.io.File;
 
+import org.apache.commons.io.FilenameUtils;
+
 import org.lancoder.common.config.Config;
+import org.lancoder.common.file_components.streams.Stream;
 import org.lancoder.common.job.Job;
 import org.lancoder.common.task.ClientTask;
 import org.lancoder.common.utils.FileUtils;
@@ -19,14 +22,81 @@ public class FilePathManager {
 		return FileUtils.getFile(config.getAbsoluteSharedFolder(), job.getOutputFolder(), job.getOutputFileName());
 	}
 
+	/**
+	 * Get the folder of the final file. Segmented outputs write their segments and playlists in this folder.
+	 *
+	 * @param job
+	 *            The job
+	 * @return The folder containing the final file
+	 */
+	public File getSharedOutputFolder(Job job) {
+		return getSharedFinalFile(job).getParentFile();
+	}
+
+	/**
+	 * Get a file of a segmented output.
+	 *
+	 * @param job
+	 *            The job
+	 * @param name
+	 *            The name of the segment or playlist
+	 * @return The file next to the final file
+	 */
+	public File getSharedSegmentFile(Job job, String name) {
+		return new File(getSharedOutputFolder(job), name);
+	}
+
 	public File getSharedPartsFolder(Job job) {
 		return FileUtils.getFile(config.getAbsoluteSharedFolder(), job.getPartsFolderName());
 	}
 
+	/**
+	 * Get the intermediate file of a stream muxed while the job is encoding.
+	 *
+	 * @param job
+	 *            The job of the stream
+	 * @param stream
+	 *            The stream of the parts
+	 * @return The file in the job's parts folder
+	 */
+	public File getSharedProgressiveFile(Job job, Stream stream) {
+		return FileUtils.getFile(config.getAbsoluteSharedFolder(), job.getPartsFolderName(),
+				String.format("progressive-%d.ts", stream.getIndex()));
+	}
+
+	public File getSharedConcatListFile(Job job, Stream stream) {
+		return FileUtils.getFile(config.getAbsoluteSharedFolder(), job.getPartsFolderName(),
+				String.format("concat-%d.txt", stream.getIndex()));
+	}
+
 	public File getSharedFinalFile(ClientTask task) {
 		return FileUtils.getFile(config.getAbsoluteSharedFolder(), task.getFinalFile().getPath());
 	}
 
+	/**
+	 * Get the file written by a worker encoding directly on the shared folder. It is renamed to the final file of the
+	 * task once the encoding succeeded so the muxer never reads an incomplete part.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The partial file next to the final file
+	 */
+	public File getSharedPartialFile(ClientTask task) {
+		// Keep the extension of the container last, ffmpeg picks the output format from it
+		String finalFile = task.getFinalFile().getPath();
+		return FileUtils.getFile(config.getAbsoluteSharedFolder(), String.format("%s.partial.%s",
+				FilenameUtils.removeExtension(finalFile), FilenameUtils.getExtension(finalFile)));
+	}
+
+	/**
+	 * Get the temporary folder of the worker, holding a folder per job.
+	 *
+	 * @return The temporary folder on the local file system
+	 */
+	public File getLocalTempFolder() {
+		return new File(config.getTempEncodingFolder());
+	}
+
 	public File getLocalTempFile(ClientTask task) {
 		return FileUtils.getFile(config.getTempEncodingFolder(), task.getTempFile().getPath());
 	}
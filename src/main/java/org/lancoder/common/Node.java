@@ -1,29 +1,71 @@
 package org.lancoder.common;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.net.InetAddress;
 import java.util.ArrayList;
 
 import org.lancoder.common.codecs.CodecEnum;
 import org.lancoder.common.codecs.CodecLoader;
+import org.lancoder.common.codecs.EncodeSpeed;
 import org.lancoder.common.codecs.base.Codec;
 import org.lancoder.common.status.NodeState;
 import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.ResourceCost;
+import org.lancoder.common.task.TaskCheckpoint;
+import org.lancoder.common.telemetry.NodeTelemetry;
 
 public class Node implements Serializable {
 
 	private static final long serialVersionUID = 3450445684775221368L;
+	/**
+	 * Telemetry samples kept per node
+	 */
+	private static final int TELEMETRY_HISTORY = 30;
+	/**
+	 * Age in msec after which the telemetry of a node is ignored, as the node stopped reporting it
+	 */
+	private static final long TELEMETRY_EXPIRY = 5 * 60 * 1000;
 	private InetAddress nodeAddress;
 	private int nodePort;
 	private NodeState status = NodeState.NOT_CONNECTED;
 	private String name;
 	private String unid;
 	private int threadCount;
+	/**
+	 * Memory of the node in MiB, 0 if the node did not report it
+	 */
+	private int memoryCapacity;
 	private ArrayList<ClientTask> currentTasks = new ArrayList<>();
 	private ArrayList<ClientTask> pendingTasks = new ArrayList<>();
 	private ArrayList<Codec> codecs = new ArrayList<>();
 	private boolean locked = false;
 	private int failureCount;
+	/**
+	 * The node can mux jobs requiring mkvmerge
+	 */
+	private boolean mkvMergeInstalled;
+	/**
+	 * Smoothed speed of the video tasks of the node in frames per second, 0 if unknown
+	 */
+	private double encodingSpeed;
+	/**
+	 * Speeds measured by the encode benchmark of the worker, empty if it did not run
+	 */
+	private ArrayList<EncodeSpeed> encodeSpeeds = new ArrayList<>();
+	/**
+	 * Latest telemetry samples of the node, oldest first. Replaced on each sample so readers can iterate it.
+	 */
+	private volatile ArrayList<NodeTelemetry> telemetry = new ArrayList<>();
+	/**
+	 * When the master received the latest sample, in its own clock
+	 */
+	private long telemetryReceived;
+	/**
+	 * Tasks the node can resume after their completed passes, as of its latest status report
+	 */
+	private volatile ArrayList<TaskCheckpoint> checkpoints = new ArrayList<>();
 
 	public Node(InetAddress nodeAddress, int nodePort, String name, ArrayList<CodecEnum> codecs, int threadCount,
 			String unid) {
@@ -79,6 +121,48 @@ public class Node implements Serializable {
 		return tasks;
 	}
 
+	/**
+	 * Get the resources offered by the node, its cores and its memory.
+	 *
+	 * @return The capacity of the node
+	 */
+	public ResourceCost getCapacity() {
+		return new ResourceCost(threadCount, memoryCapacity);
+	}
+
+	/**
+	 * Get the resources used by the current and pending tasks of the node.
+	 *
+	 * @return The used resources
+	 */
+	public ResourceCost getUsedResources() {
+		return getUsedResources(null);
+	}
+
+	private ResourceCost getUsedResources(ClientTask excluded) {
+		ResourceCost capacity = getCapacity();
+		ResourceCost used = ResourceCost.ZERO;
+		for (ClientTask task : getAllTasks()) {
+			if (!task.equals(excluded)) {
+				used = used.plus(task.getCost().capTo(capacity));
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Check if the free resources of the node can take a task, besides the other tasks of the node.
+	 *
+	 * @param task
+	 *            The task to check, it may already be pending on the node
+	 * @return True if the task fits on the node
+	 */
+	public boolean canFit(ClientTask task) {
+		ResourceCost capacity = getCapacity();
+		ResourceCost free = capacity.minus(getUsedResources(task));
+		return task.getCost().capTo(capacity).fitsIn(free, capacity);
+	}
+
 	public void addTask(ClientTask currentTask) {
 		this.currentTasks.add(currentTask);
 	}
@@ -136,10 +220,26 @@ public class Node implements Serializable {
 		return threadCount;
 	}
 
+	public void setThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+	}
+
+	public int getMemoryCapacity() {
+		return memoryCapacity;
+	}
+
+	public void setMemoryCapacity(int memoryCapacity) {
+		this.memoryCapacity = memoryCapacity;
+	}
+
 	public ArrayList<Codec> getCodecs() {
 		return codecs;
 	}
 
+	public void setCodecs(ArrayList<Codec> codecs) {
+		this.codecs = codecs == null ? new ArrayList<Codec>() : codecs;
+	}
+
 	public ArrayList<ClientTask> getPendingTasks() {
 		return pendingTasks;
 	}
@@ -188,4 +288,152 @@ public class Node implements Serializable {
 		this.unid = nodeIdentifier;
 	}
 
+	public boolean isMkvMergeInstalled() {
+		return mkvMergeInstalled;
+	}
+
+	public void setMkvMergeInstalled(boolean mkvMergeInstalled) {
+		this.mkvMergeInstalled = mkvMergeInstalled;
+	}
+
+	public double getEncodingSpeed() {
+		return encodingSpeed;
+	}
+
+	public void setEncodingSpeed(double encodingSpeed) {
+		this.encodingSpeed = encodingSpeed;
+	}
+
+	/**
+	 * Add a speed measured on a video task to the speed estimate of the node.
+	 *
+	 * @param speed
+	 *            The speed in frames per second
+	 */
+	public void updateEncodingSpeed(double speed) {
+		if (speed <= 0 || Double.isInfinite(speed) || Double.isNaN(speed)) {
+			return;
+		}
+		this.encodingSpeed = encodingSpeed == 0 ? speed : encodingSpeed * 0.7 + speed * 0.3;
+	}
+
+	public ArrayList<EncodeSpeed> getEncodeSpeeds() {
+		return encodeSpeeds;
+	}
+
+	public void setEncodeSpeeds(ArrayList<EncodeSpeed> encodeSpeeds) {
+		this.encodeSpeeds = encodeSpeeds == null ? new ArrayList<EncodeSpeed>() : encodeSpeeds;
+	}
+
+	public ArrayList<TaskCheckpoint> getCheckpoints() {
+		return checkpoints;
+	}
+
+	public void setCheckpoints(ArrayList<TaskCheckpoint> checkpoints) {
+		this.checkpoints = checkpoints == null ? new ArrayList<TaskCheckpoint>() : checkpoints;
+	}
+
+	/**
+	 * Get the checkpoint of a task on the node.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The checkpoint, null if the node would start the task from the first pass
+	 */
+	public TaskCheckpoint getCheckpoint(ClientTask task) {
+		for (TaskCheckpoint checkpoint : checkpoints) {
+			if (checkpoint.isOf(task)) {
+				return checkpoint;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the speed of the node according to its encode benchmark, to estimate its speed before it completes a task.
+	 * H.264 at the largest measured resolution is preferred as the most common encode, else the slowest measure.
+	 *
+	 * @return The speed in frames per second, 0 if the node was not benchmarked
+	 */
+	public double getBenchmarkedSpeed() {
+		EncodeSpeed best = null;
+		double slowest = 0;
+		for (EncodeSpeed speed : encodeSpeeds) {
+			if (speed.getCodec() == CodecEnum.H264
+					&& (best == null || speed.getWidth() * speed.getHeight() > best.getWidth() * best.getHeight())) {
+				best = speed;
+			}
+			if (slowest == 0 || speed.getFps() < slowest) {
+				slowest = speed.getFps();
+			}
+		}
+		return best != null ? best.getFps() : slowest;
+	}
+
+	public ArrayList<NodeTelemetry> getTelemetry() {
+		return telemetry;
+	}
+
+	/**
+	 * Add a telemetry sample to the history of the node. A sample already received is ignored.
+	 *
+	 * @param sample
+	 *            The sample
+	 */
+	public synchronized void addTelemetry(NodeTelemetry sample) {
+		ArrayList<NodeTelemetry> history = telemetry;
+		if (!history.isEmpty() && history.get(history.size() - 1).getTimestamp() == sample.getTimestamp()) {
+			return;
+		}
+		ArrayList<NodeTelemetry> next = new ArrayList<>(history.subList(
+				Math.max(0, history.size() - TELEMETRY_HISTORY + 1), history.size()));
+		next.add(sample);
+		telemetry = next;
+		telemetryReceived = System.currentTimeMillis();
+	}
+
+	/**
+	 * Get the latest telemetry of the node.
+	 *
+	 * @return The latest sample, null if the node sent none recently
+	 */
+	public NodeTelemetry getLatestTelemetry() {
+		ArrayList<NodeTelemetry> history = telemetry;
+		if (history.isEmpty() || System.currentTimeMillis() - telemetryReceived > TELEMETRY_EXPIRY) {
+			return null;
+		}
+		return history.get(history.size() - 1);
+	}
+
+	/**
+	 * @return True if the latest telemetry shows the node cannot take more work
+	 */
+	public boolean isSaturated() {
+		NodeTelemetry latest = getLatestTelemetry();
+		return latest != null && latest.isSaturated();
+	}
+
+	/**
+	 * @return The headroom of the latest telemetry, 1 if the node sent none
+	 */
+	public double getHeadroom() {
+		NodeTelemetry latest = getLatestTelemetry();
+		return latest == null ? 1 : latest.getHeadroom();
+	}
+
+	/**
+	 * Nodes saved by previous versions lack the fields added since, which are then left null by deserialization.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (encodeSpeeds == null) {
+			encodeSpeeds = new ArrayList<>();
+		}
+		if (telemetry == null) {
+			telemetry = new ArrayList<>();
+		}
+		if (checkpoints == null) {
+			checkpoints = new ArrayList<>();
+		}
+	}
 }
@@ -0,0 +1,58 @@
+package org.lancoder.common.codecs;
+
+import java.io.Serializable;
+
+/**
+ * Speed of a node encoding a synthetic source with a codec, measured by the encode benchmark of the worker.
+ */
+public class EncodeSpeed implements Serializable {
+
+	private static final long serialVersionUID = 5120335416985328418L;
+
+	private CodecEnum codec;
+	private int width;
+	private int height;
+	/**
+	 * Preset of the encoder, null if the codec has no presets
+	 */
+	private String preset;
+	private double fps;
+
+	public EncodeSpeed(CodecEnum codec, int width, int height, String preset, double fps) {
+		this.codec = codec;
+		this.width = width;
+		this.height = height;
+		this.preset = preset;
+		this.fps = fps;
+	}
+
+	public CodecEnum getCodec() {
+		return codec;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public String getResolution() {
+		return String.format("%dx%d", width, height);
+	}
+
+	public String getPreset() {
+		return preset;
+	}
+
+	public double getFps() {
+		return fps;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s%s: %.1f fps", codec.getPrettyName(), getResolution(),
+				preset == null ? "" : " " + preset, fps);
+	}
+}
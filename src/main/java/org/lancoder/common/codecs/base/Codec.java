@@ -45,6 +45,24 @@ public abstract class Codec implements Serializable {
 		return false;
 	}
 
+	/**
+	 * Cores kept busy by an encode with this codec, used to pack tasks on the nodes.
+	 *
+	 * @return The cpu cost in cores
+	 */
+	public int getCpuCost() {
+		return 1;
+	}
+
+	/**
+	 * Memory used by an encode with this codec, used to pack tasks on the nodes.
+	 *
+	 * @return The memory cost in MiB
+	 */
+	public int getMemoryCost() {
+		return 64;
+	}
+
 	public String getCRFSwitchArg() {
 		return String.format("-%s:%s", getCRFSwitch(), getTypeSwitch());
 	}
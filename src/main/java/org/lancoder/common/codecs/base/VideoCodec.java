@@ -20,4 +20,17 @@ public class VideoCodec extends Codec {
 		return "-crf";
 	}
 
+	/**
+	 * Video encoders are given this many threads, capped to the cores of the node.
+	 */
+	@Override
+	public int getCpuCost() {
+		return 4;
+	}
+
+	@Override
+	public int getMemoryCost() {
+		return 512;
+	}
+
 }
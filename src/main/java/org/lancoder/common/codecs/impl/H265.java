@@ -11,4 +11,13 @@ public class H265 extends VideoCodec {
 		super(CodecEnum.H265);
 	}
 
+	@Override
+	public int getCpuCost() {
+		return 8;
+	}
+
+	@Override
+	public int getMemoryCost() {
+		return 1536;
+	}
 }
@@ -11,4 +11,14 @@ public class Theora extends VideoCodec {
 
 	private static final long serialVersionUID = 3582858544126850325L;
 
+	@Override
+	public int getCpuCost() {
+		// libtheora encodes on a single thread
+		return 1;
+	}
+
+	@Override
+	public int getMemoryCost() {
+		return 256;
+	}
 }
@@ -10,4 +10,14 @@ public class Vp8 extends VideoCodec {
 	protected Vp8() {
 		super(CodecEnum.VP8);
 	}
+
+	@Override
+	public int getCpuCost() {
+		return 2;
+	}
+
+	@Override
+	public int getMemoryCost() {
+		return 384;
+	}
 }
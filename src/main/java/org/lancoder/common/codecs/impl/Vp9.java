@@ -10,4 +10,9 @@ public class Vp9 extends VideoCodec {
 	protected Vp9() {
 		super(CodecEnum.VP9);
 	}
+
+	@Override
+	public int getMemoryCost() {
+		return 768;
+	}
 }
@@ -11,9 +11,12 @@ import org.yaml.snakeyaml.Yaml;
 public abstract class Config {
 
 	private static final String DEFAULT_FFMPEG_PATH = "ffmpeg";
+	private static final String DEFAULT_MKVMERGE_PATH = "mkvmerge";
 
 	private static final String DEFAULT_ABSOLUTE_PATH = System.getProperty("user.home");
 	private static final String DEFAULT_TEMP_DIRECTORY = System.getProperty("java.io.tmpdir");
+	private static final boolean DEFAULT_VIRTUAL_THREADS = false;
+	private static final int DEFAULT_IO_CONCURRENCY_LIMIT = 256;
 
 	protected transient String configPath;
 
@@ -23,14 +26,25 @@ public abstract class Config {
 	@Prompt(message = "FFmpeg's path", priority = 20)
 	protected String ffmpegPath;
 
+	@Prompt(message = "mkvmerge's path (for x265 muxing)", priority = 22)
+	protected String mkvMergePath;
+
 	@Prompt(message = "temporary files location", priority = 30, advanced = true)
 	protected String tempEncodingFolder;
 
+	@Prompt(message = "run network handlers on virtual threads, needs Java 21 (true/false)", priority = 31, advanced = true)
+	protected boolean virtualThreads;
+
+	@Prompt(message = "maximum number of concurrent network handlers on virtual threads", priority = 32, advanced = true)
+	protected int ioConcurrencyLimit;
 
 	protected Config() {
 		this.ffmpegPath = DEFAULT_FFMPEG_PATH;
+		this.mkvMergePath = DEFAULT_MKVMERGE_PATH;
 		this.tempEncodingFolder = DEFAULT_TEMP_DIRECTORY;
 		this.absoluteSharedFolder = DEFAULT_ABSOLUTE_PATH;
+		this.virtualThreads = DEFAULT_VIRTUAL_THREADS;
+		this.ioConcurrencyLimit = DEFAULT_IO_CONCURRENCY_LIMIT;
 	}
 
 	/**
@@ -72,6 +86,14 @@ public abstract class Config {
 		return String.format("Shared folder location: %s.%n", this.getAbsoluteSharedFolder());
 	}
 
+	public String getMkvMergePath() {
+		return mkvMergePath;
+	}
+
+	public void setMkvMergePath(String mkvMergePath) {
+		this.mkvMergePath = mkvMergePath;
+	}
+
 	public String getTempEncodingFolder() {
 		return tempEncodingFolder;
 	}
@@ -84,6 +106,22 @@ public abstract class Config {
 		return absoluteSharedFolder;
 	}
 
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getIoConcurrencyLimit() {
+		return ioConcurrencyLimit;
+	}
+
+	public void setIoConcurrencyLimit(int ioConcurrencyLimit) {
+		this.ioConcurrencyLimit = ioConcurrencyLimit;
+	}
+
 	public abstract String getDefaultPath();
 
 	public String getFFmpegPath() {
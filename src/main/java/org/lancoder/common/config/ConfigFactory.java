@@ -121,6 +121,8 @@ public class ConfigFactory<T extends Config> {
 				if (!input.isEmpty()) {
 					if (field.getType() == java.lang.Integer.TYPE) {
 						field.set(config, Integer.valueOf(input));
+					} else if (field.getType() == java.lang.Boolean.TYPE) {
+						field.set(config, Boolean.valueOf(input));
 					} else {
 						field.set(config, input);
 					}
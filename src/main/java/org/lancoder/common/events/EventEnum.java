@@ -5,6 +5,7 @@ public enum EventEnum {
 	NODE_DISCONNECTED,
 	STATUS_REPORT,
 	WORK_NEEDS_UPDATE,
+	TASK_ENCODING_COMPLETED,
 	JOB_ENCODING_COMPLETED,
 	CONFIG_UPDATED,
 	DISPATCH_ITEM_REFUSED,
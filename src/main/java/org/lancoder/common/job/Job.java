@@ -17,6 +17,7 @@ import org.lancoder.common.task.ClientTask;
 import org.lancoder.common.task.Task;
 import org.lancoder.common.task.audio.ClientAudioTask;
 import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.timeline.Timeline;
 import org.lancoder.common.utils.FileUtils;
 
 /**
@@ -53,6 +54,7 @@ public class Job implements Comparable<Job>, Serializable {
 	 */
 	private String relativePartsFolder;
 	private String relaiveSourceFile;
+	private OutputFormat outputFormat = OutputFormat.FILE;
 
 	private long timeAdded;
 	private long timeStarted;
@@ -69,6 +71,11 @@ public class Job implements Comparable<Job>, Serializable {
 	 */
 	@NoWebUI
 	private HashMap<Stream, ArrayList<ClientTask>> streamTaskMapping = new HashMap<>();
+	/**
+	 * Job level lifecycle events. Served by the timeline endpoint only.
+	 */
+	@NoWebUI
+	private Timeline timeline = new Timeline();
 
 	public Job(String jobName, String sourceFile, int lengthOfTasks, FileInfo fileInfo, File outputFolder,
 			String outputFileName) {
@@ -77,6 +84,7 @@ public class Job implements Comparable<Job>, Serializable {
 		this.lengthOfTasks = lengthOfTasks;
 		this.lengthOfJob = fileInfo.getDuration();
 		this.timeAdded = System.currentTimeMillis();
+		this.timeline.mark("added");
 
 		OriginalVideoStream mainVideoStream = fileInfo.getMainVideoStream();
 		if (mainVideoStream != null) {
@@ -123,6 +131,7 @@ public class Job implements Comparable<Job>, Serializable {
 	public void complete() {
 		this.jobStatus = JobState.JOB_COMPLETED;
 		this.timeCompleted = System.currentTimeMillis();
+		getTimeline().mark("completed");
 	}
 
 	public void cancel() {
@@ -137,6 +146,7 @@ public class Job implements Comparable<Job>, Serializable {
 		this.jobStatus = JobState.JOB_COMPUTING;
 		if (initJob) {
 			this.timeStarted = System.currentTimeMillis();
+			getTimeline().mark("started");
 		}
 	}
 
@@ -146,6 +156,7 @@ public class Job implements Comparable<Job>, Serializable {
 
 	public void fail() {
 		this.jobStatus = JobState.JOB_FAILED;
+		getTimeline().mark("failed");
 	}
 
 	public boolean isStarted() {
@@ -313,6 +324,14 @@ public class Job implements Comparable<Job>, Serializable {
 		return streams;
 	}
 
+	public synchronized Timeline getTimeline() {
+		if (timeline == null) {
+			// Jobs saved before timelines were recorded
+			timeline = new Timeline();
+		}
+		return timeline;
+	}
+
 	public ArrayList<ClientTask> getClientTasks() {
 		return clientTasks;
 	}
@@ -381,6 +400,15 @@ public class Job implements Comparable<Job>, Serializable {
 		this.relativeFinalOutputFile = outputFileName;
 	}
 
+	public OutputFormat getOutputFormat() {
+		// Jobs saved by older versions have no output format
+		return outputFormat == null ? OutputFormat.FILE : outputFormat;
+	}
+
+	public void setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
 	public String getPartsFolderName() {
 		return relativePartsFolder;
 	}
@@ -393,6 +421,24 @@ public class Job implements Comparable<Job>, Serializable {
 		return timeAdded;
 	}
 
+	public void setTimeAdded(long timeAdded) {
+		this.timeAdded = timeAdded;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Set the priority of the job. Jobs of lower value are dispatched first.
+	 *
+	 * @param priority
+	 *            The priority
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+
 	public long getTimeStarted() {
 		return timeStarted;
 	}
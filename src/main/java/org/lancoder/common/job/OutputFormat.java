@@ -0,0 +1,22 @@
+package org.lancoder.common.job;
+
+/**
+ * Deliverable produced by the muxer stage of a job.
+ */
+public enum OutputFormat {
+
+	/**
+	 * All streams are muxed in a single file
+	 */
+	FILE,
+	/**
+	 * Encoded parts are used as HLS segments, audio streams are segmented along the parts and playlists are written
+	 * next to the segments
+	 */
+	HLS;
+
+	public boolean isSegmented() {
+		return this != FILE;
+	}
+
+}
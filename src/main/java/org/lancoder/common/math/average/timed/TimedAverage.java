@@ -0,0 +1,33 @@
+package org.lancoder.common.math.average.timed;
+
+/**
+ * Base of the averages of samples taken at a given time.
+ */
+public interface TimedAverage {
+
+	/**
+	 * Add a sample to the average.
+	 *
+	 * @param sample
+	 *            The value of the sample
+	 * @param time
+	 *            The time in milliseconds of the sample
+	 */
+	public void add(double sample, long time);
+
+	public void clear();
+
+	/**
+	 * Get the current average. Expired samples are discarded.
+	 *
+	 * @return The average or 0 if no sample is available
+	 */
+	public double getAverage();
+
+	public long getSampleCount();
+
+	public void setExpireTime(long expireTime);
+
+	public void setMaxSampleCount(long maxSampleCount);
+
+}
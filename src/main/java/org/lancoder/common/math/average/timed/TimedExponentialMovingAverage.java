@@ -0,0 +1,85 @@
+package org.lancoder.common.math.average.timed;
+
+import java.io.Serializable;
+
+/**
+ * Provides an exponentially weighted moving average where the weight of a sample decays with the time elapsed since
+ * it was added. The expiration time is used as the time constant of the decay. Only the current average is kept.
+ */
+public class TimedExponentialMovingAverage implements TimedAverage, Serializable {
+
+	private static final long serialVersionUID = 5862797851300542542L;
+	private static final long DEFAULT_MAXIMUM_SAMPLES = 1000;
+
+	private long expireTime;
+	private long maxSampleCount = DEFAULT_MAXIMUM_SAMPLES;
+	private double average;
+	private long lastTime;
+	private long sampleCount;
+
+	/**
+	 * Create a time weighted average.
+	 *
+	 * @param expireTime
+	 *            The time in milliseconds after which a sample weights about a third of its initial weight
+	 */
+	public TimedExponentialMovingAverage(long expireTime) {
+		this.expireTime = expireTime;
+	}
+
+	/**
+	 * Create a time weighted average.
+	 *
+	 * @param expireTime
+	 *            The time in milliseconds after which a sample weights about a third of its initial weight
+	 * @param maxSampleCount
+	 *            The equivalent window of samples. A new sample weights at least as much as in a simple moving
+	 *            average of this size.
+	 */
+	public TimedExponentialMovingAverage(long expireTime, long maxSampleCount) {
+		this(expireTime);
+		this.maxSampleCount = maxSampleCount;
+	}
+
+	@Override
+	public synchronized void add(double sample, long time) {
+		if (sampleCount == 0) {
+			this.average = sample;
+		} else {
+			double elapsed = Math.max(0, time - lastTime);
+			double alpha = expireTime <= 0 ? 1 : 1 - Math.exp(-elapsed / expireTime);
+			alpha = Math.max(alpha, 2.0 / (Math.max(1, maxSampleCount) + 1));
+			this.average += alpha * (sample - average);
+		}
+		this.lastTime = time;
+		this.sampleCount++;
+	}
+
+	@Override
+	public synchronized void clear() {
+		this.average = 0;
+		this.lastTime = 0;
+		this.sampleCount = 0;
+	}
+
+	@Override
+	public synchronized double getAverage() {
+		return sampleCount == 0 ? 0 : average;
+	}
+
+	@Override
+	public synchronized long getSampleCount() {
+		return sampleCount;
+	}
+
+	@Override
+	public synchronized void setExpireTime(long expireTime) {
+		this.expireTime = expireTime;
+	}
+
+	@Override
+	public synchronized void setMaxSampleCount(long maxSampleCount) {
+		this.maxSampleCount = maxSampleCount;
+	}
+
+}
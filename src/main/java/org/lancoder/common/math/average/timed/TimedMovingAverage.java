@@ -1,25 +1,48 @@
 package org.lancoder.common.math.average.timed;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.LinkedList;
 
-
 /**
- * Provides a moving average of maximum n elements which expire after m milliseconds
+ * Provides a moving average of maximum n elements which expire after m milliseconds.
+ * <p>
+ * Samples are kept in a ring buffer of primitives with a running sum so adding a sample and reading the average do not
+ * allocate nor iterate over the samples. The buffer grows up to the maximum sample count as samples are added.
+ * <p>
+ * The serialized form is still the list of samples of the previous implementation, so saved masters and nodes of
+ * previous versions exchange progress with this one.
  *
  * @author justin
  *
  */
-public class TimedMovingAverage implements Serializable {
+public class TimedMovingAverage implements TimedAverage, Serializable {
 
 	private static final long serialVersionUID = 7322472221784144707L;
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("samples", LinkedList.class), new ObjectStreamField("expireTime", long.class),
+			new ObjectStreamField("maxSampleCount", long.class) };
 	private static final long DEFAULT_MAXIMUM_SAMPLES = 1000;
+	private static final int INITIAL_CAPACITY = 16;
 
-	private final LinkedList<TimedSample<Double>> samples = new LinkedList<>();
 	private long expireTime;
 	private long maxSampleCount = DEFAULT_MAXIMUM_SAMPLES;
 
+	/**
+	 * Values and times of the samples. Serialized as a list of samples to keep the previous form.
+	 */
+	private transient double[] values;
+	private transient long[] times;
+	/**
+	 * Position of the oldest sample in the buffer
+	 */
+	private transient int head;
+	private transient int count;
+	private transient double sum;
+
 	/**
 	 * Create a timed based average with a 1000 samples maximum.
 	 *
@@ -28,6 +51,7 @@ public class TimedMovingAverage implements Serializable {
 	 */
 	public TimedMovingAverage(long expireTime) {
 		this.expireTime = expireTime;
+		allocate(INITIAL_CAPACITY);
 	}
 
 	/**
@@ -43,68 +67,131 @@ public class TimedMovingAverage implements Serializable {
 		this.maxSampleCount = maxSampleCount;
 	}
 
-	public void add(double sample, long time) {
-		if (samples.size() >= maxSampleCount) {
-			clean();
+	@Override
+	public synchronized void add(double sample, long time) {
+		if (count >= getLimit()) {
+			removeFirst();
 		}
-		this.samples.add(new TimedSample<Double>(time, sample));
+		if (count == values.length) {
+			allocate(values.length * 2);
+		}
+		int position = (head + count) % values.length;
+		values[position] = sample;
+		times[position] = time;
+		sum += sample;
+		count++;
 	}
 
-	public void clear() {
-		this.samples.clear();
+	@Override
+	public synchronized void clear() {
+		this.head = 0;
+		this.count = 0;
+		this.sum = 0;
 	}
 
-	public double getAverage() {
-		double total = 0;
-		clean();
+	@Override
+	public synchronized double getAverage() {
+		trimFromTime(System.currentTimeMillis());
+		return count == 0 ? 0 : sum / count;
+	}
 
-		for (TimedSample<Double> sample : samples) {
-			total += sample.getSampleValue();
+	/**
+	 * Remove the oldest samples until the oldest sample is within the expiration time.
+	 *
+	 * @param currentMSec
+	 *            The current time in milliseconds
+	 */
+	private void trimFromTime(long currentMSec) {
+		while (count > 0 && currentMSec - times[head] > expireTime) {
+			removeFirst();
 		}
-		return total / samples.size();
 	}
 
-	private void clean() {
-		if (samples.size() > maxSampleCount) {
-			trimFromCount();
-		}
-		if (System.currentTimeMillis() - samples.getFirst().getTimeMSec() > expireTime) {
-			trimFromTime();
+	private void trimFromCount() {
+		while (count > getLimit()) {
+			removeFirst();
 		}
 	}
 
-	private void trimFromTime() {
-		ArrayList<TimedSample<Double>> expired = new ArrayList<>();
-		long currentMSec = System.currentTimeMillis();
-
-		// Find expired elements
-		for (TimedSample<Double> timedSample : samples) {
-			if (currentMSec - timedSample.getTimeMSec() > expireTime) {
-				expired.add(timedSample);
-			}
-		}
-		// Safely delete elements
-		for (TimedSample<Double> timedSample : expired) {
-			samples.remove(timedSample);
+	private void removeFirst() {
+		sum -= values[head];
+		head = (head + 1) % values.length;
+		count--;
+		if (count == 0) {
+			// Reset accumulated rounding errors
+			sum = 0;
+			head = 0;
 		}
 	}
 
-	private void trimFromCount() {
-		while (samples.size() > maxSampleCount) {
-			samples.removeFirst();
+	/**
+	 * Resize the buffer while keeping the samples in order.
+	 *
+	 * @param capacity
+	 *            The new capacity of the buffer, bounded by the maximum sample count
+	 */
+	private void allocate(int capacity) {
+		capacity = Math.max(1, Math.max(count, Math.min(capacity, getLimit())));
+		double[] newValues = new double[capacity];
+		long[] newTimes = new long[capacity];
+		for (int i = 0; i < count; i++) {
+			int position = (head + i) % values.length;
+			newValues[i] = values[position];
+			newTimes[i] = times[position];
 		}
+		this.values = newValues;
+		this.times = newTimes;
+		this.head = 0;
+	}
+
+	private int getLimit() {
+		return (int) Math.max(1, Math.min(maxSampleCount, Integer.MAX_VALUE - 8));
 	}
 
-	public long getSampleCount() {
-		return this.samples.size();
+	@Override
+	public synchronized long getSampleCount() {
+		return this.count;
 	}
 
-	public void setExpireTime(long expireTime) {
+	@Override
+	public synchronized void setExpireTime(long expireTime) {
 		this.expireTime = expireTime;
 	}
 
-	public void setMaxSampleCount(long maxSampleCount) {
+	@Override
+	public synchronized void setMaxSampleCount(long maxSampleCount) {
 		this.maxSampleCount = maxSampleCount;
+		trimFromCount();
+		if (values.length > getLimit()) {
+			allocate(getLimit());
+		}
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		LinkedList<TimedSample<Double>> samples = new LinkedList<>();
+		for (int i = 0; i < count; i++) {
+			int position = (head + i) % values.length;
+			samples.add(new TimedSample<Double>(times[position], values[position]));
+		}
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("samples", samples);
+		fields.put("expireTime", expireTime);
+		fields.put("maxSampleCount", maxSampleCount);
+		out.writeFields();
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		this.expireTime = fields.get("expireTime", 0L);
+		this.maxSampleCount = fields.get("maxSampleCount", DEFAULT_MAXIMUM_SAMPLES);
+		@SuppressWarnings("unchecked")
+		LinkedList<TimedSample<Double>> samples = (LinkedList<TimedSample<Double>>) fields.get("samples", null);
+		allocate(samples == null ? INITIAL_CAPACITY : Math.max(INITIAL_CAPACITY, samples.size()));
+		if (samples != null) {
+			for (TimedSample<Double> sample : samples) {
+				add(sample.getSampleValue(), sample.getTimeMSec());
+			}
+		}
 	}
 
 }
@@ -0,0 +1,44 @@
+package org.lancoder.common.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing count.
+ */
+public class Counter extends Metric {
+
+	private final AtomicLong count = new AtomicLong();
+
+	public Counter(String name, String help, String... labels) {
+		super(name, help, labels);
+	}
+
+	public void increment() {
+		count.incrementAndGet();
+	}
+
+	public void increment(long amount) {
+		count.addAndGet(amount);
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	@Override
+	public String getType() {
+		return "counter";
+	}
+
+	@Override
+	protected void writeSamples(StringBuilder sb) {
+		writeSample(sb, "", null, null, getCount());
+	}
+
+	@Override
+	protected void fillValues(Map<String, Object> values) {
+		values.put("value", getCount());
+	}
+
+}
@@ -0,0 +1,48 @@
+package org.lancoder.common.metrics;
+
+import java.util.Map;
+
+/**
+ * A value that can go up and down. Override {@link #getValue()} to read the value from another object when the metric
+ * is collected.
+ */
+public class Gauge extends Metric {
+
+	private volatile double value;
+
+	public Gauge(String name, String help, String... labels) {
+		super(name, help, labels);
+	}
+
+	public void set(double value) {
+		this.value = value;
+	}
+
+	public synchronized void increment() {
+		this.value++;
+	}
+
+	public synchronized void decrement() {
+		this.value--;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	@Override
+	public String getType() {
+		return "gauge";
+	}
+
+	@Override
+	protected void writeSamples(StringBuilder sb) {
+		writeSample(sb, "", null, null, getValue());
+	}
+
+	@Override
+	protected void fillValues(Map<String, Object> values) {
+		values.put("value", getValue());
+	}
+
+}
@@ -0,0 +1,167 @@
+package org.lancoder.common.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of positive values in log-linear buckets, in the manner of HdrHistogram. Each power of two is split in
+ * 2^SUB_BUCKET_BITS buckets, giving quantiles within 12.5% of the recorded values with a fixed memory footprint and
+ * without locking when recording.
+ *
+ * Exposed as a Prometheus summary.
+ */
+public class Histogram extends Metric {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+	private static final double[] QUANTILES = new double[] { 0.5, 0.9, 0.99, 0.999 };
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	/**
+	 * Factor applied to the recorded values when exposed
+	 */
+	private final double scale;
+
+	/**
+	 * Create a histogram.
+	 *
+	 * @param name
+	 *            The name of the metric
+	 * @param help
+	 *            The description of the metric
+	 * @param scale
+	 *            The factor converting recorded values to the exposed unit
+	 * @param labels
+	 *            Pairs of label names and values
+	 */
+	public Histogram(String name, String help, double scale, String... labels) {
+		super(name, help, labels);
+		this.scale = scale;
+	}
+
+	/**
+	 * Record a value. Negative values are recorded as 0.
+	 *
+	 * @param value
+	 *            The value to record
+	 */
+	public void record(long value) {
+		long safeValue = Math.max(0, value);
+		buckets.incrementAndGet(getBucketIndex(safeValue));
+		count.incrementAndGet();
+		sum.addAndGet(safeValue);
+
+		long currentMax = max.get();
+		while (safeValue > currentMax && !max.compareAndSet(currentMax, safeValue)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Record the time elapsed since a System.nanoTime() value, in microseconds. To be used with histograms created by
+	 * {@link MetricsRegistry#timer(String, String, String...)}.
+	 *
+	 * @param startNanos
+	 *            The value of System.nanoTime() at the start of the measure
+	 */
+	public void recordSince(long startNanos) {
+		record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+	}
+
+	static int getBucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+		return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Get the highest value that can be recorded in a bucket.
+	 *
+	 * @param index
+	 *            The index of the bucket
+	 * @return The upper bound of the bucket
+	 */
+	static long getBucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int exponent = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS;
+		long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long upper = ((subBucket + 1) << shift) - 1;
+		// The last bucket overflows
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+
+	/**
+	 * Get the recorded value at a quantile, in the recorded unit.
+	 *
+	 * @param quantile
+	 *            The quantile between 0 and 1
+	 * @return The upper bound of the bucket holding the quantile, bounded by the maximum recorded value
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(getBucketUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	@Override
+	public String getType() {
+		return "summary";
+	}
+
+	@Override
+	protected void writeSamples(StringBuilder sb) {
+		for (double quantile : QUANTILES) {
+			writeSample(sb, "", "quantile", String.valueOf(quantile), getValueAtQuantile(quantile) * scale);
+		}
+		writeSample(sb, "_sum", null, null, getSum() * scale);
+		writeSample(sb, "_count", null, null, getCount());
+	}
+
+	@Override
+	protected void fillValues(Map<String, Object> values) {
+		LinkedHashMap<String, Double> quantiles = new LinkedHashMap<>();
+		for (double quantile : QUANTILES) {
+			quantiles.put(String.valueOf(quantile), getValueAtQuantile(quantile) * scale);
+		}
+		values.put("count", getCount());
+		values.put("sum", getSum() * scale);
+		values.put("max", getMax() * scale);
+		values.put("quantiles", quantiles);
+	}
+
+}
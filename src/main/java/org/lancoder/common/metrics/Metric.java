@@ -0,0 +1,153 @@
+package org.lancoder.common.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Base of the metrics held by the registry. A metric is identified by its name and its labels.
+ */
+public abstract class Metric {
+
+	private final String name;
+	private final String help;
+	private final LinkedHashMap<String, String> labels = new LinkedHashMap<>();
+
+	/**
+	 * Create a metric.
+	 *
+	 * @param name
+	 *            The name of the metric, following Prometheus naming (lancoder_something_total)
+	 * @param help
+	 *            The description of the metric
+	 * @param labels
+	 *            Pairs of label names and values
+	 */
+	public Metric(String name, String help, String... labels) {
+		if (labels.length % 2 != 0) {
+			throw new IllegalArgumentException("Labels must be name and value pairs");
+		}
+		this.name = name;
+		this.help = help;
+		for (int i = 0; i < labels.length; i += 2) {
+			this.labels.put(labels[i], labels[i + 1]);
+		}
+	}
+
+	/**
+	 * Get the Prometheus type of the metric.
+	 *
+	 * @return counter, gauge or summary
+	 */
+	public abstract String getType();
+
+	/**
+	 * Write the samples of the metric in Prometheus text format. Headers are written by the registry.
+	 *
+	 * @param sb
+	 *            The builder to write to
+	 */
+	protected abstract void writeSamples(StringBuilder sb);
+
+	/**
+	 * Add the current values of the metric to its JSON representation.
+	 *
+	 * @param values
+	 *            The map to fill
+	 */
+	protected abstract void fillValues(Map<String, Object> values);
+
+	public Map<String, Object> getSnapshot() {
+		LinkedHashMap<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("name", name);
+		snapshot.put("type", getType());
+		snapshot.put("labels", labels);
+		fillValues(snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Write a sample line.
+	 *
+	 * @param sb
+	 *            The builder to write to
+	 * @param suffix
+	 *            The suffix of the sample name (_sum, _count) or an empty string
+	 * @param extraLabel
+	 *            An additional label name (quantile) or null
+	 * @param extraValue
+	 *            The value of the additional label
+	 * @param value
+	 *            The value of the sample
+	 */
+	protected void writeSample(StringBuilder sb, String suffix, String extraLabel, String extraValue, double value) {
+		sb.append(name).append(suffix);
+		if (!labels.isEmpty() || extraLabel != null) {
+			sb.append('{');
+			boolean first = true;
+			for (Entry<String, String> label : labels.entrySet()) {
+				if (!first) {
+					sb.append(',');
+				}
+				appendLabel(sb, label.getKey(), label.getValue());
+				first = false;
+			}
+			if (extraLabel != null) {
+				if (!first) {
+					sb.append(',');
+				}
+				appendLabel(sb, extraLabel, extraValue);
+			}
+			sb.append('}');
+		}
+		sb.append(' ').append(formatValue(value)).append('\n');
+	}
+
+	private static void appendLabel(StringBuilder sb, String name, String value) {
+		sb.append(name).append("=\"");
+		String safeValue = value == null ? "" : value;
+		sb.append(safeValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+		sb.append('"');
+	}
+
+	private static String formatValue(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		} else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			return String.valueOf((long) value);
+		}
+		return String.valueOf(value);
+	}
+
+	/**
+	 * Build the key of a metric in the registry.
+	 *
+	 * @param name
+	 *            The name of the metric
+	 * @param labels
+	 *            Pairs of label names and values
+	 * @return The unique key of the metric
+	 */
+	static String key(String name, String... labels) {
+		StringBuilder sb = new StringBuilder(name);
+		for (String label : labels) {
+			sb.append('\u0000').append(label);
+		}
+		return sb.toString();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+
+	public Map<String, String> getLabels() {
+		return labels;
+	}
+
+}
@@ -0,0 +1,158 @@
+package org.lancoder.common.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the metrics of the process. Metrics are created on first use and shared by name and labels, so instrumented
+ * classes should keep a reference to their metrics instead of looking them up on each update.
+ */
+public class MetricsRegistry {
+
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+	/**
+	 * Scale of timers, recorded in microseconds and exposed in seconds
+	 */
+	private static final double MICROS_TO_SECONDS = 1e-6;
+
+	private final ConcurrentHashMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the registry shared by the whole process.
+	 *
+	 * @return The default registry
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	public Counter counter(String name, String help, String... labels) {
+		String key = Metric.key(name, labels);
+		Metric metric = metrics.get(key);
+		if (metric == null) {
+			metrics.putIfAbsent(key, new Counter(name, help, labels));
+			metric = metrics.get(key);
+		}
+		return (Counter) metric;
+	}
+
+	public Gauge gauge(String name, String help, String... labels) {
+		String key = Metric.key(name, labels);
+		Metric metric = metrics.get(key);
+		if (metric == null) {
+			metrics.putIfAbsent(key, new Gauge(name, help, labels));
+			metric = metrics.get(key);
+		}
+		return (Gauge) metric;
+	}
+
+	/**
+	 * Get a histogram of durations recorded in microseconds and exposed in seconds.
+	 *
+	 * @param name
+	 *            The name of the metric, ending with _seconds
+	 * @param help
+	 *            The description of the metric
+	 * @param labels
+	 *            Pairs of label names and values
+	 * @return The histogram
+	 */
+	public Histogram timer(String name, String help, String... labels) {
+		return histogram(name, help, MICROS_TO_SECONDS, labels);
+	}
+
+	public Histogram histogram(String name, String help, double scale, String... labels) {
+		String key = Metric.key(name, labels);
+		Metric metric = metrics.get(key);
+		if (metric == null) {
+			metrics.putIfAbsent(key, new Histogram(name, help, scale, labels));
+			metric = metrics.get(key);
+		}
+		return (Histogram) metric;
+	}
+
+	/**
+	 * Register a metric, replacing any metric with the same name and labels. Used for gauges reading their value from
+	 * another object.
+	 *
+	 * @param metric
+	 *            The metric to register
+	 * @return The registered metric
+	 */
+	public <T extends Metric> T register(T metric) {
+		ArrayList<String> labels = new ArrayList<>();
+		for (Map.Entry<String, String> label : metric.getLabels().entrySet()) {
+			labels.add(label.getKey());
+			labels.add(label.getValue());
+		}
+		metrics.put(Metric.key(metric.getName(), labels.toArray(new String[labels.size()])), metric);
+		return metric;
+	}
+
+	/**
+	 * Remove the metrics of a name that are not kept, whatever their labels. The kept metrics stay registered so a
+	 * concurrent collection always sees them.
+	 *
+	 * @param name
+	 *            The name of the metrics to remove
+	 * @param kept
+	 *            The metrics of this name to keep
+	 */
+	public void retain(String name, Collection<? extends Metric> kept) {
+		Iterator<Metric> iterator = metrics.values().iterator();
+		while (iterator.hasNext()) {
+			Metric metric = iterator.next();
+			if (metric.getName().equals(name) && !kept.contains(metric)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Get the metrics sorted by name and labels.
+	 *
+	 * @return The sorted metrics
+	 */
+	private List<Metric> getSortedMetrics() {
+		return new ArrayList<>(new TreeMap<>(metrics).values());
+	}
+
+	/**
+	 * Render all metrics in the Prometheus text exposition format (version 0.0.4).
+	 *
+	 * @return The metrics as text
+	 */
+	public String toPrometheusText() {
+		StringBuilder sb = new StringBuilder();
+		String currentName = null;
+		for (Metric metric : getSortedMetrics()) {
+			if (!metric.getName().equals(currentName)) {
+				currentName = metric.getName();
+				sb.append("# HELP ").append(currentName).append(' ');
+				sb.append(metric.getHelp().replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+				sb.append("# TYPE ").append(currentName).append(' ').append(metric.getType()).append('\n');
+			}
+			metric.writeSamples(sb);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Get the current values of all metrics, to be serialized as JSON.
+	 *
+	 * @return A list of name, type, labels and values of each metric
+	 */
+	public List<Map<String, Object>> getSnapshot() {
+		ArrayList<Map<String, Object>> snapshot = new ArrayList<>();
+		for (Metric metric : getSortedMetrics()) {
+			snapshot.add(metric.getSnapshot());
+		}
+		return snapshot;
+	}
+
+}
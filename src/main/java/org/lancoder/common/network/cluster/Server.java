@@ -15,6 +15,10 @@ public abstract class Server extends RunnableServiceAdapter {
 	protected ServerSocket server;
 	protected Pool<Socket> pool;
 	protected Thread poolThread;
+	/**
+	 * Concurrency limit of the handlers on virtual threads, 0 to keep platform threads
+	 */
+	protected int virtualThreadLimit;
 
 	public Server(int port) {
 		this.port = port;
@@ -22,6 +26,16 @@ public abstract class Server extends RunnableServiceAdapter {
 
 	protected abstract void instanciatePool();
 
+	/**
+	 * Handle the connections on virtual threads once the server runs.
+	 *
+	 * @param concurrencyLimit
+	 *            The maximum number of connections handled at once
+	 */
+	public void useVirtualThreads(int concurrencyLimit) {
+		this.virtualThreadLimit = concurrencyLimit;
+	}
+
 	@Override
 	public void stop() {
 		super.stop();
@@ -37,6 +51,9 @@ public abstract class Server extends RunnableServiceAdapter {
 	@Override
 	public void run() {
 		instanciatePool();
+		if (virtualThreadLimit > 0) {
+			pool.useVirtualThreads(virtualThreadLimit);
+		}
 		this.poolThread = new Thread(pool, pool.getClass().getSimpleName());
 		this.poolThread.start();
 
@@ -2,8 +2,11 @@ package org.lancoder.common.network.cluster.messages;
 
 import java.util.ArrayList;
 
+import org.lancoder.common.codecs.EncodeSpeed;
 import org.lancoder.common.network.cluster.protocol.ClusterProtocol;
 import org.lancoder.common.status.NodeState;
+import org.lancoder.common.telemetry.NodeTelemetry;
+import org.lancoder.common.task.TaskCheckpoint;
 import org.lancoder.common.task.TaskReport;
 
 public class StatusReport extends AuthMessage {
@@ -11,6 +14,18 @@ public class StatusReport extends AuthMessage {
 	private static final long serialVersionUID = -844534455490561432L;
 	private ArrayList<TaskReport> taskReports;
 	public NodeState status;
+	/**
+	 * Speeds of a new encode benchmark of the worker, null if it did not run since the last report
+	 */
+	private ArrayList<EncodeSpeed> encodeSpeeds;
+	/**
+	 * Latest resource usage of the worker, null if it does not sample it
+	 */
+	private NodeTelemetry telemetry;
+	/**
+	 * Tasks the worker can resume after their completed passes, null if it does not keep checkpoints
+	 */
+	private ArrayList<TaskCheckpoint> checkpoints;
 
 	public StatusReport(NodeState status, String unid) {
 		super(ClusterProtocol.STATUS_REPORT, unid);
@@ -31,4 +46,28 @@ public class StatusReport extends AuthMessage {
 		this.taskReports = taskReports;
 	}
 
+	public ArrayList<EncodeSpeed> getEncodeSpeeds() {
+		return encodeSpeeds;
+	}
+
+	public void setEncodeSpeeds(ArrayList<EncodeSpeed> encodeSpeeds) {
+		this.encodeSpeeds = encodeSpeeds;
+	}
+
+	public NodeTelemetry getTelemetry() {
+		return telemetry;
+	}
+
+	public void setTelemetry(NodeTelemetry telemetry) {
+		this.telemetry = telemetry;
+	}
+
+	public ArrayList<TaskCheckpoint> getCheckpoints() {
+		return checkpoints;
+	}
+
+	public void setCheckpoints(ArrayList<TaskCheckpoint> checkpoints) {
+		this.checkpoints = checkpoints;
+	}
+
 }
@@ -3,6 +3,7 @@ package org.lancoder.common.network.messages.web;
 import org.lancoder.common.codecs.ChannelDisposition;
 import org.lancoder.common.codecs.CodecEnum;
 import org.lancoder.common.job.FFmpegPreset;
+import org.lancoder.common.job.OutputFormat;
 import org.lancoder.common.job.RateControlType;
 
 public class ApiJobRequest {
@@ -23,11 +24,17 @@ public class ApiJobRequest {
 	private int audioRate;
 	private ChannelDisposition audioChannels;
 	private int audioSampleRate;
+	// Output
+	private OutputFormat outputFormat;
 
 	public CodecEnum getVideoCodec() {
 		return videoCodec;
 	}
 
+	public void setVideoCodec(CodecEnum videoCodec) {
+		this.videoCodec = videoCodec;
+	}
+
 	public UserAudioPreset getAudioPreset() {
 		return audioConfig;
 	}
@@ -124,6 +131,14 @@ public class ApiJobRequest {
 		this.inputFile = inputFile;
 	}
 
+	public OutputFormat getOutputFormat() {
+		return outputFormat == null ? OutputFormat.FILE : outputFormat;
+	}
+
+	public void setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
 	public int getRate() {
 		return rate;
 	}
@@ -0,0 +1,157 @@
+package org.lancoder.common.network.messages.web;
+
+import java.util.ArrayList;
+
+import org.lancoder.common.status.RequestState;
+
+/**
+ * Progress of a job request in the job initiator. A request on a folder probes, splits and registers a job per file.
+ * <p>
+ * The status is updated by the job initiator while the api reads it, so the api serves copies.
+ */
+public class JobRequestStatus {
+
+	private String requestId;
+	private String name;
+	private String inputFile;
+	private RequestState state = RequestState.REQUEST_QUEUED;
+	/**
+	 * Source files found for the request, -1 until they are listed
+	 */
+	private int filesTotal = -1;
+	private int filesProbed;
+	private int jobsSplit;
+	private int jobsRegistered;
+	private int filesFailed;
+	private ArrayList<String> jobIds = new ArrayList<>();
+	private ArrayList<String> errors = new ArrayList<>();
+	private long timeSubmitted;
+	private long timeUpdated;
+
+	public JobRequestStatus(String requestId, ApiJobRequest request) {
+		this.requestId = requestId;
+		this.name = request.getName();
+		this.inputFile = request.getInputFile();
+		this.timeSubmitted = System.currentTimeMillis();
+		this.timeUpdated = timeSubmitted;
+	}
+
+	private JobRequestStatus(JobRequestStatus other) {
+		this.requestId = other.requestId;
+		this.name = other.name;
+		this.inputFile = other.inputFile;
+		this.state = other.state;
+		this.filesTotal = other.filesTotal;
+		this.filesProbed = other.filesProbed;
+		this.jobsSplit = other.jobsSplit;
+		this.jobsRegistered = other.jobsRegistered;
+		this.filesFailed = other.filesFailed;
+		this.jobIds = new ArrayList<>(other.jobIds);
+		this.errors = new ArrayList<>(other.errors);
+		this.timeSubmitted = other.timeSubmitted;
+		this.timeUpdated = other.timeUpdated;
+	}
+
+	/**
+	 * @return A copy of the status as of now
+	 */
+	public synchronized JobRequestStatus copy() {
+		return new JobRequestStatus(this);
+	}
+
+	public synchronized void setState(RequestState state) {
+		this.state = state;
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	public synchronized void setFilesTotal(int filesTotal) {
+		this.filesTotal = filesTotal;
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	public synchronized void probed() {
+		this.filesProbed++;
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	public synchronized void split() {
+		this.jobsSplit++;
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	public synchronized void registered(String jobId) {
+		this.jobsRegistered++;
+		this.jobIds.add(jobId);
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	/**
+	 * Record a source file that could not be made into a job. The other files of the request are still processed.
+	 */
+	public synchronized void fileFailed(String file, String error) {
+		this.filesFailed++;
+		this.errors.add(String.format("%s: %s", file, error));
+		this.timeUpdated = System.currentTimeMillis();
+	}
+
+	public synchronized void fail(String error) {
+		this.errors.add(error);
+		setState(RequestState.REQUEST_FAILED);
+	}
+
+	public synchronized boolean isFinished() {
+		return state == RequestState.REQUEST_COMPLETED || state == RequestState.REQUEST_FAILED;
+	}
+
+	public String getRequestId() {
+		return requestId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getInputFile() {
+		return inputFile;
+	}
+
+	public synchronized RequestState getState() {
+		return state;
+	}
+
+	public synchronized int getFilesTotal() {
+		return filesTotal;
+	}
+
+	public synchronized int getFilesProbed() {
+		return filesProbed;
+	}
+
+	public synchronized int getJobsSplit() {
+		return jobsSplit;
+	}
+
+	public synchronized int getJobsRegistered() {
+		return jobsRegistered;
+	}
+
+	public synchronized int getFilesFailed() {
+		return filesFailed;
+	}
+
+	public synchronized ArrayList<String> getJobIds() {
+		return new ArrayList<>(jobIds);
+	}
+
+	public synchronized ArrayList<String> getErrors() {
+		return new ArrayList<>(errors);
+	}
+
+	public long getTimeSubmitted() {
+		return timeSubmitted;
+	}
+
+	public synchronized long getTimeUpdated() {
+		return timeUpdated;
+	}
+}
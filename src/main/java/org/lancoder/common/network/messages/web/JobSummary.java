@@ -0,0 +1,137 @@
+package org.lancoder.common.network.messages.web;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.status.JobState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskProgress;
+import org.lancoder.common.task.video.ClientVideoTask;
+
+/**
+ * Compact state of a job for the job list of the web UI. The tasks are left out; they are served per job.
+ */
+public class JobSummary {
+
+	private String jobId;
+	private String jobName;
+	private JobState jobStatus;
+	private int priority;
+	private int taskCount;
+	private int completedTasks;
+	private int runningTasks;
+	/**
+	 * Percentage of the units of the job that are encoded
+	 */
+	private double progress;
+	/**
+	 * Sum of the speeds of the running video tasks in frames per second
+	 */
+	private double fps;
+	/**
+	 * Estimated time in ms to encode the remaining video frames at the current speed or -1 if unknown
+	 */
+	private long timeEstimated;
+	private long timeAdded;
+	private long timeStarted;
+	private long timeCompleted;
+
+	public JobSummary(Job job) {
+		this.jobId = job.getJobId();
+		this.jobName = job.getJobName();
+		this.jobStatus = job.getJobStatus();
+		this.priority = job.getPriority();
+		this.timeAdded = job.getTimeAdded();
+		this.timeStarted = job.getTimeStarted();
+		this.timeCompleted = job.getTimeCompleted();
+
+		long unitsTotal = 0;
+		long unitsDone = 0;
+		long framesRemaining = 0;
+		for (ClientTask task : job.getClientTasks()) {
+			TaskProgress taskProgress = task.getProgress();
+			long units = task.getUnitCount() * task.getStepCount();
+			long remaining = units;
+			unitsTotal += units;
+			taskCount++;
+
+			switch (taskProgress.getTaskState()) {
+			case TASK_COMPLETED:
+				completedTasks++;
+				remaining = 0;
+				break;
+			case TASK_COMPUTING:
+				runningTasks++;
+				remaining = Math.min(units, taskProgress.getUnitsRemaining());
+				if (task instanceof ClientVideoTask) {
+					fps += taskProgress.getCurrentStep().getSpeed();
+				}
+				break;
+			default:
+				break;
+			}
+			unitsDone += units - remaining;
+			if (task instanceof ClientVideoTask) {
+				framesRemaining += remaining;
+			}
+		}
+
+		if (jobStatus == JobState.JOB_COMPLETED) {
+			this.completedTasks = taskCount;
+			this.progress = 100;
+		} else {
+			this.progress = unitsTotal == 0 ? 0 : unitsDone * 100.0 / unitsTotal;
+		}
+		this.timeEstimated = fps > 0 ? (long) (framesRemaining / fps * 1000) : -1;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public JobState getJobStatus() {
+		return jobStatus;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	public int getTaskCount() {
+		return taskCount;
+	}
+
+	public int getCompletedTasks() {
+		return completedTasks;
+	}
+
+	public int getRunningTasks() {
+		return runningTasks;
+	}
+
+	public double getProgress() {
+		return progress;
+	}
+
+	public double getFps() {
+		return fps;
+	}
+
+	public long getTimeEstimated() {
+		return timeEstimated;
+	}
+
+	public long getTimeAdded() {
+		return timeAdded;
+	}
+
+	public long getTimeStarted() {
+		return timeStarted;
+	}
+
+	public long getTimeCompleted() {
+		return timeCompleted;
+	}
+}
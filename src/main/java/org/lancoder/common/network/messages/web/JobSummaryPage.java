@@ -0,0 +1,50 @@
+package org.lancoder.common.network.messages.web;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A page of job summaries.
+ */
+public class JobSummaryPage {
+
+	/**
+	 * Count of the jobs matching the query, on all pages
+	 */
+	private int total;
+	/**
+	 * Count of the completed jobs matching the query, on all pages
+	 */
+	private int completed;
+	private int offset;
+	private int limit;
+	private ArrayList<JobSummary> jobs;
+
+	public JobSummaryPage(int total, int completed, int offset, int limit, List<JobSummary> jobs) {
+		this.total = total;
+		this.completed = completed;
+		this.offset = offset;
+		this.limit = limit;
+		this.jobs = new ArrayList<>(jobs);
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getCompleted() {
+		return completed;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public ArrayList<JobSummary> getJobs() {
+		return jobs;
+	}
+}
@@ -0,0 +1,85 @@
+package org.lancoder.common.network.messages.web;
+
+import org.lancoder.common.status.TaskState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.Progress;
+
+/**
+ * Progress of the current step of a task running on a node, pushed to the web UI when it changes.
+ */
+public class TaskProgressUpdate {
+
+	private String jobId;
+	private int taskId;
+	/**
+	 * Unid of the node running the task
+	 */
+	private String unid;
+	private TaskState taskState;
+	private int currentPassIndex;
+	private double progress;
+	private double speed;
+	private long unitsCompleted;
+	private long timeEstimated;
+	private long timeElapsed;
+	private long lastUpdate;
+
+	public TaskProgressUpdate(ClientTask task, String unid) {
+		Progress step = task.getProgress().getCurrentStep();
+		this.jobId = task.getJobId();
+		this.taskId = task.getTaskId();
+		this.unid = unid;
+		this.taskState = task.getProgress().getTaskState();
+		this.currentPassIndex = task.getProgress().getCurrentStepIndex();
+		this.progress = step.getProgress();
+		this.speed = step.getSpeed();
+		this.unitsCompleted = step.getUnitsCompleted();
+		this.timeEstimated = step.getTimeEstimated();
+		this.timeElapsed = step.getTimeElapsed();
+		this.lastUpdate = step.getLastUpdate();
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public int getTaskId() {
+		return taskId;
+	}
+
+	public String getUnid() {
+		return unid;
+	}
+
+	public TaskState getTaskState() {
+		return taskState;
+	}
+
+	public int getCurrentPassIndex() {
+		return currentPassIndex;
+	}
+
+	public double getProgress() {
+		return progress;
+	}
+
+	public double getSpeed() {
+		return speed;
+	}
+
+	public long getUnitsCompleted() {
+		return unitsCompleted;
+	}
+
+	public long getTimeEstimated() {
+		return timeEstimated;
+	}
+
+	public long getTimeElapsed() {
+		return timeElapsed;
+	}
+
+	public long getLastUpdate() {
+		return lastUpdate;
+	}
+}
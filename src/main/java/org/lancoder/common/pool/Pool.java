@@ -2,11 +2,26 @@ package org.lancoder.common.pool;
 
 import java.util.ArrayList;
 import java.util.concurrent.ConcurrentLinkedDeque;
-
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.Gauge;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.scheduler.SchedulableService;
 
 /**
  * Generic pool used to handle threaded tasks. Allows threads to be reused.
+ * <p>
+ * Elements are put in a work queue and add() returns right away. The pool's thread drains the queue continuously,
+ * handing each element to a free pool worker or to a new one while the thread limit allows it, and waits for a
+ * worker to complete when all of them are busy.
+ * <p>
+ * Pools of workers blocked on the network can run each element on a virtual thread of its own instead, the thread
+ * limit then only bounds how many elements are handled at once.
  *
  * @author Justin Duplessis
  *
@@ -15,32 +30,58 @@ import org.lancoder.common.scheduler.SchedulableService;
  */
 public abstract class Pool<T> extends SchedulableService implements PoolWorkerListener<T> {
 
-	private Object refreshWaitLock = new Object();
-	private Object refreshRequest = new Object();
+	/**
+	 * Notified when a pool worker completes or the thread limit changes
+	 */
+	private final Object slotLock = new Object();
 
 	/**
 	 * How many pool workers can be initialized in the pool
 	 */
-	private int threadLimit;
+	private volatile int threadLimit;
+	/**
+	 * How many elements can wait for a pool worker when all pool workers are busy
+	 */
+	private final int queueCapacity;
+	/**
+	 * Elements accepted and not completed yet, queued or handled by a pool worker
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
 	/**
-	 * The pool will accept tasks and send to a queue if no pool worker can be used. Otherwise,
+	 * Elements handed to a pool worker and not completed yet
 	 */
-	private boolean canQueue;
+	private int running;
+	/**
+	 * The thread draining the work queue
+	 */
+	private volatile Thread poolThread;
+	/**
+	 * If elements are handled on virtual threads instead of pooled platform threads
+	 */
+	private volatile boolean virtual;
 	/**
 	 * List of the initialized pool workers in the pool
 	 */
-	protected final ArrayList<PoolWorker<T>> workers = new ArrayList<>();
+	protected final CopyOnWriteArrayList<PoolWorker<T>> workers = new CopyOnWriteArrayList<>();
 
 	protected final ConcurrentLinkedDeque<PoolWorker<T>> freeWorkers = new ConcurrentLinkedDeque<>();
 
 	/**
 	 * Contains the tasks to send to pool workers
 	 */
-	protected final ConcurrentLinkedDeque<T> todo = new ConcurrentLinkedDeque<>();
+	protected final LinkedBlockingQueue<T> todo = new LinkedBlockingQueue<>();
 	/**
 	 * Thread group of the pool workers
 	 */
 	protected final ThreadGroup threads = new ThreadGroup("threads");
+	/**
+	 * Metrics of the pool, labeled with the name of the pool's class
+	 */
+	private final Counter addedCounter;
+	private final Counter rejectedCounter;
+	private final Counter completedCounter;
+	private final Histogram addTimer;
+	private final Histogram waitTimer;
 
 	/**
 	 * Create a default pool with a defined thread limit. Pool will queue items without limitations.
@@ -58,11 +99,50 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	 * @param threadLimit
 	 *            The maximum number of pool workers to handle
 	 * @param canQueue
-	 *            False if pool should no pile up tasks
+	 *            False if pool should no pile up tasks and only accept them while a pool worker is free
 	 */
 	public Pool(int threadLimit, boolean canQueue) {
+		this(threadLimit, canQueue ? Integer.MAX_VALUE : 0);
+	}
+
+	/**
+	 * Create a pool with a bounded work queue.
+	 *
+	 * @param threadLimit
+	 *            The maximum number of pool workers to handle
+	 * @param queueCapacity
+	 *            How many elements can wait when all pool workers are busy, 0 to only accept elements while a pool
+	 *            worker is free
+	 */
+	public Pool(int threadLimit, int queueCapacity) {
 		this.threadLimit = threadLimit;
-		this.canQueue = canQueue;
+		this.queueCapacity = queueCapacity;
+
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		String poolName = getClass().getSimpleName();
+		this.addedCounter = registry.counter("lancoder_pool_added_total", "Elements added to the pool", "pool",
+				poolName);
+		this.rejectedCounter = registry.counter("lancoder_pool_rejected_total",
+				"Elements refused by a pool that cannot queue", "pool", poolName);
+		this.completedCounter = registry.counter("lancoder_pool_completed_total",
+				"Elements completed by the pool workers", "pool", poolName);
+		this.addTimer = registry.timer("lancoder_pool_add_seconds", "Time spent by callers adding to the pool",
+				"pool", poolName);
+		this.waitTimer = registry.timer("lancoder_pool_wait_seconds",
+				"Time spent by elements in the pool's queue before a pool worker handles them", "pool", poolName);
+		registry.register(new Gauge("lancoder_pool_queue_size", "Elements waiting for a free pool worker", "pool",
+				poolName) {
+			@Override
+			public double getValue() {
+				return getQueueSize();
+			}
+		});
+		registry.register(new Gauge("lancoder_pool_active_workers", "Busy pool workers", "pool", poolName) {
+			@Override
+			public double getValue() {
+				return getActiveCount();
+			}
+		});
 	}
 
 	/**
@@ -72,15 +152,55 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	 */
 	protected abstract PoolWorker<T> getPoolWorkerInstance();
 
+	/**
+	 * Tell if the pool workers spend their time blocked on the network rather than computing, so they can run on
+	 * virtual threads.
+	 *
+	 * @return True if the pool workers are I/O bound
+	 */
+	protected boolean isIoBound() {
+		return false;
+	}
+
+	/**
+	 * Handle each element on a new virtual thread, with at most concurrencyLimit elements handled at once. Only I/O
+	 * bound pools switch, and only when the running JDK has virtual threads. Call before the pool runs.
+	 *
+	 * @param concurrencyLimit
+	 *            The maximum number of elements handled at once
+	 * @return True if the pool now uses virtual threads
+	 */
+	public boolean useVirtualThreads(int concurrencyLimit) {
+		if (!isIoBound()) {
+			return false;
+		}
+		if (!VirtualThreads.isAvailable()) {
+			Logger.getLogger("lancoder").warning(String.format(
+					"Virtual threads are not available in Java %s, %s keeps %d platform threads.%n",
+					System.getProperty("java.version"), getClass().getSimpleName(), threadLimit));
+			return false;
+		}
+		this.virtual = true;
+		setThreadLimit(concurrencyLimit);
+		return true;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
 	@Override
 	public final void run() {
+		poolThread = Thread.currentThread();
 		while (!close) {
-			synchronized (refreshRequest) {
-				try {
-					refreshRequest.wait();
-					refresh();
-				} catch (InterruptedException e) {
-				}
+			try {
+				T item = todo.take();
+				long start = System.nanoTime();
+				awaitSlot();
+				dispatch(item);
+				waitTimer.recordSince(start);
+			} catch (InterruptedException e) {
+				// stop() interrupts the pool's thread
 			}
 		}
 	}
@@ -90,6 +210,12 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 		return 60 * 1000;
 	}
 
+	@Override
+	protected long getMsRunJitter() {
+		// Spread the cleaning of the pools started together
+		return 5 * 1000;
+	}
+
 	@Override
 	public void runTask() {
 		this.clean();
@@ -101,20 +227,17 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	 * @return True if any resource was cleaned
 	 */
 	public boolean clean() {
-		ArrayList<PoolWorker<T>> toClean = new ArrayList<>();
+		boolean cleaned = false;
 
 		for (PoolWorker<T> poolWorker : workers) {
-			if (poolWorker.shouldClean()) {
-				toClean.add(poolWorker);
+			// Take the worker out of the free list first so it cannot be handed an element while it closes
+			if (poolWorker.shouldClean() && freeWorkers.remove(poolWorker)) {
+				poolWorker.clean();
+				workers.remove(poolWorker);
+				cleaned = true;
 			}
 		}
-
-		for (PoolWorker<T> poolWorker : toClean) {
-			poolWorker.clean();
-			removeWorker(poolWorker);
-		}
-
-		return toClean.size() != 0;
+		return cleaned;
 	}
 
 	/**
@@ -123,29 +246,42 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	 * @return
 	 */
 	protected boolean hasFree() {
-		return getActiveCount() < threadLimit;
+		return pending.get() < threadLimit;
 	}
 
-	private void removeWorker(PoolWorker<T> worker) {
-		this.workers.remove(worker);
-		this.freeWorkers.remove(worker);
+	/**
+	 * Get the number of busy pool workers, counting the accepted elements about to be handed to a pool worker.
+	 *
+	 * @return The number of busy pool workers
+	 */
+	public final int getActiveCount() {
+		return Math.min(pending.get(), threadLimit);
+	}
+
+	/**
+	 * Get the number of elements waiting for a free pool worker.
+	 *
+	 * @return The size of the todo list
+	 */
+	public int getQueueSize() {
+		return Math.max(0, pending.get() - threadLimit);
 	}
 
-	public synchronized final int getActiveCount() {
-		return workers.size() - freeWorkers.size();
+	public int getThreadLimit() {
+		return threadLimit;
 	}
 
 	/**
-	 * Public synchronized call to get hasFree
+	 * Public call to get hasFree
 	 *
 	 * @return hasFree()
 	 */
-	public synchronized boolean hasFreeConverters() {
+	public boolean hasFreeConverters() {
 		return hasFree();
 	}
 
 	/**
-	 * Public synchronized call to known if pool is working.
+	 * Public call to known if pool is working.
 	 *
 	 * @return True if some pool workers are busy
 	 */
@@ -154,72 +290,43 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	}
 
 	/**
-	 * Try to spawn a new resource and run it in the main thread pool.
+	 * Spawn a new resource and run it in the main thread pool. The resource waits for its first element on its own
+	 * thread, the pool does not wait for it to start.
 	 *
-	 * @return
+	 * @return The pool worker
 	 */
 	private PoolWorker<T> spawn() {
-		PoolWorker<T> poolWorker = null;
-
-		Object threadLock = new Object();
-
-		if (canSpawn()) {
-			poolWorker = getPoolWorkerInstance(this, threadLock);
-
-			Thread thread = new Thread(threads, poolWorker, poolWorker.getClass().getSimpleName());
-			poolWorker.setThread(thread);
-			thread.start();
-
-			try {
-				synchronized (threadLock) {
-					threadLock.wait();
-				}
-			} catch (InterruptedException e) {
-			}
+		PoolWorker<T> poolWorker = getPoolWorkerInstance();
+		poolWorker.setPoolWorkerListener(this);
 
-			this.workers.add(poolWorker);
-		}
+		Thread thread = new Thread(threads, poolWorker, poolWorker.getClass().getSimpleName());
+		poolWorker.setThread(thread);
+		this.workers.add(poolWorker);
+		thread.start();
 
 		return poolWorker;
 	}
 
-	private final PoolWorker<T> getPoolWorkerInstance(PoolWorkerListener<T> workerListener, Object lock) {
-		PoolWorker<T> ressource = getPoolWorkerInstance();
-		ressource.setPoolWorkerListener(workerListener);
-		ressource.setParentLock(lock);
-		return ressource;
-	}
-
-	/**
-	 * Decides if pool has space to spawn a new pool worker.
-	 *
-	 * @return True if pool can spawn a pool worker
-	 */
-	private boolean canSpawn() {
-		return workers.size() < threadLimit;
-	}
-
 	/**
-	 * Get a free pool worker resource or create a new one.
+	 * Wait until less elements than the thread limit are handled by pool workers and reserve a slot.
 	 *
-	 * @return A free pool worker or null if no pool worker are available and pool is full
+	 * @throws InterruptedException
+	 *             If the pool is stopped
 	 */
-	private PoolWorker<T> getAvailableWorker() {
-		PoolWorker<T> poolWorker = getFreeWorker();
-
-		if (poolWorker == null) {
-			poolWorker = spawn();
+	private void awaitSlot() throws InterruptedException {
+		synchronized (slotLock) {
+			while (running >= threadLimit) {
+				slotLock.wait();
+			}
+			running++;
 		}
-		return poolWorker;
 	}
 
-	/**
-	 * Get a currently free pool worker.
-	 *
-	 * @return The free resource or null if none is available.
-	 */
-	private PoolWorker<T> getFreeWorker() {
-		return freeWorkers.poll();
+	private void releaseSlot() {
+		synchronized (slotLock) {
+			running--;
+			slotLock.notifyAll();
+		}
 	}
 
 	/**
@@ -230,81 +337,98 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	 *            The element to handle
 	 * @return If element could be added to queue
 	 */
-	public synchronized boolean add(T element) {
+	public boolean add(T element) {
 		// Ran from another thread
-		boolean added = false;
+		long start = System.nanoTime();
+		boolean added = reserve();
 
-		if (!canQueue && todo.size() > 0) {
-			System.err.printf("Warning pool %s seems to be overflowing. Current todo list has %s elements.", this
-					.getClass().getSimpleName(), todo.size());
+		if (added) {
+			this.todo.add(element);
+			addedCounter.increment();
 		} else {
-			added = this.todo.add(element);
+			System.err.printf("Warning pool %s seems to be overflowing. Current todo list has %s elements.%n", this
+					.getClass().getSimpleName(), todo.size());
+			rejectedCounter.increment();
+		}
+		addTimer.recordSince(start);
+		return added;
+	}
 
-			// Notify pool's thread to refresh
-			synchronized (refreshRequest) {
-				refreshRequest.notifyAll();
+	/**
+	 * Count an element as pending if a pool worker or the queue can take it.
+	 *
+	 * @return True if the element can be added
+	 */
+	private boolean reserve() {
+		while (true) {
+			int current = pending.get();
+			if ((long) current >= (long) threadLimit + queueCapacity) {
+				return false;
 			}
-
-			// Wait for pool refresh to complete as new resources may take time to load
-			synchronized (refreshWaitLock) {
-				try {
-					refreshWaitLock.wait(1000);
-				} catch (InterruptedException e) {
-				}
+			if (pending.compareAndSet(current, current + 1)) {
+				return true;
 			}
 		}
-		return added;
 	}
 
 	/**
-	 * Sends task to a pool worker or adds it back to the queue if no pool worker can be used.
+	 * Sends task to a free pool worker or to a new one. A slot is reserved, so a pool worker is free or can be spawned.
 	 *
 	 * @param task
 	 *            The work to dispatch
-	 *
-	 * @return True if a pool worker accepted
 	 */
-	private boolean dispatch(T task) {
+	private void dispatch(T task) {
 		// Ran from Pool Thread
-		PoolWorker<T> poolWorker = this.getAvailableWorker();
-
-		if (poolWorker == null) {
-			return false;
+		if (virtual) {
+			startVirtual(task);
+			return;
 		}
+		PoolWorker<T> poolWorker = freeWorkers.poll();
 
-		if (poolWorker.handle(task)) {
-			return true;
+		// A worker refusing the element is still busy, it is freed again on completion
+		while (poolWorker != null && !poolWorker.handle(task)) {
+			poolWorker = freeWorkers.poll();
+		}
+		if (poolWorker == null) {
+			spawn().handle(task);
 		}
-
-		freeWorkers.add(poolWorker);
-		return false;
 	}
 
-	private void refresh() {
-		// Ran from Pool Thread
-		if (!todo.isEmpty()) {
-			T item = this.todo.poll();
-
-			if (!dispatch(item)) {
-				this.todo.addFirst(item);
+	/**
+	 * Handle an element with a new pool worker on a virtual thread. The pool worker ends with its element.
+	 *
+	 * @param task
+	 *            The work to handle
+	 */
+	private void startVirtual(final T task) {
+		final PoolWorker<T> poolWorker = getPoolWorkerInstance();
+		poolWorker.setPoolWorkerListener(this);
+
+		Thread thread = VirtualThreads.unstarted(poolWorker.getClass().getSimpleName(), new Runnable() {
+			@Override
+			public void run() {
+				poolWorker.runSingle(task);
 			}
-		}
-		// Notify threads waiting on the refresh monitor
-		synchronized (refreshWaitLock) {
-			refreshWaitLock.notifyAll();
-		}
+		});
+		poolWorker.setThread(thread);
+		this.workers.add(poolWorker);
+		thread.start();
 	}
 
 	/**
-	 * Called when a resource completed it's task and is now free. Notifies pool's thread to refresh it's state.
+	 * Called when a resource completed it's task and is now free. Wakes the pool's thread if it waits for a worker.
 	 */
 	@Override
 	public final void completed(PoolWorker<T> worker) {
 		// Ran from PoolWorker thread
-		freeWorkers.add(worker);
-		synchronized (refreshRequest) {
-			refreshRequest.notify();
+		completedCounter.increment();
+		if (virtual) {
+			workers.remove(worker);
+		} else {
+			freeWorkers.add(worker);
 		}
+		pending.decrementAndGet();
+		releaseSlot();
 	}
 
 	/**
@@ -314,14 +438,21 @@ public abstract class Pool<T> extends SchedulableService implements PoolWorkerLi
 	public void stop() {
 		super.stop();
 
-		for (PoolWorker<T> worker : workers) {
+		for (PoolWorker<T> worker : new ArrayList<>(workers)) {
 			worker.stop();
 		}
 		threads.interrupt();
+		Thread thread = poolThread;
+		if (thread != null) {
+			thread.interrupt();
+		}
 	}
 
 	public void setThreadLimit(int threadLimit) {
-		this.threadLimit = threadLimit;
+		synchronized (slotLock) {
+			this.threadLimit = threadLimit;
+			slotLock.notifyAll();
+		}
 	}
 
 }
@@ -128,8 +128,9 @@ public abstract class PoolWorker<T> extends RunnableServiceAdapter implements Cl
 	public boolean handle(T request) {
 		boolean handled = false;
 		if (!active.get()) {
-			this.task = request;
 			synchronized (monitor) {
+				// Set under the monitor so the worker cannot miss an element handed before it waits
+				this.task = request;
 				monitor.notify();
 			}
 			handled = true;
@@ -161,7 +162,9 @@ public abstract class PoolWorker<T> extends RunnableServiceAdapter implements Cl
 			while (!close) {
 				synchronized (monitor) {
 					unlockParent(); // put this before the while and it creates concurrency errors
-					monitor.wait();
+					while (task == null) {
+						monitor.wait();
+					}
 					active.set(true);
 					start(); // Pool worker thread is now busy and blocks here
 
@@ -175,6 +178,26 @@ public abstract class PoolWorker<T> extends RunnableServiceAdapter implements Cl
 		}
 	}
 
+	/**
+	 * Handle a single element in the calling thread, for pool workers running on a virtual thread of their own. No
+	 * other thread hands elements to such a worker, so no monitor is held while it blocks and pins its carrier thread.
+	 *
+	 * @param element
+	 *            The element to handle
+	 */
+	final void runSingle(T element) {
+		task = element;
+		active.set(true);
+		try {
+			start();
+		} finally {
+			lastActivity = System.currentTimeMillis();
+			active.set(false);
+			task = null;
+			pool.completed(this);
+		}
+	}
+
 	private void unlockParent() {
 		if (parentLock != null) {
 			synchronized (parentLock) {
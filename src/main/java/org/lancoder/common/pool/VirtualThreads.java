@@ -0,0 +1,72 @@
+package org.lancoder.common.pool;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Access to the virtual threads of recent JDKs. The project targets Java 7, so the thread builder is reached by
+ * reflection and the pools fall back to platform threads when the running JDK has no virtual threads.
+ */
+public final class VirtualThreads {
+
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method UNSTARTED;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method unstarted = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class);
+			unstarted = builder.getMethod("unstarted", Runnable.class);
+			// Preview builds of the feature throw when it is not enabled
+			unstarted.invoke(ofVirtual.invoke(null), new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+		} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException
+				| InvocationTargetException e) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		UNSTARTED = unstarted;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return True if the running JDK can create virtual threads
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Create a virtual thread without starting it.
+	 *
+	 * @param name
+	 *            The name of the thread
+	 * @param runnable
+	 *            The work of the thread
+	 * @return The unstarted thread
+	 * @throws UnsupportedOperationException
+	 *             If the running JDK has no virtual threads
+	 */
+	public static Thread unstarted(String name, Runnable runnable) {
+		if (!isAvailable()) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+		}
+		try {
+			Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+			return (Thread) UNSTARTED.invoke(builder, runnable);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new UnsupportedOperationException("Could not create a virtual thread", e);
+		}
+	}
+}
@@ -1,7 +1,12 @@
 package org.lancoder.common.scheduler;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
 public abstract class Schedulable implements Comparable<Schedulable> {
 
+	private static final AtomicLong SEQUENCE = new AtomicLong();
+
 	/**
 	 * How many times to run. 0 is not limit
 	 */
@@ -11,9 +16,14 @@ public abstract class Schedulable implements Comparable<Schedulable> {
 	protected long lastRun;
 	protected int count;
 
+	/**
+	 * Order of creation, breaks ties between schedulables due at the same time
+	 */
+	final long sequence = SEQUENCE.getAndIncrement();
+
 	/**
 	 * Decides if scheduler should call this schedule before first timer.
-	 * 
+	 *
 	 * @return True if schedule should be called ASAP
 	 */
 	protected boolean runAsapOnScheduler() {
@@ -22,6 +32,16 @@ public abstract class Schedulable implements Comparable<Schedulable> {
 
 	protected abstract long getMsRunDelay();
 
+	/**
+	 * Maximum random delay added to each run, so services sharing a period do not all run at once. No jitter by
+	 * default.
+	 *
+	 * @return The jitter in msec
+	 */
+	protected long getMsRunJitter() {
+		return 0;
+	}
+
 	protected abstract void runTask();
 
 	protected void scheduleNow() {
@@ -30,23 +50,39 @@ public abstract class Schedulable implements Comparable<Schedulable> {
 
 	protected void scheduleNextRun() {
 		if (maxCount == 0 || count < maxCount) {
-			nextRun = System.currentTimeMillis() + getMsRunDelay();
+			long jitter = getMsRunJitter();
+			long delay = getMsRunDelay() + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+			nextRun = System.currentTimeMillis() + delay;
 		} else {
 			nextRun = Long.MAX_VALUE;
 		}
 	}
 
+	/**
+	 * Run the task and schedule the next run, even if the task failed.
+	 */
 	protected final void runSchedule() {
-		runTask();
-		lastRun = System.currentTimeMillis();
-		count++;
+		try {
+			runTask();
+		} finally {
+			lastRun = System.currentTimeMillis();
+			count++;
+
+			scheduleNextRun();
+		}
+	}
 
-		scheduleNextRun();
+	/**
+	 * @return True if the schedulable will not run anymore
+	 */
+	protected boolean isExhausted() {
+		return nextRun == Long.MAX_VALUE;
 	}
 
 	@Override
 	public int compareTo(Schedulable other) {
-		return (int) (this.nextRun - other.nextRun);
+		int result = Long.compare(this.nextRun, other.nextRun);
+		return result != 0 ? result : Long.compare(this.sequence, other.sequence);
 	}
 
 }
@@ -1,73 +1,133 @@
 package org.lancoder.common.scheduler;
 
-import java.util.concurrent.ConcurrentSkipListSet;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 
 import org.lancoder.common.RunnableServiceAdapter;
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 
+/**
+ * Runs the schedulables in the scheduler's thread when they are due. Pending runs are kept in a delay queue, so adding
+ * a schedulable wakes the thread without interrupting it and schedulables due at the same time all run, in the order
+ * they were created.
+ */
 public class Scheduler extends RunnableServiceAdapter {
 
-	private ConcurrentSkipListSet<Schedulable> schedulables = new ConcurrentSkipListSet<>();
-	private Thread schedulerThread;
-	private long sleepUntil;
-	private AtomicBoolean sleeping = new AtomicBoolean(false);
+	private final DelayQueue<ScheduledRun> queue = new DelayQueue<>();
+	/**
+	 * Schedulables with a pending run, a schedulable added twice is only scheduled once
+	 */
+	private final Set<Schedulable> scheduled = Collections
+			.newSetFromMap(new ConcurrentHashMap<Schedulable, Boolean>());
+	private volatile Thread schedulerThread;
 
-	public synchronized void addSchedulable(Schedulable schedulable) {
+	public void addSchedulable(Schedulable schedulable) {
+		if (!scheduled.add(schedulable)) {
+			return;
+		}
 		if (schedulable.runAsapOnScheduler()) {
 			schedulable.scheduleNow();
 		} else {
 			schedulable.scheduleNextRun();
 		}
-
-		schedulables.add(schedulable);
-		refresh();
+		queue.put(new ScheduledRun(schedulable));
 	}
 
 	@Override
 	public void run() {
-		sleepUntil = System.currentTimeMillis() + 100;
+		schedulerThread = Thread.currentThread();
 
 		while (!close) {
 			try {
-				sleepUntil(sleepUntil);
-
-				if (schedulables.size() > 0) {
-					Schedulable next = schedulables.pollFirst();
-					next.runSchedule();
-					schedulables.add(next);
-				}
+				execute(queue.take());
 			} catch (InterruptedException e) {
-				sleeping.set(false);
-			} finally {
-				refresh();
+				// stop() interrupts the scheduler's thread
 			}
 		}
 	}
 
+	private void execute(ScheduledRun run) {
+		Schedulable schedulable = run.schedulable;
+		run.delayTimer.record(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - run.runAt));
+
+		long start = System.nanoTime();
+		try {
+			schedulable.runSchedule();
+		} catch (RuntimeException e) {
+			run.errorCounter.increment();
+			Logger.getLogger("lancoder").warning(String.format("Scheduled run of %s failed: %s%n",
+					run.name, e));
+		}
+		run.runTimer.recordSince(start);
+
+		if (schedulable.isExhausted()) {
+			scheduled.remove(schedulable);
+		} else {
+			run.runAt = schedulable.nextRun;
+			queue.put(run);
+		}
+	}
+
 	public void setThread(Thread t) {
 		this.schedulerThread = t;
 	}
 
-	private void sleepUntil(long sleepUntil) throws InterruptedException {
-		long currentMs = System.currentTimeMillis();
-
-		if (currentMs < sleepUntil) {
-			sleeping.set(true);
-			sleeping.set(false);
-			Thread.sleep(sleepUntil - currentMs);
+	@Override
+	public void stop() {
+		super.stop();
+		Thread thread = schedulerThread;
+		if (thread != null) {
+			thread.interrupt();
 		}
 	}
 
-	private void refresh() {
-		if (!schedulables.isEmpty()) {
-			Schedulable next = schedulables.first();
-			sleepUntil = next.nextRun;
+	/**
+	 * Pending run of a schedulable and the metrics of its runs. The entry is queued again after each run.
+	 */
+	private static class ScheduledRun implements Delayed {
 
-			if (sleeping.get()) {
-				this.schedulerThread.interrupt();
-			}
-		} else {
-			sleepUntil = System.currentTimeMillis() + 10000;
+		private final Schedulable schedulable;
+		private final String name;
+		private final Histogram runTimer;
+		private final Histogram delayTimer;
+		private final Counter errorCounter;
+		/**
+		 * Due time of the run, copied from the schedulable so the queue's ordering cannot change while it is queued
+		 */
+		private long runAt;
+
+		public ScheduledRun(Schedulable schedulable) {
+			this.schedulable = schedulable;
+			this.runAt = schedulable.nextRun;
+
+			Class<?> clazz = schedulable.getClass();
+			this.name = clazz.getSimpleName().isEmpty() ? clazz.getName() : clazz.getSimpleName();
+			MetricsRegistry registry = MetricsRegistry.getDefault();
+			this.runTimer = registry.timer("lancoder_scheduler_run_seconds", "Time spent running a schedulable",
+					"schedulable", name);
+			this.delayTimer = registry.timer("lancoder_scheduler_delay_seconds",
+					"Time between the due time of a schedulable and the start of its run", "schedulable", name);
+			this.errorCounter = registry.counter("lancoder_scheduler_errors_total",
+					"Runs of a schedulable that threw an exception", "schedulable", name);
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(runAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			ScheduledRun other = (ScheduledRun) o;
+			int result = Long.compare(this.runAt, other.runAt);
+			return result != 0 ? result : Long.compare(schedulable.sequence, other.schedulable.sequence);
 		}
 	}
 }
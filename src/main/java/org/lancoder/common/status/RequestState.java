@@ -0,0 +1,33 @@
+package org.lancoder.common.status;
+
+/**
+ * Possible states for a job request, from its submission to the registration of its jobs.
+ *
+ */
+public enum RequestState {
+	/**
+	 * Request is waiting for the job initiator.
+	 */
+	REQUEST_QUEUED,
+	/**
+	 * Source files are being listed and probed.
+	 */
+	REQUEST_PROBING,
+	/**
+	 * Jobs are being split in tasks.
+	 */
+	REQUEST_SPLITTING,
+	/**
+	 * Folders of the jobs are being prepared and the jobs added to the master.
+	 */
+	REQUEST_REGISTERING,
+	/**
+	 * All jobs of the request are registered.
+	 */
+	REQUEST_COMPLETED,
+	/**
+	 * Request was rejected or could not be processed. Jobs registered before the failure are kept.
+	 */
+	REQUEST_FAILED
+
+}
@@ -3,9 +3,17 @@ package org.lancoder.common.task;
 import java.io.File;
 import java.io.Serializable;
 
+import org.lancoder.common.codecs.base.Codec;
+import org.lancoder.common.strategies.stream.StreamHandlingStrategy;
+import org.lancoder.common.timeline.Timeline;
+
 public abstract class ClientTask implements Serializable {
 
 	private static final long serialVersionUID = 7072947025021592662L;
+	/**
+	 * Copying a stream only reads and writes it
+	 */
+	private static final ResourceCost COPY_COST = new ResourceCost(1, 64);
 	protected Task task;
 	protected StreamConfig streamConfig;
 
@@ -40,6 +48,24 @@ public abstract class ClientTask implements Serializable {
 
 	public abstract Task getTask();
 
+	/**
+	 * Get the resources used by the task on a node, as declared by the codec of its output stream.
+	 *
+	 * @return The cost of the task
+	 */
+	public ResourceCost getCost() {
+		StreamHandlingStrategy strategy = streamConfig.getOutStream().getStrategy();
+		if (strategy.isCopy()) {
+			return COPY_COST;
+		}
+		Codec codec = strategy.getCodec();
+		return new ResourceCost(codec.getCpuCost(), codec.getMemoryCost());
+	}
+
+	public Timeline getTimeline() {
+		return task.getTimeline();
+	}
+
 	public File getTempFile() {
 		return task.getTempFile();
 	}
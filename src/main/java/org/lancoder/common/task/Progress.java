@@ -138,4 +138,37 @@ public class Progress implements Serializable {
 		this.unitsCompleted = unitsTotal;
 		this.average.clear();
 	}
+
+	/**
+	 * Get the current speed estimate.
+	 *
+	 * @return The speed in units/sec
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+
+	public long getUnitsTotal() {
+		return unitsTotal;
+	}
+
+	public long getUnitsCompleted() {
+		return unitsCompleted;
+	}
+
+	public double getProgress() {
+		return progress;
+	}
+
+	public long getTimeEstimated() {
+		return timeEstimated;
+	}
+
+	public long getTimeElapsed() {
+		return timeElapsed;
+	}
+
+	public long getLastUpdate() {
+		return lastUpdate;
+	}
 }
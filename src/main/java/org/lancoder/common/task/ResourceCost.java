@@ -0,0 +1,82 @@
+package org.lancoder.common.task;
+
+import java.io.Serializable;
+
+/**
+ * Resources used by a task on a node, or resources offered by a node. CPU is counted in cores and memory in MiB. A
+ * memory capacity of 0 means the node did not report its memory and memory is not accounted.
+ */
+public class ResourceCost implements Serializable {
+
+	private static final long serialVersionUID = -2722458390281315339L;
+
+	public static final ResourceCost ZERO = new ResourceCost(0, 0);
+
+	private final int cpu;
+	private final int memory;
+
+	public ResourceCost(int cpu, int memory) {
+		this.cpu = cpu;
+		this.memory = memory;
+	}
+
+	public ResourceCost plus(ResourceCost other) {
+		return new ResourceCost(cpu + other.cpu, memory + other.memory);
+	}
+
+	public ResourceCost minus(ResourceCost other) {
+		return new ResourceCost(cpu - other.cpu, memory - other.memory);
+	}
+
+	/**
+	 * Limit the cost to a node's capacity, so a task costing more than a node offers can still run alone on it.
+	 *
+	 * @param capacity
+	 *            The capacity of the node
+	 * @return The cost of the task on the node
+	 */
+	public ResourceCost capTo(ResourceCost capacity) {
+		int cappedMemory = capacity.memory > 0 ? Math.min(memory, capacity.memory) : memory;
+		return new ResourceCost(Math.min(cpu, capacity.cpu), cappedMemory);
+	}
+
+	/**
+	 * Check if this cost fits in the free resources of a node.
+	 *
+	 * @param free
+	 *            The free resources of the node
+	 * @param capacity
+	 *            The capacity of the node, to know if its memory is accounted
+	 * @return True if the cost fits
+	 */
+	public boolean fitsIn(ResourceCost free, ResourceCost capacity) {
+		return cpu <= free.cpu && (capacity.memory <= 0 || memory <= free.memory);
+	}
+
+	public int getCpu() {
+		return cpu;
+	}
+
+	public int getMemory() {
+		return memory;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof ResourceCost) {
+			ResourceCost other = (ResourceCost) obj;
+			return other.cpu == cpu && other.memory == memory;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * cpu + memory;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d cpu, %d MiB", cpu, memory);
+	}
+}
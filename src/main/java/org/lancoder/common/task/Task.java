@@ -3,6 +3,9 @@ package org.lancoder.common.task;
 import java.io.File;
 import java.io.Serializable;
 
+import org.lancoder.common.annotations.NoWebUI;
+import org.lancoder.common.timeline.Timeline;
+
 public class Task implements Serializable {
 
 	private static final long serialVersionUID = 6687973244041343482L;
@@ -23,6 +26,11 @@ public class Task implements Serializable {
 	 * delete this file.
 	 */
 	protected File finalFile;
+	/**
+	 * Lifecycle events recorded by the master and the worker handling the task
+	 */
+	@NoWebUI
+	protected Timeline timeline = new Timeline();
 
 	public Task(int taskId, String jobId, int stepCount, long encodingStartTime, long encodingEndTime, long unitCount,
 			Unit unit, File tempFile, File finalFile) {
@@ -82,6 +90,14 @@ public class Task implements Serializable {
 		return this.jobId;
 	}
 
+	public synchronized Timeline getTimeline() {
+		if (timeline == null) {
+			// Tasks saved before timelines were recorded
+			timeline = new Timeline();
+		}
+		return timeline;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj != null && obj instanceof Task) {
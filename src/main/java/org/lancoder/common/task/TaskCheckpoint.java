@@ -0,0 +1,56 @@
+package org.lancoder.common.task;
+
+import java.io.Serializable;
+
+/**
+ * Passes of a task a worker completed and kept in its temporary folder. The worker resumes the task after these
+ * passes if it is given the task again.
+ */
+public class TaskCheckpoint implements Serializable {
+
+	private static final long serialVersionUID = -2470931805283617735L;
+
+	private String jobId;
+	private int taskId;
+	private int completedSteps;
+	private long timestamp;
+
+	public TaskCheckpoint(String jobId, int taskId, int completedSteps, long timestamp) {
+		this.jobId = jobId;
+		this.taskId = taskId;
+		this.completedSteps = completedSteps;
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Check if the checkpoint is of a task.
+	 *
+	 * @param task
+	 *            The task
+	 * @return True if the checkpoint has the job and id of the task
+	 */
+	public boolean isOf(ClientTask task) {
+		return jobId.equals(task.getJobId()) && taskId == task.getTaskId();
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public int getTaskId() {
+		return taskId;
+	}
+
+	public int getCompletedSteps() {
+		return completedSteps;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("task %d from job %s after %d steps", taskId, jobId, completedSteps);
+	}
+}
@@ -2,6 +2,7 @@ package org.lancoder.common.task;
 
 import java.io.Serializable;
 import java.util.LinkedHashMap;
+import java.util.Map.Entry;
 
 import org.lancoder.common.status.TaskState;
 
@@ -72,6 +73,24 @@ public class TaskProgress implements Serializable {
 		this.taskState = TaskState.TASK_COMPLETED;
 	}
 
+	/**
+	 * Count the units left to process in the current and following steps.
+	 *
+	 * @return The units remaining
+	 */
+	public long getUnitsRemaining() {
+		long remaining = 0;
+		for (Entry<Integer, Progress> step : steps.entrySet()) {
+			Progress progress = step.getValue();
+			if (step.getKey() > currentPassIndex) {
+				remaining += progress.getUnitsTotal();
+			} else if (step.getKey() == currentPassIndex) {
+				remaining += Math.max(0, progress.getUnitsTotal() - progress.getUnitsCompleted());
+			}
+		}
+		return remaining;
+	}
+
 	public int getCurrentStepIndex() {
 		return currentPassIndex;
 	}
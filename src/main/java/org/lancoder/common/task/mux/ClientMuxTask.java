@@ -0,0 +1,50 @@
+package org.lancoder.common.task.mux;
+
+import java.io.File;
+
+import org.lancoder.common.annotations.NoWebUI;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.ResourceCost;
+
+/**
+ * Muxing of a job dispatched to a worker. The job is sent along the task as the muxers need all of its streams and
+ * tasks.
+ */
+public class ClientMuxTask extends ClientTask {
+
+	private static final long serialVersionUID = 3186749617254331950L;
+
+	@NoWebUI
+	private Job job;
+
+	public ClientMuxTask(Job job) {
+		// Use the next free task id of the job so the task can be identified like the encoding tasks
+		super(new MuxTask(job.getTaskCount(), job.getJobId(), job.getLengthOfJob(), new File(job.getOutputFolder(),
+				job.getOutputFileName())), null);
+		this.job = job;
+	}
+
+	@Override
+	public MuxTask getTask() {
+		return (MuxTask) this.task;
+	}
+
+	/**
+	 * Muxing is bound by the disks, not by the cpu
+	 */
+	@Override
+	public ResourceCost getCost() {
+		return ResourceCost.ZERO;
+	}
+
+	public Job getJob() {
+		return job;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("muxing of job %s", getJobId());
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.lancoder.common.task.mux;
+
+import java.io.File;
+
+import org.lancoder.common.task.Task;
+import org.lancoder.common.task.Unit;
+
+/**
+ * Task merging the encoded parts and copied streams of a job into the final file.
+ */
+public class MuxTask extends Task {
+
+	private static final long serialVersionUID = -2471860431981407284L;
+
+	public MuxTask(int taskId, String jobId, long lengthOfJob, File finalFile) {
+		super(taskId, jobId, 1, 0, lengthOfJob, 1, Unit.SECONDS, finalFile, finalFile);
+	}
+
+}
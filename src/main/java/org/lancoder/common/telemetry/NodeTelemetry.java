@@ -0,0 +1,134 @@
+package org.lancoder.common.telemetry;
+
+import java.io.Serializable;
+
+/**
+ * Resource usage of a node sampled by the worker and sent with its status reports. Values the worker could not read
+ * are negative and are ignored.
+ */
+public class NodeTelemetry implements Serializable {
+
+	private static final long serialVersionUID = -4981270462851834760L;
+
+	/**
+	 * Below this free space in MiB the temporary folder cannot hold another task
+	 */
+	public static final long MIN_DISK_FREE = 1024;
+	/**
+	 * Load per core above which the node is saturated, it starts to be avoided at 1
+	 */
+	private static final double MAX_LOAD_PER_CORE = 2;
+	/**
+	 * Share of the cpu time waiting for I/O above which the node is saturated
+	 */
+	private static final double MAX_IO_WAIT = 0.5;
+	/**
+	 * Share of available memory below which the node starts to be avoided
+	 */
+	private static final double LOW_MEMORY = 0.2;
+	/**
+	 * Share of available memory below which the node is saturated, as it is about to swap
+	 */
+	private static final double MIN_MEMORY = 0.05;
+
+	private long timestamp;
+	private int cores;
+	/**
+	 * Share of the cpu time spent working since the previous sample, between 0 and 1
+	 */
+	private double cpuUsage;
+	private double loadAverage;
+	/**
+	 * Share of the cpu time waiting for I/O since the previous sample, between 0 and 1
+	 */
+	private double ioWait;
+	/**
+	 * Memory in MiB
+	 */
+	private long memoryTotal;
+	private long memoryAvailable;
+	/**
+	 * Free space of the temporary folder in MiB, less the space reserved by the tasks of the node
+	 */
+	private long diskFree;
+
+	public NodeTelemetry(long timestamp, int cores, double cpuUsage, double loadAverage, double ioWait,
+			long memoryTotal, long memoryAvailable, long diskFree) {
+		this.timestamp = timestamp;
+		this.cores = cores;
+		this.cpuUsage = cpuUsage;
+		this.loadAverage = loadAverage;
+		this.ioWait = ioWait;
+		this.memoryTotal = memoryTotal;
+		this.memoryAvailable = memoryAvailable;
+		this.diskFree = diskFree;
+	}
+
+	/**
+	 * Get how much the node can still take, from its load, I/O wait and available memory. A node under its cores in
+	 * load with a fifth of its memory free has a full headroom.
+	 *
+	 * @return The headroom between 0, saturated, and 1
+	 */
+	public double getHeadroom() {
+		double headroom = 1;
+		if (loadAverage >= 0 && cores > 0) {
+			headroom = Math.min(headroom, (MAX_LOAD_PER_CORE - loadAverage / cores) / (MAX_LOAD_PER_CORE - 1));
+		}
+		if (ioWait >= 0) {
+			headroom = Math.min(headroom, 1 - ioWait / MAX_IO_WAIT);
+		}
+		if (memoryAvailable >= 0 && memoryTotal > 0) {
+			double available = (double) memoryAvailable / memoryTotal;
+			headroom = Math.min(headroom, (available - MIN_MEMORY) / (LOW_MEMORY - MIN_MEMORY));
+		}
+		return Math.max(0, Math.min(1, headroom));
+	}
+
+	/**
+	 * Check if the node should not receive tasks, because it has no headroom or is out of temporary disk space.
+	 *
+	 * @return True if the node is saturated
+	 */
+	public boolean isSaturated() {
+		return getHeadroom() <= 0 || (diskFree >= 0 && diskFree < MIN_DISK_FREE);
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public int getCores() {
+		return cores;
+	}
+
+	public double getCpuUsage() {
+		return cpuUsage;
+	}
+
+	public double getLoadAverage() {
+		return loadAverage;
+	}
+
+	public double getIoWait() {
+		return ioWait;
+	}
+
+	public long getMemoryTotal() {
+		return memoryTotal;
+	}
+
+	public long getMemoryAvailable() {
+		return memoryAvailable;
+	}
+
+	public long getDiskFree() {
+		return diskFree;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("cpu %.0f%%, load %.2f, iowait %.0f%%, memory %d/%d MiB, disk %d MiB", cpuUsage * 100,
+				loadAverage, ioWait * 100, memoryAvailable, memoryTotal, diskFree);
+	}
+}
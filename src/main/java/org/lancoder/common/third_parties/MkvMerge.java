@@ -1,11 +1,11 @@
 package org.lancoder.common.third_parties;
 
-import org.lancoder.master.MasterConfig;
+import org.lancoder.common.config.Config;
 
 public class MkvMerge extends ThirdParty {
-	private MasterConfig config;
+	private Config config;
 
-	public MkvMerge(MasterConfig config) {
+	public MkvMerge(Config config) {
 		super(false);
 		this.config = config;
 	}
@@ -0,0 +1,100 @@
+package org.lancoder.common.timeline;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.lancoder.common.timeline.TimelineEvent.Kind;
+
+/**
+ * Lifecycle events of a task or a job. The timeline travels with the task between the master and the workers so both
+ * sides add their events to it. Reports from a worker are merged in the master's instance.
+ */
+public class Timeline implements Serializable {
+
+	private static final long serialVersionUID = 4490917130883599402L;
+	/**
+	 * Events kept per timeline. Retried tasks could otherwise grow without bound.
+	 */
+	private static final int MAX_EVENTS = 256;
+	/**
+	 * Name of the current process in the recorded events
+	 */
+	private static volatile String localOrigin = "master";
+
+	private final ArrayList<TimelineEvent> events = new ArrayList<>();
+
+	/**
+	 * Set the name recorded as origin of the events created by this process.
+	 *
+	 * @param origin
+	 *            The name of the process
+	 */
+	public static void setLocalOrigin(String origin) {
+		localOrigin = origin;
+	}
+
+	public void begin(String name) {
+		add(new TimelineEvent(name, Kind.BEGIN, System.currentTimeMillis(), localOrigin));
+	}
+
+	public void end(String name) {
+		add(new TimelineEvent(name, Kind.END, System.currentTimeMillis(), localOrigin));
+	}
+
+	public void mark(String name) {
+		add(new TimelineEvent(name, Kind.INSTANT, System.currentTimeMillis(), localOrigin));
+	}
+
+	private synchronized void add(TimelineEvent event) {
+		if (events.size() >= MAX_EVENTS) {
+			events.remove(0);
+		}
+		events.add(event);
+	}
+
+	/**
+	 * Add the events of another instance of the timeline which are not already known.
+	 *
+	 * @param other
+	 *            The timeline reported by another process
+	 */
+	public void merge(Timeline other) {
+		if (other == null || other == this) {
+			return;
+		}
+		ArrayList<TimelineEvent> otherEvents = other.getEvents();
+		synchronized (this) {
+			boolean changed = false;
+			for (TimelineEvent event : otherEvents) {
+				if (!events.contains(event)) {
+					events.add(event);
+					changed = true;
+				}
+			}
+			if (changed) {
+				Collections.sort(events);
+				while (events.size() > MAX_EVENTS) {
+					events.remove(0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a copy of the events, in the order they were recorded or merged.
+	 *
+	 * @return The events
+	 */
+	public synchronized ArrayList<TimelineEvent> getEvents() {
+		return new ArrayList<>(events);
+	}
+
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		// Events are added by the converters while status reports are serialized
+		out.defaultWriteObject();
+	}
+
+}
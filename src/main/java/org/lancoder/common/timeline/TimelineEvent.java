@@ -0,0 +1,75 @@
+package org.lancoder.common.timeline;
+
+import java.io.Serializable;
+
+/**
+ * A timestamped point of the lifecycle of a task or a job. Spans are made of a BEGIN and an END event of the same name.
+ */
+public class TimelineEvent implements Serializable, Comparable<TimelineEvent> {
+
+	private static final long serialVersionUID = -1853411744880264722L;
+
+	public enum Kind {
+		BEGIN, END, INSTANT
+	}
+
+	private final String name;
+	private final Kind kind;
+	/**
+	 * Time in ms of the event, from the clock of the origin
+	 */
+	private final long time;
+	/**
+	 * The process which recorded the event: master or the name of a worker
+	 */
+	private final String origin;
+
+	public TimelineEvent(String name, Kind kind, long time, String origin) {
+		this.name = name;
+		this.kind = kind;
+		this.time = time;
+		this.origin = origin;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	@Override
+	public int compareTo(TimelineEvent other) {
+		return Long.compare(this.time, other.time);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj != null && obj instanceof TimelineEvent) {
+			TimelineEvent other = (TimelineEvent) obj;
+			return other.time == this.time && other.kind == this.kind && other.name.equals(this.name)
+					&& other.origin.equals(this.origin);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode() * 31 + (int) (time ^ (time >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s %s at %d on %s", kind, name, time, origin);
+	}
+
+}
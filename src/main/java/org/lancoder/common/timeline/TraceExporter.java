@@ -0,0 +1,118 @@
+package org.lancoder.common.timeline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.task.ClientTask;
+
+/**
+ * Builds the timeline of a job and its tasks, and exports it in the Trace Event Format read by chrome://tracing and
+ * Perfetto.
+ */
+public class TraceExporter {
+
+	/**
+	 * Get the events of a job and of each of its tasks.
+	 *
+	 * @param job
+	 *            The job
+	 * @return A map with the job's events and the events of each task
+	 */
+	public Map<String, Object> getJobTimeline(Job job) {
+		LinkedHashMap<String, Object> timeline = new LinkedHashMap<>();
+		ArrayList<Map<String, Object>> tasks = new ArrayList<>();
+
+		for (ClientTask task : job.getClientTasks()) {
+			LinkedHashMap<String, Object> taskTimeline = new LinkedHashMap<>();
+			taskTimeline.put("taskId", task.getTaskId());
+			taskTimeline.put("task", task.toString());
+			taskTimeline.put("events", task.getTimeline().getEvents());
+			tasks.add(taskTimeline);
+		}
+		timeline.put("jobId", job.getJobId());
+		timeline.put("jobName", job.getJobName());
+		timeline.put("events", job.getTimeline().getEvents());
+		timeline.put("tasks", tasks);
+		return timeline;
+	}
+
+	/**
+	 * Export the timeline of a job as trace events. Each origin (master or worker) is a process and each task a
+	 * thread. Job events are on thread 0 of the master.
+	 *
+	 * @param job
+	 *            The job
+	 * @return The trace, to be serialized as JSON
+	 */
+	public Map<String, Object> getTrace(Job job) {
+		ArrayList<Map<String, Object>> traceEvents = new ArrayList<>();
+		HashMap<String, Integer> processIds = new HashMap<>();
+
+		addEvents(traceEvents, processIds, job.getTimeline().getEvents(), 0, job.getJobName());
+		for (ClientTask task : job.getClientTasks()) {
+			addEvents(traceEvents, processIds, task.getTimeline().getEvents(), task.getTaskId() + 1, task.toString());
+		}
+
+		LinkedHashMap<String, Object> trace = new LinkedHashMap<>();
+		trace.put("traceEvents", traceEvents);
+		trace.put("displayTimeUnit", "ms");
+		return trace;
+	}
+
+	private void addEvents(List<Map<String, Object>> traceEvents, HashMap<String, Integer> processIds,
+			List<TimelineEvent> events, int threadId, String threadName) {
+		HashMap<Integer, Boolean> namedThreads = new HashMap<>();
+
+		for (TimelineEvent event : events) {
+			Integer processId = processIds.get(event.getOrigin());
+			if (processId == null) {
+				processId = processIds.size() + 1;
+				processIds.put(event.getOrigin(), processId);
+				traceEvents.add(getMetadata("process_name", processId, 0, event.getOrigin()));
+			}
+			if (!namedThreads.containsKey(processId)) {
+				namedThreads.put(processId, true);
+				traceEvents.add(getMetadata("thread_name", processId, threadId, threadName));
+			}
+
+			LinkedHashMap<String, Object> traceEvent = new LinkedHashMap<>();
+			traceEvent.put("name", event.getName());
+			traceEvent.put("ph", getPhase(event));
+			traceEvent.put("ts", event.getTime() * 1000);
+			traceEvent.put("pid", processId);
+			traceEvent.put("tid", threadId);
+			if (event.getKind() == TimelineEvent.Kind.INSTANT) {
+				traceEvent.put("s", "t");
+			}
+			traceEvents.add(traceEvent);
+		}
+	}
+
+	private static String getPhase(TimelineEvent event) {
+		switch (event.getKind()) {
+		case BEGIN:
+			return "B";
+		case END:
+			return "E";
+		default:
+			return "i";
+		}
+	}
+
+	private static Map<String, Object> getMetadata(String name, int processId, int threadId, String value) {
+		LinkedHashMap<String, Object> metadata = new LinkedHashMap<>();
+		LinkedHashMap<String, Object> args = new LinkedHashMap<>();
+		args.put("name", value);
+		metadata.put("name", name);
+		metadata.put("ph", "M");
+		metadata.put("pid", processId);
+		metadata.put("tid", threadId);
+		metadata.put("args", args);
+		return metadata;
+	}
+
+}
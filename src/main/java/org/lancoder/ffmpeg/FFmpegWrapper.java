@@ -5,10 +5,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 
 import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.EncodeSpeed;
 import org.lancoder.common.file_components.FileInfo;
 import org.lancoder.common.third_parties.FFmpeg;
 import org.lancoder.common.third_parties.FFprobe;
 import org.lancoder.ffmpeg.probers.CodecProber;
+import org.lancoder.ffmpeg.probers.EncodeBenchmarkProber;
 import org.lancoder.ffmpeg.probers.FileProber;
 import org.lancoder.ffmpeg.probers.VersionProber;
 
@@ -24,6 +26,12 @@ public class FFmpegWrapper {
 		return prober.getFileInfo(absoluteFile, relativePath, module);
 	}
 
+	public static EncodeSpeed getEncodeSpeed(FFmpeg module, CodecEnum codec, int width, int height, String preset,
+			int threads, int frameCount) {
+		EncodeBenchmarkProber prober = new EncodeBenchmarkProber();
+		return prober.getEncodeSpeed(module, codec, width, height, preset, threads, frameCount);
+	}
+
 	public static HashMap<String, String> getVersions(FFmpeg module) {
 		VersionProber prober = new VersionProber();
 		return prober.getVersions(module);
@@ -0,0 +1,90 @@
+package org.lancoder.ffmpeg.probers;
+
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.EncodeSpeed;
+import org.lancoder.common.exceptions.MissingThirdPartyException;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.ffmpeg.FFmpegReader;
+import org.lancoder.ffmpeg.FFmpegReaderListener;
+
+/**
+ * Measures the speed of an encoder on a synthetic source generated by ffmpeg's lavfi test pattern, so no media file is
+ * needed.
+ */
+public class EncodeBenchmarkProber implements FFmpegReaderListener {
+
+	private static final Pattern framePattern = Pattern.compile("frame=\\s*([0-9]+)");
+	private static final int FRAME_RATE = 30;
+
+	private long frames;
+
+	/**
+	 * Encode a number of frames of a test pattern and measure the frames encoded per second.
+	 *
+	 * @param module
+	 *            The ffmpeg module
+	 * @param codec
+	 *            The codec to encode with
+	 * @param width
+	 *            The width of the test pattern
+	 * @param height
+	 *            The height of the test pattern
+	 * @param preset
+	 *            The preset of the encoder, null for none
+	 * @param threads
+	 *            The threads given to the encoder
+	 * @param frameCount
+	 *            The frames to encode
+	 * @return The speed, or null if ffmpeg failed
+	 */
+	public EncodeSpeed getEncodeSpeed(FFmpeg module, CodecEnum codec, int width, int height, String preset,
+			int threads, int frameCount) {
+		ArrayList<String> args = new ArrayList<>();
+		args.add(module.getPath());
+		args.add("-f");
+		args.add("lavfi");
+		args.add("-i");
+		args.add(String.format("testsrc2=size=%dx%d:rate=%d", width, height, FRAME_RATE));
+		args.add("-frames:v");
+		args.add(String.valueOf(frameCount));
+		args.add("-an");
+		args.add("-c:v");
+		args.add(codec.getEncoder());
+		args.add("-threads");
+		args.add(String.valueOf(threads));
+		if (preset != null) {
+			args.add("-preset");
+			args.add(preset);
+		}
+		args.add("-f");
+		args.add("null");
+		args.add("-");
+
+		FFmpegReader reader = new FFmpegReader();
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			success = reader.read(args, this, true);
+		} catch (MissingThirdPartyException e) {
+			e.printStackTrace();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		if (!success || frames == 0 || seconds <= 0) {
+			return null;
+		}
+		return new EncodeSpeed(codec, width, height, preset, frames / seconds);
+	}
+
+	@Override
+	public void onMessage(String line) {
+		Matcher m = framePattern.matcher(line);
+		while (m.find()) {
+			frames = Long.parseLong(m.group(1));
+		}
+	}
+}
@@ -3,16 +3,40 @@ package org.lancoder.master;
 import org.lancoder.common.Node;
 import org.lancoder.common.task.ClientTask;
 
+/**
+ * A task given to a node, held under a lease. The node renews the lease each time it reports progress on the task and
+ * the task is reclaimed once the lease expires, whatever the node is doing.
+ */
 public class Assignment {
 
 	private ClientTask task;
 	private long time;
 	private Node assignee;
+	private long leaseMsec;
+	private volatile long leaseExpiry;
 
-	public Assignment(ClientTask task, Node assignee) {
+	public Assignment(ClientTask task, Node assignee, long leaseMsec) {
 		this.task = task;
 		this.time = System.currentTimeMillis();
 		this.assignee = assignee;
+		this.leaseMsec = leaseMsec;
+		this.leaseExpiry = time + leaseMsec;
+	}
+
+	/**
+	 * Extend the lease by its full duration from now.
+	 */
+	public void renew() {
+		this.leaseExpiry = System.currentTimeMillis() + leaseMsec;
+	}
+
+	/**
+	 * @param now
+	 *            The current time in msec
+	 * @return True if the node did not renew the lease in time
+	 */
+	public boolean isExpired(long now) {
+		return now > leaseExpiry;
 	}
 
 	public ClientTask getTask() {
@@ -27,4 +51,8 @@ public class Assignment {
 		return assignee;
 	}
 
+	public long getLeaseExpiry() {
+		return leaseExpiry;
+	}
+
 }
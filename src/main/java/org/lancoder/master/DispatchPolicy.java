@@ -0,0 +1,119 @@
+package org.lancoder.master;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.lancoder.common.Node;
+import org.lancoder.common.job.Job;
+
+/**
+ * Strategies of the job manager to pick the next video task and the node to give it to.
+ */
+public enum DispatchPolicy {
+
+	/**
+	 * Jobs in order of submission, nodes in any order.
+	 */
+	FIFO(false, false),
+	/**
+	 * Jobs by priority then by order of submission. This is the historical behavior.
+	 */
+	PRIORITY(false, false),
+	/**
+	 * Jobs by priority, with the fastest free node receiving the next task.
+	 */
+	THROUGHPUT(true, false),
+	/**
+	 * Like THROUGHPUT, and once no task is left, a straggling task is moved to a free node that would finish it
+	 * sooner.
+	 */
+	SPECULATIVE(true, true);
+
+	private static final Comparator<Job> SUBMISSION_ORDER = new Comparator<Job>() {
+		@Override
+		public int compare(Job a, Job b) {
+			return Long.compare(a.getTimeAdded(), b.getTimeAdded());
+		}
+	};
+
+	/**
+	 * Speeds are weighted by the headroom of the nodes, a loaded node counts for half its speed
+	 */
+	private static final Comparator<Node> FASTEST_FIRST = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(getEffectiveSpeed(b), getEffectiveSpeed(a));
+		}
+	};
+
+	private static final Comparator<Node> MOST_HEADROOM_FIRST = new Comparator<Node>() {
+		@Override
+		public int compare(Node a, Node b) {
+			return Double.compare(b.getHeadroom(), a.getHeadroom());
+		}
+	};
+
+	private final boolean speedAware;
+	private final boolean speculative;
+
+	private DispatchPolicy(boolean speedAware, boolean speculative) {
+		this.speedAware = speedAware;
+		this.speculative = speculative;
+	}
+
+	/**
+	 * Sort jobs in the order they should give their tasks.
+	 *
+	 * @param jobs
+	 *            The jobs to sort
+	 */
+	public void sortJobs(List<Job> jobs) {
+		if (this == FIFO) {
+			Collections.sort(jobs, SUBMISSION_ORDER);
+		} else {
+			Collections.sort(jobs);
+		}
+	}
+
+	/**
+	 * Sort free nodes in the order they should receive tasks. Nodes of unknown speed come last. Policies ignoring
+	 * speed still give tasks to the least loaded nodes first.
+	 *
+	 * @param nodes
+	 *            The nodes to sort
+	 */
+	public void sortNodes(List<Node> nodes) {
+		if (speedAware) {
+			Collections.sort(nodes, FASTEST_FIRST);
+		} else {
+			Collections.sort(nodes, MOST_HEADROOM_FIRST);
+		}
+	}
+
+	private static double getEffectiveSpeed(Node node) {
+		return node.getEncodingSpeed() * (0.5 + 0.5 * node.getHeadroom());
+	}
+
+	public boolean isSpeculative() {
+		return speculative;
+	}
+
+	/**
+	 * Get a policy from its name.
+	 *
+	 * @param name
+	 *            The name of the policy, case insensitive
+	 * @return The policy or PRIORITY if the name is unknown
+	 */
+	public static DispatchPolicy fromName(String name) {
+		if (name != null) {
+			for (DispatchPolicy policy : values()) {
+				if (policy.name().equalsIgnoreCase(name.trim())) {
+					return policy;
+				}
+			}
+		}
+		return PRIORITY;
+	}
+}
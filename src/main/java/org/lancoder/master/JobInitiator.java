@@ -5,7 +5,11 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.UUID;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
 import org.lancoder.common.RunnableServiceAdapter;
@@ -21,8 +25,11 @@ import org.lancoder.common.file_components.streams.original.OriginalAudioStream;
 import org.lancoder.common.file_components.streams.original.OriginalVideoStream;
 import org.lancoder.common.job.FFmpegPreset;
 import org.lancoder.common.job.Job;
+import org.lancoder.common.job.OutputFormat;
 import org.lancoder.common.job.RateControlType;
 import org.lancoder.common.network.messages.web.ApiJobRequest;
+import org.lancoder.common.network.messages.web.JobRequestStatus;
+import org.lancoder.common.status.RequestState;
 import org.lancoder.common.strategies.stream.AudioEncodeStrategy;
 import org.lancoder.common.strategies.stream.CopyStrategy;
 import org.lancoder.common.strategies.stream.StreamHandlingStrategy;
@@ -34,15 +41,44 @@ import org.lancoder.common.task.video.VideoStreamConfig;
 import org.lancoder.common.third_parties.FFprobe;
 import org.lancoder.common.utils.FileUtils;
 import org.lancoder.ffmpeg.FFmpegWrapper;
+import org.lancoder.muxer.HlsMuxer;
 
 public class JobInitiator extends RunnableServiceAdapter {
 
 	private final static String[] EXTENSIONS = new String[] { "mkv", "mp4", "avi", "mov", "flac", "mp3" };
 
-	private final LinkedBlockingDeque<ApiJobRequest> requests = new LinkedBlockingDeque<>();
+	/**
+	 * Number of request statuses kept, the oldest are forgotten first
+	 */
+	public static final int MAX_STATUSES = 10000;
+
+	private final Logger logger = Logger.getLogger("lancoder");
+	private final LinkedBlockingDeque<Submission> requests = new LinkedBlockingDeque<>();
+	private final LinkedHashMap<String, JobRequestStatus> statuses = new LinkedHashMap<String, JobRequestStatus>() {
+		private static final long serialVersionUID = -5838209186101296465L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, JobRequestStatus> eldest) {
+			return size() > MAX_STATUSES;
+		}
+	};
 	private JobInitiatorListener listener;
 	private MasterConfig config;
 
+	/**
+	 * A request waiting for the initiator and its status
+	 */
+	private static class Submission {
+
+		private final ApiJobRequest request;
+		private final JobRequestStatus status;
+
+		public Submission(ApiJobRequest request, JobRequestStatus status) {
+			this.request = request;
+			this.status = status;
+		}
+	}
+
 	public JobInitiator(JobInitiatorListener listener, MasterConfig config) {
 		this.listener = listener;
 		this.config = config;
@@ -52,16 +88,93 @@ public class JobInitiator extends RunnableServiceAdapter {
 		boolean success = false;
 		if (new File(config.getAbsoluteSharedFolder(), request.getInputFile()).exists()) {
 			success = true;
-			this.requests.add(request);
+			submit(request);
 		}
 		return success;
 	}
 
-	private Job createJob(ApiJobRequest req, String jobName, File sourceFile, File outputFolder) {
+	/**
+	 * Queue a request without waiting for its source to be checked. The source is checked, probed and split by the
+	 * initiator thread while the returned status can be followed with {@link #getStatus(String)}.
+	 *
+	 * @param request
+	 *            The request
+	 * @return The status of the request, as of its submission
+	 */
+	public JobRequestStatus submit(ApiJobRequest request) {
+		JobRequestStatus status = new JobRequestStatus(UUID.randomUUID().toString(), request);
+		synchronized (statuses) {
+			statuses.put(status.getRequestId(), status);
+		}
+		if (request.getInputFile() == null) {
+			status.fail("The request has no input file.");
+		} else {
+			this.requests.add(new Submission(request, status));
+		}
+		return status.copy();
+	}
+
+	/**
+	 * Get the status of a request.
+	 *
+	 * @param requestId
+	 *            The id given on submission
+	 * @return A copy of the status or null if the request is unknown
+	 */
+	public JobRequestStatus getStatus(String requestId) {
+		JobRequestStatus status;
+		synchronized (statuses) {
+			status = statuses.get(requestId);
+		}
+		return status == null ? null : status.copy();
+	}
+
+	/**
+	 * @return Copies of the statuses of the known requests, by submission order
+	 */
+	public ArrayList<JobRequestStatus> getStatuses() {
+		ArrayList<JobRequestStatus> copies = new ArrayList<>();
+		synchronized (statuses) {
+			for (JobRequestStatus status : statuses.values()) {
+				copies.add(status.copy());
+			}
+		}
+		return copies;
+	}
+
+	private Job createJob(ApiJobRequest req, String jobName, File sourceFile, File outputFolder,
+			JobRequestStatus status) {
 		// Get meta-data from source file
+		status.setState(RequestState.REQUEST_PROBING);
 		File absoluteFile = FileUtils.getFile(config.getAbsoluteSharedFolder(), sourceFile.getPath());
 		FileInfo fileInfo = FFmpegWrapper.getFileInfo(absoluteFile, sourceFile.getPath(), new FFprobe(config));
+		if (fileInfo == null) {
+			throw new IllegalStateException("could not probe the file");
+		}
+		status.probed();
+
+		status.setState(RequestState.REQUEST_SPLITTING);
+		Job job = createJob(req, jobName, sourceFile, outputFolder, fileInfo);
+		status.split();
+		return job;
+	}
 
+	/**
+	 * Create a job and its tasks from already probed source information.
+	 *
+	 * @param req
+	 *            The request of the job
+	 * @param jobName
+	 *            The name of the job
+	 * @param sourceFile
+	 *            The source file, relative to the shared folder
+	 * @param outputFolder
+	 *            The output folder of the job
+	 * @param fileInfo
+	 *            The streams of the source file
+	 * @return The job
+	 */
+	public Job createJob(ApiJobRequest req, String jobName, File sourceFile, File outputFolder, FileInfo fileInfo) {
 		FFmpegPreset preset = req.getPreset();
 		RateControlType videoRateControlType = req.getRateControlType();
 		CodecEnum videoCodecEnum = req.getVideoCodec();
@@ -123,7 +236,21 @@ public class JobInitiator extends RunnableServiceAdapter {
 		}
 
 		String outputFileName = String.format("%s.%s", FilenameUtils.getBaseName(sourceFile.getPath()), fileExtension);
+		if (req.getOutputFormat() == OutputFormat.HLS) {
+			// Segments are cut from the video parts, which only transport stream video parts allow
+			if (fileInfo.getVideoStreams().isEmpty()) {
+				throw new IllegalArgumentException("HLS output needs a video stream");
+			}
+			if (videoCodec == null || !videoCodec.needsTranscode()) {
+				throw new IllegalArgumentException(String.format("HLS output is not supported with video codec %s",
+						videoCodecEnum));
+			}
+			// Segments and playlists are kept in their own folder, the master playlist is the final file
+			outputFileName = new File(FilenameUtils.getBaseName(sourceFile.getPath()), HlsMuxer.MASTER_PLAYLIST)
+					.getPath();
+		}
 		Job job = new Job(jobName, sourceFile.getPath(), lengthOfTasks, fileInfo, outputFolder, outputFileName);
+		job.setOutputFormat(req.getOutputFormat());
 
 		for (OriginalVideoStream originalStream : fileInfo.getVideoStreams()) {
 			double frameRate = requestFrameRate < 1 ? originalStream.getFrameRate() : requestFrameRate;
@@ -150,9 +277,9 @@ public class JobInitiator extends RunnableServiceAdapter {
 		return job;
 	}
 
-	private Job createJob(ApiJobRequest req, String jobName, File sourceFile) {
+	private Job createJob(ApiJobRequest req, String jobName, File sourceFile, JobRequestStatus status) {
 		File output = FileUtils.getFile(config.getFinalEncodingFolder(), jobName);
-		return createJob(req, jobName, sourceFile, output);
+		return createJob(req, jobName, sourceFile, output, status);
 	}
 
 	private ArrayList<ClientTask> createTasks(StreamConfig config, Job job) {
@@ -160,11 +287,11 @@ public class JobInitiator extends RunnableServiceAdapter {
 		return handlingStrategy.createTasks(job, config);
 	}
 
-	private Job createJob(ApiJobRequest req, File sourcefile) {
-		return createJob(req, req.getName(), sourcefile);
+	private Job createJob(ApiJobRequest req, File sourcefile, JobRequestStatus status) {
+		return createJob(req, req.getName(), sourcefile, status);
 	}
 
-	private void processBatchRequest(ApiJobRequest req) {
+	private void processBatchRequest(ApiJobRequest req, JobRequestStatus status) {
 		File baseSourceFolder = FileUtils.getFile(config.getAbsoluteSharedFolder(), req.getInputFile());
 		String globalJobName = req.getName();
 		File relGlobalOutput = FileUtils.getFile(config.getFinalEncodingFolder(), globalJobName);
@@ -175,7 +302,9 @@ public class JobInitiator extends RunnableServiceAdapter {
 		// }
 
 		// Create all jobs
+		status.setState(RequestState.REQUEST_PROBING);
 		Collection<File> toProcess = FileUtils.listFiles(baseSourceFolder, EXTENSIONS, true);
+		status.setFilesTotal(toProcess.size());
 		for (File absoluteFile : toProcess) {
 			File relativeJobFile = new File(relativize(absoluteFile));
 			String fileName = FilenameUtils.removeExtension(relativeJobFile.getName());
@@ -183,14 +312,25 @@ public class JobInitiator extends RunnableServiceAdapter {
 			File jobOutput = new File(relGlobalOutput, jobOutputUri.getPath());
 			String jobName = String.format("%s - %s ", globalJobName, fileName);
 
-			Job job = createJob(req, jobName, relativeJobFile, jobOutput);
-			registerJob(job);
+			try {
+				Job job = createJob(req, jobName, relativeJobFile, jobOutput, status);
+				registerJob(job, status);
+			} catch (RuntimeException e) {
+				// a bad file does not stop the rest of the folder
+				logger.warning(String.format("Could not create a job from %s: %s%n", relativeJobFile, e.getMessage()));
+				status.fileFailed(relativeJobFile.getPath(), e.getMessage());
+			}
+		}
+		if (status.getFilesFailed() > 0 && status.getJobsRegistered() == 0) {
+			status.fail("No job could be created from the folder.");
 		}
 	}
 
-	private void registerJob(Job job) {
+	private void registerJob(Job job, JobRequestStatus status) {
+		status.setState(RequestState.REQUEST_REGISTERING);
 		prepareFileSystem(job);
 		listener.newJob(job);
+		status.registered(job.getJobId());
 	}
 
 	/**
@@ -205,14 +345,20 @@ public class JobInitiator extends RunnableServiceAdapter {
 		return uri.getPath();
 	}
 
-	private void processJobRequest(ApiJobRequest req) {
+	private void processJobRequest(ApiJobRequest req, JobRequestStatus status) {
 		String relativeSourceFile = req.getInputFile();
 		File absoluteSourceFile = new File(config.getAbsoluteSharedFolder(), relativeSourceFile);
-		if (absoluteSourceFile.isDirectory()) {
-			processBatchRequest(req);
+		if (!absoluteSourceFile.exists()) {
+			status.fail("The file or directory does not exist.");
+		} else if (absoluteSourceFile.isDirectory()) {
+			processBatchRequest(req, status);
 		} else {
-			Job job = createJob(req, new File(relativeSourceFile));
-			registerJob(job);
+			status.setFilesTotal(1);
+			Job job = createJob(req, new File(relativeSourceFile), status);
+			registerJob(job, status);
+		}
+		if (!status.isFinished()) {
+			status.setState(RequestState.REQUEST_COMPLETED);
 		}
 	}
 
@@ -236,7 +382,15 @@ public class JobInitiator extends RunnableServiceAdapter {
 	public void run() {
 		try {
 			while (!close) {
-				processJobRequest(requests.take());
+				Submission submission = requests.take();
+				try {
+					processJobRequest(submission.request, submission.status);
+				} catch (RuntimeException e) {
+					// keep the initiator alive for the next requests
+					logger.warning(String.format("Could not process the job request %s: %s%n",
+							submission.status.getRequestId(), e.getMessage()));
+					submission.status.fail(String.valueOf(e.getMessage()));
+				}
 			}
 		} catch (InterruptedException e) {
 		}
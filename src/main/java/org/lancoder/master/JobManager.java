@@ -17,21 +17,32 @@ import org.lancoder.common.events.Event;
 import org.lancoder.common.events.EventEnum;
 import org.lancoder.common.events.EventListener;
 import org.lancoder.common.job.Job;
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.Gauge;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
 import org.lancoder.common.network.cluster.protocol.ClusterProtocol;
 import org.lancoder.common.network.messages.web.ApiJobRequest;
+import org.lancoder.common.network.messages.web.JobRequestStatus;
 import org.lancoder.common.status.JobState;
 import org.lancoder.common.status.TaskState;
 import org.lancoder.common.strategies.stream.EncodeStrategy;
 import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskCheckpoint;
 import org.lancoder.common.task.audio.ClientAudioTask;
+import org.lancoder.common.task.mux.ClientMuxTask;
 import org.lancoder.common.task.video.ClientVideoTask;
 import org.lancoder.master.dispatcher.DispatchItem;
 import org.lancoder.master.dispatcher.DispatcherPool;
+import org.lancoder.muxer.MuxerFactory;
 
 public class JobManager implements EventListener {
 
-	private static final long DISPATCH_DELAY_MSEC = 5000;
+	/**
+	 * Default duration of the lease of an assigned task
+	 */
+	public static final int DEFAULT_LEASE_SECONDS = 60;
 	private EventListener listener;
 	private NodeManager nodeManager;
 	private DispatcherPool dispatcherPool;
@@ -44,9 +55,32 @@ public class JobManager implements EventListener {
 	 * Mapping of the current tasks of the cluster.
 	 */
 	private ConcurrentHashMap<ClientTask, Assignment> assignments = new ConcurrentHashMap<>();
+	private DispatchPolicy policy = DispatchPolicy.PRIORITY;
+	private long leaseMsec = DEFAULT_LEASE_SECONDS * 1000L;
+	/**
+	 * Muxing tasks of the jobs muxed by the workers. Key is the job's id.
+	 */
+	private final HashMap<String, ClientMuxTask> muxTasks = new HashMap<>();
+	/**
+	 * Count of the completed tasks of each job by node unid. Used to mux a job on the node that encoded most of it.
+	 */
+	private final HashMap<String, HashMap<String, Integer>> completedTasksByNode = new HashMap<>();
+
+	/**
+	 * Fraction of the remaining time a straggler move must save
+	 */
+	private static final double STRAGGLER_MIN_GAIN = 0.25;
 
 	private Logger logger = Logger.getLogger("lancoder");
 
+	private final Histogram updateTimer;
+	private final Counter assignedCounter;
+	private final Counter completedCounter;
+	private final Counter failedCounter;
+	private final Counter canceledCounter;
+	private final Counter expiredCounter;
+	private final Counter reattachedCounter;
+
 	public JobManager(EventListener listener, NodeManager nodeManager, DispatcherPool dispatcherPool,
 			MasterSavedInstance savedInstance, JobInitiator jobInitiator) {
 		this.listener = listener;
@@ -54,11 +88,37 @@ public class JobManager implements EventListener {
 		this.dispatcherPool = dispatcherPool;
 		this.jobInitiator = jobInitiator;
 
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		String tasksHelp = "Tasks updated by the nodes, by final state";
+		this.updateTimer = registry.timer("lancoder_job_manager_update_seconds",
+				"Time to compute and dispatch the work of the nodes");
+		this.assignedCounter = registry.counter("lancoder_tasks_assigned_total", "Tasks assigned to nodes");
+		this.completedCounter = registry.counter("lancoder_tasks_total", tasksHelp, "state", "completed");
+		this.failedCounter = registry.counter("lancoder_tasks_total", tasksHelp, "state", "failed");
+		this.canceledCounter = registry.counter("lancoder_tasks_total", tasksHelp, "state", "canceled");
+		this.expiredCounter = registry.counter("lancoder_task_leases_expired_total",
+				"Tasks reclaimed from nodes that did not renew their lease");
+		this.reattachedCounter = registry.counter("lancoder_task_leases_reattached_total",
+				"Tasks or results taken back from nodes after their lease expired");
+		registry.register(new Gauge("lancoder_jobs", "Jobs known by the master") {
+			@Override
+			public double getValue() {
+				return jobs.size();
+			}
+		});
+		registry.register(new Gauge("lancoder_assignments", "Tasks currently assigned to a node") {
+			@Override
+			public double getValue() {
+				return assignments.size();
+			}
+		});
+
 		if (savedInstance != null) {
 			this.jobs.putAll(savedInstance.getJobs());
 		}
 
-		this.removeLastInstanceInProgressTasks();
+		this.restoreLastInstanceAssignments();
+		this.restorePendingMuxing();
 	}
 
 	public HashMap<String, Job> getJobHashMap() {
@@ -92,6 +152,8 @@ public class JobManager implements EventListener {
 			}
 		}
 
+		removeMuxTask(j.getJobId());
+
 		if (this.jobs.remove(j.getJobId()) == null) {
 			return false;
 		}
@@ -129,18 +191,33 @@ public class JobManager implements EventListener {
 	public ArrayList<Job> getAvailableJobs() {
 		ArrayList<Job> jobs = new ArrayList<>();
 		for (Entry<String, Job> e : this.jobs.entrySet()) {
-			Job job = e.getValue();
-			if (job.getJobStatus() == JobState.JOB_COMPUTING || job.getJobStatus() == JobState.JOB_TODO) {
+			if (isAvailable(e.getValue())) {
 				jobs.add(e.getValue());
 			}
 		}
 		return jobs;
 	}
 
-	private ClientVideoTask getNextVideoTask(ArrayList<Codec> codecs) {
+	/**
+	 * @return True if tasks of the job can be dispatched
+	 */
+	private static boolean isAvailable(Job job) {
+		return job.getJobStatus() == JobState.JOB_COMPUTING || job.getJobStatus() == JobState.JOB_TODO;
+	}
+
+	/**
+	 * Get the next video task a node can encode. Tasks another online node holds a checkpoint of are left to that node
+	 * unless no other task remains.
+	 *
+	 * @param node
+	 *            The node
+	 * @return The task, null if none
+	 */
+	private ClientVideoTask getNextVideoTask(Node node) {
 		ClientVideoTask task = null;
+		ClientVideoTask resumable = null;
 		ArrayList<Job> jobList = getAvailableJobs();
-		Collections.sort(jobList);
+		policy.sortJobs(jobList);
 
 		for (Iterator<Job> itJob = jobList.iterator(); itJob.hasNext() && task == null;) {
 			Job job = itJob.next();
@@ -151,20 +228,105 @@ public class JobManager implements EventListener {
 				EncodeStrategy encodeStrategy = (EncodeStrategy) clientTask.getStreamConfig().getOutStream()
 						.getStrategy();
 
-				if (codecs.contains(encodeStrategy.getCodec())) {
+				if (!node.getCodecs().contains(encodeStrategy.getCodec())) {
+					continue;
+				}
+				if (!isCheckpointedElsewhere(clientTask, node)) {
 					task = clientTask;
+				} else if (resumable == null) {
+					resumable = clientTask;
 				}
 			}
 		}
-		return task;
+		return task != null ? task : resumable;
+	}
+
+	private boolean isCheckpointedElsewhere(ClientTask task, Node node) {
+		for (Node other : nodeManager.getOnlineNodes()) {
+			if (!other.equals(node) && other.getCheckpoint(task) != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Get a video task the node can resume from one of its checkpoints.
+	 *
+	 * @param node
+	 *            The node
+	 * @return The task, null if the node holds no checkpoint of a task to do
+	 */
+	private ClientVideoTask getCheckpointedVideoTask(Node node) {
+		for (TaskCheckpoint checkpoint : node.getCheckpoints()) {
+			Job job = getJob(checkpoint.getJobId());
+			if (job == null || !isAvailable(job)) {
+				continue;
+			}
+			ClientTask task = getTask(job, checkpoint.getTaskId());
+			if (task instanceof ClientVideoTask && task.getProgress().getTaskState() == TaskState.TASK_TODO
+					&& node.getCodecs().contains(task.getStreamConfig().getOutStream().getStrategy().getCodec())) {
+				return (ClientVideoTask) task;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Create a muxing task for a job that completed encoding. The task will be dispatched to a worker on next update.
+	 *
+	 * @param job
+	 *            The job to mux
+	 */
+	public synchronized void addMuxTask(Job job) {
+		if (!muxTasks.containsKey(job.getJobId())) {
+			muxTasks.put(job.getJobId(), new ClientMuxTask(job));
+			logger.fine(String.format("Job %s is waiting to be muxed by a worker.%n", job.getJobName()));
+		}
+		this.listener.handle(new Event(EventEnum.WORK_NEEDS_UPDATE));
 	}
 
+	/**
+	 * Dispatch waiting muxing tasks. Prefers the free node that encoded most of the job's tasks.
+	 */
+	private void dispatchMuxTasks() {
+		for (ClientMuxTask muxTask : muxTasks.values()) {
+			if (muxTask.getProgress().getTaskState() != TaskState.TASK_TODO) {
+				continue;
+			}
+
+			boolean needsMkvMerge = MuxerFactory.requiresMkvMerge(muxTask.getJob());
+			HashMap<String, Integer> contributions = completedTasksByNode.get(muxTask.getJobId());
+			Node best = null;
+			int bestCount = -1;
+
+			for (Node node : nodeManager.getFreeNodes()) {
+				if (needsMkvMerge && !node.isMkvMergeInstalled()) {
+					continue;
+				}
+				Integer count = contributions == null ? null : contributions.get(node.getUnid());
+				int nodeCount = count == null ? 0 : count;
+
+				if (nodeCount > bestCount) {
+					best = node;
+					bestCount = nodeCount;
+				}
+			}
+
+			if (best != null) {
+				dispatch(muxTask, best);
+			}
+		}
+	}
 
 	/**
 	 * Checks if any task and nodes are available and dispatch until possible. Will only dispatch tasks to nodes that
 	 * are capable of encoding with the desired library. Always put audio tasks in priority.
 	 */
 	public synchronized void updateNodesWork() {
+		long start = System.nanoTime();
+		dispatchMuxTasks();
+
 		Queue<ClientAudioTask> priorityAudioTasks= new ArrayDeque<>();
 		ArrayList<Node> audioNodes = new ArrayList<>();
 		ArrayList<Node> freeAudioNodes = new ArrayList<>();
@@ -214,7 +376,7 @@ public class JobManager implements EventListener {
 			ClientAudioTask next = taskIt.next();
 			Codec taskCodec = next.getStreamConfig().getOutStream().getStrategy().getCodec();
 
-			if (node.getCodecs().contains(taskCodec)) {
+			if (node.getCodecs().contains(taskCodec) && nodeManager.canAccept(node, next)) {
 				dispatch(next, node);
 				taskIt.remove();
 			} else {
@@ -222,13 +384,84 @@ public class JobManager implements EventListener {
 			}
 		}
 
-		for (Node node : nodeManager.getFreeNodes()) {
-			ClientVideoTask task = getNextVideoTask(node.getCodecs());
-			if (task != null && node.getAllTasks().size() == 0) {
+		ArrayList<Node> freeVideoNodes = nodeManager.getFreeNodes();
+		policy.sortNodes(freeVideoNodes);
+		boolean dispatched = false;
+		for (Node node : freeVideoNodes) {
+			// A node resumes its own checkpoints first, their completed passes are not encoded again
+			ClientVideoTask task = getCheckpointedVideoTask(node);
+			if (task != null) {
+				logger.fine(String.format("Giving %s back to %s to resume it from its checkpoint.%n", task,
+						node.getName()));
+			} else {
+				task = getNextVideoTask(node);
+			}
+			// Video tasks are packed with the other tasks of the node if their cost leaves room for them
+			if (task != null && nodeManager.canAccept(node, task)) {
 				dispatch(task, node);
+				dispatched = true;
 				break;
 			}
 		}
+
+		if (!dispatched && policy.isSpeculative()) {
+			dispatchStraggler(freeVideoNodes);
+		}
+		updateTimer.recordSince(start);
+	}
+
+	/**
+	 * Move a video task from a slow node to an idle node that would complete it sooner from the start. Only called when
+	 * no video task is left to dispatch.
+	 *
+	 * @param freeNodes
+	 *            The free nodes, fastest first
+	 * @return True if a task was moved
+	 */
+	private boolean dispatchStraggler(ArrayList<Node> freeNodes) {
+		for (Node node : freeNodes) {
+			if (node.getAllTasks().size() != 0 || node.getEncodingSpeed() <= 0) {
+				continue;
+			}
+
+			ClientVideoTask straggler = null;
+			Node stragglerAssignee = null;
+			double bestGain = 0;
+
+			for (Assignment assignment : assignments.values()) {
+				Node assignee = assignment.getAssignee();
+				if (!(assignment.getTask() instanceof ClientVideoTask) || assignee.equals(node)
+						|| assignee.getEncodingSpeed() <= 0) {
+					continue;
+				}
+				ClientVideoTask task = (ClientVideoTask) assignment.getTask();
+				EncodeStrategy strategy = (EncodeStrategy) task.getStreamConfig().getOutStream().getStrategy();
+				if (task.getProgress().getTaskState() != TaskState.TASK_COMPUTING
+						|| !node.getCodecs().contains(strategy.getCodec())) {
+					continue;
+				}
+
+				double remaining = task.getProgress().getUnitsRemaining() / assignee.getEncodingSpeed();
+				double restarted = (double) task.getUnitCount() * task.getStepCount() / node.getEncodingSpeed();
+				// Require a clear gain so tasks do not bounce between nodes of similar speed
+				double gain = remaining - restarted;
+				if (gain > remaining * STRAGGLER_MIN_GAIN && gain > bestGain) {
+					straggler = task;
+					stragglerAssignee = assignee;
+					bestGain = gain;
+				}
+			}
+
+			if (straggler != null) {
+				logger.fine(String.format("Moving straggling %s from %s to %s.%n", straggler,
+						stragglerAssignee.getName(), node.getName()));
+				straggler.getTimeline().mark("speculative move");
+				unassignTask(straggler, stragglerAssignee);
+				dispatch(straggler, node);
+				return true;
+			}
+		}
+		return false;
 	}
 
 	private void dispatch(ClientTask task, Node node) {
@@ -250,13 +483,15 @@ public class JobManager implements EventListener {
 		boolean assigned = false;
 
 		if (!assignments.containsKey(task)) {
-			Assignment assignment = new Assignment(task, node);
+			Assignment assignment = new Assignment(task, node, leaseMsec);
 
 			assignments.put(task, assignment);
 			task.assign();
 			node.addPendingTask(task);
 			node.lock();
 			assigned = true;
+			assignedCounter.increment();
+			task.getTimeline().mark("assigned");
 			logger.fine(String.format("Assigned %s to node %s.%n", task, node.getName()));
 		} else {
 			logger.warning(String.format("Could not assign %s to node %s.%n", task, node.getName()));
@@ -266,8 +501,14 @@ public class JobManager implements EventListener {
 	}
 
 	private void confirm(ClientTask task) {
-		task.start();
 		Assignment assignment = assignments.get(task);
+		if (assignment == null) {
+			// Messages of the nodes are handled concurrently, the task may have completed or moved already
+			logger.fine(String.format("Ignored confirmation of %s as it is not assigned anymore.%n", task));
+			return;
+		}
+		task.start();
+		assignment.renew();
 		assignment.getAssignee().confirm(task);
 	}
 
@@ -291,6 +532,9 @@ public class JobManager implements EventListener {
 	}
 
 	public boolean taskUpdated(ClientTask task, Node node) {
+		if (task instanceof ClientMuxTask) {
+			return muxTaskUpdated((ClientMuxTask) task, node);
+		}
 		TaskState updateStatus = task.getProgress().getTaskState();
 
 		switch (updateStatus) {
@@ -299,9 +543,14 @@ public class JobManager implements EventListener {
 
 			Job job = this.jobs.get(task.getJobId());
 			task.completed();
+			task.getTimeline().mark("reported completed");
+			completedCounter.increment();
+			countCompletedTask(task, node);
+			listener.handle(new Event(EventEnum.TASK_ENCODING_COMPLETED, task));
 
 			if (job.getTaskDoneCount() == job.getTaskCount()) {
 				logger.fine(String.format("Job %s completed.%n", job.getJobId()));
+				job.getTimeline().mark("encoding completed");
 				listener.handle(new Event(EventEnum.JOB_ENCODING_COMPLETED, job));
 			}
 
@@ -310,8 +559,14 @@ public class JobManager implements EventListener {
 		case TASK_CANCELED:
 			unassign(task);
 			task.getProgress().reset();
+			task.getTimeline().mark("reported canceled");
+			canceledCounter.increment();
 			break;
 		case TASK_COMPUTING:
+			if (task instanceof ClientVideoTask) {
+				node.updateEncodingSpeed(task.getProgress().getCurrentStep().getSpeed());
+			}
+			// fall through
 		case TASK_ASSIGNED:
 			Job dispatched = this.getJob(task.getJobId());
 			if (!dispatched.isStarted()) {
@@ -322,6 +577,8 @@ public class JobManager implements EventListener {
 			unassign(task);
 			task.getProgress().reset();
 			node.failure(); // Add a failure count to the node
+			task.getTimeline().mark("reported failed");
+			failedCounter.increment();
 			break;
 		case TASK_TODO:
 			break;
@@ -329,10 +586,71 @@ public class JobManager implements EventListener {
 		return false;
 	}
 
+	private synchronized void countCompletedTask(ClientTask task, Node node) {
+		HashMap<String, Integer> contributions = completedTasksByNode.get(task.getJobId());
+
+		if (contributions == null) {
+			contributions = new HashMap<>();
+			completedTasksByNode.put(task.getJobId(), contributions);
+		}
+		Integer count = contributions.get(node.getUnid());
+		contributions.put(node.getUnid(), count == null ? 1 : count + 1);
+	}
+
+	private boolean muxTaskUpdated(ClientMuxTask task, Node node) {
+		Job job = this.jobs.get(task.getJobId());
+
+		if (job == null) {
+			// Job was deleted while muxing
+			unassign(task);
+			return false;
+		}
+
+		switch (task.getProgress().getTaskState()) {
+		case TASK_COMPLETED:
+			logger.fine(String.format("Worker %s completed %s.%n", node.getName(), task));
+			unassign(task);
+			removeMuxTask(task.getJobId());
+			job.complete();
+			break;
+		case TASK_FAILED:
+			logger.fine(String.format("Worker %s failed %s.%n", node.getName(), task));
+			unassign(task);
+			removeMuxTask(task.getJobId());
+			job.fail();
+			node.failure();
+			break;
+		case TASK_CANCELED:
+			unassign(task);
+			task.getProgress().reset();
+			break;
+		case TASK_COMPUTING:
+		case TASK_ASSIGNED:
+			job.muxing();
+			break;
+		case TASK_TODO:
+			break;
+		}
+		return false;
+	}
+
+	private synchronized void removeMuxTask(String jobId) {
+		muxTasks.remove(jobId);
+		completedTasksByNode.remove(jobId);
+	}
+
 	public Job getJob(String jobId) {
 		return jobs.get(jobId);
 	}
 
+	public DispatchPolicy getPolicy() {
+		return policy;
+	}
+
+	public void setPolicy(DispatchPolicy policy) {
+		this.policy = policy;
+	}
+
 	/**
 	 * Remove completed jobs from job list.
 	 */
@@ -356,13 +674,21 @@ public class JobManager implements EventListener {
 		case DISPATCH_ITEM_REFUSED:
 			DispatchItem item = (DispatchItem) event.getObject();
 			ClientTask task = ((TaskRequestMessage) item.getMessage()).getTask();
+			Assignment current = assignments.get(task);
 
-			unassign(task);
+			// The task may have moved to another node since the message was queued
+			if (current != null && current.getAssignee().equals(item.getNode())) {
+				unassign(task);
+			}
 			break;
 		case NODE_DISCONNECTED:
 			Node disconnectedNode = (Node) event.getObject();
 
-			unassingAll(disconnectedNode);
+			// The node may only be unreachable for a moment, its tasks are reclaimed when their leases expire
+			if (disconnectedNode != null && !disconnectedNode.getAllTasks().isEmpty()) {
+				logger.fine(String.format("Node %s is unreachable, its %d tasks are kept until their leases expire.%n",
+						disconnectedNode.getName(), disconnectedNode.getAllTasks().size()));
+			}
 			break;
 		case TASK_CONFIRMED:
 			ClientTask confirmedTask = (ClientTask) event.getObject();
@@ -417,7 +743,13 @@ public class JobManager implements EventListener {
 	}
 
 	public ClientTask getTask(String jobId, int taskId) {
-		return getTask(getJob(jobId), taskId);
+		ClientMuxTask muxTask = muxTasks.get(jobId);
+
+		if (muxTask != null && muxTask.getTaskId() == taskId) {
+			return muxTask;
+		}
+		Job job = getJob(jobId);
+		return job == null ? null : getTask(job, taskId);
 	}
 
 	public ArrayList<Assignment> getAssignments(Node assignee) {
@@ -432,41 +764,173 @@ public class JobManager implements EventListener {
 		return nodeAssigments;
 	}
 
-	private boolean isInDelay(Assignment assignment) {
-		long delay = System.currentTimeMillis() - assignment.getTime();
+	/**
+	 * Reclaim the tasks whose lease expired, so they can be given to another node.
+	 *
+	 * @return The number of reclaimed tasks
+	 */
+	public int reclaimExpiredLeases() {
+		return reclaimExpiredLeases(System.currentTimeMillis());
+	}
 
-		return delay >= DISPATCH_DELAY_MSEC;
+	/**
+	 * Reclaim the tasks whose lease expired at a given time.
+	 *
+	 * @param now
+	 *            The current time in msec
+	 * @return The number of reclaimed tasks
+	 */
+	synchronized int reclaimExpiredLeases(long now) {
+		int reclaimed = 0;
+
+		for (Assignment assignment : new ArrayList<>(assignments.values())) {
+			if (!assignment.isExpired(now)) {
+				continue;
+			}
+			ClientTask task = assignment.getTask();
+			logger.info(String.format("Lease of %s on node %s expired, reclaiming the task.%n", task, assignment
+					.getAssignee().getName()));
+
+			unassign(task);
+			task.getTimeline().mark("lease expired");
+			task.reset();
+			expiredCounter.increment();
+			reclaimed++;
+		}
+		if (reclaimed > 0) {
+			listener.handle(new Event(EventEnum.WORK_NEEDS_UPDATE));
+		}
+		return reclaimed;
 	}
 
-	public synchronized void removeInvalidAssigments(Node sender, ArrayList<ClientTask> reportTasks) {
-		for (Assignment assignment : getAssignments(sender)) {
-			if (!reportTasks.contains(assignment.getTask()) && isInDelay(assignment)) {
+	/**
+	 * Decide if the report of a node on a task is applied. Reports of the assignee are, and renew its lease. A node
+	 * whose lease expired can re-attach: it takes the task back if no other node was given it, and its result is
+	 * kept if it completed the task first.
+	 *
+	 * @param task
+	 *            The master's instance of the task
+	 * @param sender
+	 *            The node that sent the report
+	 * @param reportedState
+	 *            The state of the task on the node
+	 * @return True if the report should be applied to the task
+	 */
+	public synchronized boolean acceptTaskReport(ClientTask task, Node sender, TaskState reportedState) {
+		Assignment assignment = assignments.get(task);
+		if (assignment != null && assignment.getAssignee().equals(sender)) {
+			assignment.renew();
+			return true;
+		}
 
-				logger.finer(String.format("Removed task %d of job %s from worker %s has it was in an invalid state.%n",
-						assignment.getTask().getTaskId(), assignment.getTask().getJobId(), assignment.getAssignee()
-								.getName()));
+		boolean running = reportedState == TaskState.TASK_COMPUTING || reportedState == TaskState.TASK_ASSIGNED;
+		TaskState masterState = task.getProgress().getTaskState();
 
-				sender.removeTask(assignment.getTask());
-				assignments.remove(assignment.getTask(), assignment);
+		if (reportedState == TaskState.TASK_COMPLETED && masterState != TaskState.TASK_COMPLETED) {
+			if (assignment != null) {
+				// Another node restarted the task, the finished result wins
+				Node other = assignment.getAssignee();
+				unassign(task);
+				dispatcherPool.add(new DispatchItem(new TaskRequestMessage(task, ClusterProtocol.UNASSIGN_TASK),
+						other));
 			}
+			logger.info(String.format("Re-attached the result of %s from node %s.%n", task, sender.getName()));
+			reattachedCounter.increment();
+			return true;
+		}
+		if (assignment == null && running && masterState == TaskState.TASK_TODO) {
+			assignments.put(task, new Assignment(task, sender, leaseMsec));
+			task.assign();
+			sender.addPendingTask(task);
+			sender.confirm(task);
+			task.getTimeline().mark("re-attached");
+			logger.info(String.format("Re-attached %s to node %s.%n", task, sender.getName()));
+			reattachedCounter.increment();
+			return true;
+		}
+		if (running) {
+			// The task is elsewhere or done, the node should stop working on it
+			logger.fine(String.format("Node %s still works on %s which is not assigned to it anymore.%n",
+					sender.getName(), task));
+			dispatcherPool.add(new DispatchItem(new TaskRequestMessage(task, ClusterProtocol.UNASSIGN_TASK), sender));
 		}
+		return false;
+	}
+
+	/**
+	 * Set the time a node has to report on a task before the task is reclaimed.
+	 *
+	 * @param seconds
+	 *            The duration of the leases
+	 */
+	public void setLeaseDuration(int seconds) {
+		this.leaseMsec = Math.max(1, seconds) * 1000L;
 	}
 
-	private void removeLastInstanceInProgressTasks() {
+	/**
+	 * Restore the assignments of the previous instance of the master under new leases, so the workers that kept
+	 * encoding during the restart report their tasks instead of starting them again. Other tasks in progress are reset.
+	 */
+	private void restoreLastInstanceAssignments() {
 		ArrayList<TaskState> inProgressStates = new ArrayList<>();
 		inProgressStates.addAll(Arrays.asList(new TaskState[] { TaskState.TASK_ASSIGNED, TaskState.TASK_COMPUTING }));
 
+		for (Node node : nodeManager.getNodes()) {
+			for (ClientTask nodeTask : node.getAllTasks()) {
+				ClientTask task = getTask(nodeTask.getJobId(), nodeTask.getTaskId());
+				if (task != null && inProgressStates.contains(task.getProgress().getTaskState())
+						&& !assignments.containsKey(task)) {
+					assignments.put(task, new Assignment(task, node, leaseMsec));
+				} else {
+					node.removeTask(nodeTask);
+				}
+			}
+		}
+
 		for (Job j : this.jobs.values()) {
 			for (ClientTask task : j.getClientTasks()) {
-				if (inProgressStates.contains(task.getProgress().getTaskState())) {
+				if (inProgressStates.contains(task.getProgress().getTaskState()) && !assignments.containsKey(task)) {
 					task.reset();
 				}
 			}
 		}
+		if (!assignments.isEmpty()) {
+			logger.info(String.format("Waiting for nodes to report %d tasks assigned before the restart.%n",
+					assignments.size()));
+		}
+	}
+
+	/**
+	 * Muxing tasks are not saved. Jobs that completed encoding before the restart but were not muxed are announced
+	 * again so they are muxed by the master or get a new muxing task.
+	 */
+	private void restorePendingMuxing() {
+		for (Job j : this.jobs.values()) {
+			JobState state = j.getJobStatus();
+			boolean ended = state == JobState.JOB_COMPLETED || state == JobState.JOB_FAILED
+					|| state == JobState.JOB_CANCELED;
+
+			if (!ended && j.getTaskCount() > 0 && j.getTaskDoneCount() == j.getTaskCount()) {
+				logger.info(String.format("Job %s was encoded before the restart and will be muxed.%n", j.getJobName()));
+				listener.handle(new Event(EventEnum.JOB_ENCODING_COMPLETED, j));
+			}
+		}
 	}
 
 	public boolean handleJobRequest(ApiJobRequest req) {
 		return jobInitiator.process(req);
 	}
 
+	public JobRequestStatus submitJobRequest(ApiJobRequest req) {
+		return jobInitiator.submit(req);
+	}
+
+	public JobRequestStatus getJobRequestStatus(String requestId) {
+		return jobInitiator.getStatus(requestId);
+	}
+
+	public ArrayList<JobRequestStatus> getJobRequestStatuses() {
+		return jobInitiator.getStatuses();
+	}
+
 }
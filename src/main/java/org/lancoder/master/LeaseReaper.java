@@ -0,0 +1,32 @@
+package org.lancoder.master;
+
+import org.lancoder.common.Service;
+import org.lancoder.common.scheduler.Schedulable;
+
+/**
+ * Reclaims the tasks of the nodes that stopped renewing their leases.
+ */
+public class LeaseReaper extends Schedulable implements Service {
+
+	private static final long MS_DELAY_BETWEEN_CHECKS = 5000;
+
+	private JobManager jobManager;
+
+	public LeaseReaper(JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	protected long getMsRunDelay() {
+		return MS_DELAY_BETWEEN_CHECKS;
+	}
+
+	@Override
+	protected void runTask() {
+		jobManager.reclaimExpiredLeases();
+	}
+
+	@Override
+	public void stop() {
+	}
+}
@@ -18,7 +18,13 @@ public class MasterConfig extends Config implements Serializable {
 	private static final int DEFAULT_API_LISTEN_PORT = 8080;
 	private static final String DEFAULT_ENCODE_DESTINATION = "encodes";
 	private static final String DEFAULT_FFPROBE_PATH = "ffprobe";
-	private static final String DEFAULT_MKVMERGE_PATH = "mkvmerge";
+	private static final int DEFAULT_MUXER_THREADS = 2;
+	private static final int DEFAULT_SHARED_FOLDER_WRITERS = 2;
+	private static final boolean DEFAULT_MUX_ON_WORKERS = false;
+	private static final boolean DEFAULT_PROGRESSIVE_MUXING = false;
+	private static final String DEFAULT_DISPATCH_POLICY = DispatchPolicy.PRIORITY.name();
+	private static final boolean DEFAULT_API_COMPRESSION = true;
+	private static final int DEFAULT_TASK_LEASE_SECONDS = JobManager.DEFAULT_LEASE_SECONDS;
 
 	@Prompt(message = "output directory (relative to shared folder)", priority = 11)
 	private String finalEncodingFolder;
@@ -26,15 +32,33 @@ public class MasterConfig extends Config implements Serializable {
 	@Prompt(message = "FFprobe's path", priority = 21)
 	private String ffprobePath;
 
-	@Prompt(message = "mkvmerge's path (for x265 muxing)", priority = 22)
-	protected String mkvMergePath;
-
 	@Prompt(message = "master's listening port", priority = 40, advanced = true)
 	private int nodeServerPort;
 
 	@Prompt(message = "webui port", priority = 50, advanced = true)
 	private int apiServerPort;
 
+	@Prompt(message = "maximum number of jobs muxed at the same time", priority = 60, advanced = true)
+	private int muxerThreads;
+
+	@Prompt(message = "maximum number of concurrent writers to the shared folder", priority = 61, advanced = true)
+	private int sharedFolderWriters;
+
+	@Prompt(message = "mux jobs on the workers instead of the master (true/false)", priority = 62, advanced = true)
+	private boolean muxOnWorkers;
+
+	@Prompt(message = "join video parts while jobs are encoding (true/false)", priority = 63, advanced = true)
+	private boolean progressiveMuxing;
+
+	@Prompt(message = "dispatch policy (FIFO/PRIORITY/THROUGHPUT/SPECULATIVE)", priority = 64, advanced = true)
+	private String dispatchPolicy;
+
+	@Prompt(message = "compress the webui api responses with gzip (true/false)", priority = 65, advanced = true)
+	private boolean apiCompression;
+
+	@Prompt(message = "seconds a worker has to report on a task before the task is given to another worker", priority = 66, advanced = true)
+	private int taskLeaseSeconds;
+
 	private String savedInstancePath = new File(System.getProperty("user.home"),
 			".local/share/lancoder/master_instance.bin").getPath();
 
@@ -44,7 +68,13 @@ public class MasterConfig extends Config implements Serializable {
 		finalEncodingFolder = DEFAULT_ENCODE_DESTINATION;
 		apiServerPort = DEFAULT_API_LISTEN_PORT;
 		ffprobePath = DEFAULT_FFPROBE_PATH;
-		mkvMergePath = DEFAULT_MKVMERGE_PATH;
+		muxerThreads = DEFAULT_MUXER_THREADS;
+		sharedFolderWriters = DEFAULT_SHARED_FOLDER_WRITERS;
+		muxOnWorkers = DEFAULT_MUX_ON_WORKERS;
+		progressiveMuxing = DEFAULT_PROGRESSIVE_MUXING;
+		dispatchPolicy = DEFAULT_DISPATCH_POLICY;
+		apiCompression = DEFAULT_API_COMPRESSION;
+		taskLeaseSeconds = DEFAULT_TASK_LEASE_SECONDS;
 	}
 
 	@Override
@@ -97,16 +127,64 @@ public class MasterConfig extends Config implements Serializable {
 		return DEFAULT_PATH;
 	}
 
-	public String getMkvMergePath() {
-		return mkvMergePath;
-	}
-
 	public String getFfprobePath() {
 		return ffprobePath;
 	}
 
-	public void setMkvMergePath(String mkvMergePath) {
-		this.mkvMergePath = mkvMergePath;
+	public int getMuxerThreads() {
+		return muxerThreads;
+	}
+
+	public void setMuxerThreads(int muxerThreads) {
+		this.muxerThreads = muxerThreads;
+	}
+
+	public int getSharedFolderWriters() {
+		return sharedFolderWriters;
+	}
+
+	public void setSharedFolderWriters(int sharedFolderWriters) {
+		this.sharedFolderWriters = sharedFolderWriters;
+	}
+
+	public boolean isMuxOnWorkers() {
+		return muxOnWorkers;
+	}
+
+	public void setMuxOnWorkers(boolean muxOnWorkers) {
+		this.muxOnWorkers = muxOnWorkers;
+	}
+
+	public boolean isProgressiveMuxing() {
+		return progressiveMuxing;
+	}
+
+	public void setProgressiveMuxing(boolean progressiveMuxing) {
+		this.progressiveMuxing = progressiveMuxing;
+	}
+
+	public String getDispatchPolicy() {
+		return dispatchPolicy;
+	}
+
+	public void setDispatchPolicy(String dispatchPolicy) {
+		this.dispatchPolicy = dispatchPolicy;
+	}
+
+	public boolean isApiCompression() {
+		return apiCompression;
+	}
+
+	public void setApiCompression(boolean apiCompression) {
+		this.apiCompression = apiCompression;
+	}
+
+	public int getTaskLeaseSeconds() {
+		return taskLeaseSeconds;
+	}
+
+	public void setTaskLeaseSeconds(int taskLeaseSeconds) {
+		this.taskLeaseSeconds = taskLeaseSeconds;
 	}
 
 }
@@ -9,6 +9,7 @@ import java.util.Map.Entry;
 import java.util.logging.Logger;
 
 import org.lancoder.common.Node;
+import org.lancoder.common.codecs.EncodeSpeed;
 import org.lancoder.common.events.Event;
 import org.lancoder.common.events.EventEnum;
 import org.lancoder.common.events.EventListener;
@@ -16,7 +17,7 @@ import org.lancoder.common.network.cluster.messages.ConnectRequest;
 import org.lancoder.common.network.cluster.messages.ConnectResponse;
 import org.lancoder.common.status.NodeState;
 import org.lancoder.common.task.ClientTask;
-import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.telemetry.NodeTelemetry;
 import org.lancoder.master.impl.Master;
 
 public class NodeManager implements EventListener {
@@ -80,6 +81,23 @@ public class NodeManager implements EventListener {
 		return nodes;
 	}
 
+	/**
+	 * Get the nodes to check, the online nodes and the unreachable nodes still holding tasks. The unreachable ones
+	 * come back online if they answer before the leases of their tasks expire.
+	 *
+	 * @return The nodes to check
+	 */
+	public synchronized ArrayList<Node> getNodesToCheck() {
+		ArrayList<Node> nodes = new ArrayList<>();
+		for (Node n : this.nodes.values()) {
+			if (n.getStatus() != NodeState.PAUSED
+					&& (n.getStatus() != NodeState.NOT_CONNECTED || !n.getAllTasks().isEmpty())) {
+				nodes.add(n);
+			}
+		}
+		return nodes;
+	}
+
 	public synchronized ArrayList<Node> getFreeNodes() {
 		ArrayList<Node> nodes = new ArrayList<>();
 
@@ -92,28 +110,29 @@ public class NodeManager implements EventListener {
 	}
 
 	/**
-	 * Check if a node is available for work.
+	 * Check if a node is available for work, it has no repeated failures, at least a free core and is not saturated by
+	 * other processes.
 	 *
 	 * @param node
 	 * @return
 	 */
 	public <T extends ClientTask> boolean isAvailable(Node node) {
 		// TODO allow dynamic failure threshold
-		boolean available = node.getFailureCount() < FAILURE_THRESHOLD
-				&& node.getAllTasks().size() < node.getThreadCount();
-
-		if (!available) {
-			return false;
-		}
-
-		for (ClientTask task : node.getCurrentTasks()) {
-			if (task instanceof ClientVideoTask) {
-				available = false;
-				break;
-			}
-		}
+		return node.getFailureCount() < FAILURE_THRESHOLD
+				&& node.getUsedResources().getCpu() < node.getCapacity().getCpu() && !node.isSaturated();
+	}
 
-		return available;
+	/**
+	 * Check if a node can take a task besides its other tasks, from the cores and memory the task costs.
+	 *
+	 * @param node
+	 *            The node
+	 * @param task
+	 *            The task to dispatch
+	 * @return True if the task fits on the node
+	 */
+	public boolean canAccept(Node node, ClientTask task) {
+		return node.getFailureCount() < FAILURE_THRESHOLD && node.canFit(task);
 	}
 
 	/**
@@ -125,34 +144,80 @@ public class NodeManager implements EventListener {
 	 * @return if the node could be added
 	 */
 	private synchronized boolean addNode(Node n) {
-		boolean success = true;
 		// Is this a new node ?
 		if (n.getUnid() == null || n.getUnid().equals("")) {
 			n.setUnid(getNewUNID(n));
 		}
 		Node masterInstance = nodes.get(n.getUnid());
 
-		if (masterInstance != null && masterInstance.getStatus() == NodeState.NOT_CONNECTED) {
-			// Node with same unid reconnecting
-			masterInstance.setStatus(NodeState.FREE);
+		if (masterInstance != null) {
+			// Node with same unid reconnecting, possibly after losing the master for a moment while the master still
+			// had it online. Its tasks keep their leases and the node reports them next.
+			if (masterInstance.getStatus() == NodeState.NOT_CONNECTED) {
+				masterInstance.setStatus(NodeState.FREE);
+			}
+			// The worker may have restarted with other limits, tools or codecs
+			masterInstance.setThreadCount(n.getThreadCount());
+			masterInstance.setMemoryCapacity(n.getMemoryCapacity());
+			masterInstance.setMkvMergeInstalled(n.isMkvMergeInstalled());
+			masterInstance.setCodecs(n.getCodecs());
+			updateEncodeSpeeds(masterInstance, n.getEncodeSpeeds());
 
 			Logger logger = Logger.getLogger("lancoder");
 			logger.fine(String.format("Node %s with id %s reconnected.%n", n.getName(), n.getUnid()));
 		} else if (masterInstance == null) {
 			n.setStatus(NodeState.FREE);
+			updateEncodeSpeeds(n, n.getEncodeSpeeds());
 			nodes.put(n.getUnid(), n);
 
 			Logger logger = Logger.getLogger("lancoder");
 			logger.fine(String.format("Added new node %s with id %s.%n", n.getName(), n.getUnid()));
-		} else {
-			success = false;
 		}
 
 		n.unlock(); // remove lock on the node
-		if (success) {
-			listener.handle(new Event(EventEnum.WORK_NEEDS_UPDATE));
+		listener.handle(new Event(EventEnum.WORK_NEEDS_UPDATE));
+		return true;
+	}
+
+	/**
+	 * Update the encode benchmark of a node. The benchmark gives the speed of a node that did not complete a task yet,
+	 * speeds measured on tasks are kept as they reflect the real jobs.
+	 *
+	 * @param node
+	 *            The node to update
+	 * @param encodeSpeeds
+	 *            The speeds measured by the benchmark of the node
+	 */
+	public synchronized void updateEncodeSpeeds(Node node, ArrayList<EncodeSpeed> encodeSpeeds) {
+		node.setEncodeSpeeds(encodeSpeeds);
+		if (node.getEncodingSpeed() == 0 && node.getBenchmarkedSpeed() > 0) {
+			node.setEncodingSpeed(node.getBenchmarkedSpeed());
+			Logger.getLogger("lancoder").fine(String.format("Node %s benchmarked at %.1f fps.%n", node.getName(),
+					node.getEncodingSpeed()));
+		}
+	}
+
+	/**
+	 * Add a telemetry sample to the history of a node.
+	 *
+	 * @param node
+	 *            The node that sent the sample
+	 * @param telemetry
+	 *            The sample
+	 */
+	public synchronized void addTelemetry(Node node, NodeTelemetry telemetry) {
+		boolean wasSaturated = node.isSaturated();
+		node.addTelemetry(telemetry);
+
+		if (node.isSaturated() != wasSaturated) {
+			Logger logger = Logger.getLogger("lancoder");
+			if (wasSaturated) {
+				logger.info(String.format("Node %s is no longer saturated: %s.%n", node.getName(), telemetry));
+			} else {
+				logger.info(String.format("Node %s is saturated and will not receive tasks: %s.%n", node.getName(),
+						telemetry));
+			}
 		}
-		return success;
 	}
 
 	/**
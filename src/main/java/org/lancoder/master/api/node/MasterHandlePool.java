@@ -18,6 +18,11 @@ public class MasterHandlePool extends Pool<Socket> {
 		this.listener = listener;
 	}
 
+	@Override
+	protected boolean isIoBound() {
+		return true;
+	}
+
 	@Override
 	protected PoolWorker<Socket> getPoolWorkerInstance() {
 		return new MasterHandler(listener, nodeManager);
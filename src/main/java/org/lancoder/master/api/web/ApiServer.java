@@ -22,6 +22,7 @@ public class ApiServer extends RunnableServiceAdapter {
 	private static final String WEB_DIR = "web_resources/";
 
 	private Master master;
+	private ClusterEventBroadcaster broadcaster;
 	Server server;
 
 	public ApiServer(Master master) {
@@ -54,6 +55,7 @@ public class ApiServer extends RunnableServiceAdapter {
 			server.setHandler(contexts);
 
 			server.start();
+			broadcaster.start();
 			server.join();
 		} catch (Exception e) {
 			// TODO alert master api server api crashed
@@ -71,12 +73,21 @@ public class ApiServer extends RunnableServiceAdapter {
 		ServletContextHandler servletContextHandler = new ServletContextHandler(ServletContextHandler.SESSIONS);
 		servletContextHandler.setSessionHandler(new SessionHandler());
 		servletContextHandler.addServlet(servletHolder, "/*");
+
+		// server-sent events, the exact path takes precedence over the api
+		broadcaster = new ClusterEventBroadcaster(master, WebApi.buildGson());
+		ServletHolder eventsHolder = new ServletHolder(new EventStreamServlet(broadcaster));
+		eventsHolder.setAsyncSupported(true);
+		servletContextHandler.addServlet(eventsHolder, "/events");
 		return servletContextHandler;
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
+		if (broadcaster != null) {
+			broadcaster.stop();
+		}
 		try {
 			server.stop();
 		} catch (Exception e) {
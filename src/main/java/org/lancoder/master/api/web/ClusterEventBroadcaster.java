@@ -0,0 +1,306 @@
+package org.lancoder.master.api.web;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.lancoder.common.Node;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.metrics.Gauge;
+import org.lancoder.common.metrics.MetricsRegistry;
+import org.lancoder.common.network.messages.web.JobSummary;
+import org.lancoder.common.network.messages.web.TaskProgressUpdate;
+import org.lancoder.common.status.JobState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.master.JobManager;
+import org.lancoder.master.NodeManager;
+import org.lancoder.master.impl.Master;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Pushes the changes of the cluster to the browsers subscribed to the event stream.
+ * <p>
+ * Changes are coalesced: at a fixed interval the state of the jobs, nodes and running tasks is compared to the state
+ * last sent and only what changed is pushed, once for all clients. A job updated many times between two pushes is
+ * sent once, and nothing is computed while no browser is subscribed.
+ * <p>
+ * Events are:
+ * <ul>
+ * <li>snapshot: the nodes as served by /api/nodes, sent to a new client</li>
+ * <li>nodes: nodes whose state or tasks changed and unids of the removed nodes</li>
+ * <li>tasks: progress of the current step of the running tasks that changed</li>
+ * <li>jobs: summaries of the jobs that changed and ids of the removed jobs</li>
+ * </ul>
+ */
+public class ClusterEventBroadcaster implements Runnable {
+
+	public static final long PUSH_INTERVAL_MSEC = 1000;
+	private static final long KEEP_ALIVE_MSEC = 15000;
+	/**
+	 * States after which a job does not change anymore
+	 */
+	private static final EnumSet<JobState> FINAL_STATES = EnumSet.of(JobState.JOB_COMPLETED, JobState.JOB_FAILED,
+			JobState.JOB_CANCELED);
+
+	private final Logger logger = Logger.getLogger("lancoder");
+	private final Master master;
+	private final Gson gson;
+	private final CopyOnWriteArrayList<EventStreamClient> clients = new CopyOnWriteArrayList<>();
+	private final ConcurrentLinkedQueue<EventStreamClient> newClients = new ConcurrentLinkedQueue<>();
+	/**
+	 * Last state sent of the jobs, nodes and tasks by their key
+	 */
+	private final HashMap<String, String> sentJobs = new HashMap<>();
+	private final HashSet<String> finalJobs = new HashSet<>();
+	private final HashMap<String, String> sentNodes = new HashMap<>();
+	private final HashMap<String, String> sentTasks = new HashMap<>();
+	private ScheduledExecutorService executor;
+	private long lastWrite;
+
+	public ClusterEventBroadcaster(Master master, Gson gson) {
+		this.master = master;
+		this.gson = gson;
+
+		MetricsRegistry.getDefault().register(new Gauge("lancoder_event_stream_clients",
+				"Browsers subscribed to the event stream") {
+			@Override
+			public double getValue() {
+				return clients.size() + newClients.size();
+			}
+		});
+	}
+
+	public synchronized void start() {
+		if (executor != null) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "event-stream");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(this, PUSH_INTERVAL_MSEC, PUSH_INTERVAL_MSEC, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stop() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		for (EventStreamClient client : clients) {
+			client.close();
+		}
+		for (EventStreamClient client : newClients) {
+			client.close();
+		}
+		clients.clear();
+		newClients.clear();
+	}
+
+	/**
+	 * Subscribe a client. It receives a snapshot of the nodes on the next push, then the changes.
+	 *
+	 * @param client
+	 *            The client
+	 */
+	public void subscribe(EventStreamClient client) {
+		newClients.add(client);
+	}
+
+	public void unsubscribe(EventStreamClient client) {
+		client.closed();
+		clients.remove(client);
+		newClients.remove(client);
+	}
+
+	@Override
+	public void run() {
+		try {
+			push();
+		} catch (RuntimeException e) {
+			// Keep the schedule alive, the next push compares against the last state sent
+			logger.warning(String.format("Could not push the cluster events: %s%n", e));
+		}
+	}
+
+	private void push() {
+		if (clients.isEmpty() && newClients.isEmpty()) {
+			// Nothing is tracked without clients, the next client starts from a snapshot
+			sentJobs.clear();
+			finalJobs.clear();
+			sentNodes.clear();
+			sentTasks.clear();
+			return;
+		}
+
+		JobManager jobManager = master.getJobManager();
+		NodeManager nodeManager = master.getNodeManager();
+		JsonObject nodeChanges;
+		JsonObject taskChanges;
+		JsonObject jobChanges;
+		String snapshotData = null;
+		// The master thread and the handlers change the jobs and the tasks of the nodes, only collect under their locks
+		synchronized (jobManager) {
+			synchronized (nodeManager) {
+				ArrayList<Node> nodes = nodeManager.getNodes();
+				nodeChanges = getNodeChanges(nodes);
+				taskChanges = getTaskChanges(nodes);
+				jobChanges = getJobChanges(new ArrayList<>(jobManager.getJobHashMap().values()));
+				if (!newClients.isEmpty()) {
+					JsonObject snapshot = new JsonObject();
+					snapshot.add("nodes", gson.toJsonTree(nodes));
+					snapshotData = gson.toJson(snapshot);
+				}
+			}
+		}
+
+		long now = System.currentTimeMillis();
+		boolean sent = false;
+		sent |= broadcast("nodes", nodeChanges);
+		sent |= broadcast("tasks", taskChanges);
+		sent |= broadcast("jobs", jobChanges);
+		if (!sent && now - lastWrite >= KEEP_ALIVE_MSEC) {
+			for (EventStreamClient client : clients) {
+				if (!client.keepAlive()) {
+					clients.remove(client);
+				}
+			}
+			sent = true;
+		}
+		if (sent) {
+			lastWrite = now;
+		}
+
+		EventStreamClient client;
+		if (snapshotData != null) {
+			while ((client = newClients.poll()) != null) {
+				if (client.send("snapshot", snapshotData)) {
+					clients.add(client);
+				}
+			}
+		}
+	}
+
+	private boolean broadcast(String event, JsonObject changes) {
+		if (changes == null) {
+			return false;
+		}
+		String data = gson.toJson(changes);
+		for (EventStreamClient client : clients) {
+			if (!client.send(event, data)) {
+				clients.remove(client);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the nodes whose state, failures or tasks changed. Progress of the tasks is left to the task changes.
+	 */
+	private JsonObject getNodeChanges(ArrayList<Node> nodes) {
+		JsonArray updated = new JsonArray();
+		HashSet<String> seen = new HashSet<>();
+
+		for (Node node : nodes) {
+			StringBuilder signature = new StringBuilder();
+			signature.append(node.getStatus()).append('|').append(node.getFailureCount());
+			for (ClientTask task : node.getAllTasks()) {
+				signature.append('|').append(task.getJobId()).append(':').append(task.getTaskId()).append(':')
+						.append(task.getProgress().getTaskState()).append(':')
+						.append(task.getProgress().getCurrentStepIndex());
+			}
+			seen.add(node.getUnid());
+			if (!signature.toString().equals(sentNodes.put(node.getUnid(), signature.toString()))) {
+				updated.add(gson.toJsonTree(node));
+			}
+		}
+		return getChanges(updated, removeUnseen(sentNodes, seen));
+	}
+
+	private JsonObject getTaskChanges(ArrayList<Node> nodes) {
+		JsonArray updated = new JsonArray();
+		HashSet<String> seen = new HashSet<>();
+
+		for (Node node : nodes) {
+			for (ClientTask task : node.getCurrentTasks()) {
+				String key = String.format("%s:%d", task.getJobId(), task.getTaskId());
+				JsonElement update = gson.toJsonTree(new TaskProgressUpdate(task, node.getUnid()));
+				String json = update.toString();
+				seen.add(key);
+				if (!json.equals(sentTasks.put(key, json))) {
+					updated.add(update);
+				}
+			}
+		}
+		removeUnseen(sentTasks, seen);
+		return updated.size() == 0 ? null : getChanges(updated, new JsonArray());
+	}
+
+	private JsonObject getJobChanges(ArrayList<Job> jobs) {
+		JsonArray updated = new JsonArray();
+		HashSet<String> seen = new HashSet<>();
+
+		for (Job job : jobs) {
+			String jobId = job.getJobId();
+			seen.add(jobId);
+			if (finalJobs.contains(jobId)) {
+				continue;
+			}
+			JsonElement summary = gson.toJsonTree(new JobSummary(job));
+			String json = summary.toString();
+			if (!json.equals(sentJobs.put(jobId, json))) {
+				updated.add(summary);
+			}
+			if (FINAL_STATES.contains(job.getJobStatus())) {
+				finalJobs.add(jobId);
+			}
+		}
+		finalJobs.retainAll(seen);
+		return getChanges(updated, removeUnseen(sentJobs, seen));
+	}
+
+	/**
+	 * Forget the keys that are not in the cluster anymore.
+	 *
+	 * @return The removed keys
+	 */
+	private static JsonArray removeUnseen(HashMap<String, String> sent, HashSet<String> seen) {
+		JsonArray removed = new JsonArray();
+		for (Iterator<Entry<String, String>> it = sent.entrySet().iterator(); it.hasNext();) {
+			String key = it.next().getKey();
+			if (!seen.contains(key)) {
+				it.remove();
+				removed.add(new JsonPrimitive(key));
+			}
+		}
+		return removed;
+	}
+
+	private static JsonObject getChanges(JsonArray updated, JsonArray removed) {
+		if (updated.size() == 0 && removed.size() == 0) {
+			return null;
+		}
+		JsonObject changes = new JsonObject();
+		changes.add("updated", updated);
+		changes.add("removed", removed);
+		return changes;
+	}
+}
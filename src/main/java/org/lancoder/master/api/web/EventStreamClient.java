@@ -0,0 +1,163 @@
+package org.lancoder.master.api.web;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * A browser subscribed to the server-sent events of the master.
+ * <p>
+ * Writes are non-blocking: events are queued and written when the connection can take them, so a stalled browser does
+ * not hold up the broadcaster and the other clients. A client whose queue is full, or that could not take any data for
+ * {@link #WRITE_TIMEOUT_MSEC}, is closed. The browser reconnects and starts again from a snapshot.
+ */
+public class EventStreamClient implements WriteListener {
+
+	/**
+	 * Maximum count of events waiting to be written to a client
+	 */
+	public static final int MAX_PENDING_EVENTS = 128;
+	/**
+	 * Time in ms a client can stall with pending events before it is closed
+	 */
+	public static final long WRITE_TIMEOUT_MSEC = 30000;
+
+	private final AsyncContext context;
+	private final ServletOutputStream output;
+	private final ArrayDeque<byte[]> pending = new ArrayDeque<>();
+	private boolean flushNeeded;
+	/**
+	 * Time the connection stopped taking data, 0 while it is writable
+	 */
+	private long stalledSince;
+	private boolean closed;
+
+	/**
+	 * Create the client of an async request. The client is the write listener of the output stream of the request.
+	 *
+	 * @param context
+	 *            The async context of the request
+	 * @throws IOException
+	 *             If the output stream cannot be obtained
+	 */
+	public EventStreamClient(AsyncContext context) throws IOException {
+		this(context, context.getResponse().getOutputStream());
+	}
+
+	EventStreamClient(AsyncContext context, ServletOutputStream output) {
+		this.context = context;
+		this.output = output;
+		output.setWriteListener(this);
+	}
+
+	/**
+	 * Queue an event for the stream.
+	 *
+	 * @param event
+	 *            The name of the event
+	 * @param data
+	 *            The JSON data of the event, on a single line
+	 * @return False if the client is gone
+	 */
+	public synchronized boolean send(String event, String data) {
+		return write(String.format("event: %s\ndata: %s\n\n", event, data));
+	}
+
+	/**
+	 * Queue a comment line, ignored by the browser. Used to find closed and stalled connections when nothing changes.
+	 *
+	 * @return False if the client is gone
+	 */
+	public synchronized boolean keepAlive() {
+		return write(":\n\n");
+	}
+
+	private boolean write(String text) {
+		if (closed) {
+			return false;
+		}
+		if (stalledSince != 0 && System.currentTimeMillis() - stalledSince > WRITE_TIMEOUT_MSEC) {
+			close();
+			return false;
+		}
+		if (pending.size() >= MAX_PENDING_EVENTS) {
+			close();
+			return false;
+		}
+		pending.add(text.getBytes(StandardCharsets.UTF_8));
+		drain();
+		return !closed;
+	}
+
+	/**
+	 * Write the pending events while the connection takes them. Only writes when the output stream is ready, the
+	 * container calls {@link #onWritePossible()} when it is ready again.
+	 */
+	private void drain() {
+		try {
+			while (!closed && output.isReady()) {
+				byte[] next = pending.poll();
+				if (next != null) {
+					output.write(next);
+					flushNeeded = true;
+				} else if (flushNeeded) {
+					flushNeeded = false;
+					output.flush();
+				} else {
+					stalledSince = 0;
+					return;
+				}
+			}
+			if (!closed && stalledSince == 0) {
+				stalledSince = System.currentTimeMillis();
+			}
+		} catch (IOException | IllegalStateException e) {
+			close();
+		}
+	}
+
+	@Override
+	public synchronized void onWritePossible() {
+		drain();
+	}
+
+	@Override
+	public synchronized void onError(Throwable t) {
+		close();
+	}
+
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			pending.clear();
+			try {
+				context.complete();
+			} catch (IllegalStateException e) {
+				// already completed by the container
+			}
+		}
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Mark the client as closed after the container ended the request.
+	 */
+	public synchronized void closed() {
+		closed = true;
+		pending.clear();
+	}
+
+	/**
+	 * @return The count of events waiting to be written
+	 */
+	synchronized int getPendingCount() {
+		return pending.size();
+	}
+}
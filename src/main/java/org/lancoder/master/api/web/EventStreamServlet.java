@@ -0,0 +1,66 @@
+package org.lancoder.master.api.web;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Server-sent events endpoint. The request is kept open and the broadcaster writes the changes of the cluster to it.
+ */
+public class EventStreamServlet extends HttpServlet {
+
+	private static final long serialVersionUID = -2469301964307386436L;
+	/**
+	 * Delay in ms before the browser reconnects a dropped stream
+	 */
+	private static final int RETRY_MSEC = 3000;
+
+	private final transient ClusterEventBroadcaster broadcaster;
+
+	public EventStreamServlet(ClusterEventBroadcaster broadcaster) {
+		this.broadcaster = broadcaster;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setStatus(200);
+		response.setContentType("text/event-stream");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-cache");
+		// The client writes to the output stream, the writer of the response cannot be used
+		byte[] retry = String.format("retry: %d\n\n", RETRY_MSEC).getBytes(StandardCharsets.UTF_8);
+		response.getOutputStream().write(retry);
+		response.flushBuffer();
+
+		AsyncContext context = request.startAsync();
+		context.setTimeout(0);
+		final EventStreamClient client = new EventStreamClient(context);
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				broadcaster.unsubscribe(client);
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				broadcaster.unsubscribe(client);
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				broadcaster.unsubscribe(client);
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		broadcaster.subscribe(client);
+	}
+}
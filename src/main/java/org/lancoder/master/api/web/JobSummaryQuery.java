@@ -0,0 +1,165 @@
+package org.lancoder.master.api.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.messages.web.JobSummary;
+import org.lancoder.common.network.messages.web.JobSummaryPage;
+import org.lancoder.common.status.JobState;
+
+/**
+ * Filter, sort and paginate the jobs of the master into summaries.
+ */
+public class JobSummaryQuery {
+
+	public static final int DEFAULT_LIMIT = 50;
+	public static final int MAX_LIMIT = 500;
+
+	/**
+	 * Keys the summaries can be sorted by
+	 */
+	public enum SortKey {
+		ADDED, NAME, STATE, PRIORITY, PROGRESS
+	}
+
+	private final EnumSet<JobState> states;
+	private final SortKey sortKey;
+	private final boolean descending;
+	private final int offset;
+	private final int limit;
+
+	/**
+	 * Parse a query.
+	 *
+	 * @param states
+	 *            The states to keep separated by commas, with or without the JOB_ prefix. Null or empty keeps all jobs.
+	 * @param sort
+	 *            The sort key, prefixed by - for a descending order. Null sorts by time added.
+	 * @param offset
+	 *            The index of the first job of the page
+	 * @param limit
+	 *            The maximum count of jobs of the page, capped to MAX_LIMIT
+	 * @throws IllegalArgumentException
+	 *             If a state or the sort key is unknown or the offset or limit is negative
+	 */
+	public JobSummaryQuery(String states, String sort, int offset, int limit) {
+		if (offset < 0 || limit < 0) {
+			throw new IllegalArgumentException("offset and limit must be positive");
+		}
+		this.offset = offset;
+		this.limit = Math.min(limit, MAX_LIMIT);
+		this.states = parseStates(states);
+
+		String key = sort == null || sort.trim().isEmpty() ? SortKey.ADDED.name() : sort.trim();
+		this.descending = key.startsWith("-");
+		if (descending) {
+			key = key.substring(1);
+		}
+		try {
+			this.sortKey = SortKey.valueOf(key.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException(String.format("unknown sort key '%s'", key));
+		}
+	}
+
+	private static EnumSet<JobState> parseStates(String states) {
+		if (states == null || states.trim().isEmpty()) {
+			return EnumSet.allOf(JobState.class);
+		}
+		EnumSet<JobState> parsed = EnumSet.noneOf(JobState.class);
+		for (String state : states.split(",")) {
+			String name = state.trim().toUpperCase();
+			if (!name.startsWith("JOB_")) {
+				name = "JOB_" + name;
+			}
+			try {
+				parsed.add(JobState.valueOf(name));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(String.format("unknown job state '%s'", state.trim()));
+			}
+		}
+		return parsed;
+	}
+
+	/**
+	 * Apply the query. Jobs are filtered before their summary is built, so the cost of a page depends on the jobs
+	 * matching the filter, not on all the jobs of the master.
+	 *
+	 * @param jobs
+	 *            The jobs of the master
+	 * @return The page
+	 */
+	public JobSummaryPage apply(Collection<Job> jobs) {
+		ArrayList<JobSummary> summaries = new ArrayList<>();
+		int completed = 0;
+		for (Job job : jobs) {
+			if (states.contains(job.getJobStatus())) {
+				summaries.add(new JobSummary(job));
+				if (job.getJobStatus() == JobState.JOB_COMPLETED) {
+					completed++;
+				}
+			}
+		}
+
+		Comparator<JobSummary> comparator = getComparator(sortKey);
+		if (descending) {
+			comparator = Collections.reverseOrder(comparator);
+		}
+		Collections.sort(summaries, comparator);
+
+		int from = Math.min(offset, summaries.size());
+		int to = Math.min(from + limit, summaries.size());
+		return new JobSummaryPage(summaries.size(), completed, offset, limit, summaries.subList(from, to));
+	}
+
+	private static Comparator<JobSummary> getComparator(SortKey key) {
+		switch (key) {
+		case NAME:
+			return new Comparator<JobSummary>() {
+				@Override
+				public int compare(JobSummary a, JobSummary b) {
+					int result = a.getJobName().compareToIgnoreCase(b.getJobName());
+					return result != 0 ? result : Long.compare(a.getTimeAdded(), b.getTimeAdded());
+				}
+			};
+		case STATE:
+			return new Comparator<JobSummary>() {
+				@Override
+				public int compare(JobSummary a, JobSummary b) {
+					int result = a.getJobStatus().compareTo(b.getJobStatus());
+					return result != 0 ? result : Long.compare(a.getTimeAdded(), b.getTimeAdded());
+				}
+			};
+		case PRIORITY:
+			// Same order as the dispatching of the job manager
+			return new Comparator<JobSummary>() {
+				@Override
+				public int compare(JobSummary a, JobSummary b) {
+					int result = Integer.compare(a.getPriority(), b.getPriority());
+					return result != 0 ? result : Long.compare(a.getTimeAdded(), b.getTimeAdded());
+				}
+			};
+		case PROGRESS:
+			return new Comparator<JobSummary>() {
+				@Override
+				public int compare(JobSummary a, JobSummary b) {
+					int result = Double.compare(a.getProgress(), b.getProgress());
+					return result != 0 ? result : Long.compare(a.getTimeAdded(), b.getTimeAdded());
+				}
+			};
+		case ADDED:
+		default:
+			return new Comparator<JobSummary>() {
+				@Override
+				public int compare(JobSummary a, JobSummary b) {
+					int result = Long.compare(a.getTimeAdded(), b.getTimeAdded());
+					return result != 0 ? result : a.getJobId().compareTo(b.getJobId());
+				}
+			};
+		}
+	}
+}
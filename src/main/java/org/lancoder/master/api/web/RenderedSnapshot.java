@@ -0,0 +1,93 @@
+package org.lancoder.master.api.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.EntityTag;
+
+import org.lancoder.master.impl.Master;
+
+/**
+ * Immutable JSON of an API resource, rendered once for a version of the state of the cluster.
+ * <p>
+ * The entity tag is a hash of the JSON, so a resource rendered again with the same content keeps its tag.
+ */
+public class RenderedSnapshot {
+
+	/**
+	 * Responses smaller than this are not worth compressing
+	 */
+	public static final int GZIP_MIN_BYTES = 1024;
+
+	private final long version;
+	private final long renderedAt;
+	private final byte[] body;
+	private final byte[] gzipBody;
+	private final EntityTag tag;
+	private final EntityTag gzipTag;
+
+	public RenderedSnapshot(long version, String json, boolean compress, long renderedAt) {
+		this.version = version;
+		this.renderedAt = renderedAt;
+		this.body = json.getBytes(StandardCharsets.UTF_8);
+		this.gzipBody = compress && body.length >= GZIP_MIN_BYTES ? gzip(body) : null;
+		String hash = hash(body);
+		this.tag = new EntityTag(hash);
+		this.gzipTag = new EntityTag(hash + "--gzip");
+	}
+
+	private static byte[] gzip(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(bytes);
+		} catch (IOException e) {
+			// not possible in memory
+			return null;
+		}
+		return out.toByteArray();
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance(Master.ALGORITHM).digest(bytes);
+			StringBuilder sb = new StringBuilder();
+			// half of the digest is plenty to tell two versions of a resource apart
+			for (int i = 0; i < digest.length / 2; i++) {
+				sb.append(Integer.toString((digest[i] & 0xff) + 0x100, 16).substring(1));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getRenderedAt() {
+		return renderedAt;
+	}
+
+	/**
+	 * @return True if a compressed body is available
+	 */
+	public boolean isCompressed() {
+		return gzipBody != null;
+	}
+
+	public byte[] getBody(boolean gzip) {
+		return gzip && isCompressed() ? gzipBody : body;
+	}
+
+	/**
+	 * Get the entity tag of a representation. The compressed body has its own tag as its bytes differ.
+	 */
+	public EntityTag getTag(boolean gzip) {
+		return gzip && isCompressed() ? gzipTag : tag;
+	}
+}
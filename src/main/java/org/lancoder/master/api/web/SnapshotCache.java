@@ -0,0 +1,147 @@
+package org.lancoder.master.api.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.MetricsRegistry;
+
+/**
+ * Rendered JSON of the API resources, kept until the state of the cluster changes.
+ * <p>
+ * Repeated reads of a resource while the version of the cluster state is the same are served from the same bytes
+ * without touching the jobs or the nodes. Rendering happens outside of the lock of the cache: readers of other
+ * resources are not held up, and readers of a resource being rendered wait for that render instead of starting theirs.
+ */
+public class SnapshotCache {
+
+	/**
+	 * Builds the JSON of a resource from the live state of the cluster
+	 */
+	public interface Renderer {
+		String render();
+	}
+
+	/**
+	 * A snapshot is rendered again after this delay even if the version did not change, in case a change did not go
+	 * through the master events. The tag stays the same if the content did not change.
+	 */
+	public static final long MAX_AGE_MSEC = 10000;
+	private static final int MAX_SNAPSHOTS = 64;
+
+	private final boolean compress;
+	private final LinkedHashMap<String, PendingSnapshot> snapshots = new LinkedHashMap<String, PendingSnapshot>(16,
+			0.75f, true) {
+		private static final long serialVersionUID = 2470245658133398312L;
+
+		@Override
+		protected boolean removeEldestEntry(Entry<String, PendingSnapshot> eldest) {
+			return size() > MAX_SNAPSHOTS;
+		}
+	};
+	/**
+	 * A snapshot of a resource, rendered or being rendered
+	 */
+	private static class PendingSnapshot {
+
+		private final long version;
+		private final long renderedAt;
+		private final FutureTask<RenderedSnapshot> task;
+
+		public PendingSnapshot(final long version, final long renderedAt, final Renderer renderer,
+				final boolean compress) {
+			this.version = version;
+			this.renderedAt = renderedAt;
+			this.task = new FutureTask<>(new Callable<RenderedSnapshot>() {
+				@Override
+				public RenderedSnapshot call() {
+					return new RenderedSnapshot(version, renderer.render(), compress, renderedAt);
+				}
+			});
+		}
+	}
+
+	private final Counter hits;
+	private final Counter renders;
+
+	/**
+	 * @param compress
+	 *            Also keep a gzip body of the large snapshots
+	 */
+	public SnapshotCache(boolean compress) {
+		this.compress = compress;
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		String help = "Reads of the api served from a rendered snapshot";
+		this.hits = registry.counter("lancoder_api_snapshot_reads_total", help, "result", "hit");
+		this.renders = registry.counter("lancoder_api_snapshot_reads_total", help, "result", "render");
+	}
+
+	/**
+	 * Get the snapshot of a resource, rendering it if the state of the cluster changed since it was last rendered.
+	 *
+	 * @param key
+	 *            The resource, with its parameters
+	 * @param version
+	 *            The version of the state of the cluster, read before rendering
+	 * @param renderer
+	 *            Renders the resource if needed
+	 * @return The snapshot
+	 */
+	public RenderedSnapshot get(String key, long version, Renderer renderer) {
+		long now = System.currentTimeMillis();
+		PendingSnapshot pending;
+		boolean render = false;
+		synchronized (this) {
+			pending = snapshots.get(key);
+			// A snapshot of a later version is as good, the version was read before rendering
+			if (pending == null || pending.version < version || now - pending.renderedAt >= MAX_AGE_MSEC) {
+				pending = new PendingSnapshot(version, now, renderer, compress);
+				snapshots.put(key, pending);
+				render = true;
+			}
+		}
+		if (render) {
+			renders.increment();
+			pending.task.run();
+		} else {
+			hits.increment();
+		}
+		try {
+			return getUninterruptibly(pending.task);
+		} catch (ExecutionException e) {
+			synchronized (this) {
+				// Let the next reader try again
+				if (snapshots.get(key) == pending) {
+					snapshots.remove(key);
+				}
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static RenderedSnapshot getUninterruptibly(FutureTask<RenderedSnapshot> task) throws ExecutionException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -1,38 +1,72 @@
 package org.lancoder.master.api.web;
 
+import java.util.ArrayList;
+
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.lancoder.common.annotations.NoWebUI;
 import org.lancoder.common.codecs.CodecEnum;
 import org.lancoder.common.codecs.CodecTypeAdapter;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.network.messages.web.ApiJobRequest;
 import org.lancoder.common.network.messages.web.ApiResponse;
+import org.lancoder.common.network.messages.web.JobRequestStatus;
+import org.lancoder.common.network.messages.web.JobSummaryPage;
+import org.lancoder.common.timeline.TraceExporter;
+import org.lancoder.master.JobManager;
+import org.lancoder.master.NodeManager;
 import org.lancoder.master.impl.Master;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 
 @Path("/")
 @Produces(MediaType.APPLICATION_JSON)
 public class WebApi {
 
+	/**
+	 * Maximum number of job requests in a bulk submission
+	 */
+	public static final int MAX_BULK_REQUESTS = 1000;
+
 	private Master master;
 	private WebApiListener eventListener;
 	private static Gson gson;
+	private TraceExporter traceExporter = new TraceExporter();
+	private SnapshotCache snapshots;
 
 	public WebApi(Master master, WebApiListener eventListener) {
 		this.master = master;
 		this.eventListener = eventListener;
-		WebApi.gson = new GsonBuilder().registerTypeAdapter(CodecEnum.class, new CodecTypeAdapter<>())
+		this.snapshots = new SnapshotCache(master.getConfig().isApiCompression());
+		WebApi.gson = buildGson();
+	}
+
+	/**
+	 * Build the Gson instance used to serialize the API responses.
+	 *
+	 * @return The Gson instance
+	 */
+	public static Gson buildGson() {
+		return new GsonBuilder().registerTypeAdapter(CodecEnum.class, new CodecTypeAdapter<>())
 				.setExclusionStrategies(new ExclusionStrategy() {
 					@Override
 					public boolean shouldSkipField(FieldAttributes f) {
@@ -46,10 +80,52 @@ public class WebApi {
 				}).serializeSpecialFloatingPointValues().create();
 	}
 
+	/**
+	 * Serve the snapshot of a resource for the current state of the cluster. Answers 304 if the client already has it.
+	 *
+	 * @param key
+	 *            The resource, with its parameters
+	 * @param renderer
+	 *            Renders the resource if the cluster changed since the last render
+	 */
+	private Response getSnapshot(String key, Request request, HttpHeaders headers, final SnapshotCache.Renderer renderer) {
+		final JobManager jobManager = master.getJobManager();
+		final NodeManager nodeManager = master.getNodeManager();
+		RenderedSnapshot snapshot = snapshots.get(key, master.getStateVersion(), new SnapshotCache.Renderer() {
+			@Override
+			public String render() {
+				// keep the dispatching from changing the jobs and the nodes while they are serialized
+				synchronized (jobManager) {
+					synchronized (nodeManager) {
+						return renderer.render();
+					}
+				}
+			}
+		});
+
+		String acceptEncoding = headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+		boolean gzip = snapshot.isCompressed() && acceptEncoding != null && acceptEncoding.contains("gzip");
+		EntityTag tag = snapshot.getTag(gzip);
+		ResponseBuilder builder = request.evaluatePreconditions(tag);
+		if (builder == null) {
+			builder = Response.status(200).entity(snapshot.getBody(gzip));
+			if (gzip) {
+				builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+			}
+		}
+		return builder.tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+				.header(HttpHeaders.CACHE_CONTROL, "no-cache").build();
+	}
+
 	@GET
 	@Path("/nodes")
-	public Response getNodes() {
-		return Response.status(200).entity(gson.toJson(master.getNodeManager().getNodes())).build();
+	public Response getNodes(@Context Request request, @Context HttpHeaders headers) {
+		return getSnapshot("nodes", request, headers, new SnapshotCache.Renderer() {
+			@Override
+			public String render() {
+				return gson.toJson(master.getNodeManager().getNodes());
+			}
+		});
 	}
 
 	@POST
@@ -65,8 +141,58 @@ public class WebApi {
 
     @GET
     @Path("/jobs")
-    public Response getJobs() {
-        return Response.status(200).entity(gson.toJson(master.getJobManager().getJobs())).build();
+    public Response getJobs(@Context Request request, @Context HttpHeaders headers) {
+        return getSnapshot("jobs", request, headers, new SnapshotCache.Renderer() {
+            @Override
+            public String render() {
+                return gson.toJson(master.getJobManager().getJobs());
+            }
+        });
+    }
+
+    /**
+     * Get a page of job summaries, without the tasks of the jobs.
+     *
+     * @param state
+     *            The states to keep, separated by commas (e.g. computing,todo)
+     * @param sort
+     *            added, name, state, priority or progress, prefixed by - for a descending order
+     */
+    @GET
+    @Path("/jobs/summary")
+    public Response getJobSummaries(@QueryParam("offset") @DefaultValue("0") int offset,
+            @QueryParam("limit") @DefaultValue("" + JobSummaryQuery.DEFAULT_LIMIT) int limit,
+            @QueryParam("state") String state, @QueryParam("sort") String sort, @Context Request request,
+            @Context HttpHeaders headers) {
+        final JobSummaryQuery query;
+        try {
+            query = new JobSummaryQuery(state, sort, offset, limit);
+        } catch (IllegalArgumentException e) {
+            return Response.status(400).entity(gson.toJson(new ApiResponse(false, e.getMessage()))).build();
+        }
+        String key = String.format("jobs/summary?offset=%d&limit=%d&state=%s&sort=%s", offset, limit, state, sort);
+        return getSnapshot(key, request, headers, new SnapshotCache.Renderer() {
+            @Override
+            public String render() {
+                JobSummaryPage page = query.apply(new ArrayList<>(master.getJobManager().getJobHashMap().values()));
+                return gson.toJson(page);
+            }
+        });
+    }
+
+    @GET
+    @Path("/jobs/{id}")
+    public Response getJob(@PathParam("id") String jobId, @Context Request request, @Context HttpHeaders headers) {
+        final Job job = master.getJobManager().getJob(jobId);
+        if (job == null) {
+            return Response.status(404).build();
+        }
+        return getSnapshot("jobs/" + jobId, request, headers, new SnapshotCache.Renderer() {
+            @Override
+            public String render() {
+                return gson.toJson(job);
+            }
+        });
     }
 
     @POST
@@ -82,6 +208,51 @@ public class WebApi {
         return Response.status(400).entity(gson.toJson(res)).build();
     }
 
+    /**
+     * Submit many job requests in one call. The requests are queued and their ids returned right away, their sources
+     * are checked, probed and split in the background.
+     *
+     * @param req
+     *            A JSON array of job requests
+     */
+    @POST
+    @Path("/jobs/bulk")
+    public Response addJobs(String req) {
+        ApiJobRequest[] jobRequests;
+        try {
+            jobRequests = gson.fromJson(req, ApiJobRequest[].class);
+        } catch (JsonParseException e) {
+            return Response.status(400).entity(gson.toJson(new ApiResponse(false, "Expected an array of job requests.")))
+                    .build();
+        }
+        if (jobRequests == null || jobRequests.length == 0 || jobRequests.length > MAX_BULK_REQUESTS) {
+            String message = String.format("Expected between 1 and %d job requests.", MAX_BULK_REQUESTS);
+            return Response.status(400).entity(gson.toJson(new ApiResponse(false, message))).build();
+        }
+
+        ArrayList<JobRequestStatus> statuses = new ArrayList<>();
+        for (ApiJobRequest jobRequest : jobRequests) {
+            statuses.add(eventListener.submitJob(jobRequest));
+        }
+        return Response.status(202).entity(gson.toJson(statuses)).build();
+    }
+
+    @GET
+    @Path("/jobs/requests")
+    public Response getJobRequests() {
+        return Response.status(200).entity(gson.toJson(eventListener.getJobRequests())).build();
+    }
+
+    @GET
+    @Path("/jobs/requests/{id}")
+    public Response getJobRequest(@PathParam("id") String requestId) {
+        JobRequestStatus status = eventListener.getJobRequest(requestId);
+        if (status == null) {
+            return Response.status(404).build();
+        }
+        return Response.status(200).entity(gson.toJson(status)).build();
+    }
+
     @DELETE
     @Path("/jobs/{id}")
     public Response deleteJob(@PathParam("id") String jobId) {
@@ -92,6 +263,29 @@ public class WebApi {
         return Response.status(202).build();
     }
 
+    @GET
+    @Path("/jobs/{id}/timeline")
+    public Response getJobTimeline(@PathParam("id") String jobId) {
+        Job job = master.getJobManager().getJob(jobId);
+        if (job == null) {
+            return Response.status(404).build();
+        }
+        return Response.status(200).entity(gson.toJson(traceExporter.getJobTimeline(job))).build();
+    }
+
+    @GET
+    @Path("/jobs/{id}/trace")
+    public Response getJobTrace(@PathParam("id") String jobId) {
+        Job job = master.getJobManager().getJob(jobId);
+        if (job == null) {
+            return Response.status(404).build();
+        }
+        // Trace Event Format, opened by chrome://tracing or ui.perfetto.dev
+        return Response.status(200).entity(gson.toJson(traceExporter.getTrace(job)))
+                .header("Content-Disposition", String.format("attachment; filename=\"%s.trace.json\"", jobId))
+                .build();
+    }
+
     @GET
     @Path("/jobs/clean")
     public Response cleanJobs() {
@@ -111,10 +305,31 @@ public class WebApi {
         return Response.status(200).entity(gson.toJson(CodecEnum.getVideoCodecs())).build();
     }
 
+    @GET
+    @Path("/muxer")
+    public Response getMuxerStatistics() {
+        return Response.status(200).entity(gson.toJson(master.getMuxerPool().getStatistics())).build();
+    }
+
     @GET
     @Path("/logs")
     public Response getLogs() {
         return Response.status(200).entity(gson.toJson(master.getClusterLogCollector().getAllRecords())).build();
     }
 
+    @GET
+    @Path("/metrics")
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public Response getMetrics() {
+        master.updateMetrics();
+        return Response.status(200).entity(MetricsRegistry.getDefault().toPrometheusText()).build();
+    }
+
+    @GET
+    @Path("/metrics/json")
+    public Response getMetricsJson() {
+        master.updateMetrics();
+        return Response.status(200).entity(gson.toJson(MetricsRegistry.getDefault().getSnapshot())).build();
+    }
+
 }
@@ -1,7 +1,10 @@
 package org.lancoder.master.api.web;
 
+import java.util.ArrayList;
+
 import org.lancoder.common.network.messages.web.ApiJobRequest;
 import org.lancoder.common.network.messages.web.ApiResponse;
+import org.lancoder.common.network.messages.web.JobRequestStatus;
 
 public interface WebApiListener {
 
@@ -9,6 +12,12 @@ public interface WebApiListener {
 
 	boolean addJob(ApiJobRequest req);
 
+	JobRequestStatus submitJob(ApiJobRequest req);
+
+	JobRequestStatus getJobRequest(String requestId);
+
+	ArrayList<JobRequestStatus> getJobRequests();
+
 	ApiResponse apiDeleteJob(String id);
 
 }
@@ -18,6 +18,11 @@ public class NodeCheckerPool extends Pool<Node> {
 		this.listener = listener;
 	}
 
+	@Override
+	protected boolean isIoBound() {
+		return true;
+	}
+
 	@Override
 	protected PoolWorker<Node> getPoolWorkerInstance() {
 		return new NodeChecker(listener);
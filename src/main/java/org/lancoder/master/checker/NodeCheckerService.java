@@ -20,13 +20,23 @@ public class NodeCheckerService extends Schedulable implements Service {
 		this.nodeManager = nodeManager;
 	}
 
+	/**
+	 * Check the nodes on virtual threads.
+	 *
+	 * @param concurrencyLimit
+	 *            The maximum number of nodes checked at once
+	 */
+	public void useVirtualThreads(int concurrencyLimit) {
+		pool.useVirtualThreads(concurrencyLimit);
+	}
+
 	private void checkNodes() {
 		if (poolThread == null) {
 			startPool();
 		}
 
 		if (!nodeManager.getNodes().isEmpty()) {
-			for (Node n : nodeManager.getOnlineNodes()) {
+			for (Node n : nodeManager.getNodesToCheck()) {
 				pool.add(n);
 			}
 		}
@@ -7,12 +7,20 @@ public class DispatchItem {
 
 	private Message message;
 	private Node node;
+	/**
+	 * Value of System.nanoTime() when the item was created, used to measure dispatch latency
+	 */
+	private final long timeCreated = System.nanoTime();
 
 	public DispatchItem(Message message, Node node) {
 		this.message = message;
 		this.node = node;
 	}
 
+	public long getTimeCreated() {
+		return timeCreated;
+	}
+
 	public Message getMessage() {
 		return message;
 	}
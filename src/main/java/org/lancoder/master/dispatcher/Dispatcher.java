@@ -3,8 +3,10 @@ package org.lancoder.master.dispatcher;
 import org.lancoder.common.Node;
 import org.lancoder.common.network.MessageSender;
 import org.lancoder.common.network.cluster.messages.Message;
+import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
 import org.lancoder.common.network.cluster.protocol.ClusterProtocol;
 import org.lancoder.common.pool.PoolWorker;
+import org.lancoder.common.timeline.Timeline;
 
 public class Dispatcher extends PoolWorker<DispatchItem> {
 
@@ -16,8 +18,16 @@ public class Dispatcher extends PoolWorker<DispatchItem> {
 
 	private void dispatch(DispatchItem item) {
 		Node node = item.getNode();
+		Timeline timeline = item.getMessage() instanceof TaskRequestMessage ? ((TaskRequestMessage) item
+				.getMessage()).getTask().getTimeline() : null;
 
+		if (timeline != null) {
+			timeline.begin("dispatch");
+		}
 		Message response = MessageSender.send(item.getMessage(), node.getNodeAddress(), node.getNodePort());
+		if (timeline != null) {
+			timeline.end("dispatch");
+		}
 		if (response != null && response.getCode() == ClusterProtocol.OK) {
 			// dispatching was successful
 			listener.taskAccepted(item);
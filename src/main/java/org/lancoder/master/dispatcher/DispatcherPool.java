@@ -6,6 +6,8 @@ import org.lancoder.common.Node;
 import org.lancoder.common.events.Event;
 import org.lancoder.common.events.EventEnum;
 import org.lancoder.common.events.EventListener;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
 import org.lancoder.common.pool.Pool;
 import org.lancoder.common.pool.PoolWorker;
@@ -16,10 +18,22 @@ public class DispatcherPool extends Pool<DispatchItem> implements DispatcherList
 	private static final int MAX_DISPATCHERS = 5;
 
 	private EventListener listener;
+	private Histogram acceptedTimer;
+	private Histogram refusedTimer;
 
 	public DispatcherPool(EventListener listener) {
 		super(MAX_DISPATCHERS);
 		this.listener = listener;
+
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		String help = "Time from the creation of a dispatch item to the answer of the node";
+		this.acceptedTimer = registry.timer("lancoder_dispatch_seconds", help, "result", "accepted");
+		this.refusedTimer = registry.timer("lancoder_dispatch_seconds", help, "result", "refused");
+	}
+
+	@Override
+	protected boolean isIoBound() {
+		return true;
 	}
 
 	@Override
@@ -32,6 +46,8 @@ public class DispatcherPool extends Pool<DispatchItem> implements DispatcherList
 		Logger logger = Logger.getLogger("lancoder");
 
 		ClientTask t = ((TaskRequestMessage) item.getMessage()).getTask();
+		refusedTimer.recordSince(item.getTimeCreated());
+		t.getTimeline().mark("refused");
 
 		Node node = item.getNode();
 		t.getProgress().reset();
@@ -52,6 +68,8 @@ public class DispatcherPool extends Pool<DispatchItem> implements DispatcherList
 		Logger logger = Logger.getLogger("lancoder");
 
 		ClientTask t = ((TaskRequestMessage) item.getMessage()).getTask();
+		acceptedTimer.recordSince(item.getTimeCreated());
+		t.getTimeline().mark("accepted");
 		Node n = item.getNode();
 		n.unlock();
 
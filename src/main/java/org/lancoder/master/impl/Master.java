@@ -2,7 +2,9 @@ package org.lancoder.master.impl;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import org.lancoder.common.Container;
@@ -15,6 +17,9 @@ import org.lancoder.common.events.EventEnum;
 import org.lancoder.common.events.EventListener;
 import org.lancoder.common.job.Job;
 import org.lancoder.common.logging.LogCollectorHandler;
+import org.lancoder.common.metrics.Gauge;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.network.MessageSender;
 import org.lancoder.common.network.cluster.messages.AuthMessage;
 import org.lancoder.common.network.cluster.messages.LogRecordMessage;
@@ -30,8 +35,10 @@ import org.lancoder.common.third_parties.FFprobe;
 import org.lancoder.common.third_parties.MkvMerge;
 import org.lancoder.common.utils.FileUtils;
 import org.lancoder.master.ClusterLogCollector;
+import org.lancoder.master.DispatchPolicy;
 import org.lancoder.master.JobInitiator;
 import org.lancoder.master.JobManager;
+import org.lancoder.master.LeaseReaper;
 import org.lancoder.master.MasterConfig;
 import org.lancoder.master.MasterSavedInstance;
 import org.lancoder.master.NodeManager;
@@ -40,6 +47,8 @@ import org.lancoder.master.api.web.ApiServer;
 import org.lancoder.master.checker.NodeCheckerService;
 import org.lancoder.master.dispatcher.DispatcherPool;
 import org.lancoder.muxer.MuxerPool;
+import org.lancoder.muxer.ProgressiveMuxer;
+import org.lancoder.muxer.ProgressiveMuxerPool;
 
 public class Master extends Container implements EventListener {
 
@@ -51,6 +60,8 @@ public class Master extends Container implements EventListener {
 	private ApiServer apiServer;
 	private DispatcherPool dispatcherPool;
 	private MuxerPool muxerPool;
+	private ProgressiveMuxer progressiveMuxer;
+	private ProgressiveMuxerPool progressiveMuxerPool;
 	private NodeManager nodeManager;
 	private JobManager jobManager;
 	private ConfigManager<MasterConfig> configManager;
@@ -61,12 +72,36 @@ public class Master extends Container implements EventListener {
 	private MasterAdapter eventListener;
 	private LogCollectorHandler webUIHandler;
 	private ClusterLogCollector clusterLogCollector;
+	private final EnumMap<EventEnum, Histogram> eventTimers = new EnumMap<>(EventEnum.class);
+	/**
+	 * Increased whenever the jobs or the nodes may have changed
+	 */
+	private final AtomicLong stateVersion = new AtomicLong();
 
 	@Override
 	public void handle(Event event) {
+		stateChanged();
 		this.eventQueue.add(event);
 	}
 
+	/**
+	 * Get the version of the state of the cluster. Two equal versions mean that neither the jobs nor the nodes changed
+	 * in between. The version is increased when an event is queued and once it is processed, as state changes outside
+	 * of the event thread are always followed by an event.
+	 *
+	 * @return The current version
+	 */
+	public long getStateVersion() {
+		return stateVersion.get();
+	}
+
+	/**
+	 * Mark the state of the cluster as changed.
+	 */
+	public void stateChanged() {
+		stateVersion.incrementAndGet();
+	}
+
 	@Override
 	public void setConfigManager(ConfigManager<? extends Config> config) {
 		@SuppressWarnings("unchecked")
@@ -119,11 +154,39 @@ public class Master extends Container implements EventListener {
 		dispatcherPool = new DispatcherPool(eventListener);
 		services.add(dispatcherPool);
 
-		muxerPool = new MuxerPool(eventListener, filePathManager, getFFmpeg(), getMkvMerge());
+		if (getConfig().isVirtualThreads()) {
+			int limit = getConfig().getIoConcurrencyLimit();
+			nodeServer.useVirtualThreads(limit);
+			nodeChecker.useVirtualThreads(limit);
+			dispatcherPool.useVirtualThreads(limit);
+		}
+
+		// Parts are only joined on the master, workers mux from the parts
+		if (getConfig().isProgressiveMuxing() && !getConfig().isMuxOnWorkers()) {
+			progressiveMuxer = new ProgressiveMuxer(filePathManager);
+			progressiveMuxerPool = new ProgressiveMuxerPool(progressiveMuxer);
+			services.add(progressiveMuxerPool);
+		}
+
+		muxerPool = new MuxerPool(eventListener, filePathManager, getFFmpeg(), getMkvMerge(), getConfig()
+				.getMuxerThreads(), getConfig().getSharedFolderWriters(), progressiveMuxer);
 		services.add(muxerPool);
 
 		jobManager = new JobManager(eventListener, nodeManager, dispatcherPool, savedInstance, jobInitiator);
+		jobManager.setPolicy(DispatchPolicy.fromName(getConfig().getDispatchPolicy()));
+		if (getConfig().getTaskLeaseSeconds() > 0) {
+			jobManager.setLeaseDuration(getConfig().getTaskLeaseSeconds());
+		}
 		eventListeners.add(jobManager);
+		services.add(new LeaseReaper(jobManager));
+
+		MetricsRegistry.getDefault().register(new Gauge("lancoder_master_event_queue_size",
+				"Events waiting to be processed by the master") {
+			@Override
+			public double getValue() {
+				return eventQueue.size();
+			}
+		});
 	}
 
 	@Override
@@ -138,17 +201,14 @@ public class Master extends Container implements EventListener {
 		logger.info("Executing master shutdown routine.\n"
 				+ "Ctrl+C again for immediate shutdown (not recommended).\n");
 
-		// save config and make sure to reset current tasks
-		for (Node n : nodeManager.getNodes()) {
-			for (ClientTask task : n.getAllTasks()) {
-				task.getProgress().reset();
-			}
-		}
 		configManager.dump();
 
-		// say goodbye to nodes
+		// Say goodbye to idle nodes. Nodes holding tasks keep encoding and keep their assignments in the saved
+		// instance, they report their tasks to the next master when they reconnect.
 		for (Node n : nodeManager.getOnlineNodes()) {
-			disconnectNode(n);
+			if (n.getAllTasks().isEmpty()) {
+				disconnectNode(n);
+			}
 		}
 		stopServices();
 		saveInternalState();
@@ -189,6 +249,8 @@ public class Master extends Container implements EventListener {
 			response = new ApiResponse(false, String.format("Could not retrieve job %s.", jobId));
 		} else if (!jobManager.deleteJob(j)) {
 			response = new ApiResponse(false, String.format("Could not delete job %s.", jobId));
+		} else if (progressiveMuxer != null) {
+			progressiveMuxer.forget(j);
 		}
 		return response;
 	}
@@ -209,8 +271,13 @@ public class Master extends Container implements EventListener {
 
 			job.start(false);
 		} else {
-			// start muxing (or let pool add to the todo list)
-			muxerPool.add(job);
+			if (getConfig().isMuxOnWorkers()) {
+				// let the job manager dispatch the muxing to a worker
+				jobManager.addMuxTask(job);
+			} else {
+				// start muxing (or let pool add to the todo list)
+				muxerPool.add(job);
+			}
 		}
 	}
 
@@ -250,32 +317,40 @@ public class Master extends Container implements EventListener {
 
 		// identify node to get it's instance
 		Node sender = nodeManager.identifySender(nodeUnid);
-		if (sender == null || sender.getStatus() == NodeState.NOT_CONNECTED || report.getTaskReports() == null) {
+		if (sender == null || report.getTaskReports() == null) {
 			return false;
 		}
 		logger.finer(String.format("Reading status report from %s.%n", sender.getName()));
+		if (sender.getStatus() == NodeState.NOT_CONNECTED) {
+			// The node was unreachable for a while and still holds its tasks or their results
+			logger.info(String.format("Node %s is reachable again.%n", sender.getName()));
+		}
 
 		readTaskReports(report.getTaskReports());
+		if (report.getEncodeSpeeds() != null) {
+			nodeManager.updateEncodeSpeeds(sender, report.getEncodeSpeeds());
+		}
+		if (report.getTelemetry() != null) {
+			nodeManager.addTelemetry(sender, report.getTelemetry());
+		}
+		if (report.getCheckpoints() != null) {
+			sender.setCheckpoints(report.getCheckpoints());
+		}
 		// only update if status is changed
 		if (sender.getStatus() != newNodeState) {
 			sender.setStatus(newNodeState);
 			logger.finer(String.format("Node %s is now %s.%n", sender.getName(), newNodeState));
 		}
 
-		// remove unassigned tasks
-		ArrayList<ClientTask> reportTasks = new ArrayList<>();
-		for (TaskReport taskReport : report.getTaskReports()) {
-			reportTasks.add(taskReport.getTask());
-		}
-
-		jobManager.removeInvalidAssigments(sender, reportTasks);
+		// Tasks the node did not report are reclaimed when their leases expire
 		this.handle(new Event(EventEnum.WORK_NEEDS_UPDATE));
 
 		return true;
 	}
 
 	/**
-	 * Reads all task reports and launches an update of the task status and progress
+	 * Reads all task reports and launches an update of the task status and progress. Reports on tasks the node does
+	 * not hold a lease for are only applied when the node re-attaches them.
 	 *
 	 * @param reports
 	 *            The reports to read
@@ -288,41 +363,85 @@ public class Master extends Container implements EventListener {
 			ClientTask masterTaskInstance = jobManager.getTask(reportTaskInstance.getJobId(),
 					reportTaskInstance.getTaskId());
 
-			if (verifyTaskAssignment(masterTaskInstance, sender)) {
+			if (sender != null
+					&& masterTaskInstance != null
+					&& jobManager.acceptTaskReport(masterTaskInstance, sender, reportTaskInstance.getProgress()
+							.getTaskState())) {
+				masterTaskInstance.getTimeline().merge(reportTaskInstance.getTimeline());
 				masterTaskInstance.setProgress(reportTaskInstance.getProgress());
 				jobManager.taskUpdated(masterTaskInstance, sender);
 			}
 		}
 	}
 
-	private boolean verifyTaskAssignment(ClientTask task, Node node) {
-		if (node == null) {
-			return false;
-		}
-		if (!node.hasTask(task)) {
-			logger.warning(String.format("%s instance not found for node %s.%n", task, node.getName()));
-		}
-		return true;
-	}
-
 	@Override
 	public void run() {
 		startServices();
 
 		while (!close) {
 			try {
-				processEvent(eventQueue.take());
+				Event event = eventQueue.take();
+				long start = System.nanoTime();
+				processEvent(event);
+				stateChanged();
+				getEventTimer(event.getCode()).recordSince(start);
 			} catch (InterruptedException e) {
 			}
 		}
 	}
 
+	private Histogram getEventTimer(EventEnum code) {
+		Histogram timer = eventTimers.get(code);
+		if (timer == null) {
+			timer = MetricsRegistry.getDefault().timer("lancoder_master_event_seconds",
+					"Time spent by the master processing an event", "event", code.name());
+			eventTimers.put(code, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 * Refresh the metrics read from the cluster state before they are collected.
+	 */
+	public void updateMetrics() {
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		String name = "lancoder_node_encode_speed";
+		String help = "Sum of the current speed of the tasks of a node, in units per second";
+
+		ArrayList<Gauge> gauges = new ArrayList<>();
+		// Called from the API threads, the tasks of the nodes are changed by the master thread
+		synchronized (jobManager) {
+			synchronized (nodeManager) {
+				for (Node node : nodeManager.getOnlineNodes()) {
+					double speed = 0;
+					for (ClientTask task : node.getCurrentTasks()) {
+						speed += task.getProgress().getCurrentStep().getSpeed();
+					}
+					Gauge gauge = registry.gauge(name, help, "node", node.getName());
+					gauge.set(speed);
+					gauges.add(gauge);
+				}
+			}
+		}
+		// Only the nodes that went away are removed, the others are updated in place
+		registry.retain(name, gauges);
+	}
 
 	private void processEvent(Event event) {
 		switch (event.getCode()) {
 		case STATUS_REPORT:
 			this.readStatusReport((StatusReport) event.getObject());
 			break;
+		case TASK_ENCODING_COMPLETED:
+			if (progressiveMuxerPool != null) {
+				ClientTask completedTask = (ClientTask) event.getObject();
+				Job completedTaskJob = jobManager.getJob(completedTask.getJobId());
+
+				if (completedTaskJob != null) {
+					progressiveMuxerPool.add(completedTaskJob);
+				}
+			}
+			break;
 		case JOB_ENCODING_COMPLETED:
 			jobEncodingCompleted((Job) event.getObject());
 			break;
@@ -346,6 +465,7 @@ public class Master extends Container implements EventListener {
 
 	public void cleanJobs() {
 		jobManager.cleanJobs();
+		stateChanged();
 	}
 
 	public MasterAdapter getMasterEventCatcher() {
@@ -368,5 +488,9 @@ public class Master extends Container implements EventListener {
 		return this.clusterLogCollector;
 	}
 
+	public MuxerPool getMuxerPool() {
+		return muxerPool;
+	}
+
 
 }
\ No newline at end of file
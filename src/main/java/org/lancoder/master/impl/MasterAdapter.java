@@ -1,5 +1,6 @@
 package org.lancoder.master.impl;
 
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 import org.lancoder.common.Node;
@@ -9,6 +10,7 @@ import org.lancoder.common.events.EventListener;
 import org.lancoder.common.job.Job;
 import org.lancoder.common.network.messages.web.ApiJobRequest;
 import org.lancoder.common.network.messages.web.ApiResponse;
+import org.lancoder.common.network.messages.web.JobRequestStatus;
 import org.lancoder.master.JobInitiatorListener;
 import org.lancoder.master.api.web.WebApiListener;
 import org.lancoder.muxer.MuxerListener;
@@ -30,17 +32,20 @@ public class MasterAdapter implements MuxerListener, JobInitiatorListener, Event
 	@Override
 	public void jobMuxingStarted(Job job) {
 		job.muxing();
+		master.stateChanged();
 	}
 
 	@Override
 	public void jobMuxingCompleted(Job job) {
 		job.complete();
+		master.stateChanged();
 		logger.fine(String.format("Job %s finished muxing !\n", job.getJobName()));
 	}
 
 	@Override
 	public void jobMuxingFailed(Job job) {
 		job.fail();
+		master.stateChanged();
 		logger.fine(String.format("Muxing failed for job %s\n", job.getJobName()));
 	}
 
@@ -60,6 +65,21 @@ public class MasterAdapter implements MuxerListener, JobInitiatorListener, Event
 		return master.getJobManager().handleJobRequest(req);
 	}
 
+	@Override
+	public JobRequestStatus submitJob(ApiJobRequest req) {
+		return master.getJobManager().submitJobRequest(req);
+	}
+
+	@Override
+	public JobRequestStatus getJobRequest(String requestId) {
+		return master.getJobManager().getJobRequestStatus(requestId);
+	}
+
+	@Override
+	public ArrayList<JobRequestStatus> getJobRequests() {
+		return master.getJobManager().getJobRequestStatuses();
+	}
+
 	@Override
 	public ApiResponse apiDeleteJob(String id) {
 		return master.apiDeleteJob(id);
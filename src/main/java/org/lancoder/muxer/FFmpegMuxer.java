@@ -2,6 +2,8 @@ package org.lancoder.muxer;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -30,15 +32,25 @@ public class FFmpegMuxer extends Muxer {
 	private MuxerListener listener;
 	private FilePathManager filePathManager;
 	private FFmpeg ffMpeg;
+	/**
+	 * Optional muxer providing the already concatenated parts
+	 */
+	private ProgressiveMuxer progressiveMuxer;
 	/**
 	 * Map of the input files without the duplicated. Value is the position in ffmpeg file mapping. (file:stream)
 	 */
 	private HashMap<String, Input> inputs = new HashMap<>();
 
 	public FFmpegMuxer(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffMpeg) {
+		this(listener, filePathManager, ffMpeg, null);
+	}
+
+	public FFmpegMuxer(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffMpeg,
+			ProgressiveMuxer progressiveMuxer) {
 		this.listener = listener;
 		this.filePathManager = filePathManager;
 		this.ffMpeg = ffMpeg;
+		this.progressiveMuxer = progressiveMuxer;
 	}
 
 	@Override
@@ -49,13 +61,34 @@ public class FFmpegMuxer extends Muxer {
 		this.job = job;
 
 		File muxOutputFile = filePathManager.getSharedFinalFile(job);
-		ArrayList<Map> mapping = buildMapping();
+		ArrayList<Map> mapping = null;
+		try {
+			mapping = buildMapping();
+		} catch (IOException e) {
+			Logger logger = Logger.getLogger("lancoder");
+			logger.warning(String.format("Could not write concat list of job %s: %s%n", job.getJobName(),
+					e.getMessage()));
+			inputs.clear();
+			if (progressiveMuxer != null) {
+				progressiveMuxer.forget(job);
+			}
+			this.listener.jobMuxingFailed(job);
+			this.job = null;
+			return;
+		}
 
 		args.add(ffMpeg.getPath());
 		// Add input files and correct their index according to the position in the arguments
 		ArrayList<Input> inputArray = new ArrayList<>(inputs.values());
 		for (int i = 0; i < inputArray.size(); i++) {
 			Input input = inputArray.get(i);
+			if (input.getFormat() != null) {
+				args.add("-f");
+				args.add(input.getFormat());
+				// Allow absolute paths in the concat list
+				args.add("-safe");
+				args.add("0");
+			}
 			args.add("-i");
 			args.add(input.getInputFile());
 			// Correct the order
@@ -83,6 +116,9 @@ public class FFmpegMuxer extends Muxer {
 			e.printStackTrace();
 		} finally {
 			inputs.clear();
+			if (progressiveMuxer != null) {
+				progressiveMuxer.forget(job);
+			}
 			if (success) {
 				File partsDirectory = filePathManager.getSharedPartsFolder(job);
 				try {
@@ -105,23 +141,48 @@ public class FFmpegMuxer extends Muxer {
 		}
 	}
 
-	private Input getInput(String input) {
+	private Input getInput(String input, String format) {
 		if (!inputs.containsKey(input)) {
-			inputs.put(input, new Input(input, inputs.size()));
+			inputs.put(input, new Input(input, inputs.size(), format));
 		}
 		return inputs.get(input);
 	}
 
+	/**
+	 * Write the list of parts read by ffmpeg's concat demuxer.
+	 *
+	 * @param stream
+	 *            The stream of the parts
+	 * @param tasks
+	 *            The tasks of the stream, in order
+	 * @return The list file
+	 * @throws IOException
+	 *             If the list could not be written in the parts folder
+	 */
+	private File writeConcatList(Stream stream, ArrayList<ClientTask> tasks) throws IOException {
+		File listFile = filePathManager.getSharedConcatListFile(job, stream);
+		StringBuilder sb = new StringBuilder("ffconcat version 1.0\n");
+		for (ClientTask task : tasks) {
+			String path = filePathManager.getSharedFinalFile(task).getAbsolutePath();
+			sb.append("file '").append(path.replace("'", "'\\''")).append("'\n");
+		}
+		Files.write(listFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		return listFile;
+	}
+
 	/**
 	 * Build mapping of a stream. Indexes the stream index to the input file of the stream.
 	 *
 	 * @param stream
 	 *            The stream to map
 	 * @return The map of the input file index and the local stream index
+	 * @throws IOException
+	 *             If the concat list of the stream could not be written
 	 */
-	private Map buildMap(Stream stream) {
+	private Map buildMap(Stream stream) throws IOException {
 		int streamIndex = 0;
 		String input = null;
+		String format = null;
 
 		if (stream.getStrategy().isCopy()) { // TODO move input file to strategy
 			// Use original source file and stream id
@@ -132,23 +193,19 @@ public class FFmpegMuxer extends Muxer {
 		} else {
 			// Iterate through tasks of the stream and concatenate if necessary
 			ArrayList<ClientTask> tasks = job.getTasksForStream(stream);
+			File progressiveFile = progressiveMuxer == null ? null : progressiveMuxer.complete(job, stream);
 
-			if (tasks.size() > 1) {
-				// Register concat stream as an input stream
-				// ffmpeg -i "concat:input1.mpg|input2.mpg|input3.mpg" -map 0:0 -c copy output.mpg
-				StringBuilder sb = new StringBuilder("concat:");
-				Iterator<ClientTask> taskIterator = tasks.iterator();
-
-				while (taskIterator.hasNext()) {
-					ClientTask t = taskIterator.next();
-					File taskPartFile = filePathManager.getSharedFinalFile(t);
-					sb.append(taskPartFile.getAbsolutePath());
-					if (taskIterator.hasNext()) {
-						// Concatenate to the next task
-						sb.append("|");
-					}
-				}
-				input = sb.toString();
+			if (progressiveFile != null) {
+				// Parts were joined while the job was encoding
+				// ffmpeg -i parts/progressive-0.ts -map 0:0 -c copy final.mkv
+				input = progressiveFile.getAbsolutePath();
+				streamIndex = 0;
+			} else if (tasks.size() > 1) {
+				// Register concat stream as an input stream. The demuxer reads the parts as one file whatever their
+				// container is, so parts are used as written by the workers.
+				// ffmpeg -f concat -safe 0 -i parts/concat-0.txt -map 0:0 -c copy output.mkv
+				input = writeConcatList(stream, tasks).getAbsolutePath();
+				format = "concat";
 				streamIndex = 0;
 			} else if (tasks.size() == 1) {
 				// Use temp file of the task
@@ -158,15 +215,17 @@ public class FFmpegMuxer extends Muxer {
 				streamIndex = 0;
 			}
 		}
-		return new Map(getInput(input), streamIndex);
+		return new Map(getInput(input, format), streamIndex);
 	}
 
 	/**
 	 * Build maps for all streams of the current job. Also indexes input files.
 	 *
 	 * @return All stream mappings
+	 * @throws IOException
+	 *             If a concat list could not be written
 	 */
-	private ArrayList<Map> buildMapping() {
+	private ArrayList<Map> buildMapping() throws IOException {
 		// Iterate through original streams
 		ArrayList<Map> mapping = new ArrayList<>();
 		Iterator<Stream> streamIterator = job.getStreams().iterator();
@@ -0,0 +1,356 @@
+package org.lancoder.muxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.base.Codec;
+import org.lancoder.common.exceptions.MissingDecoderException;
+import org.lancoder.common.exceptions.MissingThirdPartyException;
+import org.lancoder.common.file_components.streams.AudioStream;
+import org.lancoder.common.file_components.streams.Stream;
+import org.lancoder.common.file_components.streams.VideoStream;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.common.third_parties.ThirdParty;
+import org.lancoder.common.utils.FileUtils;
+import org.lancoder.worker.converter.video.Transcoder;
+
+/**
+ * Produces an HLS presentation from the encoded parts instead of muxing a single file.
+ *
+ * The MPEG-TS video parts are moved next to the playlists and used as segments. Each part starts at timestamp 0, so
+ * segments are separated by discontinuities. Audio streams are cut by ffmpeg at the same boundaries as the video parts
+ * so the renditions share the same discontinuity sequence. AAC and MP3 are stream copied, other codecs cannot be carried
+ * in MPEG-TS and are transcoded to AAC while cutting.
+ *
+ */
+public class HlsMuxer extends Muxer {
+
+	public static final String MASTER_PLAYLIST = "master.m3u8";
+	private static final String VIDEO_PLAYLIST = "video.m3u8";
+	private static final String VIDEO_SEGMENT = "video-%05d.ts";
+	private static final String AUDIO_PLAYLIST = "audio-%d.m3u8";
+	private static final String AUDIO_SEGMENT = "audio-%d-%%05d.ts";
+	/**
+	 * Bitrate in kbps of the AAC renditions of audio streams that cannot be stream copied
+	 */
+	private static final int AUDIO_TRANSCODE_BITRATE = 192;
+
+	private MuxerListener listener;
+	private FilePathManager filePathManager;
+	private FFmpeg ffMpeg;
+	private Logger logger = Logger.getLogger("lancoder");
+
+	public HlsMuxer(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffMpeg) {
+		this.listener = listener;
+		this.filePathManager = filePathManager;
+		this.ffMpeg = ffMpeg;
+	}
+
+	@Override
+	public void handle(Job job) {
+		boolean success = false;
+
+		this.listener.jobMuxingStarted(job);
+		try {
+			success = writePresentation(job);
+		} catch (IOException | MissingDecoderException | MissingThirdPartyException e) {
+			logger.warning(String.format("Could not write HLS output of job %s: %s%n", job.getJobName(),
+					e.getMessage()));
+		}
+
+		if (success) {
+			File partsDirectory = filePathManager.getSharedPartsFolder(job);
+			try {
+				// Clean job's parts
+				FileUtils.deleteDirectory(partsDirectory);
+			} catch (IOException e) {
+				logger.warning(e.getMessage());
+			}
+			this.listener.jobMuxingCompleted(job);
+		} else {
+			this.listener.jobMuxingFailed(job);
+		}
+	}
+
+	private boolean writePresentation(Job job) throws IOException, MissingDecoderException,
+			MissingThirdPartyException {
+		ArrayList<Stream> audioStreams = new ArrayList<>();
+		ArrayList<Stream> sortedStreams = new ArrayList<>(job.getStreams());
+		Collections.sort(sortedStreams);
+
+		for (Stream stream : sortedStreams) {
+			if (stream instanceof AudioStream) {
+				audioStreams.add(stream);
+			}
+		}
+
+		Stream videoStream = getVideoStream(sortedStreams);
+		if (videoStream == null) {
+			logger.warning(String.format("Job %s has no encoded video stream to segment.%n", job.getJobName()));
+			return false;
+		}
+		if (!hasSegmentableParts(videoStream)) {
+			logger.warning(String.format("HLS output of job %s requires MPEG-TS video parts (H.264).%n",
+					job.getJobName()));
+			return false;
+		}
+		ArrayList<ClientTask> videoTasks = job.getTasksForStream(videoStream);
+
+		File outputFolder = filePathManager.getSharedOutputFolder(job);
+		if (!outputFolder.exists()) {
+			outputFolder.mkdirs();
+			FileUtils.givePerms(outputFolder, false);
+		}
+
+		double[] durations = getDurations(videoTasks, job.getLengthOfJob());
+
+		// Cut audio first so a failure leaves the video parts untouched
+		ArrayList<String> audioPlaylists = new ArrayList<>();
+		long audioBandwidth = 0;
+		for (Stream audioStream : audioStreams) {
+			if (!segmentAudio(job, audioStream, durations)) {
+				return false;
+			}
+			String playlist = String.format(AUDIO_PLAYLIST, audioStream.getIndex());
+			ArrayList<String> segments = new ArrayList<>();
+			for (int i = 0; i < durations.length; i++) {
+				String segment = String.format(String.format(AUDIO_SEGMENT, audioStream.getIndex()), i);
+				if (filePathManager.getSharedSegmentFile(job, segment).exists()) {
+					segments.add(segment);
+				}
+			}
+			write(filePathManager.getSharedSegmentFile(job, playlist), getMediaPlaylist(segments, durations));
+			audioPlaylists.add(playlist);
+			audioBandwidth = Math.max(audioBandwidth, getPeakBandwidth(job, segments, durations));
+		}
+
+		// Move the video parts as segments
+		ArrayList<String> videoSegments = new ArrayList<>();
+		for (int i = 0; i < videoTasks.size(); i++) {
+			String segment = String.format(VIDEO_SEGMENT, i);
+			File part = filePathManager.getSharedFinalFile(videoTasks.get(i));
+			Files.move(part.toPath(), filePathManager.getSharedSegmentFile(job, segment).toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+			videoSegments.add(segment);
+		}
+		write(filePathManager.getSharedSegmentFile(job, VIDEO_PLAYLIST), getMediaPlaylist(videoSegments, durations));
+
+		long bandwidth = getPeakBandwidth(job, videoSegments, durations) + audioBandwidth;
+		write(filePathManager.getSharedFinalFile(job), getMasterPlaylist(audioPlaylists, bandwidth));
+		return true;
+	}
+
+	/**
+	 * Cut an audio stream at the video part boundaries. Streams that MPEG-TS cannot carry are transcoded to AAC.
+	 *
+	 * ffmpeg -i audio.ogg -map 0:0 -c:a aac -b:a 192k -f segment -segment_format mpegts -segment_times 300.000
+	 * -reset_timestamps 1 audio-1-%05d.ts
+	 */
+	private boolean segmentAudio(Job job, Stream stream, double[] durations) throws MissingDecoderException,
+			MissingThirdPartyException {
+		ArrayList<String> args = new ArrayList<>();
+		String input = null;
+		int streamIndex = 0;
+
+		if (stream.getStrategy().isCopy()) {
+			input = filePathManager.getSharedSourceFile(job).getAbsolutePath();
+			streamIndex = stream.getIndex();
+		} else {
+			ArrayList<ClientTask> tasks = job.getTasksForStream(stream);
+			if (tasks.size() != 1) {
+				logger.warning(String.format("Audio stream %d of job %s has %d parts.%n", stream.getIndex(),
+						job.getJobName(), tasks.size()));
+				return false;
+			}
+			input = filePathManager.getSharedFinalFile(tasks.get(0)).getAbsolutePath();
+		}
+
+		String times = getSegmentTimes(durations);
+
+		args.add(ffMpeg.getPath());
+		args.add("-i");
+		args.add(input);
+		args.add("-map");
+		args.add(String.format("0:%d", streamIndex));
+		if (canCopyAudio(stream)) {
+			args.add("-c");
+			args.add("copy");
+		} else {
+			logger.fine(String.format("Transcoding audio stream %d of job %s to AAC for HLS.%n", stream.getIndex(),
+					job.getJobName()));
+			// Use ffmpeg's native encoder, it is available in every build
+			args.add("-c:a");
+			args.add("aac");
+			args.add("-b:a");
+			args.add(String.format("%dk", AUDIO_TRANSCODE_BITRATE));
+		}
+		args.add("-f");
+		args.add("segment");
+		args.add("-segment_format");
+		args.add("mpegts");
+		if (times.length() > 0) {
+			args.add("-segment_times");
+			args.add(times);
+		} else {
+			// Single segment
+			args.add("-segment_time");
+			args.add(String.valueOf(Integer.MAX_VALUE));
+		}
+		args.add("-reset_timestamps");
+		args.add("1");
+		args.add(filePathManager.getSharedSegmentFile(job, String.format(AUDIO_SEGMENT, stream.getIndex()))
+				.getAbsolutePath());
+
+		return new Transcoder().read(args);
+	}
+
+	private long getPeakBandwidth(Job job, ArrayList<String> segments, double[] durations) {
+		long peak = 0;
+		for (int i = 0; i < segments.size() && i < durations.length; i++) {
+			long bytes = filePathManager.getSharedSegmentFile(job, segments.get(i)).length();
+			if (durations[i] > 0) {
+				peak = Math.max(peak, (long) (bytes * 8 / durations[i]));
+			}
+		}
+		return peak;
+	}
+
+	private void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Get the first encoded video stream. Its parts are used as the segments of the presentation.
+	 *
+	 * @param streams
+	 *            The streams of the job, sorted by index
+	 * @return The video stream or null if the job has no encoded video stream
+	 */
+	static Stream getVideoStream(Collection<Stream> streams) {
+		for (Stream stream : streams) {
+			if (stream instanceof VideoStream && !stream.getStrategy().isCopy()) {
+				return stream;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the parts of a video stream are MPEG-TS files that can be served as segments.
+	 */
+	static boolean hasSegmentableParts(Stream videoStream) {
+		Codec codec = videoStream.getStrategy().getCodec();
+		return codec != null && codec.needsTranscode();
+	}
+
+	/**
+	 * Check if an audio stream can be stream copied into MPEG-TS segments. The codec of copied streams is not kept by
+	 * the job so they are always transcoded.
+	 */
+	static boolean canCopyAudio(Stream audioStream) {
+		Codec codec = audioStream.getStrategy().getCodec();
+		if (codec == null || audioStream.getStrategy().isCopy()) {
+			return false;
+		}
+		return codec.getCodecEnum() == CodecEnum.AAC || codec.getCodecEnum() == CodecEnum.MP3;
+	}
+
+	/**
+	 * Get the duration of each video part in seconds. The last part is clamped to the length of the job.
+	 *
+	 * @param tasks
+	 *            The video tasks in order
+	 * @param lengthOfJob
+	 *            The length of the job in ms
+	 * @return The durations in seconds
+	 */
+	static double[] getDurations(List<ClientTask> tasks, long lengthOfJob) {
+		double[] durations = new double[tasks.size()];
+		for (int i = 0; i < tasks.size(); i++) {
+			ClientTask task = tasks.get(i);
+			long end = Math.min(task.getEncodingEndTime(), lengthOfJob);
+			durations[i] = Math.max(0, end - task.getEncodingStartTime()) / 1000d;
+		}
+		return durations;
+	}
+
+	/**
+	 * Get the cut points of the segment muxer. The end of the last part is not a cut point.
+	 *
+	 * @param durations
+	 *            The durations of the parts in seconds
+	 * @return The comma separated times in seconds or an empty string for a single part
+	 */
+	static String getSegmentTimes(double[] durations) {
+		StringBuilder times = new StringBuilder();
+		double time = 0;
+		for (int i = 0; i < durations.length - 1; i++) {
+			time += durations[i];
+			if (times.length() > 0) {
+				times.append(',');
+			}
+			times.append(String.format(Locale.ROOT, "%.3f", time));
+		}
+		return times.toString();
+	}
+
+	static String getMediaPlaylist(List<String> segments, double[] durations) {
+		double target = 0;
+		for (double duration : durations) {
+			target = Math.max(target, duration);
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("#EXTM3U\n");
+		sb.append("#EXT-X-VERSION:3\n");
+		sb.append(String.format("#EXT-X-TARGETDURATION:%d\n", (long) Math.ceil(target)));
+		sb.append("#EXT-X-MEDIA-SEQUENCE:0\n");
+		sb.append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+		for (int i = 0; i < segments.size(); i++) {
+			if (i > 0) {
+				// Each part restarts its timestamps
+				sb.append("#EXT-X-DISCONTINUITY\n");
+			}
+			sb.append(String.format(Locale.ROOT, "#EXTINF:%.3f,\n", durations[i]));
+			sb.append(segments.get(i)).append('\n');
+		}
+		sb.append("#EXT-X-ENDLIST\n");
+		return sb.toString();
+	}
+
+	static String getMasterPlaylist(List<String> audioPlaylists, long bandwidth) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("#EXTM3U\n");
+		sb.append("#EXT-X-VERSION:3\n");
+		for (int i = 0; i < audioPlaylists.size(); i++) {
+			sb.append(String.format("#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio\",NAME=\"Audio %d\",DEFAULT=%s,"
+					+ "AUTOSELECT=YES,URI=\"%s\"\n", i + 1, i == 0 ? "YES" : "NO", audioPlaylists.get(i)));
+		}
+		sb.append(String.format("#EXT-X-STREAM-INF:BANDWIDTH=%d", Math.max(1, bandwidth)));
+		if (!audioPlaylists.isEmpty()) {
+			sb.append(",AUDIO=\"audio\"");
+		}
+		sb.append('\n');
+		sb.append(VIDEO_PLAYLIST).append('\n');
+		return sb.toString();
+	}
+
+	@Override
+	public ThirdParty getMuxingThirdParty() {
+		return this.ffMpeg;
+	}
+
+}
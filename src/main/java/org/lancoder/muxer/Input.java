@@ -4,10 +4,23 @@ public class Input {
 
 	private String inputFile;
 	private int index;
+	/**
+	 * Demuxer to force on the input file, or null to let ffmpeg probe it
+	 */
+	private String format;
 
 	public Input(String inputFile, int index) {
+		this(inputFile, index, null);
+	}
+
+	public Input(String inputFile, int index, String format) {
 		this.inputFile = inputFile;
 		this.index = index;
+		this.format = format;
+	}
+
+	public String getFormat() {
+		return format;
 	}
 
 	public int getIndex() {
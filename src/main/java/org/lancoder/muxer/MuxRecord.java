@@ -0,0 +1,42 @@
+package org.lancoder.muxer;
+
+/**
+ * Outcome of a single muxing operation, as shown by the web api.
+ */
+public class MuxRecord {
+
+	private String jobId;
+	private String jobName;
+	private long timeStarted;
+	private long duration;
+	private boolean success;
+
+	public MuxRecord(String jobId, String jobName, long timeStarted, long duration, boolean success) {
+		this.jobId = jobId;
+		this.jobName = jobName;
+		this.timeStarted = timeStarted;
+		this.duration = duration;
+		this.success = success;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public String getJobName() {
+		return jobName;
+	}
+
+	public long getTimeStarted() {
+		return timeStarted;
+	}
+
+	public long getDuration() {
+		return duration;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+}
@@ -0,0 +1,51 @@
+package org.lancoder.muxer;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.job.OutputFormat;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.common.third_parties.MkvMerge;
+
+/**
+ * Provides the correct implementation of the Muxer depending of the codec used for the job. Used by the master's muxer
+ * pool and by the workers.
+ */
+public class MuxerFactory {
+
+	private MkvMergeMuxer mkvMergeMuxer;
+	private FFmpegMuxer ffmpegMuxer;
+	private HlsMuxer hlsMuxer;
+
+	public MuxerFactory(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffmpeg, MkvMerge mkvMerge) {
+		this(listener, filePathManager, ffmpeg, mkvMerge, null);
+	}
+
+	public MuxerFactory(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffmpeg, MkvMerge mkvMerge,
+			ProgressiveMuxer progressiveMuxer) {
+		this.mkvMergeMuxer = new MkvMergeMuxer(listener, filePathManager, mkvMerge);
+		this.ffmpegMuxer = new FFmpegMuxer(listener, filePathManager, ffmpeg, progressiveMuxer);
+		this.hlsMuxer = new HlsMuxer(listener, filePathManager, ffmpeg);
+	}
+
+	/**
+	 * Check if the job can only be muxed with mkvmerge.
+	 *
+	 * @param job
+	 *            The job to mux
+	 * @return True if mkvmerge is needed
+	 */
+	public static boolean requiresMkvMerge(Job job) {
+		// Use mkvmerge only if h265 is used. Segmented outputs are written by ffmpeg.
+		return job.getOutputFormat() == OutputFormat.FILE && !job.getClientVideoTasks().isEmpty()
+				&& job.getClientVideoTasks().get(0).getStreamConfig().getOutStream().getCodec().getCodecEnum() == CodecEnum.H265;
+	}
+
+	public Muxer getMuxer(Job job) {
+		if (job.getOutputFormat() == OutputFormat.HLS) {
+			return hlsMuxer;
+		}
+		return requiresMkvMerge(job) ? mkvMergeMuxer : ffmpegMuxer;
+	}
+
+}
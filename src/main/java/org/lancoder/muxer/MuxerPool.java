@@ -1,30 +1,132 @@
 package org.lancoder.muxer;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
 import org.lancoder.common.FilePathManager;
 import org.lancoder.common.job.Job;
+import org.lancoder.common.metrics.Histogram;
+import org.lancoder.common.metrics.MetricsRegistry;
 import org.lancoder.common.pool.Pool;
 import org.lancoder.common.pool.PoolWorker;
 import org.lancoder.common.third_parties.FFmpeg;
 import org.lancoder.common.third_parties.MkvMerge;
 
-public class MuxerPool extends Pool<Job> {
+/**
+ * Pool of muxers. Muxing is mostly bound by the shared folder's I/O, so the pool size is the smallest of the configured
+ * muxer count and the number of concurrent writers the shared folder can sustain.
+ *
+ * Also keeps track of the muxing durations as the pool sits between the muxers and the real listener.
+ */
+public class MuxerPool extends Pool<Job> implements MuxerListener {
+
+	/**
+	 * How many muxing results are kept for the statistics
+	 */
+	private static final int HISTORY_SIZE = 20;
 
 	private FilePathManager filePathManager;
 	private MuxerListener listener;
 	private FFmpeg ffMpeg;
 	private MkvMerge mkvMerge;
+	private ProgressiveMuxer progressiveMuxer;
+
+	private final HashMap<String, Long> startTimes = new HashMap<>();
+	private final LinkedList<MuxRecord> history = new LinkedList<>();
+	private long completedCount;
+	private long failedCount;
+	private final Histogram completedTimer;
+	private final Histogram failedTimer;
 
-	public MuxerPool(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffMpeg, MkvMerge mkvMerge) {
-		super(1);
+	public MuxerPool(MuxerListener listener, FilePathManager filePathManager, FFmpeg ffMpeg, MkvMerge mkvMerge,
+			int muxerThreads, int sharedFolderWriters, ProgressiveMuxer progressiveMuxer) {
+		super(getPoolSize(muxerThreads, sharedFolderWriters));
 		this.filePathManager = filePathManager;
 		this.listener = listener;
 		this.ffMpeg = ffMpeg;
 		this.mkvMerge = mkvMerge;
+		this.progressiveMuxer = progressiveMuxer;
+
+		MetricsRegistry registry = MetricsRegistry.getDefault();
+		this.completedTimer = registry.timer("lancoder_mux_seconds", "Duration of the muxing of jobs", "result",
+				"completed");
+		this.failedTimer = registry.timer("lancoder_mux_seconds", "Duration of the muxing of jobs", "result",
+				"failed");
+	}
+
+	/**
+	 * Bound the number of muxers by the I/O limit of the shared folder. At least one muxer is always available.
+	 *
+	 * @param muxerThreads
+	 *            The requested number of muxers
+	 * @param sharedFolderWriters
+	 *            The maximum number of concurrent writers of the shared folder
+	 * @return The pool size
+	 */
+	private static int getPoolSize(int muxerThreads, int sharedFolderWriters) {
+		return Math.max(1, Math.min(muxerThreads, sharedFolderWriters));
 	}
 
 	@Override
 	protected PoolWorker<Job> getPoolWorkerInstance() {
-		return new MuxerWorkerWrapper(ffMpeg, mkvMerge, filePathManager, listener);
+		return new MuxerWorkerWrapper(ffMpeg, mkvMerge, filePathManager, this, progressiveMuxer);
+	}
+
+	@Override
+	public void jobMuxingStarted(Job job) {
+		synchronized (history) {
+			startTimes.put(job.getJobId(), System.currentTimeMillis());
+		}
+		job.getTimeline().begin("mux");
+		listener.jobMuxingStarted(job);
+	}
+
+	@Override
+	public void jobMuxingCompleted(Job job) {
+		record(job, true);
+		listener.jobMuxingCompleted(job);
+	}
+
+	@Override
+	public void jobMuxingFailed(Job job) {
+		record(job, false);
+		listener.jobMuxingFailed(job);
+	}
+
+	private void record(Job job, boolean success) {
+		long now = System.currentTimeMillis();
+
+		job.getTimeline().end("mux");
+		synchronized (history) {
+			Long start = startTimes.remove(job.getJobId());
+			// Job may fail before the muxer was started
+			long timeStarted = start == null ? now : start;
+
+			history.addFirst(new MuxRecord(job.getJobId(), job.getJobName(), timeStarted, now - timeStarted, success));
+			(success ? completedTimer : failedTimer).record(TimeUnit.MILLISECONDS.toMicros(now - timeStarted));
+			if (history.size() > HISTORY_SIZE) {
+				history.removeLast();
+			}
+			if (success) {
+				completedCount++;
+			} else {
+				failedCount++;
+			}
+		}
+	}
+
+	/**
+	 * Get a snapshot of the muxer pool's state.
+	 *
+	 * @return The statistics
+	 */
+	public MuxerStatistics getStatistics() {
+		synchronized (history) {
+			return new MuxerStatistics(getThreadLimit(), getQueueSize(), getActiveCount(), completedCount,
+					failedCount, new ArrayList<>(history));
+		}
 	}
 
 }
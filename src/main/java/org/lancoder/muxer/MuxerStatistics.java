@@ -0,0 +1,63 @@
+package org.lancoder.muxer;
+
+import java.util.ArrayList;
+
+/**
+ * Snapshot of the muxer pool state: how many jobs wait to be muxed, how many are being muxed and how long the last
+ * muxing operations took.
+ */
+public class MuxerStatistics {
+
+	private int poolSize;
+	private int queued;
+	private int active;
+	private long completed;
+	private long failed;
+	private long averageDuration;
+	private ArrayList<MuxRecord> recent;
+
+	public MuxerStatistics(int poolSize, int queued, int active, long completed, long failed,
+			ArrayList<MuxRecord> recent) {
+		this.poolSize = poolSize;
+		this.queued = queued;
+		this.active = active;
+		this.completed = completed;
+		this.failed = failed;
+		this.recent = recent;
+
+		long total = 0;
+		for (MuxRecord record : recent) {
+			total += record.getDuration();
+		}
+		this.averageDuration = recent.size() == 0 ? 0 : total / recent.size();
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public int getQueued() {
+		return queued;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public long getCompleted() {
+		return completed;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public long getAverageDuration() {
+		return averageDuration;
+	}
+
+	public ArrayList<MuxRecord> getRecent() {
+		return recent;
+	}
+
+}
@@ -1,7 +1,6 @@
 package org.lancoder.muxer;
 
 import org.lancoder.common.FilePathManager;
-import org.lancoder.common.codecs.CodecEnum;
 import org.lancoder.common.exceptions.MissingThirdPartyException;
 import org.lancoder.common.job.Job;
 import org.lancoder.common.pool.PoolWorker;
@@ -16,24 +15,18 @@ import org.lancoder.common.third_parties.MkvMerge;
  */
 public class MuxerWorkerWrapper extends PoolWorker<Job> {
 
-	private MkvMergeMuxer mkvMergeMuxer;
-	private FFmpegMuxer ffmpegMuxer;
+	private MuxerFactory muxerFactory;
 	private MuxerListener listener;
 
-	public MuxerWorkerWrapper(FFmpeg ffmpeg, MkvMerge mkvMerge, FilePathManager filePathManager, MuxerListener listener) {
-		this.mkvMergeMuxer = new MkvMergeMuxer(listener, filePathManager, mkvMerge);
-		this.ffmpegMuxer = new FFmpegMuxer(listener, filePathManager, ffmpeg);
+	public MuxerWorkerWrapper(FFmpeg ffmpeg, MkvMerge mkvMerge, FilePathManager filePathManager,
+			MuxerListener listener, ProgressiveMuxer progressiveMuxer) {
+		this.muxerFactory = new MuxerFactory(listener, filePathManager, ffmpeg, mkvMerge, progressiveMuxer);
 		this.listener = listener;
 	}
 
 	@Override
 	protected void start() {
-		// Use mkvmerge only if h265 is used
-		if (task.getClientVideoTasks().get(0).getStreamConfig().getOutStream().getCodec().getCodecEnum() == CodecEnum.H265) {
-			sendJobToMuxer(mkvMergeMuxer);
-		} else {
-			sendJobToMuxer(ffmpegMuxer);
-		}
+		sendJobToMuxer(muxerFactory.getMuxer(task));
 	}
 
 	private void sendJobToMuxer(Muxer muxer) {
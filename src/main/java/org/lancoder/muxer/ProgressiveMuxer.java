@@ -0,0 +1,231 @@
+package org.lancoder.muxer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.file_components.streams.Stream;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.status.JobState;
+import org.lancoder.common.status.TaskState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.video.ClientVideoTask;
+
+/**
+ * Concatenates the completed leading parts of a job's video streams while the job is still encoding. MPEG-TS parts
+ * can be joined by appending their bytes, so each part is only copied once into an intermediate file. When the job
+ * completes, only the remaining parts need to be appended before the final mux.
+ *
+ * The state of the intermediate files is kept in memory. If the master restarts, the intermediate file is rebuilt
+ * from the first part. A joined part that was reset or encoded again since it was appended is detected before each
+ * append and the intermediate file is truncated back to before that part.
+ *
+ */
+public class ProgressiveMuxer {
+
+	private FilePathManager filePathManager;
+	/**
+	 * State of the intermediate files by job id and stream index
+	 */
+	private final HashMap<String, HashMap<Integer, IntermediateFile>> jobs = new HashMap<>();
+	private Logger logger = Logger.getLogger("lancoder");
+
+	public ProgressiveMuxer(FilePathManager filePathManager) {
+		this.filePathManager = filePathManager;
+	}
+
+	/**
+	 * Check if the parts of a stream can be joined in an intermediate file.
+	 *
+	 * @param job
+	 *            The job of the stream
+	 * @param stream
+	 *            The stream to check
+	 * @return True if the stream's parts are MPEG-TS video parts of a single file output
+	 */
+	public static boolean supports(Job job, Stream stream) {
+		if (stream.getStrategy().isCopy() || job.getOutputFormat().isSegmented()) {
+			return false;
+		}
+		ArrayList<ClientTask> tasks = job.getTasksForStream(stream);
+
+		return tasks.size() > 1 && tasks.get(0) instanceof ClientVideoTask
+				&& tasks.get(0).getStreamConfig().getOutStream().getCodec().needsTranscode();
+	}
+
+	/**
+	 * Append the completed leading parts of all supported streams of the job.
+	 *
+	 * @param job
+	 *            The job to update
+	 */
+	public synchronized void appendCompletedParts(Job job) {
+		if (job.getJobStatus() == JobState.JOB_CANCELED || job.getJobStatus() == JobState.JOB_FAILED) {
+			// The job was deleted or failed while this append was queued
+			forget(job);
+			return;
+		}
+		for (Stream stream : job.getStreams()) {
+			if (supports(job, stream)) {
+				append(job, stream);
+			}
+		}
+	}
+
+	/**
+	 * Append the remaining parts of the stream and get the intermediate file.
+	 *
+	 * @param job
+	 *            The job being muxed
+	 * @param stream
+	 *            The stream to get
+	 * @return The intermediate file if it contains all of the stream's parts, null otherwise
+	 */
+	public synchronized File complete(Job job, Stream stream) {
+		if (!supports(job, stream)) {
+			return null;
+		}
+		IntermediateFile intermediate = append(job, stream);
+		boolean completed = intermediate != null
+				&& intermediate.partCount() == job.getTasksForStream(stream).size();
+
+		return completed ? filePathManager.getSharedProgressiveFile(job, stream) : null;
+	}
+
+	/**
+	 * Forget the intermediate files of a job. The files are deleted along with the job's parts.
+	 *
+	 * @param job
+	 *            The muxed, failed or deleted job
+	 */
+	public synchronized void forget(Job job) {
+		jobs.remove(job.getJobId());
+	}
+
+	private IntermediateFile getIntermediateFile(Job job, Stream stream) {
+		HashMap<Integer, IntermediateFile> streams = jobs.get(job.getJobId());
+
+		if (streams == null) {
+			streams = new HashMap<>();
+			jobs.put(job.getJobId(), streams);
+		}
+		IntermediateFile intermediate = streams.get(stream.getIndex());
+		if (intermediate == null) {
+			intermediate = new IntermediateFile();
+			streams.put(stream.getIndex(), intermediate);
+		}
+		return intermediate;
+	}
+
+	private IntermediateFile append(Job job, Stream stream) {
+		IntermediateFile intermediate = getIntermediateFile(job, stream);
+		ArrayList<ClientTask> tasks = job.getTasksForStream(stream);
+		File output = filePathManager.getSharedProgressiveFile(job, stream);
+		int joined = intermediate.partCount();
+
+		validate(job, stream, intermediate, tasks);
+		if (intermediate.partCount() == joined
+				&& (intermediate.partCount() == tasks.size() || !isCompleted(tasks.get(intermediate.partCount())))) {
+			// Nothing to drop and next part is not available yet
+			return intermediate;
+		}
+
+		try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			// Drop any bytes of an interrupted append or of the parts that changed
+			out.truncate(intermediate.length());
+			out.position(intermediate.length());
+
+			while (intermediate.partCount() < tasks.size() && isCompleted(tasks.get(intermediate.partCount()))) {
+				File part = filePathManager.getSharedFinalFile(tasks.get(intermediate.partCount()));
+				long lastModified = part.lastModified();
+
+				try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+					long position = 0;
+					long size = in.size();
+
+					while (position < size) {
+						position += in.transferTo(position, size - position, out);
+					}
+					intermediate.parts.add(new JoinedPart(size, lastModified, out.position()));
+				}
+			}
+		} catch (IOException e) {
+			logger.warning(String.format("Could not append part %d of stream %d of job %s: %s%n",
+					intermediate.partCount(), stream.getIndex(), job.getJobName(), e.getMessage()));
+		}
+		logger.finer(String.format("Stream %d of job %s has %d of %d parts joined.%n", stream.getIndex(),
+				job.getJobName(), intermediate.partCount(), tasks.size()));
+		return intermediate;
+	}
+
+	/**
+	 * Drop the joined parts from the first one that is no longer completed or whose file changed since it was
+	 * appended. A task reset by a missing file, an expired lease or a new encode invalidates all following parts.
+	 */
+	private void validate(Job job, Stream stream, IntermediateFile intermediate, ArrayList<ClientTask> tasks) {
+		for (int i = 0; i < intermediate.partCount(); i++) {
+			JoinedPart joined = intermediate.parts.get(i);
+			File part = filePathManager.getSharedFinalFile(tasks.get(i));
+
+			if (!isCompleted(tasks.get(i)) || part.length() != joined.size || part.lastModified() != joined.lastModified) {
+				logger.fine(String.format("Part %d of stream %d of job %s changed, joining again from it.%n", i,
+						stream.getIndex(), job.getJobName()));
+				intermediate.truncate(i);
+				return;
+			}
+		}
+	}
+
+	private boolean isCompleted(ClientTask task) {
+		return task.getProgress().getTaskState() == TaskState.TASK_COMPLETED;
+	}
+
+	private static class IntermediateFile {
+		/**
+		 * The leading parts that were appended, in order
+		 */
+		private final ArrayList<JoinedPart> parts = new ArrayList<>();
+
+		private int partCount() {
+			return parts.size();
+		}
+
+		/**
+		 * @return Length of the file after the last successful append
+		 */
+		private long length() {
+			return parts.isEmpty() ? 0 : parts.get(parts.size() - 1).end;
+		}
+
+		/**
+		 * Keep only the first parts
+		 */
+		private void truncate(int partCount) {
+			parts.subList(partCount, parts.size()).clear();
+		}
+	}
+
+	private static class JoinedPart {
+		/**
+		 * Size and modification time of the part file when it was appended
+		 */
+		private final long size;
+		private final long lastModified;
+		/**
+		 * Length of the intermediate file after this part
+		 */
+		private final long end;
+
+		private JoinedPart(long size, long lastModified, long end) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.end = end;
+		}
+	}
+
+}
@@ -0,0 +1,24 @@
+package org.lancoder.muxer;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.pool.Pool;
+import org.lancoder.common.pool.PoolWorker;
+
+/**
+ * Runs the progressive appends outside of the master's event thread.
+ */
+public class ProgressiveMuxerPool extends Pool<Job> {
+
+	private ProgressiveMuxer progressiveMuxer;
+
+	public ProgressiveMuxerPool(ProgressiveMuxer progressiveMuxer) {
+		super(1);
+		this.progressiveMuxer = progressiveMuxer;
+	}
+
+	@Override
+	protected PoolWorker<Job> getPoolWorkerInstance() {
+		return new ProgressiveMuxerWorker(progressiveMuxer);
+	}
+
+}
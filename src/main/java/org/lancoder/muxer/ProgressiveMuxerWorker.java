@@ -0,0 +1,19 @@
+package org.lancoder.muxer;
+
+import org.lancoder.common.job.Job;
+import org.lancoder.common.pool.PoolWorker;
+
+public class ProgressiveMuxerWorker extends PoolWorker<Job> {
+
+	private ProgressiveMuxer progressiveMuxer;
+
+	public ProgressiveMuxerWorker(ProgressiveMuxer progressiveMuxer) {
+		this.progressiveMuxer = progressiveMuxer;
+	}
+
+	@Override
+	protected void start() {
+		progressiveMuxer.appendCompletedParts(task);
+	}
+
+}
@@ -0,0 +1,304 @@
+package org.lancoder.tools.loadgen;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.logging.Logger;
+
+import org.lancoder.common.Node;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.network.MessageSender;
+import org.lancoder.common.network.cluster.messages.ConnectRequest;
+import org.lancoder.common.network.cluster.messages.ConnectResponse;
+import org.lancoder.common.network.cluster.messages.Message;
+import org.lancoder.common.network.cluster.messages.StatusReport;
+import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
+import org.lancoder.common.network.cluster.protocol.ClusterProtocol;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.common.status.TaskState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskReport;
+import org.lancoder.worker.server.WorkerServer;
+import org.lancoder.worker.server.WorkerServerListener;
+
+/**
+ * A worker speaking the cluster protocol without encoding anything. Tasks progress at the speed of the load profile
+ * and may fail at a random point.
+ */
+public class FakeWorker implements WorkerServerListener {
+
+	private final Node node;
+	private final InetAddress masterAddress;
+	private final int masterPort;
+	private final LoadProfile profile;
+	private final LoadStatistics statistics;
+	private final Executor executor;
+	private final Random random;
+	private final HashMap<ClientTask, SimulatedTask> simulatedTasks = new HashMap<>();
+	private WorkerServer server;
+	/**
+	 * Time in nanos since the worker has room for a task or 0 if it is full
+	 */
+	private long idleSince;
+	private long lastTick;
+
+	public FakeWorker(int index, int listenPort, InetAddress masterAddress, int masterPort, LoadProfile profile,
+			LoadStatistics statistics, Executor executor) {
+		ArrayList<CodecEnum> codecs = new ArrayList<>(Arrays.asList(CodecEnum.getVideoCodecs()));
+		codecs.addAll(Arrays.asList(CodecEnum.getAudioCodecs()));
+		this.node = new Node(null, listenPort, String.format("fake-worker-%d", index), codecs, profile.getThreads(),
+				null);
+		this.node.setStatus(NodeState.NOT_CONNECTED);
+		this.masterAddress = masterAddress;
+		this.masterPort = masterPort;
+		this.profile = profile;
+		this.statistics = statistics;
+		this.executor = executor;
+		this.random = new Random(index);
+	}
+
+	/**
+	 * Start listening for the master and send the connection request.
+	 *
+	 * @return True if the master accepted the worker
+	 */
+	public boolean start() {
+		server = new WorkerServer(this, node.getNodePort());
+		Thread serverThread = new Thread(server, node.getName());
+		serverThread.setDaemon(true);
+		serverThread.start();
+		return connect();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	private boolean connect() {
+		Logger logger = Logger.getLogger("lancoder");
+
+		try {
+			Message response = MessageSender.sendWithExceptions(new ConnectRequest(node), masterAddress, masterPort);
+			if (response instanceof ConnectResponse) {
+				String unid = ((ConnectResponse) response).getNewUnid();
+				if (unid != null && !unid.isEmpty()) {
+					synchronized (this) {
+						node.setUnid(unid);
+						node.setStatus(NodeState.FREE);
+						idleSince = System.nanoTime();
+						lastTick = System.currentTimeMillis();
+					}
+					statistics.workerConnected();
+					send(getStatusReport());
+					return true;
+				}
+			}
+			logger.warning(String.format("Master refused %s.%n", node.getName()));
+		} catch (IOException | ClassNotFoundException e) {
+			logger.warning(String.format("Could not connect %s: %s%n", node.getName(), e.getMessage()));
+		}
+		return false;
+	}
+
+	/**
+	 * Advance the progress of the tasks by the time elapsed since the last call. Completed and failed tasks are reported
+	 * to the master.
+	 */
+	public void tick() {
+		ArrayList<StatusReport> reports = new ArrayList<>();
+
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			double seconds = (now - lastTick) / 1000.0;
+			lastTick = now;
+			if (seconds <= 0) {
+				return;
+			}
+
+			ArrayList<ClientTask> finished = new ArrayList<>();
+			for (SimulatedTask simulated : simulatedTasks.values()) {
+				if (simulated.advance(profile.getSpeed(simulated.task) * seconds)) {
+					finished.add(simulated.task);
+				}
+			}
+			if (finished.isEmpty()) {
+				return;
+			}
+
+			// Like a worker, report the final state of the tasks before forgetting them
+			reports.add(getStatusReport());
+			for (ClientTask task : finished) {
+				simulatedTasks.remove(task);
+				node.removeTask(task);
+				if (task.getProgress().getTaskState() == TaskState.TASK_FAILED) {
+					statistics.taskFailed();
+				} else {
+					statistics.taskCompleted(task.getUnitCount() * task.getStepCount());
+				}
+			}
+			updateStatus();
+			reports.add(getStatusReport());
+		}
+
+		for (StatusReport report : reports) {
+			send(report);
+		}
+	}
+
+	private void startWork(ClientTask task) {
+		Message answer;
+
+		synchronized (this) {
+			statistics.taskReceived(idleSince);
+			// Same acceptance as the worker, from the cost of the task
+			if (node.getPendingTasks().size() == 1 && node.canFit(task)) {
+				task.start();
+				node.confirm(task);
+				simulatedTasks.put(task, new SimulatedTask(task, getFailurePoint(task)));
+				updateStatus();
+				answer = new TaskRequestMessage(task, ClusterProtocol.TASK_ACCEPTED);
+			} else {
+				node.removeTask(task);
+				statistics.taskRefused();
+				answer = new TaskRequestMessage(task, ClusterProtocol.TASK_REFUSED);
+			}
+		}
+
+		long sent = System.nanoTime();
+		if (send(answer) && answer.getCode() == ClusterProtocol.TASK_ACCEPTED) {
+			statistics.taskAccepted(sent);
+		}
+	}
+
+	/**
+	 * Decide where a task will fail.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The units at which the task fails or a negative value if it completes
+	 */
+	private double getFailurePoint(ClientTask task) {
+		if (random.nextDouble() >= profile.getFailureRate()) {
+			return -1;
+		}
+		return random.nextDouble() * task.getUnitCount() * task.getStepCount();
+	}
+
+	private void updateStatus() {
+		if (node.getUsedResources().getCpu() < node.getThreadCount()) {
+			if (idleSince == 0) {
+				idleSince = System.nanoTime();
+			}
+		} else {
+			idleSince = 0;
+		}
+		node.setStatus(node.getCurrentTasks().isEmpty() ? NodeState.FREE : NodeState.WORKING);
+	}
+
+	private synchronized StatusReport getStatusReport() {
+		ArrayList<TaskReport> reports = new ArrayList<>();
+		for (ClientTask task : node.getCurrentTasks()) {
+			reports.add(new TaskReport(node.getUnid(), task));
+		}
+		return new StatusReport(node.getStatus(), node.getUnid(), reports);
+	}
+
+	private boolean send(Message message) {
+		Message response = MessageSender.send(message, masterAddress, masterPort);
+		if (response == null) {
+			statistics.sendFailed();
+		}
+		return response != null;
+	}
+
+	@Override
+	public boolean taskRequest(final ClientTask task) {
+		synchronized (this) {
+			node.addPendingTask(task);
+		}
+		// Answer the master first, the acceptance is sent on its own connection
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				startWork(task);
+			}
+		});
+		return true;
+	}
+
+	@Override
+	public synchronized boolean deleteTask(ClientTask task) {
+		if (simulatedTasks.remove(task) == null) {
+			return false;
+		}
+		node.removeTask(task);
+		statistics.taskCanceled();
+		updateStatus();
+		return true;
+	}
+
+	@Override
+	public StatusReport statusRequest() {
+		return getStatusReport();
+	}
+
+	@Override
+	public void shutdownWorker() {
+		stop();
+	}
+
+	public String getName() {
+		return node.getName();
+	}
+
+	/**
+	 * Progress of a task on the fake worker, counted across all of its passes.
+	 */
+	private static class SimulatedTask {
+
+		private final ClientTask task;
+		private final double failurePoint;
+		private double units;
+		private double stepUnits;
+
+		public SimulatedTask(ClientTask task, double failurePoint) {
+			this.task = task;
+			this.failurePoint = failurePoint;
+		}
+
+		/**
+		 * Advance the task.
+		 *
+		 * @param amount
+		 *            The units encoded since the last call
+		 * @return True if the task completed or failed
+		 */
+		public boolean advance(double amount) {
+			long unitCount = task.getUnitCount();
+			units += amount;
+			stepUnits += amount;
+
+			if (failurePoint >= 0 && units >= failurePoint) {
+				task.fail();
+				return true;
+			}
+			while (stepUnits >= unitCount) {
+				task.getProgress().update(unitCount);
+				if (task.getProgress().getCurrentStepIndex() >= task.getStepCount()) {
+					task.completed();
+					return true;
+				}
+				task.getProgress().completeStep();
+				stepUnits = Double.isInfinite(stepUnits) ? stepUnits : stepUnits - unitCount;
+			}
+			task.getProgress().update((long) stepUnits);
+			return false;
+		}
+	}
+}
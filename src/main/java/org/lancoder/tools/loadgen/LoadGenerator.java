@@ -0,0 +1,214 @@
+package org.lancoder.tools.loadgen;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import org.lancoder.common.logging.LogFormatter;
+import org.lancoder.common.timeline.Timeline;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+/**
+ * Runs many fake workers in one JVM against a master to measure its scheduling under load. Jobs are submitted to the
+ * master as usual, through the web UI or the API.
+ */
+public class LoadGenerator {
+
+	private final static Logger logger = Logger.getLogger("lancoder");
+
+	private final ArrayList<FakeWorker> workers = new ArrayList<>();
+	private final LoadStatistics statistics = new LoadStatistics();
+	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+	private final ExecutorService taskHandlers = Executors.newCachedThreadPool();
+	private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+	private final InetAddress masterAddress;
+	private final int masterPort;
+	private final LoadProfile profile;
+
+	public LoadGenerator(InetAddress masterAddress, int masterPort, LoadProfile profile) {
+		this.masterAddress = masterAddress;
+		this.masterPort = masterPort;
+		this.profile = profile;
+	}
+
+	/**
+	 * Start and connect the fake workers, then advance their tasks every tick.
+	 *
+	 * @param count
+	 *            The number of fake workers
+	 * @param basePort
+	 *            The listen port of the first worker, the others use the following ports
+	 * @param tickMsec
+	 *            The delay between two progress updates of the tasks
+	 */
+	public void start(int count, int basePort, long tickMsec) {
+		for (int i = 0; i < count; i++) {
+			FakeWorker worker = new FakeWorker(i, basePort + i, masterAddress, masterPort, profile, statistics,
+					taskHandlers);
+			if (worker.start()) {
+				workers.add(worker);
+			} else {
+				worker.stop();
+			}
+		}
+		logger.info(String.format("Connected %d of %d fake workers to %s:%d.%n", workers.size(), count,
+				masterAddress.getHostAddress(), masterPort));
+
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				for (FakeWorker worker : workers) {
+					try {
+						worker.tick();
+					} catch (RuntimeException e) {
+						logger.warning(String.format("%s failed to update its tasks: %s%n", worker.getName(), e));
+					}
+				}
+			}
+		}, tickMsec, tickMsec, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Log the statistics at a fixed rate.
+	 *
+	 * @param reportMsec
+	 *            The delay between two reports
+	 */
+	public void reportEvery(long reportMsec) {
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				logger.info(statistics.getSummary());
+			}
+		}, reportMsec, reportMsec, TimeUnit.MILLISECONDS);
+	}
+
+	public void stop() {
+		if (!stopped.compareAndSet(false, true)) {
+			return;
+		}
+		scheduler.shutdownNow();
+		taskHandlers.shutdownNow();
+		for (FakeWorker worker : workers) {
+			worker.stop();
+		}
+		logger.info(statistics.getSummary());
+	}
+
+	public LoadStatistics getStatistics() {
+		return statistics;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		ArgumentParser parser = ArgumentParsers.newArgumentParser("lancoder-loadgen")
+				.defaultHelp(true)
+				.description("Simulate workers against a lancoder master");
+		parser.addArgument("--master")
+				.setDefault("127.0.0.1")
+				.help("address of the master");
+		parser.addArgument("--master-port")
+				.type(Integer.class)
+				.setDefault(1337)
+				.help("port of the master's node server");
+		parser.addArgument("--workers", "-n")
+				.type(Integer.class)
+				.setDefault(50)
+				.help("number of fake workers");
+		parser.addArgument("--base-port")
+				.type(Integer.class)
+				.setDefault(20000)
+				.help("listen port of the first fake worker");
+		parser.addArgument("--threads")
+				.type(Integer.class)
+				.setDefault(1)
+				.help("tasks accepted at once by a fake worker");
+		parser.addArgument("--fps")
+				.type(Double.class)
+				.setDefault(120.0)
+				.help("simulated encoding speed of the video tasks");
+		parser.addArgument("--realtime-factor")
+				.type(Double.class)
+				.setDefault(60.0)
+				.help("simulated encoding speed of the audio tasks, in seconds of media per second");
+		parser.addArgument("--failure-rate")
+				.type(Double.class)
+				.setDefault(0.0)
+				.help("probability of a task to fail before completing");
+		parser.addArgument("--tick")
+				.type(Long.class)
+				.setDefault(500L)
+				.help("delay in msec between two progress updates");
+		parser.addArgument("--report")
+				.type(Long.class)
+				.setDefault(10L)
+				.help("delay in seconds between two reports");
+		parser.addArgument("--duration")
+				.type(Long.class)
+				.setDefault(0L)
+				.help("run time in seconds, 0 to run until interrupted");
+
+		Namespace ns = null;
+		try {
+			ns = parser.parseArgs(args);
+		} catch (ArgumentParserException e) {
+			parser.handleError(e);
+			System.exit(1);
+		}
+
+		buildLogger();
+		Timeline.setLocalOrigin("loadgen");
+
+		InetAddress masterAddress = null;
+		try {
+			masterAddress = InetAddress.getByName(ns.getString("master"));
+		} catch (UnknownHostException e) {
+			logger.severe(String.format("Master's host name '%s' could not be resolved !%n", ns.getString("master")));
+			System.exit(1);
+		}
+
+		LoadProfile profile = new LoadProfile(ns.getDouble("fps"), ns.getDouble("realtime_factor"),
+				ns.getDouble("failure_rate"), ns.getInt("threads"));
+		final LoadGenerator generator = new LoadGenerator(masterAddress, ns.getInt("master_port"), profile);
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				generator.stop();
+			}
+		});
+
+		generator.start(ns.getInt("workers"), ns.getInt("base_port"), ns.getLong("tick"));
+		generator.reportEvery(TimeUnit.SECONDS.toMillis(ns.getLong("report")));
+
+		long duration = ns.getLong("duration");
+		if (duration > 0) {
+			Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+			generator.stop();
+			System.exit(0);
+		}
+	}
+
+	private static void buildLogger() {
+		LogManager.getLogManager().reset();
+		logger.setLevel(Level.INFO);
+
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setLevel(Level.INFO);
+		handler.setFormatter(new LogFormatter());
+		logger.addHandler(handler);
+	}
+}
@@ -0,0 +1,65 @@
+package org.lancoder.tools.loadgen;
+
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.task.mux.ClientMuxTask;
+
+/**
+ * Simulated encoding speeds and failure rate shared by the fake workers.
+ */
+public class LoadProfile {
+
+	/**
+	 * Speed of the video tasks in frames per second
+	 */
+	private final double fps;
+	/**
+	 * Speed of the tasks counted in seconds of media, in seconds per second
+	 */
+	private final double realtimeFactor;
+	/**
+	 * Probability of a task to fail before completing
+	 */
+	private final double failureRate;
+	/**
+	 * Number of tasks a fake worker accepts at once
+	 */
+	private final int threads;
+
+	public LoadProfile(double fps, double realtimeFactor, double failureRate, int threads) {
+		this.fps = fps;
+		this.realtimeFactor = realtimeFactor;
+		this.failureRate = failureRate;
+		this.threads = threads;
+	}
+
+	/**
+	 * Get the simulated speed of a task. Muxing only copies streams and completes on the next progress update.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The speed in units per second
+	 */
+	public double getSpeed(ClientTask task) {
+		if (task instanceof ClientMuxTask) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return task.getUnit() == Unit.FRAMES ? fps : realtimeFactor;
+	}
+
+	public double getFps() {
+		return fps;
+	}
+
+	public double getRealtimeFactor() {
+		return realtimeFactor;
+	}
+
+	public double getFailureRate() {
+		return failureRate;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+}
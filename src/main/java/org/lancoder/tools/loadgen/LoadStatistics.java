@@ -0,0 +1,89 @@
+package org.lancoder.tools.loadgen;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.Histogram;
+
+/**
+ * Measures of the master as seen by the fake workers.
+ */
+public class LoadStatistics {
+
+	/**
+	 * Time between a worker having room for a task and the master sending one
+	 */
+	private final Histogram schedulingLatency = new Histogram("loadgen_scheduling_seconds",
+			"Time from a free slot to the next task request", 1e-6);
+	/**
+	 * Time for the master to answer a task acceptance
+	 */
+	private final Histogram acceptLatency = new Histogram("loadgen_accept_seconds",
+			"Round trip of the task acceptance message", 1e-6);
+	private final Counter connected = new Counter("loadgen_workers_connected", "Fake workers connected");
+	private final Counter received = new Counter("loadgen_tasks_received_total", "Task requests received");
+	private final Counter refused = new Counter("loadgen_tasks_refused_total", "Task requests refused");
+	private final Counter completed = new Counter("loadgen_tasks_completed_total", "Tasks completed");
+	private final Counter failed = new Counter("loadgen_tasks_failed_total", "Tasks failed");
+	private final Counter canceled = new Counter("loadgen_tasks_canceled_total", "Tasks canceled by the master");
+	private final Counter units = new Counter("loadgen_units_total", "Frames and seconds of media encoded");
+	private final Counter sendErrors = new Counter("loadgen_send_errors_total", "Messages the master did not answer");
+	private final long started = System.nanoTime();
+
+	public void workerConnected() {
+		connected.increment();
+	}
+
+	public void taskReceived(long idleSinceNanos) {
+		received.increment();
+		if (idleSinceNanos != 0) {
+			schedulingLatency.recordSince(idleSinceNanos);
+		}
+	}
+
+	public void taskRefused() {
+		refused.increment();
+	}
+
+	public void taskAccepted(long sentNanos) {
+		acceptLatency.recordSince(sentNanos);
+	}
+
+	public void taskCompleted(long unitCount) {
+		completed.increment();
+		units.increment(unitCount);
+	}
+
+	public void taskFailed() {
+		failed.increment();
+	}
+
+	public void taskCanceled() {
+		canceled.increment();
+	}
+
+	public void sendFailed() {
+		sendErrors.increment();
+	}
+
+	/**
+	 * Get a one line summary of the statistics since the start of the load generator.
+	 *
+	 * @return The summary
+	 */
+	public String getSummary() {
+		double seconds = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)) / 1000.0;
+		return String.format("%d workers connected, %d tasks received (%d refused), %d completed (%.2f/s), "
+				+ "%d failed, %d canceled, %.0f units/s, scheduling latency p50 %s p99 %s max %s, "
+				+ "accept round trip p50 %s p99 %s, %d send errors%n", connected.getCount(), received.getCount(),
+				refused.getCount(), completed.getCount(), completed.getCount() / seconds, failed.getCount(),
+				canceled.getCount(), units.getCount() / seconds, format(schedulingLatency.getValueAtQuantile(0.5)),
+				format(schedulingLatency.getValueAtQuantile(0.99)), format(schedulingLatency.getMax()),
+				format(acceptLatency.getValueAtQuantile(0.5)), format(acceptLatency.getValueAtQuantile(0.99)),
+				sendErrors.getCount());
+	}
+
+	private static String format(long micros) {
+		return String.format("%.1fms", micros / 1000.0);
+	}
+}
@@ -0,0 +1,97 @@
+package org.lancoder.tools.simulator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jobs submitted during a simulation, read from a file or generated from a seed.
+ */
+public class ArrivalTrace {
+
+	private final ArrayList<JobArrival> arrivals = new ArrayList<>();
+
+	public ArrivalTrace(List<JobArrival> arrivals) {
+		this.arrivals.addAll(arrivals);
+		Collections.sort(this.arrivals);
+	}
+
+	/**
+	 * Read a trace file. Each line holds the arrival time in seconds, the name of the job, the length of its source in
+	 * seconds and optionally its priority, separated by commas. Empty lines and lines starting with # are ignored.
+	 *
+	 * @param file
+	 *            The trace file
+	 * @return The trace
+	 * @throws IOException
+	 *             If the file cannot be read
+	 */
+	public static ArrivalTrace load(File file) throws IOException {
+		ArrayList<JobArrival> arrivals = new ArrayList<>();
+
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				String[] fields = line.split(",");
+				if (fields.length < 3) {
+					throw new IOException(String.format("Line %d of %s has less than 3 fields", lineNumber, file));
+				}
+				try {
+					long time = (long) (Double.parseDouble(fields[0].trim()) * 1000);
+					double duration = Double.parseDouble(fields[2].trim());
+					int priority = fields.length > 3 ? Integer.parseInt(fields[3].trim()) : 0;
+					arrivals.add(new JobArrival(time, fields[1].trim(), duration, priority));
+				} catch (NumberFormatException e) {
+					throw new IOException(String.format("Line %d of %s is invalid: %s", lineNumber, file,
+							e.getMessage()));
+				}
+			}
+		}
+		return new ArrivalTrace(arrivals);
+	}
+
+	/**
+	 * Generate a trace of jobs arriving as a Poisson process, with source lengths uniformly distributed.
+	 *
+	 * @param count
+	 *            The number of jobs
+	 * @param meanInterarrival
+	 *            The mean time between two jobs in seconds
+	 * @param minDuration
+	 *            The shortest source in seconds
+	 * @param maxDuration
+	 *            The longest source in seconds
+	 * @param seed
+	 *            The seed of the generator, the same seed gives the same trace
+	 * @return The trace
+	 */
+	public static ArrivalTrace synthetic(int count, double meanInterarrival, double minDuration, double maxDuration,
+			long seed) {
+		Random random = new Random(seed);
+		ArrayList<JobArrival> arrivals = new ArrayList<>();
+		double time = 0;
+
+		for (int i = 0; i < count; i++) {
+			double duration = minDuration + random.nextDouble() * (maxDuration - minDuration);
+			int priority = random.nextInt(4) == 0 ? -1 : 0;
+			arrivals.add(new JobArrival((long) (time * 1000), String.format("job-%d", i), duration, priority));
+			time += -Math.log(1 - random.nextDouble()) * meanInterarrival;
+		}
+		return new ArrivalTrace(arrivals);
+	}
+
+	public ArrayList<JobArrival> getArrivals() {
+		return arrivals;
+	}
+}
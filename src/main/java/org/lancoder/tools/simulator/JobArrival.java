@@ -0,0 +1,51 @@
+package org.lancoder.tools.simulator;
+
+/**
+ * A job submitted to the simulated master.
+ */
+public class JobArrival implements Comparable<JobArrival> {
+
+	/**
+	 * Time of the submission in ms since the start of the simulation
+	 */
+	private final long time;
+	private final String name;
+	/**
+	 * Length of the source in seconds
+	 */
+	private final double duration;
+	private final int priority;
+
+	public JobArrival(long time, String name, double duration, int priority) {
+		this.time = time;
+		this.name = name;
+		this.duration = duration;
+		this.priority = priority;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getDuration() {
+		return duration;
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	@Override
+	public int compareTo(JobArrival other) {
+		return Long.compare(this.time, other.time);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s at %.1fs (%.0fs, priority %d)", name, time / 1000.0, duration, priority);
+	}
+}
@@ -0,0 +1,73 @@
+package org.lancoder.tools.simulator;
+
+import java.util.ArrayList;
+
+/**
+ * Modeled speed and reliability of a simulated node.
+ */
+public class NodeModel {
+
+	/**
+	 * Speed of the video tasks in frames per second
+	 */
+	private final double fps;
+	/**
+	 * Speed of the audio tasks in seconds of media per second
+	 */
+	private final double realtimeFactor;
+	/**
+	 * Probability of a task to fail before completing
+	 */
+	private final double failureRate;
+
+	public NodeModel(double fps, double realtimeFactor, double failureRate) {
+		this.fps = fps;
+		this.realtimeFactor = realtimeFactor;
+		this.failureRate = failureRate;
+	}
+
+	/**
+	 * Parse a list of node groups such as "2x240,4x60". Each group is a count and a speed in frames per second, the
+	 * count defaults to 1.
+	 *
+	 * @param spec
+	 *            The node groups separated by commas
+	 * @param realtimeFactor
+	 *            The speed of the audio tasks of all nodes
+	 * @param failureRate
+	 *            The failure rate of all nodes
+	 * @return The models, one per node
+	 */
+	public static ArrayList<NodeModel> parse(String spec, double realtimeFactor, double failureRate) {
+		ArrayList<NodeModel> models = new ArrayList<>();
+
+		for (String group : spec.split(",")) {
+			group = group.trim();
+			if (group.isEmpty()) {
+				continue;
+			}
+			int separator = group.indexOf('x');
+			int count = separator < 0 ? 1 : Integer.parseInt(group.substring(0, separator).trim());
+			double fps = Double.parseDouble(group.substring(separator + 1).trim());
+			if (count <= 0 || fps <= 0) {
+				throw new IllegalArgumentException(String.format("Invalid node group '%s'", group));
+			}
+			for (int i = 0; i < count; i++) {
+				models.add(new NodeModel(fps, realtimeFactor, failureRate));
+			}
+		}
+		return models;
+	}
+
+	public double getFps() {
+		return fps;
+	}
+
+	public double getRealtimeFactor() {
+		return realtimeFactor;
+	}
+
+	public double getFailureRate() {
+		return failureRate;
+	}
+}
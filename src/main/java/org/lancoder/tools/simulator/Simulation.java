@@ -0,0 +1,436 @@
+package org.lancoder.tools.simulator;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.lancoder.common.Node;
+import org.lancoder.common.codecs.ChannelDisposition;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.events.Event;
+import org.lancoder.common.events.EventEnum;
+import org.lancoder.common.events.EventListener;
+import org.lancoder.common.file_components.FileInfo;
+import org.lancoder.common.job.FFmpegPreset;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.job.RateControlType;
+import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
+import org.lancoder.common.network.messages.web.ApiJobRequest;
+import org.lancoder.common.network.messages.web.UserAudioPreset;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.common.status.TaskState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskProgress;
+import org.lancoder.common.task.Unit;
+import org.lancoder.master.DispatchPolicy;
+import org.lancoder.master.JobInitiator;
+import org.lancoder.master.JobManager;
+import org.lancoder.master.MasterConfig;
+import org.lancoder.master.NodeManager;
+import org.lancoder.master.dispatcher.DispatchItem;
+import org.lancoder.master.dispatcher.DispatcherPool;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * One run of the master's job and node managers against modeled nodes. Time is virtual: events are processed in
+ * order of their time and the clock jumps from one to the next, so hours of encoding are simulated in milliseconds and
+ * the same inputs always give the same result.
+ */
+public class Simulation implements EventListener {
+
+	/**
+	 * Time for a task request to be answered by a node
+	 */
+	private static final long DISPATCH_LATENCY_MSEC = 50;
+	private static final double FRAME_RATE = 24;
+
+	private final DispatchPolicy policy;
+	private final ArrivalTrace trace;
+	private final long muxMsec;
+	private final Random random;
+
+	private final PriorityQueue<SimulatedEvent> queue = new PriorityQueue<>();
+	private final HashMap<Node, NodeModel> nodeModels = new HashMap<>();
+	private final LinkedHashMap<Node, NodeActivity> activities = new LinkedHashMap<>();
+	private final LinkedHashMap<ClientTask, Run> runs = new LinkedHashMap<>();
+	private final HashMap<Job, JobArrival> jobArrivals = new HashMap<>();
+	private final ArrayList<Long> latencies = new ArrayList<>();
+	private final JobManager jobManager;
+	private final SimulatedDispatcherPool dispatcherPool;
+	private final JobInitiator jobInitiator;
+
+	private long now;
+	private long sequence;
+	private long lastCompletion;
+	private boolean updatePending;
+	private int tasksCompleted;
+	private int tasksFailed;
+	private int tasksMoved;
+
+	/**
+	 * Prepare a simulation.
+	 *
+	 * @param policy
+	 *            The dispatch policy of the job manager
+	 * @param trace
+	 *            The jobs to submit
+	 * @param models
+	 *            The nodes of the cluster
+	 * @param muxSeconds
+	 *            The time for the master to mux a job once its tasks are encoded
+	 * @param seed
+	 *            The seed of the task failures
+	 */
+	public Simulation(DispatchPolicy policy, ArrivalTrace trace, List<NodeModel> models, double muxSeconds, long seed) {
+		this.policy = policy;
+		this.trace = trace;
+		this.muxMsec = (long) (muxSeconds * 1000);
+		this.random = new Random(seed);
+
+		MasterConfig config = new MasterConfig();
+		config.setAbsoluteSharedFolder("/shared");
+		config.setTempEncodingFolder("/tmp");
+		NodeManager nodeManager = new NodeManager(this, config, null);
+		this.dispatcherPool = new SimulatedDispatcherPool();
+		this.jobInitiator = new JobInitiator(null, config);
+		this.jobManager = new JobManager(this, nodeManager, dispatcherPool, null, jobInitiator);
+		this.jobManager.setPolicy(policy);
+
+		ArrayList<CodecEnum> codecs = new ArrayList<>(Arrays.asList(CodecEnum.getVideoCodecs()));
+		codecs.addAll(Arrays.asList(CodecEnum.getAudioCodecs()));
+		// Random identifiers like the ones of the node manager, so the order of the nodes does not follow their speed
+		Random unids = new Random(seed);
+		for (int i = 0; i < models.size(); i++) {
+			NodeModel model = models.get(i);
+			String name = String.format("node-%d", i);
+			String unid = String.format("%016x", unids.nextLong());
+			Node node = new Node(InetAddress.getLoopbackAddress(), 2000 + i, name, codecs, 2, unid);
+			node.setStatus(NodeState.FREE);
+			// The speed the status reports of this node would measure
+			node.setEncodingSpeed(model.getFps());
+			nodeManager.getNodeHashMap().put(node.getUnid(), node);
+			nodeModels.put(node, model);
+			activities.put(node, new NodeActivity());
+		}
+	}
+
+	/**
+	 * Run the simulation until all events are processed.
+	 *
+	 * @return The measures of the run
+	 */
+	public SimulationResult run() {
+		for (final JobArrival arrival : trace.getArrivals()) {
+			schedule(arrival.getTime(), new Runnable() {
+				@Override
+				public void run() {
+					submit(arrival);
+				}
+			});
+		}
+
+		SimulatedEvent event;
+		while ((event = queue.poll()) != null) {
+			now = event.time;
+			event.action.run();
+		}
+
+		long start = trace.getArrivals().isEmpty() ? 0 : trace.getArrivals().get(0).getTime();
+		long makespan = lastCompletion - start;
+		LinkedHashMap<String, Double> utilization = new LinkedHashMap<>();
+		for (Node node : activities.keySet()) {
+			NodeActivity activity = activities.get(node);
+			utilization.put(node.getName(), makespan <= 0 ? 0 : (double) activity.busyMsec / makespan);
+		}
+		return new SimulationResult(policy, trace.getArrivals().size(), makespan, latencies, utilization,
+				tasksCompleted, tasksFailed, tasksMoved);
+	}
+
+	private void schedule(long time, Runnable action) {
+		queue.add(new SimulatedEvent(time, sequence++, action));
+	}
+
+	private void scheduleUpdate() {
+		if (updatePending) {
+			return;
+		}
+		updatePending = true;
+		schedule(now, new Runnable() {
+			@Override
+			public void run() {
+				updatePending = false;
+				refreshProgress();
+				jobManager.updateNodesWork();
+			}
+		});
+	}
+
+	private void submit(JobArrival arrival) {
+		String name = arrival.getName();
+		Job job = jobInitiator.createJob(getRequest(name), name, new File(name + ".mkv"), new File("encodes", name),
+				getFileInfo(name, arrival.getDuration()));
+		job.setTimeAdded(arrival.getTime());
+		job.setPriority(arrival.getPriority());
+		jobArrivals.put(job, arrival);
+		jobManager.addJob(job);
+	}
+
+	/**
+	 * Start the modeled encoding of a task accepted by a node.
+	 */
+	private void start(final ClientTask task, final Node node) {
+		NodeModel model = nodeModels.get(node);
+		double speed = task.getUnit() == Unit.FRAMES ? model.getFps() : model.getRealtimeFactor();
+		double units = (double) task.getUnitCount() * task.getStepCount();
+		double fraction = 1;
+		boolean fails = random.nextDouble() < model.getFailureRate();
+		if (fails) {
+			fraction = random.nextDouble();
+		}
+
+		final Run run = new Run(now, speed, node, fails);
+		runs.put(task, run);
+		activities.get(node).start(now);
+
+		schedule(now + (long) Math.ceil(units * fraction / speed * 1000), new Runnable() {
+			@Override
+			public void run() {
+				finish(task, run);
+			}
+		});
+	}
+
+	private void finish(ClientTask task, Run run) {
+		if (run.canceled) {
+			return;
+		}
+		runs.remove(task);
+		activities.get(run.node).stop(now);
+
+		if (run.fails) {
+			task.fail();
+			tasksFailed++;
+		} else {
+			task.completed();
+			tasksCompleted++;
+		}
+		jobManager.taskUpdated(task, run.node);
+		scheduleUpdate();
+	}
+
+	private void cancel(ClientTask task) {
+		Run run = runs.remove(task);
+		if (run != null) {
+			run.canceled = true;
+			activities.get(run.node).stop(now);
+			tasksMoved++;
+		}
+	}
+
+	/**
+	 * Bring the progress of the running tasks to the virtual time, as the status reports of the nodes would.
+	 */
+	private void refreshProgress() {
+		for (ClientTask task : runs.keySet()) {
+			Run run = runs.get(task);
+			TaskProgress progress = task.getProgress();
+			long unitCount = task.getUnitCount();
+			double done = Math.min((double) unitCount * task.getStepCount(), (now - run.started) / 1000.0 * run.speed);
+
+			int completedSteps = (int) Math.min(task.getStepCount() - 1, Math.floor(done / unitCount));
+
+			while (progress.getCurrentStepIndex() <= completedSteps) {
+				progress.update(unitCount);
+				progress.completeStep();
+			}
+			long stepUnits = (long) (done - (double) (progress.getCurrentStepIndex() - 1) * unitCount);
+			progress.update(Math.max(0, Math.min(unitCount, stepUnits)));
+		}
+	}
+
+	@Override
+	public void handle(Event event) {
+		switch (event.getCode()) {
+		case WORK_NEEDS_UPDATE:
+			scheduleUpdate();
+			break;
+		case JOB_ENCODING_COMPLETED:
+			final Job job = (Job) event.getObject();
+			schedule(now + muxMsec, new Runnable() {
+				@Override
+				public void run() {
+					job.complete();
+					lastCompletion = now;
+					latencies.add(now - jobArrivals.get(job).getTime());
+				}
+			});
+			break;
+		case DISPATCH_ITEM_REFUSED:
+			jobManager.handle(event);
+			break;
+		default:
+			break;
+		}
+	}
+
+	private static ApiJobRequest getRequest(String name) {
+		ApiJobRequest request = new ApiJobRequest();
+		request.setName(name);
+		request.setInputFile(name + ".mkv");
+		request.setVideoCodec(CodecEnum.H264);
+		request.setRateControlType(RateControlType.VBR);
+		request.setRate(1500);
+		request.setPasses(2);
+		request.setPreset(FFmpegPreset.MEDIUM);
+		request.setExtraEncoderArgs("");
+		request.setAudioPreset(UserAudioPreset.MANUAL);
+		request.setAudioCodec(CodecEnum.VORBIS);
+		request.setAudioRateControlType(RateControlType.CRF);
+		request.setAudioRate(5);
+		request.setAudioChannels(ChannelDisposition.STEREO);
+		request.setAudioSampleRate(48000);
+		return request;
+	}
+
+	/**
+	 * Build the source information ffprobe would give for a file of one video and one audio stream.
+	 */
+	private static FileInfo getFileInfo(String name, double duration) {
+		JsonObject format = new JsonObject();
+		format.addProperty("bit_rate", 5000000);
+		format.addProperty("size", (long) (duration * 5000000 / 8));
+		format.addProperty("duration", duration);
+		format.addProperty("format_name", "matroska,webm");
+
+		JsonObject video = new JsonObject();
+		video.addProperty("index", 0);
+		video.addProperty("codec_name", "h264");
+		video.addProperty("codec_type", "video");
+		video.addProperty("r_frame_rate", String.format("%.0f/1", FRAME_RATE));
+		video.addProperty("width", 1920);
+		video.addProperty("height", 1080);
+
+		JsonObject audio = new JsonObject();
+		audio.addProperty("index", 1);
+		audio.addProperty("codec_name", "aac");
+		audio.addProperty("codec_type", "audio");
+		audio.addProperty("channels", 2);
+		audio.addProperty("sample_rate", 48000);
+
+		JsonArray streams = new JsonArray();
+		streams.add(video);
+		streams.add(audio);
+		JsonObject json = new JsonObject();
+		json.add("format", format);
+		json.add("streams", streams);
+		return new FileInfo(json, name + ".mkv");
+	}
+
+	/**
+	 * Dispatcher answering the task requests after a fixed latency instead of sending them to the nodes.
+	 */
+	private class SimulatedDispatcherPool extends DispatcherPool {
+
+		public SimulatedDispatcherPool() {
+			super(Simulation.this);
+		}
+
+		@Override
+		public synchronized boolean add(final DispatchItem item) {
+			final ClientTask task = ((TaskRequestMessage) item.getMessage()).getTask();
+
+			switch (item.getMessage().getCode()) {
+			case TASK_REQUEST:
+				schedule(now + DISPATCH_LATENCY_MSEC, new Runnable() {
+					@Override
+					public void run() {
+						if (task.getProgress().getTaskState() != TaskState.TASK_ASSIGNED) {
+							return;
+						}
+						taskAccepted(item);
+						jobManager.handle(new Event(EventEnum.TASK_CONFIRMED, task));
+						jobManager.taskUpdated(task, item.getNode());
+						start(task, item.getNode());
+					}
+				});
+				break;
+			case UNASSIGN_TASK:
+				cancel(task);
+				break;
+			default:
+				break;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Encoding of a task on a node.
+	 */
+	private static class Run {
+
+		private final long started;
+		private final double speed;
+		private final Node node;
+		private final boolean fails;
+		private boolean canceled;
+
+		public Run(long started, double speed, Node node, boolean fails) {
+			this.started = started;
+			this.speed = speed;
+			this.node = node;
+			this.fails = fails;
+		}
+	}
+
+	/**
+	 * Time a node spent with at least one task.
+	 */
+	private static class NodeActivity {
+
+		private int running;
+		private long since;
+		private long busyMsec;
+
+		public void start(long time) {
+			if (running++ == 0) {
+				since = time;
+			}
+		}
+
+		public void stop(long time) {
+			if (--running == 0) {
+				busyMsec += time - since;
+			}
+		}
+	}
+
+	private static class SimulatedEvent implements Comparable<SimulatedEvent> {
+
+		private final long time;
+		private final long sequence;
+		private final Runnable action;
+
+		public SimulatedEvent(long time, long sequence, Runnable action) {
+			this.time = time;
+			this.sequence = sequence;
+			this.action = action;
+		}
+
+		@Override
+		public int compareTo(SimulatedEvent other) {
+			if (this.time != other.time) {
+				return Long.compare(this.time, other.time);
+			}
+			return Long.compare(this.sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.lancoder.tools.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.lancoder.master.DispatchPolicy;
+
+/**
+ * Measures of a simulation. Times are in ms of virtual time.
+ */
+public class SimulationResult {
+
+	private final DispatchPolicy policy;
+	private final int jobCount;
+	private final long makespan;
+	private final ArrayList<Long> latencies;
+	private final LinkedHashMap<String, Double> utilization;
+	private final int tasksCompleted;
+	private final int tasksFailed;
+	private final int tasksMoved;
+
+	public SimulationResult(DispatchPolicy policy, int jobCount, long makespan, List<Long> latencies,
+			LinkedHashMap<String, Double> utilization, int tasksCompleted, int tasksFailed, int tasksMoved) {
+		this.policy = policy;
+		this.jobCount = jobCount;
+		this.makespan = makespan;
+		this.latencies = new ArrayList<>(latencies);
+		Collections.sort(this.latencies);
+		this.utilization = utilization;
+		this.tasksCompleted = tasksCompleted;
+		this.tasksFailed = tasksFailed;
+		this.tasksMoved = tasksMoved;
+	}
+
+	public DispatchPolicy getPolicy() {
+		return policy;
+	}
+
+	public int getJobCount() {
+		return jobCount;
+	}
+
+	public int getJobsCompleted() {
+		return latencies.size();
+	}
+
+	/**
+	 * Get the time from the first submission to the last completion.
+	 *
+	 * @return The makespan in ms
+	 */
+	public long getMakespan() {
+		return makespan;
+	}
+
+	/**
+	 * Get the latencies of the completed jobs, from submission to completion, in ascending order.
+	 *
+	 * @return The latencies in ms
+	 */
+	public ArrayList<Long> getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * Get a latency percentile by the nearest rank.
+	 *
+	 * @param quantile
+	 *            The quantile between 0 and 1
+	 * @return The latency in ms or 0 if no job completed
+	 */
+	public long getLatencyAtQuantile(double quantile) {
+		if (latencies.isEmpty()) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(quantile * latencies.size());
+		return latencies.get(Math.min(latencies.size(), Math.max(1, rank)) - 1);
+	}
+
+	public double getMeanLatency() {
+		if (latencies.isEmpty()) {
+			return 0;
+		}
+		double sum = 0;
+		for (long latency : latencies) {
+			sum += latency;
+		}
+		return sum / latencies.size();
+	}
+
+	/**
+	 * Get the fraction of the makespan each node spent with at least one task, by node name.
+	 *
+	 * @return The utilization of the nodes
+	 */
+	public LinkedHashMap<String, Double> getUtilization() {
+		return utilization;
+	}
+
+	public double getMeanUtilization() {
+		if (utilization.isEmpty()) {
+			return 0;
+		}
+		double sum = 0;
+		for (double value : utilization.values()) {
+			sum += value;
+		}
+		return sum / utilization.size();
+	}
+
+	public int getTasksCompleted() {
+		return tasksCompleted;
+	}
+
+	public int getTasksFailed() {
+		return tasksFailed;
+	}
+
+	/**
+	 * Get the count of tasks taken back from a node to be moved to a faster one.
+	 *
+	 * @return The count of moved tasks
+	 */
+	public int getTasksMoved() {
+		return tasksMoved;
+	}
+
+	/**
+	 * Get a one line summary of the result.
+	 *
+	 * @return The summary
+	 */
+	public String getSummary() {
+		return String.format("%-11s %4d/%-4d jobs  makespan %9.1fs  latency mean %8.1fs p50 %8.1fs p95 %8.1fs "
+				+ "max %8.1fs  utilization %5.1f%%  tasks %d completed %d failed %d moved", policy, getJobsCompleted(),
+				jobCount, makespan / 1000.0, getMeanLatency() / 1000.0, getLatencyAtQuantile(0.5) / 1000.0,
+				getLatencyAtQuantile(0.95) / 1000.0, getLatencyAtQuantile(1) / 1000.0, getMeanUtilization() * 100,
+				tasksCompleted, tasksFailed, tasksMoved);
+	}
+
+	/**
+	 * Get the utilization of each node on its own line.
+	 *
+	 * @return The utilization report
+	 */
+	public String getUtilizationReport() {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<String, Double> entry : utilization.entrySet()) {
+			sb.append(String.format("  %-12s %5.1f%%%n", entry.getKey(), entry.getValue() * 100));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,160 @@
+package org.lancoder.tools.simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import org.lancoder.common.logging.LogFormatter;
+import org.lancoder.master.DispatchPolicy;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.ArgumentParserException;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+/**
+ * Compares the dispatch policies of the master on the same cluster and the same jobs, in virtual time.
+ */
+public class Simulator {
+
+	private final static Logger logger = Logger.getLogger("lancoder");
+
+	private final ArrivalTrace trace;
+	private final List<NodeModel> models;
+	private final double muxSeconds;
+	private final long seed;
+
+	public Simulator(ArrivalTrace trace, List<NodeModel> models, double muxSeconds, long seed) {
+		this.trace = trace;
+		this.models = models;
+		this.muxSeconds = muxSeconds;
+		this.seed = seed;
+	}
+
+	/**
+	 * Run a simulation for each policy. All runs see the same failures.
+	 *
+	 * @param policies
+	 *            The policies to compare
+	 * @return The results, in the order of the policies
+	 */
+	public ArrayList<SimulationResult> compare(List<DispatchPolicy> policies) {
+		ArrayList<SimulationResult> results = new ArrayList<>();
+		for (DispatchPolicy policy : policies) {
+			results.add(new Simulation(policy, trace, models, muxSeconds, seed).run());
+		}
+		return results;
+	}
+
+	public static void main(String[] args) {
+		ArgumentParser parser = ArgumentParsers.newArgumentParser("lancoder-simulator")
+				.defaultHelp(true)
+				.description("Simulate the dispatch policies of a lancoder master in virtual time");
+		parser.addArgument("--policy")
+				.setDefault("all")
+				.help("policy to simulate (FIFO, PRIORITY, THROUGHPUT, SPECULATIVE) or all");
+		parser.addArgument("--nodes")
+				.setDefault("2x240,4x120,2x30")
+				.help("node groups as count x video fps, separated by commas");
+		parser.addArgument("--realtime-factor")
+				.type(Double.class)
+				.setDefault(60.0)
+				.help("speed of the audio tasks, in seconds of media per second");
+		parser.addArgument("--failure-rate")
+				.type(Double.class)
+				.setDefault(0.0)
+				.help("probability of a task to fail before completing");
+		parser.addArgument("--trace")
+				.help("file of arrivals as 'seconds,name,source length in seconds[,priority]', replaces the generated jobs");
+		parser.addArgument("--jobs")
+				.type(Integer.class)
+				.setDefault(20)
+				.help("number of generated jobs");
+		parser.addArgument("--interarrival")
+				.type(Double.class)
+				.setDefault(120.0)
+				.help("mean time in seconds between two generated jobs");
+		parser.addArgument("--min-length")
+				.type(Double.class)
+				.setDefault(600.0)
+				.help("shortest generated source in seconds");
+		parser.addArgument("--max-length")
+				.type(Double.class)
+				.setDefault(3600.0)
+				.help("longest generated source in seconds");
+		parser.addArgument("--mux")
+				.type(Double.class)
+				.setDefault(30.0)
+				.help("time in seconds for the master to mux a job");
+		parser.addArgument("--seed")
+				.type(Long.class)
+				.setDefault(1L)
+				.help("seed of the generated jobs and of the failures");
+		parser.addArgument("--verbose", "-v")
+				.action(Arguments.storeTrue())
+				.help("print the utilization of each node");
+
+		Namespace ns = null;
+		try {
+			ns = parser.parseArgs(args);
+		} catch (ArgumentParserException e) {
+			parser.handleError(e);
+			System.exit(1);
+		}
+
+		buildLogger();
+
+		ArrivalTrace trace = null;
+		if (ns.getString("trace") != null) {
+			try {
+				trace = ArrivalTrace.load(new File(ns.getString("trace")));
+			} catch (IOException e) {
+				logger.severe(String.format("Could not read the trace: %s%n", e.getMessage()));
+				System.exit(1);
+			}
+		} else {
+			trace = ArrivalTrace.synthetic(ns.getInt("jobs"), ns.getDouble("interarrival"),
+					ns.getDouble("min_length"), ns.getDouble("max_length"), ns.getLong("seed"));
+		}
+
+		ArrayList<DispatchPolicy> policies = new ArrayList<>();
+		String policy = ns.getString("policy");
+		if (policy.equalsIgnoreCase("all")) {
+			for (DispatchPolicy p : DispatchPolicy.values()) {
+				policies.add(p);
+			}
+		} else {
+			policies.add(DispatchPolicy.fromName(policy));
+		}
+
+		List<NodeModel> models = NodeModel.parse(ns.getString("nodes"), ns.getDouble("realtime_factor"),
+				ns.getDouble("failure_rate"));
+		Simulator simulator = new Simulator(trace, models, ns.getDouble("mux"), ns.getLong("seed"));
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d jobs on %d nodes%n", trace.getArrivals().size(), models.size()));
+		for (SimulationResult result : simulator.compare(policies)) {
+			sb.append(String.format("%s%n", result.getSummary()));
+			if (ns.getBoolean("verbose")) {
+				sb.append(result.getUtilizationReport());
+			}
+		}
+		logger.info(sb.toString());
+	}
+
+	private static void buildLogger() {
+		LogManager.getLogManager().reset();
+		logger.setLevel(Level.INFO);
+
+		ConsoleHandler handler = new ConsoleHandler();
+		handler.setLevel(Level.INFO);
+		handler.setFormatter(new LogFormatter());
+		logger.addHandler(handler);
+	}
+}
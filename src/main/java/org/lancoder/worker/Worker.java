@@ -1,5 +1,6 @@
 package org.lancoder.worker;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -9,6 +10,7 @@ import org.lancoder.common.Container;
 import org.lancoder.common.FilePathManager;
 import org.lancoder.common.Node;
 import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.EncodeSpeed;
 import org.lancoder.common.config.Config;
 import org.lancoder.common.config.ConfigManager;
 import org.lancoder.common.exceptions.InvalidConfigurationException;
@@ -24,28 +26,58 @@ import org.lancoder.common.status.NodeState;
 import org.lancoder.common.task.ClientTask;
 import org.lancoder.common.task.TaskReport;
 import org.lancoder.common.task.audio.ClientAudioTask;
+import org.lancoder.common.task.mux.ClientMuxTask;
 import org.lancoder.common.task.video.ClientVideoTask;
 import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.common.third_parties.MkvMerge;
+import org.lancoder.common.timeline.Timeline;
 import org.lancoder.ffmpeg.FFmpegWrapper;
+import org.lancoder.worker.benchmark.EncodeBenchmark;
+import org.lancoder.worker.capacity.CapacityDetector;
+import org.lancoder.worker.checkpoint.CheckpointStore;
 import org.lancoder.worker.contacter.MasterContacter;
 import org.lancoder.worker.contacter.MasterContacterListener;
 import org.lancoder.worker.converter.ConverterListener;
+import org.lancoder.worker.converter.ConverterMetrics;
 import org.lancoder.worker.converter.audio.AudioConverterPool;
+import org.lancoder.worker.converter.mux.MuxConverterPool;
 import org.lancoder.worker.converter.video.VideoConverterPool;
 import org.lancoder.worker.logging.LogSenderPool;
+import org.lancoder.worker.scratch.ScratchSpaceManager;
 import org.lancoder.worker.server.WorkerServer;
 import org.lancoder.worker.server.WorkerServerListener;
+import org.lancoder.worker.telemetry.TelemetrySampler;
 
 public class Worker extends Container implements WorkerServerListener, MasterContacterListener, ConverterListener {
 
 	private Node node;
 	private AudioConverterPool audioPool;
 	private VideoConverterPool videoPool;
+	private MuxConverterPool muxPool;
 	private MasterContacter masterContacter;
 	private InetAddress masterInetAddress = null;
 	private int threadLimit;
+	/**
+	 * Memory of the worker in MiB, 0 if unknown
+	 */
+	private int memoryLimit;
 	private TaskHandlerPool taskHandler;
 	private ConfigManager<WorkerConfig> configManager;
+	private ConverterMetrics converterMetrics = new ConverterMetrics();
+	private ArrayList<CodecEnum> codecs = new ArrayList<>();
+	private EncodeBenchmark encodeBenchmark;
+	private TelemetrySampler telemetrySampler;
+	private ScratchSpaceManager scratchSpace;
+	private CheckpointStore checkpoints;
+	/**
+	 * Ended tasks whose final report did not reach the master yet. They are sent with every report until the master
+	 * answers one the worker pushed.
+	 */
+	private ArrayList<ClientTask> unreportedTasks = new ArrayList<>();
+	/**
+	 * The encode benchmark ran again since the last status report
+	 */
+	private volatile boolean encodeSpeedsUpdated;
 
 	@Override
 	public void setConfigManager(ConfigManager<? extends Config> config) {
@@ -67,9 +99,18 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public void bootstrap() {
 		Logger logger = Logger.getLogger("lancoder");
 
-		// Get number of available threads
-		threadLimit = Runtime.getRuntime().availableProcessors();
-		logger.fine(String.format("Detected %d threads available.%n", threadLimit));
+		// Containers limit cores and memory with cgroups while the host reports all of them
+		CapacityDetector detector = new CapacityDetector();
+		int cpus = detector.detectCpus();
+		int memory = detector.detectMemory();
+		logger.fine(String.format("Detected %d threads and %d MiB of memory available.%n", cpus, memory));
+
+		// Keep reserved resources to the host, but always leave room for one task
+		threadLimit = Math.max(1, cpus - Math.max(0, getConfig().getReservedCores()));
+		memoryLimit = memory > 0 ? Math.max(1, memory - Math.max(0, getConfig().getMemoryHeadroom())) : 0;
+		if (threadLimit != cpus || memoryLimit != memory) {
+			logger.fine(String.format("Using %d threads and %d MiB of memory for tasks.%n", threadLimit, memoryLimit));
+		}
 
 		// Parse master ip address or host name
 		try {
@@ -78,42 +119,88 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 			throw new InvalidConfigurationException(String.format("Master's host name '%s' could not be resolved !"
 					+ "\nOriginal exception: '%s'", getConfig().getMasterIpAddress(), e.getMessage()));
 		}
+		Timeline.setLocalOrigin(getConfig().getName());
 		super.bootstrap();
+		// Tasks of a previous run are gone, the master dispatches them again and they resume from their checkpoints
+		int expired = checkpoints.expire();
+		if (expired > 0) {
+			logger.info(String.format("Deleted %d expired checkpoints from the temporary folder.%n", expired));
+		}
+		int orphans = scratchSpace.cleanOrphans();
+		if (orphans > 0) {
+			logger.info(String.format("Deleted %d orphaned job folders from the temporary folder.%n", orphans));
+		}
 		// Get codecs
-		ArrayList<CodecEnum> codecs = FFmpegWrapper.getAvailableCodecs(getFFmpeg());
+		codecs = FFmpegWrapper.getAvailableCodecs(getFFmpeg());
 		node = new Node(null, getConfig().getListenPort(), getConfig().getName(), codecs, threadLimit, getConfig()
 				.getUniqueID());
+		node.setMkvMergeInstalled(getMkvMerge().isInstalled());
+		node.setMemoryCapacity(memoryLimit);
 
 		logger.fine(String.format("Detected %d available encoders: %s%n", codecs.size(), codecs));
+
+		if (encodeBenchmark != null) {
+			logger.info("Benchmarking encoders, this can take a minute on the first start.\n");
+			node.setEncodeSpeeds(encodeBenchmark.measure(codecs, true));
+			logger.info(String.format("Encode benchmark: %s%n", node.getEncodeSpeeds()));
+		}
 	}
 
 	@Override
 	protected void registerThirdParties() {
 		registerThirdParty(new FFmpeg(getConfig()));
+		registerThirdParty(new MkvMerge(getConfig()));
 	}
 
 	@Override
 	protected void registerServices() {
 		super.registerServices();
 		filePathManager = new FilePathManager(getConfig());
+		scratchSpace = new ScratchSpaceManager(new File(getConfig().getTempEncodingFolder()));
+		checkpoints = new CheckpointStore(filePathManager);
 		// TODO change to current instance
 		audioPool = new AudioConverterPool(threadLimit, this, filePathManager, getFFmpeg());
 		services.add(audioPool);
 
-		// TODO change to current instance
-		videoPool = new VideoConverterPool(1, this, filePathManager, getFFmpeg());
+		// Video tasks are limited by their cost, a cheap encode leaves cores to other tasks
+		videoPool = new VideoConverterPool(threadLimit, this, filePathManager, getFFmpeg(), getConfig()
+				.isEncodeToSharedFolder());
 		services.add(videoPool);
 
+		muxPool = new MuxConverterPool(1, this, filePathManager, getFFmpeg(), getMkvMerge());
+		services.add(muxPool);
+
 		taskHandler = new TaskHandlerPool(this);
 		services.add(taskHandler);
 
-		services.add(new WorkerServer(this, getConfig().getListenPort()));
+		WorkerServer server = new WorkerServer(this, getConfig().getListenPort());
+		services.add(server);
 
 		masterContacter = new MasterContacter(getMasterInetAddress(), getMasterPort(), this);
 		services.add(masterContacter);
 
+		if (getConfig().isEncodeBenchmark()) {
+			// Without periodic runs the benchmark only measures on startup
+			int hours = getConfig().getEncodeBenchmarkHours();
+			encodeBenchmark = new EncodeBenchmark(this, getFFmpeg(), threadLimit, hours);
+			if (hours > 0) {
+				services.add(encodeBenchmark);
+			}
+		}
+
+		if (getConfig().getTelemetryInterval() > 0) {
+			telemetrySampler = new TelemetrySampler(scratchSpace, getConfig().getTelemetryInterval());
+			services.add(telemetrySampler);
+		}
+
 		LogSenderPool logRecordSender = new LogSenderPool(this);
 		services.add(logRecordSender);
+
+		if (getConfig().isVirtualThreads()) {
+			server.useVirtualThreads(getConfig().getIoConcurrencyLimit());
+			// Records are still sent one at a time so the master receives them in order
+			logRecordSender.useVirtualThreads(1);
+		}
 		logger.addHandler(new ClusterLogStagingHandler(logRecordSender));
 	}
 
@@ -128,8 +215,10 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 
 	public synchronized void stopWork(ClientTask t) {
 		this.getCurrentTasks().remove(t);
+		scratchSpace.release(t);
 		audioPool.cancel(t);
 		videoPool.cancel(t);
+		muxPool.cancel(t);
 		if (getCurrentTasks().size() == 0) {
 			this.updateStatus(NodeState.FREE);
 		}
@@ -147,21 +236,30 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public synchronized boolean startWork(ClientTask task) {
 		Logger logger = Logger.getLogger("lancoder");
 		logger.fine(String.format("Received %s from master.%n", task.toString()));
+		task.getTimeline().mark("received");
 
 		boolean accepted = false;
-		int totalUsedThreads = videoPool.getActiveThreadCount() + audioPool.getActiveThreadCount();
 
 		if (getPendingTasks().size() != 1) {
 			logger.fine("Refusing task because worker has " + (getPendingTasks().size() - 1) + " other pending tasks.\n");
-		} else if (task instanceof ClientVideoTask && videoPool.hasFreeConverters() && totalUsedThreads < threadLimit) {
+		} else if ((task instanceof ClientVideoTask || task instanceof ClientAudioTask) && !node.canFit(task)) {
+			logger.fine(String.format("Refusing task costing %s as the other tasks of the worker leave too little of %s.%n",
+					task.getCost(), node.getCapacity()));
+		} else if (!scratchSpace.reserve(task)) {
+			logger.warning(String.format("Refusing %s as the temporary folder is short of space (%d MiB free).%n",
+					task, scratchSpace.getFreeSpace()));
+		} else if (task instanceof ClientVideoTask && videoPool.hasFreeConverters()) {
 			ClientVideoTask vTask = (ClientVideoTask) task;
 			videoPool.add(vTask);
 			accepted = true;
-		} else if (task instanceof ClientAudioTask && this.audioPool.hasFreeConverters()
-				&& totalUsedThreads < threadLimit) {
+		} else if (task instanceof ClientAudioTask && this.audioPool.hasFreeConverters()) {
 			ClientAudioTask aTask = (ClientAudioTask) task;
 			audioPool.add(aTask);
 			accepted = true;
+		} else if (task instanceof ClientMuxTask && muxPool.hasFreeConverters()) {
+			// Muxing is not bound by the cpu and does not use the thread budget
+			muxPool.add((ClientMuxTask) task);
+			accepted = true;
 		}
 
 		if (accepted) {
@@ -173,8 +271,10 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 					getMasterPort());
 		} else {
 			logger.fine(String.format("Refused %s.%n", task));
+			task.getTimeline().mark("refused");
 
 			node.removeTask(task);
+			scratchSpace.release(task);
 			MessageSender.send(new TaskRequestMessage(task, ClusterProtocol.TASK_REFUSED), getMasterInetAddress(),
 					getMasterPort());
 		}
@@ -187,7 +287,35 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	 * @return the StatusReport object
 	 */
 	public synchronized StatusReport getStatusReport() {
-		return new StatusReport(getStatus(), getConfig().getUniqueID(), getTaskReports());
+		StatusReport report = new StatusReport(getStatus(), getConfig().getUniqueID(), getTaskReports());
+		if (encodeSpeedsUpdated) {
+			encodeSpeedsUpdated = false;
+			report.setEncodeSpeeds(node.getEncodeSpeeds());
+		}
+		if (telemetrySampler != null) {
+			report.setTelemetry(telemetrySampler.getLatest());
+		}
+		report.setCheckpoints(checkpoints.list());
+		return report;
+	}
+
+	/**
+	 * Replace the speeds of the encode benchmark and send them to the master with the next status report.
+	 *
+	 * @param encodeSpeeds
+	 *            The speeds measured by the benchmark
+	 */
+	public void updateEncodeSpeeds(ArrayList<EncodeSpeed> encodeSpeeds) {
+		if (encodeSpeeds.isEmpty()) {
+			return;
+		}
+		node.setEncodeSpeeds(encodeSpeeds);
+		encodeSpeedsUpdated = true;
+		Logger.getLogger("lancoder").fine(String.format("Encode benchmark: %s%n", encodeSpeeds));
+	}
+
+	public ArrayList<CodecEnum> getCodecs() {
+		return codecs;
 	}
 
 	/**
@@ -195,10 +323,12 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	 *
 	 * @return null if no current task
 	 */
-	public ArrayList<TaskReport> getTaskReports() {
+	public synchronized ArrayList<TaskReport> getTaskReports() {
 		ArrayList<TaskReport> reports = new ArrayList<TaskReport>();
 
-		for (ClientTask task : this.getCurrentTasks()) {
+		ArrayList<ClientTask> tasks = new ArrayList<>(this.getCurrentTasks());
+		tasks.addAll(unreportedTasks);
+		for (ClientTask task : tasks) {
 			TaskReport report = new TaskReport(getConfig().getUniqueID(), task);
 
 			if (report != null) {
@@ -238,9 +368,24 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public boolean notifyMasterStatusChange() {
 		StatusReport report = this.getStatusReport();
 		Message response = MessageSender.send(report, getMasterInetAddress(), getMasterPort());
+		if (response != null) {
+			reported(report);
+		}
 		return (response != null && response.getCode() == ClusterProtocol.BYE);
 	}
 
+	/**
+	 * Forget the ended tasks of a report the master received.
+	 *
+	 * @param report
+	 *            The report
+	 */
+	private synchronized void reported(StatusReport report) {
+		for (TaskReport taskReport : report.getTaskReports()) {
+			unreportedTasks.remove(taskReport.getTask());
+		}
+	}
+
 	public int getListenPort() {
 		return getConfig().getListenPort();
 	}
@@ -289,6 +434,7 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 
 	@Override
 	public StatusReport statusRequest() {
+		// The reply may not reach the master, ended tasks are only forgotten once a pushed report is answered
 		return getStatusReport();
 	}
 
@@ -335,6 +481,8 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 
 	@Override
 	public synchronized void taskStarted(ClientTask task) {
+		converterMetrics.taskStarted(task);
+		task.getTimeline().begin("task");
 		task.start();
 		if (this.getStatus() != NodeState.WORKING) {
 			updateStatus(NodeState.WORKING);
@@ -345,6 +493,8 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public synchronized void taskCompleted(ClientTask task) {
 		Logger logger = Logger.getLogger("lancoder");
 		logger.fine(String.format("Completed %s.%n", task));
+		converterMetrics.taskEnded(task, "completed");
+		task.getTimeline().end("task");
 
 		task.getProgress().complete();
 		notifyAndRemove(task);
@@ -354,6 +504,9 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public synchronized void taskCancelled(ClientTask task) {
 		Logger logger = Logger.getLogger("lancoder");
 		logger.fine(String.format("Cancelled %s.%n", task));
+		converterMetrics.taskEnded(task, "canceled");
+		task.getTimeline().end("task");
+		task.getTimeline().mark("canceled");
 
 		task.getProgress().reset();
 		notifyAndRemove(task);
@@ -363,17 +516,24 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	public synchronized void taskFailed(ClientTask task) {
 		Logger logger = Logger.getLogger("lancoder");
 		logger.fine(String.format("Failed %s.%n", task));
+		converterMetrics.taskEnded(task, "failed");
+		task.getTimeline().end("task");
+		task.getTimeline().mark("failed");
 
 		task.fail();
 		notifyAndRemove(task);
 	}
 
 	private void notifyAndRemove(ClientTask task) {
-		notifyMasterStatusChange(); // Master will update the task's status
+		// Kept until the master receives the final state of the task, it may be unreachable for a moment
+		unreportedTasks.add(task);
 		this.getCurrentTasks().remove(task);
+		scratchSpace.release(task);
 
-		if (this.getCurrentTasks().isEmpty()) {
+		if (this.getCurrentTasks().isEmpty() && getStatus() != NodeState.NOT_CONNECTED) {
 			updateStatus(NodeState.FREE);
+		} else {
+			notifyMasterStatusChange(); // Master will update the task's status
 		}
 	}
 
@@ -385,11 +545,10 @@ public class Worker extends Container implements WorkerServerListener, MasterCon
 	@Override
 	public void masterTimeout() {
 		Logger logger = Logger.getLogger("lancoder");
-		logger.info("Lost connection to master !%n");
+		logger.info(String.format("Lost connection to master, %d tasks keep running until it is back.%n",
+				getCurrentTasks().size()));
 
-		for (ClientTask task : this.getCurrentTasks()) {
-			stopWork(task);
-		}
+		// The master reclaims the tasks if their leases expire before the worker reconnects
 		this.updateStatus(NodeState.NOT_CONNECTED);
 	}
 
@@ -23,6 +23,12 @@ public class WorkerConfig extends Config implements Serializable {
 	private static final String DEFAULT_MASTER_IP = InetAddress.getLoopbackAddress().getHostAddress();
 	private static final String DEFAULT_UNID = "";
 	private static final String DEFAULT_NAME = InetAddress.getLoopbackAddress().getCanonicalHostName();
+	private static final boolean DEFAULT_ENCODE_TO_SHARED_FOLDER = false;
+	private static final boolean DEFAULT_ENCODE_BENCHMARK = false;
+	private static final int DEFAULT_ENCODE_BENCHMARK_HOURS = 24;
+	private static final int DEFAULT_RESERVED_CORES = 0;
+	private static final int DEFAULT_MEMORY_HEADROOM = 0;
+	private static final int DEFAULT_TELEMETRY_INTERVAL = 10;
 
 	@Prompt(message = "master's ip or hostname", priority = 1)
 	private String masterIpAddress;
@@ -36,6 +42,24 @@ public class WorkerConfig extends Config implements Serializable {
 	@Prompt(message = "worker's listening port", priority = 12, advanced = true)
 	private int listenPort;
 
+	@Prompt(message = "write encoded video parts directly to the shared folder", priority = 13, advanced = true)
+	private boolean encodeToSharedFolder;
+
+	@Prompt(message = "benchmark the encoders on startup to advertise the worker's speed", priority = 14, advanced = true)
+	private boolean encodeBenchmark;
+
+	@Prompt(message = "hours between two encode benchmarks of an idle worker (0 for startup only)", priority = 15, advanced = true)
+	private int encodeBenchmarkHours;
+
+	@Prompt(message = "cores kept free for the host and not used for tasks", priority = 16, advanced = true)
+	private int reservedCores;
+
+	@Prompt(message = "memory in MiB kept free for the host and not used for tasks", priority = 17, advanced = true)
+	private int memoryHeadroom;
+
+	@Prompt(message = "seconds between two samples of the worker's resource usage (0 to disable)", priority = 18, advanced = true)
+	private int telemetryInterval;
+
 	private String uniqueID;
 
 	public WorkerConfig() {
@@ -45,6 +69,12 @@ public class WorkerConfig extends Config implements Serializable {
 		this.listenPort = DEFAULT_LISTEN_PORT;
 		this.uniqueID = DEFAULT_UNID;
 		this.name = DEFAULT_NAME;
+		this.encodeToSharedFolder = DEFAULT_ENCODE_TO_SHARED_FOLDER;
+		this.encodeBenchmark = DEFAULT_ENCODE_BENCHMARK;
+		this.encodeBenchmarkHours = DEFAULT_ENCODE_BENCHMARK_HOURS;
+		this.reservedCores = DEFAULT_RESERVED_CORES;
+		this.memoryHeadroom = DEFAULT_MEMORY_HEADROOM;
+		this.telemetryInterval = DEFAULT_TELEMETRY_INTERVAL;
 	}
 
 	/**
@@ -110,6 +140,54 @@ public class WorkerConfig extends Config implements Serializable {
 		this.listenPort = listenPort;
 	}
 
+	public boolean isEncodeToSharedFolder() {
+		return encodeToSharedFolder;
+	}
+
+	public void setEncodeToSharedFolder(boolean encodeToSharedFolder) {
+		this.encodeToSharedFolder = encodeToSharedFolder;
+	}
+
+	public boolean isEncodeBenchmark() {
+		return encodeBenchmark;
+	}
+
+	public void setEncodeBenchmark(boolean encodeBenchmark) {
+		this.encodeBenchmark = encodeBenchmark;
+	}
+
+	public int getEncodeBenchmarkHours() {
+		return encodeBenchmarkHours;
+	}
+
+	public void setEncodeBenchmarkHours(int encodeBenchmarkHours) {
+		this.encodeBenchmarkHours = encodeBenchmarkHours;
+	}
+
+	public int getReservedCores() {
+		return reservedCores;
+	}
+
+	public void setReservedCores(int reservedCores) {
+		this.reservedCores = reservedCores;
+	}
+
+	public int getMemoryHeadroom() {
+		return memoryHeadroom;
+	}
+
+	public void setMemoryHeadroom(int memoryHeadroom) {
+		this.memoryHeadroom = memoryHeadroom;
+	}
+
+	public int getTelemetryInterval() {
+		return telemetryInterval;
+	}
+
+	public void setTelemetryInterval(int telemetryInterval) {
+		this.telemetryInterval = telemetryInterval;
+	}
+
 	@Override
 	public String getDefaultPath() {
 		return DEFAULT_PATH;
@@ -0,0 +1,248 @@
+package org.lancoder.worker.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import org.lancoder.common.Service;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.CodecLoader;
+import org.lancoder.common.codecs.EncodeSpeed;
+import org.lancoder.common.codecs.base.Codec;
+import org.lancoder.common.codecs.base.VideoCodec;
+import org.lancoder.common.job.FFmpegPreset;
+import org.lancoder.common.scheduler.Schedulable;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.ffmpeg.FFmpegWrapper;
+import org.lancoder.worker.Worker;
+
+/**
+ * Measures the encoding speed of the worker with each video codec it supports, so the master knows how fast the worker
+ * is before it completes a task.
+ * <p>
+ * Results are cached in the user's cache folder, keyed by the versions of ffmpeg, the cpu model and the cores of the
+ * worker, so restarts do not encode again. The benchmark runs again periodically while the worker is idle and the new
+ * speeds are sent with the next status report.
+ */
+public class EncodeBenchmark extends Schedulable implements Service {
+
+	private static final int[][] RESOLUTIONS = new int[][] { { 1280, 720 }, { 1920, 1080 } };
+	private static final int FRAME_COUNT = 60;
+	private static final String PRESET = FFmpegPreset.MEDIUM.name().toLowerCase();
+
+	private Worker worker;
+	private FFmpeg ffMpeg;
+	private int cpuCapacity;
+	private long msRunDelay;
+	private File cacheFolder;
+
+	/**
+	 * Create the benchmark of a worker.
+	 *
+	 * @param worker
+	 *            The worker to benchmark
+	 * @param ffMpeg
+	 *            The ffmpeg module
+	 * @param cpuCapacity
+	 *            The cores of the worker, encoders get as many threads as they get on tasks
+	 * @param hoursBetweenRuns
+	 *            Hours between two periodic runs
+	 */
+	public EncodeBenchmark(Worker worker, FFmpeg ffMpeg, int cpuCapacity, int hoursBetweenRuns) {
+		this(worker, ffMpeg, cpuCapacity, hoursBetweenRuns, getDefaultCacheFolder());
+	}
+
+	public EncodeBenchmark(Worker worker, FFmpeg ffMpeg, int cpuCapacity, int hoursBetweenRuns, File cacheFolder) {
+		this.worker = worker;
+		this.ffMpeg = ffMpeg;
+		this.cpuCapacity = cpuCapacity;
+		this.msRunDelay = hoursBetweenRuns * 3600L * 1000;
+		this.cacheFolder = cacheFolder;
+	}
+
+	/**
+	 * @return $XDG_CACHE_HOME/lancoder, or ~/.cache/lancoder
+	 */
+	public static File getDefaultCacheFolder() {
+		String cacheHome = System.getenv("XDG_CACHE_HOME");
+		if (cacheHome == null || cacheHome.isEmpty()) {
+			cacheHome = new File(System.getProperty("user.home"), ".cache").getPath();
+		}
+		return new File(cacheHome, "lancoder");
+	}
+
+	/**
+	 * Get the encoding speeds of the worker, from the cache if the same ffmpeg and cpu were already measured.
+	 *
+	 * @param codecs
+	 *            The codecs supported by the worker
+	 * @param useCache
+	 *            False to always encode
+	 * @return The measured speeds
+	 */
+	public ArrayList<EncodeSpeed> measure(List<CodecEnum> codecs, boolean useCache) {
+		Logger logger = Logger.getLogger("lancoder");
+		File cacheFile = getCacheFile();
+
+		if (useCache && cacheFile.exists()) {
+			try {
+				ArrayList<EncodeSpeed> speeds = load(cacheFile);
+				logger.fine(String.format("Loaded encode benchmark from %s.%n", cacheFile));
+				return speeds;
+			} catch (IOException | RuntimeException e) {
+				logger.warning(String.format("Ignoring unreadable encode benchmark cache %s: %s%n", cacheFile,
+						e.getMessage()));
+			}
+		}
+
+		ArrayList<EncodeSpeed> speeds = new ArrayList<>();
+		for (CodecEnum codecEnum : codecs) {
+			Codec codec = CodecLoader.fromCodec(codecEnum);
+			if (!(codec instanceof VideoCodec)) {
+				continue;
+			}
+			String preset = codec.supportsPresets() ? PRESET : null;
+			int threads = Math.max(1, Math.min(codec.getCpuCost(), cpuCapacity));
+
+			for (int[] resolution : RESOLUTIONS) {
+				EncodeSpeed speed = FFmpegWrapper.getEncodeSpeed(ffMpeg, codecEnum, resolution[0], resolution[1],
+						preset, threads, FRAME_COUNT);
+				if (speed != null) {
+					logger.fine(String.format("Encode benchmark: %s.%n", speed));
+					speeds.add(speed);
+				} else {
+					logger.warning(String.format("Encode benchmark of %s at %dx%d failed.%n",
+							codecEnum.getPrettyName(), resolution[0], resolution[1]));
+				}
+			}
+		}
+
+		// A failed benchmark is not cached so the next start measures again
+		try {
+			if (!speeds.isEmpty()) {
+				store(cacheFile, speeds);
+			}
+		} catch (IOException e) {
+			logger.warning(String.format("Could not cache the encode benchmark in %s: %s%n", cacheFile,
+					e.getMessage()));
+		}
+		return speeds;
+	}
+
+	/**
+	 * Get the cache file of the current ffmpeg and cpu. A new ffmpeg build or another cpu gets a new file.
+	 *
+	 * @return The cache file
+	 */
+	private File getCacheFile() {
+		StringBuilder key = new StringBuilder();
+		for (Entry<String, String> version : new TreeMap<>(FFmpegWrapper.getVersions(ffMpeg)).entrySet()) {
+			key.append(version.getKey()).append('=').append(version.getValue()).append(';');
+		}
+		key.append("path=").append(ffMpeg.getPath()).append(';');
+		key.append("cpu=").append(getCpuModel()).append(';');
+		key.append("cores=").append(cpuCapacity);
+		return new File(cacheFolder, String.format("encode-benchmark-%s.properties", hash(key.toString())));
+	}
+
+	private static String hash(String key) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				hex.append(String.format("%02x", bytes[i]));
+			}
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(key.hashCode());
+		}
+	}
+
+	/**
+	 * Read the cpu model from /proc/cpuinfo, or the architecture where it does not exist.
+	 *
+	 * @return The cpu model
+	 */
+	private static String getCpuModel() {
+		try {
+			for (String line : Files.readAllLines(Paths.get("/proc/cpuinfo"), StandardCharsets.UTF_8)) {
+				if (line.startsWith("model name")) {
+					return line.substring(line.indexOf(':') + 1).trim();
+				}
+			}
+		} catch (IOException e) {
+			// Not a Linux host
+		}
+		return System.getProperty("os.arch");
+	}
+
+	static void store(File file, List<EncodeSpeed> speeds) throws IOException {
+		Properties properties = new Properties();
+		for (EncodeSpeed speed : speeds) {
+			properties.setProperty(getKey(speed.getCodec(), speed.getResolution(), speed.getPreset()),
+					String.valueOf(speed.getFps()));
+		}
+		file.getParentFile().mkdirs();
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "Encoding speeds in frames per second");
+		}
+	}
+
+	static ArrayList<EncodeSpeed> load(File file) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+		ArrayList<EncodeSpeed> speeds = new ArrayList<>();
+		for (String key : new TreeSet<>(properties.stringPropertyNames())) {
+			// codec.widthxheight[.preset]
+			String[] parts = key.split("\\.");
+			String[] size = parts[1].split("x");
+			String preset = parts.length > 2 ? parts[2] : null;
+			speeds.add(new EncodeSpeed(CodecEnum.valueOf(parts[0]), Integer.parseInt(size[0]), Integer
+					.parseInt(size[1]), preset, Double.parseDouble(properties.getProperty(key))));
+		}
+		return speeds;
+	}
+
+	private static String getKey(CodecEnum codec, String resolution, String preset) {
+		return preset == null ? String.format("%s.%s", codec.name(), resolution) : String.format("%s.%s.%s",
+				codec.name(), resolution, preset);
+	}
+
+	@Override
+	protected long getMsRunDelay() {
+		return msRunDelay;
+	}
+
+	@Override
+	protected void runTask() {
+		// Measures taken while encoding would be wrong and would slow the tasks down
+		if (worker.getStatus() != NodeState.FREE) {
+			Logger.getLogger("lancoder").fine("Skipping the periodic encode benchmark as the worker is busy.\n");
+			return;
+		}
+		worker.updateEncodeSpeeds(measure(worker.getCodecs(), false));
+	}
+
+	@Override
+	public void stop() {
+	}
+}
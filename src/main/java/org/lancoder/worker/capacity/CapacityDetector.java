@@ -0,0 +1,227 @@
+package org.lancoder.worker.capacity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Detects the cores and memory a worker may use. Containers limit both with cgroups while the operating system still
+ * reports the whole host, so the limits of the worker's cgroup (v1 or v2) are honored when they are lower.
+ */
+public class CapacityDetector {
+
+	private static final long MIB = 1024 * 1024;
+	/**
+	 * cgroup v1 reports a page-aligned Long.MAX_VALUE when memory is not limited
+	 */
+	private static final long UNLIMITED_V1 = Long.MAX_VALUE / 2;
+
+	private File cgroupRoot;
+	private File procCgroup;
+	private File meminfo;
+
+	public CapacityDetector() {
+		this(new File("/sys/fs/cgroup"), new File("/proc/self/cgroup"));
+	}
+
+	/**
+	 * Create a detector reading another cgroup hierarchy.
+	 *
+	 * @param cgroupRoot
+	 *            The mount point of the cgroup file system
+	 * @param procCgroup
+	 *            The file listing the cgroups of the process
+	 */
+	public CapacityDetector(File cgroupRoot, File procCgroup) {
+		this(cgroupRoot, procCgroup, new File("/proc/meminfo"));
+	}
+
+	/**
+	 * Create a detector reading another cgroup hierarchy and memory information.
+	 *
+	 * @param cgroupRoot
+	 *            The mount point of the cgroup file system
+	 * @param procCgroup
+	 *            The file listing the cgroups of the process
+	 * @param meminfo
+	 *            The memory information of the host, in the format of /proc/meminfo
+	 */
+	public CapacityDetector(File cgroupRoot, File procCgroup, File meminfo) {
+		this.cgroupRoot = cgroupRoot;
+		this.procCgroup = procCgroup;
+		this.meminfo = meminfo;
+	}
+
+	/**
+	 * Get the cores available to the worker, rounding a fractional cpu quota up.
+	 *
+	 * @return The number of cores, at least 1
+	 */
+	public int detectCpus() {
+		int cpus = Runtime.getRuntime().availableProcessors();
+		double quota = getCpuQuota();
+		if (quota > 0) {
+			cpus = Math.min(cpus, (int) Math.ceil(quota));
+		}
+		return Math.max(1, cpus);
+	}
+
+	/**
+	 * Get the memory available to the worker.
+	 *
+	 * @return The memory in MiB, 0 if unknown
+	 */
+	public int detectMemory() {
+		long bytes = getPhysicalMemory();
+		long limit = getMemoryLimit();
+		if (limit > 0 && (bytes <= 0 || limit < bytes)) {
+			bytes = limit;
+		}
+		return (int) Math.min(Integer.MAX_VALUE, bytes / MIB);
+	}
+
+	/**
+	 * Read the cpu quota of the cgroup, in cores.
+	 *
+	 * @return The quota, 0 if unlimited or unknown
+	 */
+	double getCpuQuota() {
+		// cgroup v2: "<quota> <period>" or "max <period>"
+		String cpuMax = readController("", "cpu.max");
+		if (cpuMax != null) {
+			String[] values = cpuMax.split("\\s+");
+			if (values.length == 2 && !values[0].equals("max")) {
+				return quota(values[0], values[1]);
+			}
+			return 0;
+		}
+		// cgroup v1: a quota of -1 is unlimited
+		String quota = readController("cpu", "cpu.cfs_quota_us");
+		String period = readController("cpu", "cpu.cfs_period_us");
+		if (quota != null && period != null) {
+			return quota(quota, period);
+		}
+		return 0;
+	}
+
+	/**
+	 * Read the memory limit of the cgroup.
+	 *
+	 * @return The limit in bytes, 0 if unlimited or unknown
+	 */
+	long getMemoryLimit() {
+		String memoryMax = readController("", "memory.max");
+		if (memoryMax != null) {
+			return memoryMax.equals("max") ? 0 : parseLong(memoryMax);
+		}
+		String limit = readController("memory", "memory.limit_in_bytes");
+		if (limit != null) {
+			long bytes = parseLong(limit);
+			return bytes >= UNLIMITED_V1 ? 0 : bytes;
+		}
+		return 0;
+	}
+
+	private static double quota(String quota, String period) {
+		long quotaUs = parseLong(quota);
+		long periodUs = parseLong(period);
+		return quotaUs > 0 && periodUs > 0 ? (double) quotaUs / periodUs : 0;
+	}
+
+	private static long parseLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Read a file of a cgroup controller, in the cgroup of the process or at the root of the controller. A container
+	 * usually mounts its own cgroup as the root while /proc still names the cgroup of the host.
+	 *
+	 * @param controller
+	 *            The cgroup v1 controller, empty for the unified hierarchy of cgroup v2
+	 * @param fileName
+	 *            The file to read
+	 * @return The trimmed content of the file, null if it does not exist
+	 */
+	private String readController(String controller, String fileName) {
+		File base = controller.isEmpty() ? cgroupRoot : new File(cgroupRoot, controller);
+		String path = getCgroupPath(controller);
+		if (path != null && !path.equals("/")) {
+			String value = read(new File(new File(base, path), fileName));
+			if (value != null) {
+				return value;
+			}
+		}
+		return read(new File(base, fileName));
+	}
+
+	/**
+	 * Find the cgroup of the process for a controller in /proc/self/cgroup. Lines read "id:controllers:path", with an
+	 * empty controller list for cgroup v2.
+	 *
+	 * @param controller
+	 *            The controller, empty for cgroup v2
+	 * @return The path of the cgroup, null if not listed
+	 */
+	private String getCgroupPath(String controller) {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(procCgroup.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+		for (String line : lines) {
+			String[] fields = line.split(":", 3);
+			if (fields.length != 3) {
+				continue;
+			}
+			if (controller.isEmpty() ? fields[1].isEmpty() : Arrays.asList(fields[1].split(",")).contains(controller)) {
+				return fields[2];
+			}
+		}
+		return null;
+	}
+
+	private static String read(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read the physical memory of the host from the MemTotal line of /proc/meminfo.
+	 *
+	 * @return The memory in bytes, 0 if unknown
+	 */
+	long getPhysicalMemory() {
+		List<String> lines;
+		try {
+			lines = Files.readAllLines(meminfo.toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return 0;
+		}
+		for (String line : lines) {
+			// "MemTotal:       16314444 kB"
+			String[] fields = line.split("\\s+");
+			if (fields.length >= 2 && fields[0].equals("MemTotal:")) {
+				try {
+					return Long.parseLong(fields[1]) * 1024;
+				} catch (NumberFormatException e) {
+					return 0;
+				}
+			}
+		}
+		return 0;
+	}
+}
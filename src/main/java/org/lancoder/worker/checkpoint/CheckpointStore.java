@@ -0,0 +1,194 @@
+package org.lancoder.worker.checkpoint;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.TaskCheckpoint;
+import org.lancoder.common.utils.FileUtils;
+
+/**
+ * Keeps the passes a task completed in its temporary folder, so a worker that stopped or lost the master resumes the
+ * task after them instead of from the first pass. The checkpoint is a small properties file next to the pass logs of
+ * the encoder.
+ */
+public class CheckpointStore {
+
+	public static final String FILE_NAME = "checkpoint.properties";
+	/**
+	 * Checkpoints older than this are of tasks the master gave to other nodes long ago
+	 */
+	private static final long MAX_AGE_MSEC = 24 * 3600 * 1000L;
+	private static final Pattern JOB_FOLDER = Pattern.compile("[0-9a-f]{64}");
+
+	private FilePathManager filePathManager;
+
+	public CheckpointStore(FilePathManager filePathManager) {
+		this.filePathManager = filePathManager;
+	}
+
+	/**
+	 * Record the passes a task completed.
+	 *
+	 * @param task
+	 *            The task
+	 * @param completedSteps
+	 *            The number of completed passes
+	 * @return True if the checkpoint was written
+	 */
+	public boolean save(ClientTask task, int completedSteps) {
+		Properties properties = new Properties();
+		properties.setProperty("job", task.getJobId());
+		properties.setProperty("task", String.valueOf(task.getTaskId()));
+		properties.setProperty("steps", String.valueOf(task.getStepCount()));
+		properties.setProperty("start", String.valueOf(task.getEncodingStartTime()));
+		properties.setProperty("end", String.valueOf(task.getEncodingEndTime()));
+		properties.setProperty("completed", String.valueOf(completedSteps));
+
+		File file = new File(filePathManager.getLocalTempFolder(task), FILE_NAME);
+		File temp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(temp)) {
+			properties.store(out, null);
+		} catch (IOException e) {
+			Logger logger = Logger.getLogger("lancoder");
+			logger.warning(String.format("Could not write checkpoint of %s: %s%n", task, e.getMessage()));
+			return false;
+		}
+		// Replace the previous checkpoint only once the new one is complete
+		return temp.renameTo(file) || (file.delete() && temp.renameTo(file));
+	}
+
+	/**
+	 * Get the passes of a task to skip. The checkpoint is ignored if it was written for another range or pass count.
+	 *
+	 * @param task
+	 *            The task to resume
+	 * @return The number of completed passes, 0 without a matching checkpoint
+	 */
+	public int getCompletedSteps(ClientTask task) {
+		Properties properties = read(new File(filePathManager.getLocalTempFolder(task), FILE_NAME));
+		if (properties == null
+				|| !task.getJobId().equals(properties.getProperty("job"))
+				|| !String.valueOf(task.getTaskId()).equals(properties.getProperty("task"))
+				|| !String.valueOf(task.getStepCount()).equals(properties.getProperty("steps"))
+				|| !String.valueOf(task.getEncodingStartTime()).equals(properties.getProperty("start"))
+				|| !String.valueOf(task.getEncodingEndTime()).equals(properties.getProperty("end"))) {
+			return 0;
+		}
+		int completed = parseInt(properties.getProperty("completed"));
+		// The last pass writes the output, it is never skipped
+		return completed > 0 && completed < task.getStepCount() ? completed : 0;
+	}
+
+	/**
+	 * Check if a task has a checkpoint to resume from.
+	 *
+	 * @param task
+	 *            The task
+	 * @return True if the temporary folder of the task holds a checkpoint
+	 */
+	public boolean exists(ClientTask task) {
+		return getCompletedSteps(task) > 0;
+	}
+
+	/**
+	 * List the checkpoints of the temporary folder.
+	 *
+	 * @return The checkpoints, reported to the master so it gives the tasks back to this worker
+	 */
+	public ArrayList<TaskCheckpoint> list() {
+		ArrayList<TaskCheckpoint> checkpoints = new ArrayList<>();
+		for (File file : findCheckpointFiles()) {
+			Properties properties = read(file);
+			if (properties == null) {
+				continue;
+			}
+			int taskId = parseInt(properties.getProperty("task"));
+			int completed = parseInt(properties.getProperty("completed"));
+			String jobId = properties.getProperty("job");
+			if (jobId != null && taskId >= 0 && completed > 0) {
+				checkpoints.add(new TaskCheckpoint(jobId, taskId, completed, file.lastModified()));
+			}
+		}
+		return checkpoints;
+	}
+
+	/**
+	 * Delete the task folders of checkpoints too old to be resumed.
+	 *
+	 * @return The number of deleted checkpoints
+	 */
+	public int expire() {
+		long oldest = System.currentTimeMillis() - MAX_AGE_MSEC;
+		int deleted = 0;
+		for (File file : findCheckpointFiles()) {
+			if (file.lastModified() >= oldest) {
+				continue;
+			}
+			try {
+				FileUtils.deleteDirectory(file.getParentFile());
+				deleted++;
+			} catch (IOException e) {
+				Logger logger = Logger.getLogger("lancoder");
+				logger.warning(String.format("Could not delete expired checkpoint '%s': %s%n", file, e.getMessage()));
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Find the checkpoint files of the task folders, laid out as "job id/task id/checkpoint.properties".
+	 *
+	 * @return The checkpoint files
+	 */
+	private ArrayList<File> findCheckpointFiles() {
+		ArrayList<File> files = new ArrayList<>();
+		File[] jobFolders = filePathManager.getLocalTempFolder().listFiles();
+		if (jobFolders == null) {
+			return files;
+		}
+		for (File jobFolder : jobFolders) {
+			File[] taskFolders = jobFolder.listFiles();
+			if (!JOB_FOLDER.matcher(jobFolder.getName()).matches() || taskFolders == null) {
+				continue;
+			}
+			for (File taskFolder : taskFolders) {
+				File file = new File(taskFolder, FILE_NAME);
+				if (file.isFile()) {
+					files.add(file);
+				}
+			}
+		}
+		return files;
+	}
+
+	private static Properties read(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+		return properties;
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return value == null ? -1 : Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
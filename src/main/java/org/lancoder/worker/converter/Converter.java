@@ -38,6 +38,16 @@ public abstract class Converter<T extends ClientTask> extends PoolWorker<T> impl
 	 * Create or clean task's and job's folders.
 	 */
 	protected void createDirs() {
+		createDirs(false);
+	}
+
+	/**
+	 * Create task's and job's folders.
+	 *
+	 * @param resume
+	 *            Keep the files of a previous run of the task to resume it
+	 */
+	protected void createDirs(boolean resume) {
 		// Create task folder on absolute share
 		File sharedFolder = filePathManager.getSharedFinalFile(task).getParentFile();
 		if (!sharedFolder.exists()) {
@@ -50,7 +60,7 @@ public abstract class Converter<T extends ClientTask> extends PoolWorker<T> impl
 		if (!localFolder.exists()) {
 			localFolder.mkdirs();
 			FileUtils.givePerms(localFolder, false);
-		} else {
+		} else if (!resume) {
 			// Remove any previous temporary files for this part (on local FS)
 			cleanTempFolder();
 		}
@@ -0,0 +1,53 @@
+package org.lancoder.worker.converter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lancoder.common.metrics.Counter;
+import org.lancoder.common.metrics.MetricsRegistry;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.audio.ClientAudioTask;
+import org.lancoder.common.task.mux.ClientMuxTask;
+
+/**
+ * Records the durations and outcomes of the tasks handled by the converters of a worker.
+ */
+public class ConverterMetrics {
+
+	private final MetricsRegistry registry = MetricsRegistry.getDefault();
+	private final ConcurrentHashMap<ClientTask, Long> startTimes = new ConcurrentHashMap<>();
+
+	public void taskStarted(ClientTask task) {
+		startTimes.put(task, System.nanoTime());
+	}
+
+	/**
+	 * Record the end of a task.
+	 *
+	 * @param task
+	 *            The task
+	 * @param result
+	 *            completed, failed or canceled
+	 */
+	public void taskEnded(ClientTask task, String result) {
+		String type = getType(task);
+		Long start = startTimes.remove(task);
+		Counter counter = registry.counter("lancoder_worker_tasks_total", "Tasks handled by the converters", "type",
+				type, "result", result);
+
+		counter.increment();
+		if (start != null) {
+			registry.timer("lancoder_worker_task_seconds", "Duration of the tasks handled by the converters", "type",
+					type, "result", result).recordSince(start);
+		}
+	}
+
+	private static String getType(ClientTask task) {
+		if (task instanceof ClientAudioTask) {
+			return "audio";
+		} else if (task instanceof ClientMuxTask) {
+			return "mux";
+		}
+		return "video";
+	}
+
+}
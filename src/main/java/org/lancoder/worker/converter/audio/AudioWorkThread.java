@@ -64,7 +64,15 @@ public class AudioWorkThread extends Converter<ClientAudioTask> {
 		createDirs();
 		ArrayList<String> args = getArgs(task);
 		try {
-			success = ffMpegWrapper.read(args, this, true) && moveFile();
+			task.getTimeline().begin("encode");
+			boolean encoded = ffMpegWrapper.read(args, this, true);
+			task.getTimeline().end("encode");
+
+			if (encoded) {
+				task.getTimeline().begin("move");
+				success = moveFile();
+				task.getTimeline().end("move");
+			}
 		} catch (MissingThirdPartyException e) {
 			e.printStackTrace();
 		} finally {
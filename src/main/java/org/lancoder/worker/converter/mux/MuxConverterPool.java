@@ -0,0 +1,38 @@
+package org.lancoder.worker.converter.mux;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.pool.PoolWorker;
+import org.lancoder.common.task.mux.ClientMuxTask;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.common.third_parties.MkvMerge;
+import org.lancoder.worker.converter.ConverterListener;
+import org.lancoder.worker.converter.ConverterPool;
+
+public class MuxConverterPool extends ConverterPool<ClientMuxTask> {
+
+	private ConverterListener listener;
+	private FilePathManager filePathManager;
+	private FFmpeg ffMpeg;
+	private MkvMerge mkvMerge;
+
+	public MuxConverterPool(int threads, ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg,
+			MkvMerge mkvMerge) {
+		super(threads, false);
+		this.listener = listener;
+		this.filePathManager = filePathManager;
+		this.ffMpeg = ffMpeg;
+		this.mkvMerge = mkvMerge;
+	}
+
+	@Override
+	protected PoolWorker<ClientMuxTask> getPoolWorkerInstance() {
+		return new MuxWorkThread(listener, filePathManager, ffMpeg, mkvMerge);
+	}
+
+	@Override
+	public int getActiveThreadCount() {
+		// Muxing only copies streams and is bound by the shared folder's I/O
+		return 0;
+	}
+
+}
@@ -0,0 +1,81 @@
+package org.lancoder.worker.converter.mux;
+
+import java.util.logging.Logger;
+
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.pool.PoolWorker;
+import org.lancoder.common.task.mux.ClientMuxTask;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.common.third_parties.MkvMerge;
+import org.lancoder.muxer.Muxer;
+import org.lancoder.muxer.MuxerFactory;
+import org.lancoder.muxer.MuxerListener;
+import org.lancoder.worker.converter.ConverterListener;
+
+/**
+ * Runs the muxers of the master on a worker and translates the muxing events to task events.
+ */
+public class MuxWorkThread extends PoolWorker<ClientMuxTask> implements MuxerListener {
+
+	private ConverterListener listener;
+	private MuxerFactory muxerFactory;
+	/**
+	 * The master canceled the task while it was muxing
+	 */
+	private volatile boolean cancelling;
+
+	public MuxWorkThread(ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg, MkvMerge mkvMerge) {
+		this.listener = listener;
+		this.muxerFactory = new MuxerFactory(this, filePathManager, ffMpeg, mkvMerge);
+	}
+
+	@Override
+	protected void start() {
+		Muxer muxer = muxerFactory.getMuxer(task.getJob());
+
+		this.cancelling = false;
+		listener.taskStarted(task);
+		if (muxer.getMuxingThirdParty().isInstalled()) {
+			muxer.handle(task.getJob());
+		} else {
+			Logger logger = Logger.getLogger("lancoder");
+			logger.severe(String.format("Cannot mux job %s as %s is not installed.%n", task.getJobId(), muxer
+					.getMuxingThirdParty().getPath()));
+			listener.taskFailed(task);
+		}
+	}
+
+	@Override
+	public void cancelTask(Object task) {
+		if (this.task != null && this.task.equals(task)) {
+			// Muxers cannot be interrupted safely, the task is reported as canceled once muxing ends
+			this.cancelling = true;
+			Logger logger = Logger.getLogger("lancoder");
+			logger.fine(String.format("%s will be canceled when muxing ends.%n", task));
+		}
+	}
+
+	@Override
+	public void jobMuxingStarted(Job job) {
+	}
+
+	@Override
+	public void jobMuxingCompleted(Job job) {
+		if (cancelling) {
+			listener.taskCancelled(task);
+		} else {
+			listener.taskCompleted(task);
+		}
+	}
+
+	@Override
+	public void jobMuxingFailed(Job job) {
+		if (cancelling) {
+			listener.taskCancelled(task);
+		} else {
+			listener.taskFailed(task);
+		}
+	}
+
+}
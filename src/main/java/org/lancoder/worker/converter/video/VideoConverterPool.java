@@ -12,17 +12,25 @@ public class VideoConverterPool extends ConverterPool<ClientVideoTask> {
 	private ConverterListener listener;
 	private FilePathManager filePathManager;
 	private FFmpeg ffMpeg;
+	private boolean encodeToSharedFolder;
 
 	public VideoConverterPool(int threads, ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg) {
+		this(threads, listener, filePathManager, ffMpeg, false);
+	}
+
+	public VideoConverterPool(int threads, ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg,
+			boolean encodeToSharedFolder) {
 		super(threads, false);
 		this.listener = listener;
 		this.filePathManager = filePathManager;
 		this.ffMpeg = ffMpeg;
+		this.encodeToSharedFolder = encodeToSharedFolder;
 	}
 
 	@Override
 	protected PoolWorker<ClientVideoTask> getPoolWorkerInstance() {
-		return new VideoWorkThread(listener, filePathManager, ffMpeg);
+		// The pool is sized on the cores of the worker
+		return new VideoWorkThread(listener, filePathManager, ffMpeg, encodeToSharedFolder, getThreadLimit());
 	}
 
 	@Override
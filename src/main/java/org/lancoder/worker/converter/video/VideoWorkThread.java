@@ -1,6 +1,9 @@
 package org.lancoder.worker.converter.video;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.logging.Logger;
@@ -17,6 +20,7 @@ import org.lancoder.common.third_parties.FFmpeg;
 import org.lancoder.common.utils.FileUtils;
 import org.lancoder.common.utils.TimeUtils;
 import org.lancoder.ffmpeg.FFmpegReader;
+import org.lancoder.worker.checkpoint.CheckpointStore;
 import org.lancoder.worker.converter.Converter;
 import org.lancoder.worker.converter.ConverterListener;
 
@@ -28,18 +32,43 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 	private static Pattern missingDecoder = Pattern.compile("Error while opening encoder for output stream");
 
 	private FFmpegReader ffMpegWrapper = new FFmpegReader();
-	private Transcoder transcoder = new Transcoder();
+	/**
+	 * Write the last pass on the shared folder instead of the local temporary folder
+	 */
+	private boolean encodeToSharedFolder;
+	/**
+	 * Cores of the worker, the encoder gets the cores of the task's cost up to this limit
+	 */
+	private int cpuCapacity;
+	private CheckpointStore checkpoints;
+	/**
+	 * The worker is stopping, the completed passes of the task are kept to resume it on the next start
+	 */
+	private boolean stopping;
 
 	public VideoWorkThread(ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg) {
+		this(listener, filePathManager, ffMpeg, false);
+	}
+
+	public VideoWorkThread(ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg,
+			boolean encodeToSharedFolder) {
+		this(listener, filePathManager, ffMpeg, encodeToSharedFolder, Runtime.getRuntime().availableProcessors());
+	}
+
+	public VideoWorkThread(ConverterListener listener, FilePathManager filePathManager, FFmpeg ffMpeg,
+			boolean encodeToSharedFolder, int cpuCapacity) {
 		super(listener, filePathManager, ffMpeg);
+		this.encodeToSharedFolder = encodeToSharedFolder;
+		this.cpuCapacity = cpuCapacity;
+		this.checkpoints = new CheckpointStore(filePathManager);
 	}
 
 	@Override
 	public void stop() {
 		super.stop();
+		this.stopping = true;
 		this.cancelling = true;
 		ffMpegWrapper.stop();
-		transcoder.stop();
 	}
 
 	private static boolean isWindows() {
@@ -48,6 +77,24 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 
 	public boolean encodePass(String startTimeStr, String durationStr) throws MissingDecoderException,
 			MissingThirdPartyException {
+		ArrayList<String> ffmpegArgs = getPassArgs(startTimeStr, durationStr);
+		File outFile = filePathManager.getLocalTempFile(task);
+
+		ffMpegWrapper = new FFmpegReader();
+		// Start process in task output directory (log and mtrees pass files generated by ffmpeg)
+		return ffMpegWrapper.read(ffmpegArgs, this, true, outFile.getParentFile());
+	}
+
+	/**
+	 * Get the ffmpeg arguments of the current pass of the task.
+	 *
+	 * @param startTimeStr
+	 *            The start of the part in the source
+	 * @param durationStr
+	 *            The duration of the part
+	 * @return The arguments, starting with the path of ffmpeg
+	 */
+	ArrayList<String> getPassArgs(String startTimeStr, String durationStr) {
 		OriginalVideoStream inStream = task.getStreamConfig().getOrignalStream();
 		VideoStream outStream = task.getStreamConfig().getOutStream();
 
@@ -64,17 +111,20 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 		// Add base args to process builder
 		Collections.addAll(ffmpegArgs, baseArgs);
 		ffmpegArgs.addAll(outStream.getRateControlArgs());
+		// Keep the encoder to the cores its cost reserved, the other cores are used by other tasks
+		ffmpegArgs.add("-threads");
+		ffmpegArgs.add(String.valueOf(Math.max(1, Math.min(task.getCost().getCpu(), cpuCapacity))));
 
 		// output file and pass arguments
-		File outFile = filePathManager.getLocalTempFile(task);
-		String outFileStr = outFile.getAbsolutePath();
+		String outFileStr = getOutputFile().getAbsolutePath();
+		boolean lastPass = task.getProgress().getCurrentStepIndex() == task.getStepCount();
 
 		if (task.getStepCount() > 1) {
 			// Add pass arguments
 			ffmpegArgs.add("-pass");
 			ffmpegArgs.add(String.valueOf(task.getProgress().getCurrentStepIndex()));
 
-			if (task.getProgress().getCurrentStepIndex() != task.getStepCount()) {
+			if (!lastPass) {
 				ffmpegArgs.add("-f");
 				ffmpegArgs.add("rawvideo");
 				ffmpegArgs.add("-y");
@@ -86,38 +136,26 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 		ffmpegArgs.addAll(task.getPresetArg());
 		ffmpegArgs.addAll(task.getStreamConfig().getExtraEncoderArgs());
 
+		if (lastPass && outStream.getCodec().needsTranscode()) {
+			// Write the part directly as MPEG-TS so it can be concatenated without rewriting it
+			ffmpegArgs.add("-f");
+			ffmpegArgs.add("mpegts");
+		}
+		if (lastPass) {
+			ffmpegArgs.add("-y");
+		}
 		ffmpegArgs.add(outFileStr);
-
-		ffMpegWrapper = new FFmpegReader();
-		// Start process in task output directory (log and mtrees pass files generated by ffmpeg)
-		return ffMpegWrapper.read(ffmpegArgs, this, true, outFile.getParentFile());
+		return ffmpegArgs;
 	}
 
-	private boolean transcodeToMpegTs() {
-		File destination = filePathManager.getSharedFinalFile(task);
-		File source = filePathManager.getLocalTempFile(task);
-
-		if (filePathManager.getSharedFinalFile(task).exists()) {
-			Logger logger = Logger.getLogger("lancoder");
-
-			logger.warning(String.format("Deleting shared file '%s'.\n", destination.getPath()));
-			filePathManager.getSharedFinalFile(task).delete();
-		}
-		String[] baseArgs = new String[] { ffMpeg.getPath(), "-i", source.getAbsolutePath(), "-f", "mpegts", "-c",
-				"copy", "-bsf:v", "h264_mp4toannexb", destination.getPath() };
-
-		ArrayList<String> args = new ArrayList<>();
-		Collections.addAll(args, baseArgs);
-		try {
-			transcoder = new Transcoder();
-			transcoder.read(args);
-			FileUtils.givePerms(destination, false);
-		} catch (MissingDecoderException e) {
-			e.printStackTrace();
-		} catch (MissingThirdPartyException e) {
-			e.printStackTrace();
-		}
-		return true;
+	/**
+	 * Get the file written by the last pass of the encoder.
+	 *
+	 * @return The local temporary file or the partial file on the shared folder
+	 */
+	private File getOutputFile() {
+		return encodeToSharedFolder ? filePathManager.getSharedPartialFile(task) : filePathManager
+				.getLocalTempFile(task);
 	}
 
 	@Override
@@ -143,7 +181,16 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 
 		try {
 			listener.taskStarted(task);
-			createDirs();
+			int completedSteps = checkpoints.getCompletedSteps(task);
+			createDirs(completedSteps > 0);
+			if (completedSteps > 0) {
+				// The pass logs of the completed passes are still in the temporary folder
+				logger.fine(String.format("Resuming %s after pass %d.%n", task, completedSteps));
+				task.getTimeline().mark(String.format("resumed after pass %d", completedSteps));
+				while (task.getProgress().getCurrentStepIndex() <= completedSteps) {
+					task.getProgress().completeStep();
+				}
+			}
 
 			// use start and duration for ffmpeg legacy support
 			long durationMs = task.getEncodingEndTime() - task.getEncodingStartTime();
@@ -155,22 +202,36 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 			while (task.getProgress().getCurrentStepIndex() <= task.getStepCount() && success && !lastStep) {
 				logger.fine(String.format("Encoding pass %d of %d\n", task.getProgress().getCurrentStepIndex(),
 						task.getStepCount()));
+				String passName = String.format("pass %d", task.getProgress().getCurrentStepIndex());
+				task.getTimeline().begin(passName);
 				success = encodePass(startTimeStr, durationStr);
+				task.getTimeline().end(passName);
 
 				if (success) {
 					lastStep = task.getProgress().getCurrentStepIndex() == task.getStepCount();
+					if (!lastStep) {
+						checkpoints.save(task, task.getProgress().getCurrentStepIndex());
+					}
 					task.getProgress().completeStep();
 				}
 			}
 
 			if (success) {
-				this.moveFile();
+				task.getTimeline().begin("move");
+				success = this.moveFile();
+				task.getTimeline().end("move");
+			} else if (encodeToSharedFolder) {
+				filePathManager.getSharedPartialFile(task).delete();
 			}
 		} catch (MissingThirdPartyException | MissingDecoderException e) {
 			e.printStackTrace();
 			listener.taskFailed(task);
 		} finally {
-			this.destroyTempFolder();
+			if (!success && stopping && checkpoints.exists(task)) {
+				logger.fine(String.format("Keeping the completed passes of %s.%n", task));
+			} else {
+				this.destroyTempFolder();
+			}
 			if (success) {
 				listener.taskCompleted(task);
 			} else if (cancelling) {
@@ -183,11 +244,20 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 
 	@Override
 	protected boolean moveFile() {
-		if (task.getStreamConfig().getOutStream().getCodec().needsTranscode()) {
-			return transcodeToMpegTs();
-		} else {
+		if (!encodeToSharedFolder) {
 			return super.moveFile();
 		}
+		File destination = filePathManager.getSharedFinalFile(task);
+		File partial = filePathManager.getSharedPartialFile(task);
+		try {
+			Files.move(partial.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			FileUtils.givePerms(destination, false);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		return true;
 	}
 
 	@Override
@@ -195,9 +265,6 @@ public class VideoWorkThread extends Converter<ClientVideoTask> {
 		this.cancelling = true;
 		if (this.task != null && this.task.equals(task)) {
 			this.ffMpegWrapper.stop();
-			if (transcoder != null) {
-				this.transcoder.stop();
-			}
 		}
 	}
 }
@@ -27,6 +27,11 @@ public class LogSenderPool extends Pool<LogRecord> implements LogSender {
 		return worker.getStatus() != NodeState.NOT_CONNECTED;
 	}
 
+	@Override
+	protected boolean isIoBound() {
+		return true;
+	}
+
 	@Override
 	protected PoolWorker<LogRecord> getPoolWorkerInstance() {
 		return new LogSenderWorker(worker);
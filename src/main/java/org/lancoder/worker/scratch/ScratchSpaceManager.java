@@ -0,0 +1,261 @@
+package org.lancoder.worker.scratch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import org.lancoder.common.file_components.streams.original.OriginalAudioStream;
+import org.lancoder.common.file_components.streams.original.OriginalStream;
+import org.lancoder.common.file_components.streams.original.OriginalVideoStream;
+import org.lancoder.common.job.RateControlType;
+import org.lancoder.common.strategies.stream.EncodeStrategy;
+import org.lancoder.common.strategies.stream.StreamHandlingStrategy;
+import org.lancoder.common.strategies.stream.VideoEncodeStrategy;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.task.audio.ClientAudioTask;
+import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.telemetry.NodeTelemetry;
+import org.lancoder.common.utils.FileUtils;
+import org.lancoder.worker.checkpoint.CheckpointStore;
+
+/**
+ * Accounts for the space the tasks of the worker write in its temporary folder. Space is reserved from an estimate of
+ * the output of a task before the worker accepts it, so a full disk refuses tasks instead of failing them.
+ */
+public class ScratchSpaceManager {
+
+	private static final long MIB = 1024 * 1024;
+	/**
+	 * Folders of the temporary folder named like a job id
+	 */
+	private static final Pattern JOB_FOLDER = Pattern.compile("[0-9a-f]{64}");
+	/**
+	 * The estimate is an upper bound of the output, encoders overshoot their bitrate on complex scenes
+	 */
+	private static final double SAFETY_FACTOR = 1.5;
+	/**
+	 * Logs, pass statistics and container overhead of a task in MiB
+	 */
+	private static final long TASK_OVERHEAD = 16;
+	/**
+	 * Bits per pixel of a video encoded at constant quality, generous for x264 and x265 at usual settings
+	 */
+	private static final double QUALITY_BITS_PER_PIXEL = 0.15;
+	private static final double LOSSLESS_BITS_PER_PIXEL = 4;
+	/**
+	 * Bitrates in kbps when the output bitrate is unknown
+	 */
+	private static final int QUALITY_AUDIO_BITRATE = 320;
+	private static final int LOSSLESS_AUDIO_BITRATE = 1411;
+	private static final int UNKNOWN_BITRATE = 8000;
+
+	private File tempFolder;
+	private HashMap<ClientTask, Long> reservations = new HashMap<>();
+
+	/**
+	 * Create the manager of a temporary folder.
+	 *
+	 * @param tempFolder
+	 *            The temporary folder of the tasks
+	 */
+	public ScratchSpaceManager(File tempFolder) {
+		this.tempFolder = tempFolder;
+	}
+
+	/**
+	 * Reserve the space of a task if the temporary folder keeps enough free space with it.
+	 *
+	 * @param task
+	 *            The task to accept
+	 * @return True if the space is reserved
+	 */
+	public synchronized boolean reserve(ClientTask task) {
+		long needed = estimate(task);
+		long usable = getUsableSpace();
+		if (needed == 0 || usable < 0) {
+			return true;
+		}
+		if (usable - getReservedSpace() - needed < NodeTelemetry.MIN_DISK_FREE) {
+			return false;
+		}
+		reservations.put(task, needed);
+		return true;
+	}
+
+	/**
+	 * Release the space of a task that ended or was not accepted.
+	 *
+	 * @param task
+	 *            The task
+	 */
+	public synchronized void release(ClientTask task) {
+		reservations.remove(task);
+	}
+
+	/**
+	 * Get the free space of the temporary folder not reserved by the tasks of the worker.
+	 *
+	 * @return The free space in MiB, -1 if unknown
+	 */
+	public synchronized long getFreeSpace() {
+		long usable = getUsableSpace();
+		return usable < 0 ? -1 : Math.max(0, usable - getReservedSpace());
+	}
+
+	/**
+	 * Get the space the tasks have reserved but not written yet. What a task already wrote is counted by the usable
+	 * space of the disk.
+	 *
+	 * @return The outstanding reserved space in MiB
+	 */
+	long getReservedSpace() {
+		long reserved = 0;
+		for (Entry<ClientTask, Long> reservation : reservations.entrySet()) {
+			long written = getSize(getTaskFolder(reservation.getKey())) / MIB;
+			reserved += Math.max(0, reservation.getValue() - written);
+		}
+		return reserved;
+	}
+
+	private File getTaskFolder(ClientTask task) {
+		return FileUtils.getFile(tempFolder, task.getJobId(), String.valueOf(task.getTaskId()));
+	}
+
+	private static long getSize(File file) {
+		File[] files = file.listFiles();
+		if (files == null) {
+			return file.isFile() ? file.length() : 0;
+		}
+		long size = 0;
+		for (File child : files) {
+			size += getSize(child);
+		}
+		return size;
+	}
+
+	/**
+	 * Get the usable space of the temporary folder, or of its closest existing parent before the first task.
+	 *
+	 * @return The usable space in MiB, -1 if unknown
+	 */
+	private long getUsableSpace() {
+		File folder = tempFolder.getAbsoluteFile();
+		while (folder != null && !folder.exists()) {
+			folder = folder.getParentFile();
+		}
+		return folder == null ? -1 : folder.getUsableSpace() / MIB;
+	}
+
+	/**
+	 * Delete the job folders left in the temporary folder by a worker that stopped during tasks. Only folders named
+	 * like a job id are deleted, in case the temporary folder is shared with other programs. Task folders holding a
+	 * checkpoint are kept so the tasks can resume.
+	 *
+	 * @return The number of deleted folders
+	 */
+	public int cleanOrphans() {
+		File[] files = tempFolder.listFiles();
+		int deleted = 0;
+		if (files == null) {
+			return deleted;
+		}
+		for (File file : files) {
+			if (!file.isDirectory() || !JOB_FOLDER.matcher(file.getName()).matches()) {
+				continue;
+			}
+			File[] taskFolders = file.listFiles();
+			boolean checkpointed = false;
+			for (File taskFolder : taskFolders == null ? new File[0] : taskFolders) {
+				checkpointed |= new File(taskFolder, CheckpointStore.FILE_NAME).isFile();
+			}
+			if (!checkpointed) {
+				deleted += delete(file) ? 1 : 0;
+				continue;
+			}
+			for (File taskFolder : taskFolders) {
+				if (!new File(taskFolder, CheckpointStore.FILE_NAME).isFile()) {
+					deleted += delete(taskFolder) ? 1 : 0;
+				}
+			}
+		}
+		return deleted;
+	}
+
+	private static boolean delete(File file) {
+		Logger logger = Logger.getLogger("lancoder");
+		try {
+			if (file.isDirectory()) {
+				FileUtils.deleteDirectory(file);
+			} else if (!file.delete()) {
+				throw new IOException("delete failed");
+			}
+			logger.fine(String.format("Deleted orphaned temporary file '%s'.%n", file));
+			return true;
+		} catch (IOException e) {
+			logger.warning(String.format("Could not delete orphaned temporary file '%s': %s%n", file, e.getMessage()));
+			return false;
+		}
+	}
+
+	/**
+	 * Estimate the space a task writes in the temporary folder from the bitrate and the duration of its output.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The space in MiB, 0 if the task does not write in the temporary folder
+	 */
+	static long estimate(ClientTask task) {
+		if (!(task instanceof ClientVideoTask || task instanceof ClientAudioTask)) {
+			// Muxing writes to the shared folder
+			return 0;
+		}
+		double seconds = task.getUnit() == Unit.SECONDS ? task.getUnitCount()
+				: (task.getEncodingEndTime() - task.getEncodingStartTime()) / 1000.0;
+		double bits = getBitrate(task) * 1000.0 * seconds;
+		return (long) Math.ceil(bits / 8 / MIB * SAFETY_FACTOR) + TASK_OVERHEAD;
+	}
+
+	/**
+	 * Get the output bitrate of a task, the requested one or a guess from the resolution of the output.
+	 *
+	 * @param task
+	 *            The task
+	 * @return The bitrate in kbps
+	 */
+	private static double getBitrate(ClientTask task) {
+		StreamHandlingStrategy strategy = task.getStreamConfig().getOutStream().getStrategy();
+		OriginalStream original = task.getStreamConfig().getOrignalStream();
+		boolean video = task instanceof ClientVideoTask;
+
+		if (strategy.isCopy() || !(strategy instanceof EncodeStrategy)) {
+			if (original instanceof OriginalAudioStream && ((OriginalAudioStream) original).getBitrate() > 0) {
+				return ((OriginalAudioStream) original).getBitrate();
+			}
+			return UNKNOWN_BITRATE;
+		}
+		EncodeStrategy encode = (EncodeStrategy) strategy;
+		boolean lossless = encode.getCodec().isLossless();
+		if (!lossless && encode.getRateControlType() == RateControlType.VBR && encode.getRate() > 0) {
+			return encode.getRate();
+		}
+		if (!video) {
+			return lossless ? LOSSLESS_AUDIO_BITRATE : QUALITY_AUDIO_BITRATE;
+		}
+
+		// Constant quality: the bitrate follows the pixels per second of the output
+		VideoEncodeStrategy videoEncode = (VideoEncodeStrategy) encode;
+		OriginalVideoStream originalVideo = (OriginalVideoStream) original;
+		int width = videoEncode.getWidth() > 0 ? videoEncode.getWidth() : originalVideo.getWidth();
+		int height = videoEncode.getHeight() > 0 ? videoEncode.getHeight() : originalVideo.getHeight();
+		double frameRate = videoEncode.getFrameRate() > 0 ? videoEncode.getFrameRate() : originalVideo.getFrameRate();
+		if (width <= 0 || height <= 0 || frameRate <= 0) {
+			return UNKNOWN_BITRATE;
+		}
+		double bitsPerPixel = lossless ? LOSSLESS_BITS_PER_PIXEL : QUALITY_BITS_PER_PIXEL;
+		return width * height * frameRate * bitsPerPixel / 1000;
+	}
+}
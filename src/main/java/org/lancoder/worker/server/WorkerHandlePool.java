@@ -14,6 +14,11 @@ public class WorkerHandlePool extends Pool<Socket> {
 		this.listener = listener;
 	}
 
+	@Override
+	protected boolean isIoBound() {
+		return true;
+	}
+
 	@Override
 	protected PoolWorker<Socket> getPoolWorkerInstance() {
 		return new WorkerHandler(listener);
@@ -0,0 +1,173 @@
+package org.lancoder.worker.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.lancoder.common.Service;
+import org.lancoder.common.scheduler.Schedulable;
+import org.lancoder.common.telemetry.NodeTelemetry;
+import org.lancoder.worker.scratch.ScratchSpaceManager;
+
+/**
+ * Samples the resource usage of the worker from /proc so the master can avoid saturated nodes. Reading a few small
+ * files is cheap and the latest sample is sent with every status report.
+ */
+public class TelemetrySampler extends Schedulable implements Service {
+
+	private File procRoot;
+	private ScratchSpaceManager scratchSpace;
+	private long msRunDelay;
+	/**
+	 * Cpu time counters of the previous sample: total, idle and iowait
+	 */
+	private long[] previousCpu;
+	private volatile NodeTelemetry latest;
+
+	/**
+	 * Create a sampler of the local host.
+	 *
+	 * @param scratchSpace
+	 *            The manager of the temporary folder, whose free space is reported
+	 * @param secondsBetweenSamples
+	 *            Seconds between two samples
+	 */
+	public TelemetrySampler(ScratchSpaceManager scratchSpace, int secondsBetweenSamples) {
+		this(new File("/proc"), scratchSpace, secondsBetweenSamples);
+	}
+
+	public TelemetrySampler(File procRoot, ScratchSpaceManager scratchSpace, int secondsBetweenSamples) {
+		this.procRoot = procRoot;
+		this.scratchSpace = scratchSpace;
+		this.msRunDelay = secondsBetweenSamples * 1000L;
+	}
+
+	/**
+	 * Get the latest sample.
+	 *
+	 * @return The sample, null before the first one
+	 */
+	public NodeTelemetry getLatest() {
+		return latest;
+	}
+
+	/**
+	 * Take a sample. The cpu usage is measured since the previous sample, or since boot for the first one.
+	 *
+	 * @return The sample
+	 */
+	public synchronized NodeTelemetry sample() {
+		double cpuUsage = -1;
+		double ioWait = -1;
+		long[] cpu = readCpu();
+		if (cpu != null) {
+			long[] previous = previousCpu != null ? previousCpu : new long[3];
+			long total = cpu[0] - previous[0];
+			if (total > 0) {
+				cpuUsage = 1 - (double) (cpu[1] - previous[1] + cpu[2] - previous[2]) / total;
+				ioWait = (double) (cpu[2] - previous[2]) / total;
+			}
+			previousCpu = cpu;
+		}
+
+		long memoryTotal = -1;
+		long memoryAvailable = -1;
+		long[] memory = readMemory();
+		if (memory != null) {
+			memoryTotal = memory[0];
+			memoryAvailable = memory[1];
+		}
+
+		latest = new NodeTelemetry(System.currentTimeMillis(), Runtime.getRuntime().availableProcessors(), cpuUsage,
+				ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage(), ioWait, memoryTotal,
+				memoryAvailable, scratchSpace.getFreeSpace());
+		return latest;
+	}
+
+	/**
+	 * Read the cpu time counters from the first line of /proc/stat: "cpu user nice system idle iowait irq softirq
+	 * steal". Guest time is already counted in user time.
+	 *
+	 * @return The total, idle and iowait times, null if unreadable
+	 */
+	long[] readCpu() {
+		List<String> lines = readLines("stat");
+		if (lines == null || lines.isEmpty() || !lines.get(0).startsWith("cpu ")) {
+			return null;
+		}
+		String[] fields = lines.get(0).trim().split("\\s+");
+		if (fields.length < 6) {
+			return null;
+		}
+		try {
+			long total = 0;
+			for (int i = 1; i < Math.min(fields.length, 9); i++) {
+				total += Long.parseLong(fields[i]);
+			}
+			return new long[] { total, Long.parseLong(fields[4]), Long.parseLong(fields[5]) };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Read the total and available memory from /proc/meminfo.
+	 *
+	 * @return The total and available memory in MiB, null if unreadable
+	 */
+	long[] readMemory() {
+		List<String> lines = readLines("meminfo");
+		if (lines == null) {
+			return null;
+		}
+		long total = -1;
+		long available = -1;
+		for (String line : lines) {
+			// "MemTotal:       16314444 kB"
+			String[] fields = line.split("\\s+");
+			if (fields.length < 2) {
+				continue;
+			}
+			try {
+				if (fields[0].equals("MemTotal:")) {
+					total = Long.parseLong(fields[1]) / 1024;
+				} else if (fields[0].equals("MemAvailable:")) {
+					available = Long.parseLong(fields[1]) / 1024;
+				}
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return total > 0 && available >= 0 ? new long[] { total, available } : null;
+	}
+
+	private List<String> readLines(String name) {
+		try {
+			return Files.readAllLines(new File(procRoot, name).toPath(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Override
+	protected boolean runAsapOnScheduler() {
+		return true;
+	}
+
+	@Override
+	protected long getMsRunDelay() {
+		return msRunDelay;
+	}
+
+	@Override
+	protected void runTask() {
+		sample();
+	}
+
+	@Override
+	public void stop() {
+	}
+}
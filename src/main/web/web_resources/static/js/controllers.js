@@ -1,9 +1,10 @@
 var controllers = angular.module('lancoder.controllers', ['lancoder.services']);
 
-controllers.controller('nodes', function($scope, $http, $interval, apiService) {
+controllers.controller('nodes', function($scope, $http, $interval, apiService, eventService) {
 
   $scope.getJobNameFromID = function(jobId) {
-    return $scope.jobs.filter(function(job) { return job.jobId == jobId })[0].jobName;
+    var matches = ($scope.jobs || []).filter(function(job) { return job.jobId == jobId });
+    return matches.length > 0 ? matches[0].jobName : jobId;
   }
 
   $scope.timeFromNow = function(diff, noPrefix) {
@@ -15,9 +16,9 @@ controllers.controller('nodes', function($scope, $http, $interval, apiService) {
   }
 
   $scope.refresh = function() {
-    apiService.jobs().then(function(jobs) {
+    // Only the names of the jobs being encoded are shown next to the nodes
+    apiService.jobs({state: 'computing,muxing', limit: 500}).then(function(jobs) {
       $scope.jobs = jobs;
-      $scope.complJobCount = jobs.filter(function(job) { return job.jobStatus == "JOB_COMPLETED" }).length;
     });
     apiService.nodes().then(function(nodes) {
       $scope.nodes = nodes;
@@ -33,14 +34,46 @@ controllers.controller('nodes', function($scope, $http, $interval, apiService) {
   };
 
   $scope.nodesShowCodec = {};
-  $scope.refresh();
-  var intervalPromise = $interval(function() {
-      $scope.refresh();
-    }, 5000);
-  $scope.$on('$destroy', function () { $interval.cancel(intervalPromise); });
+
+  var countConnected = function() {
+    $scope.connectedCount = $scope.nodes.filter(function(node) { return !node.offline }).length;
+  };
+
+  if (eventService.supported()) {
+    // Nodes come from the event stream, job names are kept up to date from the job changes
+    apiService.jobs({state: 'computing,muxing', limit: 500}).then(function(jobs) {
+      $scope.jobs = jobs;
+    });
+    eventService.subscribe($scope, 'snapshot', function(data) {
+      $scope.nodes = [];
+      apiService.mergeNodes($scope.nodes, {updated: data.nodes, removed: []});
+      countConnected();
+    });
+    eventService.subscribe($scope, 'nodes', function(changes) {
+      apiService.mergeNodes($scope.nodes || [], changes);
+      countConnected();
+    });
+    eventService.subscribe($scope, 'tasks', function(changes) {
+      apiService.mergeTasks($scope.nodes || [], changes);
+    });
+    eventService.subscribe($scope, 'jobs', function(changes) {
+      $scope.jobs = $scope.jobs || [];
+      angular.forEach(changes.updated, function(job) {
+        if ($scope.getJobNameFromID(job.jobId) === job.jobId) {
+          $scope.jobs.push(job);
+        }
+      });
+    });
+  } else {
+    $scope.refresh();
+    var intervalPromise = $interval(function() {
+        $scope.refresh();
+      }, 5000);
+    $scope.$on('$destroy', function () { $interval.cancel(intervalPromise); });
+  }
 });
 
-controllers.controller('jobs', function($scope, $http, $interval, apiService) {
+controllers.controller('jobs', function($scope, $http, $interval, $timeout, apiService, eventService) {
 
   $http({method: 'GET', url: '/api/codecs/audio'})
       .success(function(data) {
@@ -85,11 +118,16 @@ controllers.controller('jobs', function($scope, $http, $interval, apiService) {
   ];
   $scope.audioSampleRates = [8000, 11025, 22050, 44100, 48000, 88200, 96000];
   $scope.passes = [1, 2];
+  $scope.outputFormats = [
+    {value: 'FILE', name: 'Single file'},
+    {value: 'HLS', name: 'HLS playlist (H.264 only)'}
+  ];
+
+  $scope.page = {offset: 0, limit: 50};
 
   $scope.refresh = function() {
-    apiService.jobs().then(function(jobs) {
+    apiService.jobs({offset: $scope.page.offset, limit: $scope.page.limit, sort: 'priority'}).then(function(jobs) {
       $scope.jobs = jobs;
-      $scope.complJobCount = jobs.filter(function(job) { return job.jobStatus == "JOB_COMPLETED" }).length;
     });
     apiService.nodes().then(function(nodes) {
       $scope.nodes = nodes;
@@ -116,6 +154,14 @@ controllers.controller('jobs', function($scope, $http, $interval, apiService) {
         });
   };
 
+  $scope.changePage = function(direction) {
+    var offset = $scope.page.offset + direction * $scope.page.limit;
+    if (offset >= 0 && offset < $scope.jobs.total) {
+      $scope.page.offset = offset;
+      $scope.refresh();
+    }
+  };
+
   $scope.cleanJobs = function() {
     $http({method: 'GET', url: '/api/jobs/clean'})
     .success(function(data) {
@@ -133,10 +179,55 @@ controllers.controller('jobs', function($scope, $http, $interval, apiService) {
   $scope.newJob = {};
   $scope.refresh();
 
-  var intervalPromise = $interval(function() {
-    $scope.refresh();
-  }, 5000);
-  $scope.$on('$destroy', function () { $interval.cancel(intervalPromise); });
+  var pendingRefresh = null;
+  var refreshSoon = function() {
+    if (pendingRefresh === null) {
+      pendingRefresh = $timeout(function() {
+        pendingRefresh = null;
+        $scope.refresh();
+      }, 500);
+    }
+  };
+
+  if (eventService.supported()) {
+    eventService.subscribe($scope, 'jobs', function(changes) {
+      if (!$scope.jobs || $scope.jobs.error) {
+        return;
+      }
+      // Jobs of the page are updated in place, added or removed jobs change the page
+      angular.forEach(changes.updated, function(job) {
+        for (var i = 0; i < $scope.jobs.length; i++) {
+          if ($scope.jobs[i].jobId === job.jobId) {
+            // The completed count covers all pages, only the server can update it
+            if ($scope.jobs[i].jobStatus !== job.jobStatus &&
+                ($scope.jobs[i].jobStatus === 'JOB_COMPLETED' || job.jobStatus === 'JOB_COMPLETED')) {
+              refreshSoon();
+            }
+            $scope.jobs[i] = apiService.decorateJob(job);
+            return;
+          }
+        }
+        refreshSoon();
+      });
+      if (changes.removed.length > 0) {
+        refreshSoon();
+      }
+    });
+    eventService.subscribe($scope, 'snapshot', function(data) {
+      $scope.nodes = apiService.mergeNodes([], {updated: data.nodes, removed: []});
+      $scope.connectedCount = $scope.nodes.filter(function(node) { return !node.offline }).length;
+    });
+    eventService.subscribe($scope, 'nodes', function(changes) {
+      $scope.nodes = apiService.mergeNodes($scope.nodes || [], changes);
+      $scope.connectedCount = $scope.nodes.filter(function(node) { return !node.offline }).length;
+    });
+  } else {
+    var intervalPromise = $interval(function() {
+      $scope.refresh();
+    }, 5000);
+    $scope.$on('$destroy', function () { $interval.cancel(intervalPromise); });
+  }
+  $scope.$on('$destroy', function () { $timeout.cancel(pendingRefresh); });
 }).controller('HeaderController', function($scope, $location) {
   $scope.isActive = function(viewLocation) {
     return viewLocation === $location.path();
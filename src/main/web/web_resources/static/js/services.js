@@ -2,7 +2,11 @@ var services = angular.module('lancoder.services', []);
 services.factory('apiService', function ($http) {
   return({
     nodes: nodes,
-    jobs: jobs
+    jobs: jobs,
+    decorateJob: decorateJob,
+    decorateNode: decorateNode,
+    mergeNodes: mergeNodes,
+    mergeTasks: mergeTasks
   });
 
   function nodes() {
@@ -10,99 +14,150 @@ services.factory('apiService', function ($http) {
     return(request.then(processNodes, handleServerError));
   }
 
-  function jobs() {
-    var request = $http({method: 'GET', url: '/api/jobs'});
+  function jobs(params) {
+    var request = $http({method: 'GET', url: '/api/jobs/summary', params: params});
     return(request.then(processJobs, handleServerError));
   }
 
   function processJobs(response) {
-    var jobs = response.data;
+    var jobs = response.data.jobs;
+    jobs.total = response.data.total;
+    jobs.completed = response.data.completed;
     for (var i = 0; i < jobs.length; i++) {
-      switch (jobs[i].jobStatus) {
-        case 'JOB_COMPLETED':
-        jobs[i].panel = 'panel-success';
+      decorateJob(jobs[i]);
+    }
+    return jobs;
+  }
+
+  function decorateJob(job) {
+    switch (job.jobStatus) {
+      case 'JOB_COMPLETED':
+      job.panel = 'panel-success';
+      break;
+      case 'JOB_FAILED':
+      job.panel = 'panel-danger';
+      break;
+      case 'JOB_COMPUTING':
+      case 'JOB_MUXING':
+      job.panel = 'panel-primary';
+      break;
+      case 'JOB_PAUSED':
+      job.panel = 'panel-warning';
+      break;
+      case 'JOB_TODO':
+      job.panel = 'panel-info';
+      break;
+      default:
+      job.panel = 'panel-default';
+    }
+    job.totalFps = job.fps;
+    return job;
+  }
+
+  function processNodes(response) {
+    var nodes = response.data;
+    for (var i = 0; i < nodes.length; i++) {
+      decorateNode(nodes[i]);
+    }
+    return nodes;
+  }
+
+  function decorateNode(node) {
+    node.offline = false;
+    switch (node.status) {
+      case 'WORKING':
+        node.panel = 'panel-success';
         break;
-        case 'JOB_FAILED':
-        jobs[i].panel = 'panel-danger';
+      case 'CRASHED':
+        node.panel = 'panel-danger';
         break;
-        case 'JOB_COMPUTING':
-        case 'JOB_MUXING':
-        jobs[i].panel = 'panel-primary';
+      case 'FREE':
+        node.panel = 'panel-primary';
         break;
-        case 'JOB_PAUSED':
-        jobs[i].panel = 'panel-warning';
+      case 'PAUSED':
+        node.panel = 'panel-warning';
         break;
-        case 'JOB_TODO':
-        jobs[i].panel = 'panel-info';
+      case 'NOT_CONNECTED':
+        node.offline = true;
+        node.panel = 'panel-info';
         break;
-        default:
-        jobs[i].panel = 'panel-default';
-      }
-      jobs[i].completedTasks = 0;
-      jobs[i].taskCount = jobs[i].tasks.length;
-      jobs[i].totalFps = 0;
-      for (var j = 0; j < jobs[i].taskCount; j++) {
-        switch (jobs[i].tasks[j].taskProgress.taskState) {
-          case 'TASK_COMPLETED':
-            jobs[i].completedTasks++;
-            break;
-          case 'TASK_COMPUTING':
-            jobs[i].totalFps += jobs[i].tasks[j].taskProgress.fps;
-            break;
-        }
+      default:
+        node.panel = 'panel-default';
+    }
+    //stepCount
+    for (var j = 0; j < node.currentTasks.length; j++) {
+      // Get and set task step count
+      var currentTask = node.currentTasks[j];
+      currentTask.task.taskProgress.stepCount = Object.keys(currentTask.task.taskProgress.steps).length;
+      // Get current step
+      var index = currentTask.task.taskProgress.currentPassIndex;
+      var currentStep = currentTask.task.taskProgress.steps[index];
+      // Convert the unit type from enum constant to pretty string
+      if (currentStep.unit === 'SECONDS') {
+        currentStep.prettyUnit = 'times playback speed';
+      } else if (currentStep.unit === 'FRAMES') {
+        currentStep.prettyUnit = 'FPS';
       }
+      // Add reference to the currentStep
+      currentTask.task.taskProgress.currentStep = currentStep;
     }
-    return jobs;
+    node.cleanCodecs = [];
+    for (var k = 0; k < node.codecs.length; k++) {
+      node.cleanCodecs.push(node.codecs[k].name);
+    }
+    return node;
   }
 
-  function processNodes(response) {
-    var nodes = response.data;
-    for (var i = 0; i < nodes.length; i++) {
-      switch (nodes[i].status) {
-        case 'WORKING':
-          nodes[i].panel = 'panel-success';
-          break;
-        case 'CRASHED':
-          nodes[i].panel = 'panel-danger';
-          break;
-        case 'FREE':
-          nodes[i].panel = 'panel-primary';
-          break;
-        case 'PAUSED':
-          nodes[i].panel = 'panel-warning';
-          break;
-        case 'NOT_CONNECTED':
-          nodes[i].offline = true;
-          nodes[i].panel = 'panel-info';
-          break;
-        default:
-          nodes[i].panel = 'panel-default';
+  /**
+   * Apply the node changes of an event to a list of nodes.
+   */
+  function mergeNodes(nodes, changes) {
+    angular.forEach(changes.updated, function(node) {
+      decorateNode(node);
+      for (var i = 0; i < nodes.length; i++) {
+        if (nodes[i].unid === node.unid) {
+          nodes[i] = node;
+          return;
+        }
       }
-    }
-    //stepCount
-    for (var i = 0; i < nodes.length; i++) {
-      var node = nodes[i];
-      for (var j = 0; j < node.currentTasks.length; j++) {
-        // Get and set task step count
-        var currentTask = node.currentTasks[j];
-        nodes[i].currentTasks[j].task.taskProgress.stepCount = Object.keys(currentTask.task.taskProgress.steps).length;
-        // Get current step
-        var index = currentTask.task.taskProgress.currentPassIndex;
-        var currentStep = nodes[i].currentTasks[j].task.taskProgress.steps[index];
-        // Convert the unit type from enum constant to pretty string
-        if (currentStep.unit === 'SECONDS') {
-          currentStep.prettyUnit = 'times playback speed';
-        } else if (currentStep.unit === 'FRAMES') {
-          currentStep.prettyUnit = 'FPS';
+      nodes.push(node);
+    });
+    angular.forEach(changes.removed, function(unid) {
+      for (var i = nodes.length - 1; i >= 0; i--) {
+        if (nodes[i].unid === unid) {
+          nodes.splice(i, 1);
         }
-        // Add reference to the currentStep
-        nodes[i].currentTasks[j].task.taskProgress.currentStep = currentStep;
       }
-      node.cleanCodecs = [];
-      for (var k = 0; k < node.codecs.length; k++) {
-        node.cleanCodecs.push(node.codecs[k].name);
+    });
+    return nodes;
+  }
+
+  /**
+   * Apply the progress of the running tasks to the current step of the tasks of the nodes.
+   */
+  function mergeTasks(nodes, changes) {
+    angular.forEach(changes.updated, function(update) {
+      for (var i = 0; i < nodes.length; i++) {
+        if (nodes[i].unid !== update.unid) {
+          continue;
+        }
+        for (var j = 0; j < nodes[i].currentTasks.length; j++) {
+          var task = nodes[i].currentTasks[j].task;
+          if (task.jobId !== update.jobId || task.taskId !== update.taskId) {
+            continue;
+          }
+          var step = task.taskProgress.steps[update.currentPassIndex];
+          if (step) {
+            step.progress = update.progress;
+            step.speed = update.speed;
+            step.unitsCompleted = update.unitsCompleted;
+            step.timeEstimated = update.timeEstimated;
+            step.timeElapsed = update.timeElapsed;
+            step.lastUpdate = update.lastUpdate;
+          }
+        }
       }
-    }
+    });
     return nodes;
   }
 
@@ -112,3 +167,72 @@ services.factory('apiService', function ($http) {
     return data;
   }
 });
+
+/**
+ * Server-sent events of the master. A single stream is shared by the controllers, which subscribe to the events by
+ * name. Without EventSource support, controllers fall back to polling.
+ */
+services.factory('eventService', function ($rootScope, $timeout, apiService) {
+  var names = ['snapshot', 'nodes', 'tasks', 'jobs'];
+  var handlers = {};
+  var source = null;
+  var opening = null;
+
+  angular.forEach(names, function(name) {
+    handlers[name] = [];
+  });
+
+  return({
+    supported: supported,
+    subscribe: subscribe
+  });
+
+  function supported() {
+    return typeof(EventSource) !== 'undefined';
+  }
+
+  function open() {
+    opening = null;
+    source = new EventSource('/api/events');
+    angular.forEach(names, function(name) {
+      source.addEventListener(name, function(e) {
+        var data = JSON.parse(e.data);
+        $rootScope.$apply(function() {
+          angular.forEach(handlers[name], function(handler) {
+            handler(data);
+          });
+        });
+      });
+    });
+  }
+
+  /**
+   * Get a snapshot for a handler subscribed after the stream sent its own. The snapshot of the stream holds the
+   * nodes as served by /api/nodes.
+   */
+  function requestSnapshot(handler) {
+    apiService.nodes().then(function(nodes) {
+      if (!nodes.error && handlers.snapshot.indexOf(handler) >= 0) {
+        handler({nodes: nodes});
+      }
+    });
+  }
+
+  function subscribe(scope, name, handler) {
+    handlers[name].push(handler);
+    scope.$on('$destroy', function() {
+      var index = handlers[name].indexOf(handler);
+      if (index >= 0) {
+        handlers[name].splice(index, 1);
+      }
+    });
+    if (source === null) {
+      if (opening === null) {
+        // Open once the controller registered all its handlers, the stream starts with a snapshot
+        opening = $timeout(open, 0, false);
+      }
+    } else if (name === 'snapshot') {
+      requestSnapshot(handler);
+    }
+  }
+});
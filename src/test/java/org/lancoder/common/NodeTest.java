@@ -0,0 +1,195 @@
+package org.lancoder.common;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.EncodeSpeed;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.common.task.ResourceCost;
+import org.lancoder.common.task.Task;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.telemetry.NodeTelemetry;
+
+public class NodeTest {
+
+	private static int nextTaskId = 0;
+
+	private Node node(int cores, int memory) {
+		Node node = new Node(InetAddress.getLoopbackAddress(), 0, "node", new ArrayList<CodecEnum>(), cores, "unid");
+		node.setMemoryCapacity(memory);
+		return node;
+	}
+
+	/**
+	 * Save and load a node with a field cleared, as Java serialization reads a node saved before the field existed.
+	 */
+	private Node savedWithout(String name) throws ReflectiveOperationException, IOException {
+		Node node = node(4, 0);
+		Field field = Node.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(node, null);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(node);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (Node) in.readObject();
+		}
+	}
+
+	@Test
+	public void testExpensiveTaskRunsAloneOnSmallNode() {
+		Node node = node(4, 0);
+		CostTask video = new CostTask(8, 1536);
+
+		assertTrue(node.canFit(video));
+		node.addTask(video);
+		assertEquals(4, node.getUsedResources().getCpu());
+		assertFalse(node.canFit(new CostTask(1, 64)));
+	}
+
+	@Test
+	public void testCheapTasksArePackedBesideVideo() {
+		Node node = node(8, 0);
+		node.addTask(new CostTask(4, 512));
+
+		for (int i = 0; i < 4; i++) {
+			CostTask audio = new CostTask(1, 64);
+			assertTrue(node.canFit(audio));
+			node.addTask(audio);
+		}
+		assertFalse(node.canFit(new CostTask(1, 64)));
+	}
+
+	@Test
+	public void testMemoryIsAccountedWhenKnown() {
+		Node node = node(8, 1024);
+		node.addTask(new CostTask(2, 512));
+		node.addTask(new CostTask(2, 512));
+		assertFalse(node.canFit(new CostTask(2, 512)));
+
+		Node unknownMemory = node(8, 0);
+		unknownMemory.addTask(new CostTask(2, 512));
+		unknownMemory.addTask(new CostTask(2, 512));
+		assertTrue(unknownMemory.canFit(new CostTask(2, 512)));
+	}
+
+	@Test
+	public void testPendingTaskIsNotCountedTwice() {
+		Node node = node(4, 0);
+		CostTask video = new CostTask(4, 512);
+		node.addPendingTask(video);
+
+		assertTrue(node.canFit(video));
+		assertFalse(node.canFit(new CostTask(1, 64)));
+	}
+
+	@Test
+	public void testBenchmarkedSpeedPrefersLargestH264() {
+		Node node = node(4, 0);
+		assertEquals(0, node.getBenchmarkedSpeed(), 0);
+
+		ArrayList<EncodeSpeed> speeds = new ArrayList<>();
+		speeds.add(new EncodeSpeed(CodecEnum.VP8, 1920, 1080, null, 20));
+		node.setEncodeSpeeds(speeds);
+		assertEquals(20, node.getBenchmarkedSpeed(), 0);
+
+		speeds.add(new EncodeSpeed(CodecEnum.H264, 1280, 720, "medium", 90));
+		speeds.add(new EncodeSpeed(CodecEnum.H264, 1920, 1080, "medium", 40));
+		assertEquals(40, node.getBenchmarkedSpeed(), 0);
+	}
+
+	@Test
+	public void testNodeSavedWithoutEncodeSpeeds() throws ReflectiveOperationException, IOException {
+		Node node = savedWithout("encodeSpeeds");
+
+		assertEquals(0, node.getBenchmarkedSpeed(), 0);
+		assertTrue(node.getEncodeSpeeds().isEmpty());
+	}
+
+	@Test
+	public void testNodeSavedWithoutTelemetry() throws ReflectiveOperationException, IOException {
+		Node node = savedWithout("telemetry");
+
+		assertNull(node.getLatestTelemetry());
+		assertFalse(node.isSaturated());
+		assertEquals(1, node.getHeadroom(), 0);
+		assertTrue(node.getTelemetry().isEmpty());
+	}
+
+	@Test
+	public void testNodeSavedWithoutCheckpoints() throws ReflectiveOperationException, IOException {
+		Node node = savedWithout("checkpoints");
+
+		assertNull(node.getCheckpoint(new CostTask(1, 64)));
+		assertTrue(node.getCheckpoints().isEmpty());
+	}
+
+	@Test
+	public void testSaturatedNodeFromTelemetry() {
+		Node node = node(4, 0);
+		assertFalse(node.isSaturated());
+		assertEquals(1, node.getHeadroom(), 0);
+
+		node.addTelemetry(new NodeTelemetry(1, 4, 0.9, 4, 0, 8192, 4096, 100000));
+		assertFalse(node.isSaturated());
+		assertEquals(1, node.getHeadroom(), 0.001);
+
+		// Swapping: almost no memory left
+		node.addTelemetry(new NodeTelemetry(2, 4, 0.9, 4, 0.05, 8192, 100, 100000));
+		assertTrue(node.isSaturated());
+
+		// Temporary folder full
+		node.addTelemetry(new NodeTelemetry(3, 4, 0.9, 4, 0.05, 8192, 4096, 10));
+		assertTrue(node.isSaturated());
+
+		// Loaded by other processes but not saturated
+		node.addTelemetry(new NodeTelemetry(4, 4, 1, 6, 0, 8192, 4096, 100000));
+		assertFalse(node.isSaturated());
+		assertEquals(0.5, node.getHeadroom(), 0.001);
+	}
+
+	@Test
+	public void testTelemetryHistoryIsBounded() {
+		Node node = node(4, 0);
+		for (int i = 1; i <= 100; i++) {
+			node.addTelemetry(new NodeTelemetry(i, 4, 0.5, 1, 0, 8192, 4096, 100000));
+		}
+		node.addTelemetry(new NodeTelemetry(100, 4, 0.5, 1, 0, 8192, 4096, 100000));
+		assertEquals(30, node.getTelemetry().size());
+		assertEquals(100, node.getLatestTelemetry().getTimestamp());
+	}
+
+	private static class CostTask extends ClientTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ResourceCost cost;
+
+		public CostTask(int cpu, int memory) {
+			super(new Task(nextTaskId++, "job", 1, 0, 1000, 1000, Unit.SECONDS, null, null), null);
+			this.cost = new ResourceCost(cpu, memory);
+		}
+
+		@Override
+		public Task getTask() {
+			return task;
+		}
+
+		@Override
+		public ResourceCost getCost() {
+			return cost;
+		}
+	}
+}
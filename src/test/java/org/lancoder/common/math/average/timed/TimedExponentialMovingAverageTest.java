@@ -0,0 +1,37 @@
+package org.lancoder.common.math.average.timed;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TimedExponentialMovingAverageTest {
+
+	@Test
+	public void TestFirstSample() {
+		TimedExponentialMovingAverage avg = new TimedExponentialMovingAverage(10 * 1000);
+		avg.add(10, 0);
+		assertEquals(10, avg.getAverage(), 0.0001);
+	}
+
+	@Test
+	public void TestDecay() {
+		TimedExponentialMovingAverage avg = new TimedExponentialMovingAverage(10 * 1000);
+		avg.add(0, 0);
+		avg.add(100, 10 * 1000);
+		// One time constant elapsed, the new sample weights 1 - 1/e
+		assertEquals(100 * (1 - Math.exp(-1)), avg.getAverage(), 0.0001);
+		// A sample long after replaces the average
+		avg.add(50, Long.MAX_VALUE);
+		assertEquals(50, avg.getAverage(), 0.0001);
+	}
+
+	@Test
+	public void TestClear() {
+		TimedExponentialMovingAverage avg = new TimedExponentialMovingAverage(10 * 1000);
+		avg.add(10, 0);
+		avg.clear();
+		assertEquals(0, avg.getSampleCount());
+		assertEquals(0, avg.getAverage(), 0.0001);
+	}
+
+}
@@ -2,6 +2,11 @@ package org.lancoder.common.math.average.timed;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 import org.junit.Test;
 
 public class TimedMovingAverageTest {
@@ -37,4 +42,31 @@ public class TimedMovingAverageTest {
 		assertEquals(2, avg.getSampleCount());
 	}
 
+	@Test
+	public void TestAverageAfterWrap() {
+		TimedMovingAverage avg = new TimedMovingAverage(10 * 1000, 3);
+		for (int i = 1; i <= 40; i++) {
+			avg.add(i, Long.MAX_VALUE);
+		}
+		assertEquals(3, avg.getSampleCount());
+		assertEquals(39, avg.getAverage(), 0.0001);
+	}
+
+	@Test
+	public void TestSerialization() throws Exception {
+		TimedMovingAverage avg = new TimedMovingAverage(10 * 1000);
+		avg.add(10, Long.MAX_VALUE);
+		avg.add(20, Long.MAX_VALUE);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(avg);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			TimedMovingAverage copy = (TimedMovingAverage) in.readObject();
+			assertEquals(2, copy.getSampleCount());
+			assertEquals(15, copy.getAverage(), 0.0001);
+		}
+	}
+
 }
@@ -0,0 +1,73 @@
+package org.lancoder.common.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void testSameMetricIsShared() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("test_total", "help", "a", "1").increment();
+		registry.counter("test_total", "help", "a", "1").increment();
+		registry.counter("test_total", "help", "a", "2").increment();
+		assertEquals(2, registry.counter("test_total", "help", "a", "1").getCount());
+	}
+
+	@Test
+	public void testRetainKeepsOnlyListedMetrics() {
+		MetricsRegistry registry = new MetricsRegistry();
+		Gauge kept = registry.gauge("test_gauge", "help", "node", "a");
+		registry.gauge("test_gauge", "help", "node", "b");
+		registry.gauge("other_gauge", "help", "node", "b");
+
+		registry.retain("test_gauge", Arrays.asList(kept));
+
+		assertSame(kept, registry.gauge("test_gauge", "help", "node", "a"));
+		String text = registry.toPrometheusText();
+		assertFalse(text.contains("test_gauge{node=\"b\"}"));
+		assertTrue(text.contains("other_gauge{node=\"b\"}"));
+	}
+
+	@Test
+	public void testPrometheusText() {
+		MetricsRegistry registry = new MetricsRegistry();
+		registry.counter("test_total", "Some \"help\"", "pool", "a\"b").increment(3);
+		registry.gauge("test_gauge", "help").set(1.5);
+
+		String text = registry.toPrometheusText();
+		assertTrue(text.contains("# TYPE test_total counter\n"));
+		assertTrue(text.contains("test_total{pool=\"a\\\"b\"} 3\n"));
+		assertTrue(text.contains("test_gauge 1.5\n"));
+	}
+
+	@Test
+	public void testHistogramQuantiles() {
+		Histogram histogram = new Histogram("test_seconds", "help", 1);
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		// Buckets keep values within 12.5%
+		assertEquals(500, histogram.getValueAtQuantile(0.5), 500 * 0.125);
+		assertEquals(990, histogram.getValueAtQuantile(0.99), 990 * 0.125);
+		assertEquals(1000, histogram.getValueAtQuantile(1));
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		long[] values = new long[] { 0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE };
+		for (long value : values) {
+			int index = Histogram.getBucketIndex(value);
+			assertTrue(Histogram.getBucketUpperBound(index) >= value);
+			if (index > 0) {
+				assertTrue(Histogram.getBucketUpperBound(index - 1) < value);
+			}
+		}
+	}
+
+}
@@ -132,6 +132,66 @@ public class PoolTest {
 		}
 	}
 
+	@Test(timeout = 10000)
+	public void testSpawningWorkersDoesNotBlockPool() throws InterruptedException {
+		ArrayList<DummyTask> tasks = new ArrayList<>();
+		pool.setThreadLimit(50);
+
+		// Workers are spawned back to back, a missed start notification would hang the pool
+		for (int i = 0; i < 500; i++) {
+			DummyTask task = new DummyTask(0);
+			tasks.add(task);
+			assertTrue(pool.add(task));
+		}
+		while (pool.hasWorking()) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+
+		for (DummyTask task : tasks) {
+			assertTrue(task.completed);
+		}
+	}
+
+	@Test
+	public void testVirtualThreadsOnlyForIoBoundPools() throws InterruptedException {
+		assertFalse(pool.useVirtualThreads(8));
+		assertFalse(pool.isVirtual());
+
+		DummyIoPool ioPool = new DummyIoPool(2);
+		boolean switched = ioPool.useVirtualThreads(8);
+		assertEquals(VirtualThreads.isAvailable(), switched);
+		assertEquals(switched ? 8 : 2, ioPool.getThreadLimit());
+
+		Thread t = new Thread(ioPool);
+		t.start();
+		ArrayList<DummyTask> tasks = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			DummyTask task = new DummyTask(50);
+			tasks.add(task);
+			assertTrue(ioPool.add(task));
+		}
+		Thread.sleep(400);
+		ioPool.stop();
+
+		assertFalse(ioPool.hasWorking());
+		for (DummyTask task : tasks) {
+			assertTrue(task.completed);
+		}
+	}
+
+	class DummyIoPool extends DummyPool {
+
+		public DummyIoPool(int threadLimit) {
+			super(threadLimit);
+		}
+
+		@Override
+		protected boolean isIoBound() {
+			return true;
+		}
+	}
+
 	class DummyPool extends Pool<DummyTask> {
 
 		public DummyPool(int threadLimit) {
@@ -60,6 +60,90 @@ public class SchedulerTest {
 		assertTrue(first.compareTo(second) < 0);
 	}
 
+	@Test
+	public void testCompareToLargeDifference() {
+		DummySchedulable first = new DummySchedulable();
+		first.nextRun = 0;
+
+		DummySchedulable second = new DummySchedulable();
+		second.nextRun = 3L * Integer.MAX_VALUE;
+
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(second.compareTo(first) > 0);
+	}
+
+	@Test
+	public void testCompareToSameRunTime() {
+		DummySchedulable first = new DummySchedulable();
+		DummySchedulable second = new DummySchedulable();
+		first.nextRun = second.nextRun = 1000000;
+
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(second.compareTo(first) > 0);
+		assertEquals(0, first.compareTo(first));
+	}
+
+	@Test
+	public void testSchedulablesDueTogether() {
+		Scheduler s = new Scheduler();
+		Thread t = new Thread(s);
+		t.start();
+
+		DummySchedulable[] schedulables = new DummySchedulable[10];
+		for (int i = 0; i < schedulables.length; i++) {
+			schedulables[i] = new DummySchedulable();
+			schedulables[i].maxCount = 1;
+			s.addSchedulable(schedulables[i]);
+		}
+		// Adding again must not schedule a second run
+		s.addSchedulable(schedulables[0]);
+
+		try {
+			Thread.sleep(300);
+		} catch (InterruptedException e) {
+		}
+		s.stop();
+
+		for (DummySchedulable schedulable : schedulables) {
+			assertEquals(1, schedulable.changeMe);
+		}
+	}
+
+	@Test
+	public void testJitter() {
+		DummySchedulable schedulable = new DummySchedulable(1000);
+		schedulable.jitter = 500;
+
+		for (int i = 0; i < 100; i++) {
+			long before = System.currentTimeMillis();
+			schedulable.scheduleNextRun();
+			long after = System.currentTimeMillis();
+
+			assertTrue(schedulable.nextRun >= before + 1000);
+			assertTrue(schedulable.nextRun <= after + 1500);
+		}
+	}
+
+	@Test
+	public void testFailingSchedulableIsRescheduled() {
+		Scheduler s = new Scheduler();
+		Thread t = new Thread(s);
+		t.start();
+
+		DummySchedulable failing = new DummySchedulable();
+		failing.fail = true;
+		s.addSchedulable(failing);
+
+		try {
+			Thread.sleep(350);
+		} catch (InterruptedException e) {
+		}
+		s.stop();
+
+		// The scheduler survived the first failure and ran it again
+		assertTrue(failing.changeMe >= 2);
+	}
+
 	@Test
 	public void testMultipleSchedulables() {
 		Scheduler s = new Scheduler();
@@ -91,6 +175,8 @@ public class SchedulerTest {
 class DummySchedulable extends Schedulable {
 
 	public int changeMe = 0;
+	public long jitter = 0;
+	public boolean fail = false;
 	private int msDelay;
 
 	public DummySchedulable(int delay) {
@@ -104,6 +190,14 @@ class DummySchedulable extends Schedulable {
 	@Override
 	public void runTask() {
 		changeMe++;
+		if (fail) {
+			throw new IllegalStateException("failed on purpose");
+		}
+	}
+
+	@Override
+	protected long getMsRunJitter() {
+		return jitter;
 	}
 
 	@Override
@@ -0,0 +1,57 @@
+package org.lancoder.common.task;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInputStream;
+
+import org.junit.Test;
+import org.lancoder.common.status.TaskState;
+
+public class ProgressTest {
+
+	/**
+	 * A progress of 200 frames out of 1500 with two speed samples, serialized by the previous release
+	 */
+	private static final String PREVIOUS_RELEASE_PROGRESS = "aced0005737200216f72672e6c616e636f6465722e636f6d6d6f6e2e7461736b2e50726f6772657373f6ad931fccccb07a02"
+			+ "000b4a000a6c61737455706461746544000870726f677265737344000573706565644a000b74696d65456c61707365644a00"
+			+ "0d74696d65457374696d617465644a000b74696d65537461727465644a000e756e697473436f6d706c657465644a000a756e"
+			+ "697473546f74616c4c00076176657261676574003b4c6f72672f6c616e636f6465722f636f6d6d6f6e2f6d6174682f617665"
+			+ "726167652f74696d65642f54696d65644d6f76696e67417665726167653b4c00097461736b53746174657400264c6f72672f"
+			+ "6c616e636f6465722f636f6d6d6f6e2f7374617475732f5461736b53746174653b4c0004756e697474001f4c6f72672f6c61"
+			+ "6e636f6465722f636f6d6d6f6e2f7461736b2f556e69743b7870000001a1531a9135402aaaaaaaaaaaab40b3880000000000"
+			+ "000000000000002d0000000000000000000001a1531a910800000000000000c800000000000005dc737200396f72672e6c61"
+			+ "6e636f6465722e636f6d6d6f6e2e6d6174682e617665726167652e74696d65642e54696d65644d6f76696e67417665726167"
+			+ "65659ea5b0891bfb430200034a000a65787069726554696d654a000e6d617853616d706c65436f756e744c000773616d706c"
+			+ "65737400164c6a6176612f7574696c2f4c696e6b65644c6973743b7870000000000000ea6000000000000003e8737200146a"
+			+ "6176612e7574696c2e4c696e6b65644c6973740c29535d4a6088220300007870770400000002737200326f72672e6c616e63"
+			+ "6f6465722e636f6d6d6f6e2e6d6174682e617665726167652e74696d65642e54696d656453616d706c65d37a1b984054834d"
+			+ "0200024a000874696d654d5365634c000b73616d706c6556616c75657400124c6a6176612f6c616e672f4f626a6563743b78"
+			+ "70000001a1531a911c737200106a6176612e6c616e672e446f75626c6580b3c24a296bfb0402000144000576616c75657872"
+			+ "00106a6176612e6c616e672e4e756d62657286ac951d0b94e08b020000787040b38800000000007371007e000a000001a153"
+			+ "1a91357371007e000d40b3880000000000787e7200246f72672e6c616e636f6465722e636f6d6d6f6e2e7374617475732e54"
+			+ "61736b537461746500000000000000001200007872000e6a6176612e6c616e672e456e756d00000000000000001200007870"
+			+ "74000e5441534b5f434f4d505554494e477e72001d6f72672e6c616e636f6465722e636f6d6d6f6e2e7461736b2e556e6974"
+			+ "00000000000000001200007871007e00137400064652414d4553";
+
+	private static byte[] fromHex(String hex) {
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+		}
+		return bytes;
+	}
+
+	@Test
+	public void testReadProgressOfPreviousRelease() throws Exception {
+		byte[] bytes = fromHex(PREVIOUS_RELEASE_PROGRESS);
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			Progress progress = (Progress) in.readObject();
+
+			assertEquals(TaskState.TASK_COMPUTING, progress.taskState);
+			assertEquals(1500, progress.getUnitsTotal());
+			assertEquals(200, progress.getUnitsCompleted());
+			assertEquals(2, progress.average.getSampleCount());
+		}
+	}
+}
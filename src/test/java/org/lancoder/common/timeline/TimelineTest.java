@@ -0,0 +1,37 @@
+package org.lancoder.common.timeline;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+public class TimelineTest {
+
+	@Test
+	public void testMergeKeepsUnknownEventsOnly() throws Exception {
+		Timeline master = new Timeline();
+		master.mark("assigned");
+
+		// The worker receives a copy of the master's timeline
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(master);
+		}
+		Timeline worker;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			worker = (Timeline) in.readObject();
+		}
+		worker.begin("task");
+		worker.end("task");
+
+		master.merge(worker);
+		master.merge(worker);
+		assertEquals(3, master.getEvents().size());
+		assertEquals("assigned", master.getEvents().get(0).getName());
+	}
+
+}
@@ -0,0 +1,30 @@
+package org.lancoder.master;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AssignmentTest {
+
+	@Test
+	public void testLeaseExpires() {
+		Assignment assignment = new Assignment(null, null, 1000);
+		long start = assignment.getTime();
+
+		assertFalse(assignment.isExpired(start));
+		assertFalse(assignment.isExpired(start + 1000));
+		assertTrue(assignment.isExpired(start + 1001));
+	}
+
+	@Test
+	public void testRenewExtendsLease() throws InterruptedException {
+		Assignment assignment = new Assignment(null, null, 1000);
+		long expiry = assignment.getLeaseExpiry();
+
+		Thread.sleep(5);
+		assignment.renew();
+
+		assertTrue(assignment.getLeaseExpiry() > expiry);
+		assertFalse(assignment.isExpired(expiry + 1));
+	}
+}
@@ -0,0 +1,247 @@
+package org.lancoder.master;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lancoder.common.FakeInfo;
+import org.lancoder.common.Node;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.events.Event;
+import org.lancoder.common.events.EventEnum;
+import org.lancoder.common.events.EventListener;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.cluster.messages.TaskRequestMessage;
+import org.lancoder.common.network.cluster.protocol.ClusterProtocol;
+import org.lancoder.common.status.NodeState;
+import org.lancoder.common.status.TaskState;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.master.dispatcher.DispatchItem;
+import org.lancoder.master.dispatcher.DispatcherPool;
+
+public class JobManagerTest {
+
+	private static final long AFTER_LEASE = System.currentTimeMillis() + 3600 * 1000;
+
+	private static class NullListener implements EventListener {
+
+		@Override
+		public void handle(Event event) {
+		}
+	}
+
+	private static class RecordingListener implements EventListener {
+
+		private final ArrayList<Event> events = new ArrayList<>();
+
+		@Override
+		public void handle(Event event) {
+			events.add(event);
+		}
+	}
+
+	/**
+	 * Keeps the messages instead of sending them to the nodes
+	 */
+	private static class RecordingDispatcherPool extends DispatcherPool {
+
+		private final ArrayList<DispatchItem> items = new ArrayList<>();
+
+		public RecordingDispatcherPool() {
+			super(new NullListener());
+		}
+
+		@Override
+		public synchronized boolean add(DispatchItem element) {
+			return items.add(element);
+		}
+
+		public synchronized ArrayList<DispatchItem> drain() {
+			ArrayList<DispatchItem> drained = new ArrayList<>(items);
+			items.clear();
+			return drained;
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private NodeManager nodeManager;
+	private RecordingDispatcherPool dispatcherPool;
+	private JobManager jobManager;
+	private Node first;
+	private Node second;
+	/**
+	 * The first task given to the first node
+	 */
+	private ClientTask task;
+
+	private static Node node(int index) {
+		ArrayList<CodecEnum> codecs = new ArrayList<>();
+		codecs.add(CodecEnum.H264);
+		codecs.add(CodecEnum.VORBIS);
+		Node node = new Node(InetAddress.getLoopbackAddress(), 2000 + index, "node-" + index, codecs, 2, "node-"
+				+ index);
+		node.setStatus(NodeState.FREE);
+		return node;
+	}
+
+	@Before
+	public void setUp() {
+		MasterConfig config = new MasterConfig();
+		config.setAbsoluteSharedFolder("/shared");
+		config.setTempEncodingFolder("/tmp");
+		NullListener listener = new NullListener();
+		nodeManager = new NodeManager(listener, config, null);
+		dispatcherPool = new RecordingDispatcherPool();
+		jobManager = new JobManager(listener, nodeManager, dispatcherPool, null, null);
+
+		Job job = new JobInitiator(null, config).createJob(FakeInfo.fakeAudioEncodeRequest("job"), "job", new File(
+				"source.mkv"), new File("encodes", "job"), FakeInfo.fakeFileInfo());
+		jobManager.addJob(job);
+
+		first = node(0);
+		second = node(1);
+		nodeManager.getNodeHashMap().put(first.getUnid(), first);
+		jobManager.updateNodesWork();
+		ArrayList<DispatchItem> items = dispatcherPool.drain();
+		task = ((TaskRequestMessage) items.get(0).getMessage()).getTask();
+		assertEquals(first, items.get(0).getNode());
+	}
+
+	/**
+	 * Reclaim the tasks of the first node and make it unreachable, as if it lost the master.
+	 */
+	private void loseFirstNode() {
+		assertTrue(jobManager.reclaimExpiredLeases(AFTER_LEASE) > 0);
+		first.setStatus(NodeState.NOT_CONNECTED);
+		first.unlock();
+	}
+
+	private ArrayList<DispatchItem> getMessages(ClusterProtocol code, Node node) {
+		ArrayList<DispatchItem> messages = new ArrayList<>();
+		for (DispatchItem item : dispatcherPool.drain()) {
+			if (item.getMessage().getCode() == code && item.getNode().equals(node)) {
+				messages.add(item);
+			}
+		}
+		return messages;
+	}
+
+	@Test
+	public void testExpiredLeaseResetsTask() {
+		assertEquals(0, jobManager.reclaimExpiredLeases(System.currentTimeMillis()));
+		assertEquals(TaskState.TASK_ASSIGNED, task.getProgress().getTaskState());
+
+		assertTrue(jobManager.reclaimExpiredLeases(AFTER_LEASE) > 0);
+		assertEquals(TaskState.TASK_TODO, task.getProgress().getTaskState());
+		assertTrue(jobManager.getAssignments(first).isEmpty());
+		assertFalse(first.hasTask(task));
+	}
+
+	@Test
+	public void testLateCompletionWithoutNewAssignee() {
+		loseFirstNode();
+
+		assertTrue(jobManager.acceptTaskReport(task, first, TaskState.TASK_COMPLETED));
+		assertTrue(dispatcherPool.drain().isEmpty());
+	}
+
+	@Test
+	public void testLateCompletionOverridesNewAssignee() {
+		loseFirstNode();
+		nodeManager.getNodeHashMap().put(second.getUnid(), second);
+		jobManager.updateNodesWork();
+		boolean given = false;
+		for (DispatchItem item : dispatcherPool.drain()) {
+			given |= ((TaskRequestMessage) item.getMessage()).getTask().equals(task) && item.getNode().equals(second);
+		}
+		assertTrue(given);
+
+		assertTrue(jobManager.acceptTaskReport(task, first, TaskState.TASK_COMPLETED));
+		assertEquals(1, getMessages(ClusterProtocol.UNASSIGN_TASK, second).size());
+		for (Assignment assignment : jobManager.getAssignments(second)) {
+			assertNotEquals(task, assignment.getTask());
+		}
+	}
+
+	@Test
+	public void testRunningTaskIsReattached() {
+		loseFirstNode();
+
+		assertTrue(jobManager.acceptTaskReport(task, first, TaskState.TASK_COMPUTING));
+		assertEquals(1, jobManager.getAssignments(first).size());
+		assertEquals(task, jobManager.getAssignments(first).get(0).getTask());
+		assertTrue(dispatcherPool.drain().isEmpty());
+	}
+
+	@Test
+	public void testNonOwnerIsToldToStop() {
+		nodeManager.getNodeHashMap().put(second.getUnid(), second);
+
+		assertFalse(jobManager.acceptTaskReport(task, second, TaskState.TASK_COMPUTING));
+		assertEquals(1, getMessages(ClusterProtocol.UNASSIGN_TASK, second).size());
+		assertEquals(task, jobManager.getAssignments(first).get(0).getTask());
+	}
+
+	@Test
+	public void testEncodedJobIsMuxedAfterRestart() {
+		Job encoded = new JobInitiator(null, new MasterConfig()).createJob(FakeInfo.fakeAudioEncodeRequest("encoded"),
+				"encoded", new File("source.mkv"), new File("encodes", "encoded"), FakeInfo.fakeFileInfo());
+		encoded.start();
+		for (ClientTask encodedTask : encoded.getClientTasks()) {
+			encodedTask.completed();
+		}
+		Job encoding = new JobInitiator(null, new MasterConfig()).createJob(FakeInfo.fakeAudioEncodeRequest(
+				"encoding"), "encoding", new File("source.mkv"), new File("encodes", "encoding"), FakeInfo
+				.fakeFileInfo());
+		encoding.start();
+		encoding.getClientTasks().get(0).completed();
+
+		HashMap<String, Job> jobs = new HashMap<>();
+		jobs.put(encoded.getJobId(), encoded);
+		jobs.put(encoding.getJobId(), encoding);
+		RecordingListener listener = new RecordingListener();
+		new JobManager(listener, nodeManager, dispatcherPool, new MasterSavedInstance(new HashMap<String, Node>(),
+				jobs), null);
+
+		ArrayList<Object> muxed = new ArrayList<>();
+		for (Event event : listener.events) {
+			if (event.getCode() == EventEnum.JOB_ENCODING_COMPLETED) {
+				muxed.add(event.getObject());
+			}
+		}
+		assertEquals(1, muxed.size());
+		assertEquals(encoded, muxed.get(0));
+	}
+
+	@Test
+	public void testAssignmentsSurviveCleanRestart() throws IOException {
+		// The master saves its instance without resetting the tasks of its nodes
+		File file = new File(folder.getRoot(), "master_instance.bin");
+		MasterSavedInstance.save(file, new MasterSavedInstance(nodeManager.getNodeHashMap(), jobManager
+				.getJobHashMap()));
+		MasterSavedInstance saved = MasterSavedInstance.load(file);
+
+		MasterConfig config = new MasterConfig();
+		NodeManager restartedNodes = new NodeManager(new NullListener(), config, saved);
+		JobManager restarted = new JobManager(new NullListener(), restartedNodes, new RecordingDispatcherPool(),
+				saved, null);
+		Node node = restartedNodes.identifySender(first.getUnid());
+
+		assertEquals(1, restarted.getAssignments(node).size());
+		ClientTask restored = restarted.getAssignments(node).get(0).getTask();
+		assertEquals(task, restored);
+		assertNotEquals(TaskState.TASK_TODO, restored.getProgress().getTaskState());
+		// The node reports the task to the restarted master
+		assertTrue(restarted.acceptTaskReport(restored, node, TaskState.TASK_COMPUTING));
+	}
+}
@@ -0,0 +1,63 @@
+package org.lancoder.master;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.junit.Test;
+import org.lancoder.common.Node;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.CodecLoader;
+import org.lancoder.common.events.Event;
+import org.lancoder.common.events.EventListener;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.cluster.messages.ConnectRequest;
+import org.lancoder.common.status.NodeState;
+
+public class NodeManagerTest {
+
+	private static class NullListener implements EventListener {
+
+		@Override
+		public void handle(Event event) {
+		}
+	}
+
+	private static Node node(ArrayList<CodecEnum> codecs, int threadCount) {
+		Node node = new Node(InetAddress.getLoopbackAddress(), 2000, "node", codecs, threadCount, "unid");
+		node.setUnid("unid");
+		return node;
+	}
+
+	@Test
+	public void testReconnectingNodeRefreshesCapacity() {
+		ArrayList<CodecEnum> oldCodecs = new ArrayList<>();
+		oldCodecs.add(CodecEnum.H264);
+		// Saved by a master that did not know the memory and mkvmerge of its nodes
+		Node saved = node(oldCodecs, 8);
+		HashMap<String, Node> nodes = new HashMap<>();
+		nodes.put(saved.getUnid(), saved);
+		NodeManager nodeManager = new NodeManager(new NullListener(), new MasterConfig(), new MasterSavedInstance(
+				nodes, new HashMap<String, Job>()));
+
+		ArrayList<CodecEnum> codecs = new ArrayList<>();
+		codecs.add(CodecEnum.H264);
+		codecs.add(CodecEnum.H265);
+		Node reconnecting = node(codecs, 4);
+		reconnecting.setMemoryCapacity(2048);
+		reconnecting.setMkvMergeInstalled(true);
+		assertNotNull(nodeManager.connectRequest(new ConnectRequest(reconnecting), InetAddress.getLoopbackAddress())
+				.getNewUnid());
+
+		Node node = nodeManager.identifySender("unid");
+		assertSame(saved, node);
+		assertEquals(NodeState.FREE, node.getStatus());
+		assertEquals(4, node.getThreadCount());
+		assertEquals(4, node.getCapacity().getCpu());
+		assertEquals(2048, node.getMemoryCapacity());
+		assertTrue(node.isMkvMergeInstalled());
+		assertTrue(node.getCodecs().contains(CodecLoader.fromCodec(CodecEnum.H265)));
+	}
+}
@@ -0,0 +1,170 @@
+package org.lancoder.master.api.web;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventStreamClientTest {
+
+	/**
+	 * Output stream of a connection that takes data only while it is ready
+	 */
+	private static class FakeOutputStream extends ServletOutputStream {
+
+		private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+		private boolean ready = true;
+		private WriteListener listener;
+
+		@Override
+		public boolean isReady() {
+			return ready;
+		}
+
+		@Override
+		public void setWriteListener(WriteListener writeListener) {
+			this.listener = writeListener;
+		}
+
+		@Override
+		public void write(int b) {
+			if (!ready) {
+				throw new IllegalStateException("write while not ready");
+			}
+			written.write(b);
+		}
+
+		public void setReady(boolean ready) throws IOException {
+			this.ready = ready;
+			if (ready) {
+				listener.onWritePossible();
+			}
+		}
+
+		public String getWritten() {
+			return new String(written.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static class FakeAsyncContext implements AsyncContext {
+
+		private int completed;
+
+		@Override
+		public void complete() {
+			completed++;
+		}
+
+		@Override
+		public ServletRequest getRequest() {
+			return null;
+		}
+
+		@Override
+		public ServletResponse getResponse() {
+			return null;
+		}
+
+		@Override
+		public boolean hasOriginalRequestAndResponse() {
+			return true;
+		}
+
+		@Override
+		public void dispatch() {
+		}
+
+		@Override
+		public void dispatch(String path) {
+		}
+
+		@Override
+		public void dispatch(ServletContext context, String path) {
+		}
+
+		@Override
+		public void start(Runnable run) {
+		}
+
+		@Override
+		public void addListener(AsyncListener listener) {
+		}
+
+		@Override
+		public void addListener(AsyncListener listener, ServletRequest servletRequest,
+				ServletResponse servletResponse) {
+		}
+
+		@Override
+		public <T extends AsyncListener> T createListener(Class<T> clazz) {
+			return null;
+		}
+
+		@Override
+		public void setTimeout(long timeout) {
+		}
+
+		@Override
+		public long getTimeout() {
+			return 0;
+		}
+	}
+
+	private FakeOutputStream output;
+	private FakeAsyncContext context;
+	private EventStreamClient client;
+
+	@Before
+	public void setUp() {
+		output = new FakeOutputStream();
+		context = new FakeAsyncContext();
+		client = new EventStreamClient(context, output);
+	}
+
+	@Test
+	public void testEventIsWritten() {
+		assertTrue(client.send("jobs", "{}"));
+
+		assertEquals("event: jobs\ndata: {}\n\n", output.getWritten());
+		assertEquals(0, client.getPendingCount());
+	}
+
+	@Test
+	public void testStalledClientIsQueuedWithoutWriting() throws IOException {
+		output.setReady(false);
+		assertTrue(client.send("jobs", "{}"));
+		assertTrue(client.keepAlive());
+
+		assertEquals("", output.getWritten());
+		assertEquals(2, client.getPendingCount());
+
+		output.setReady(true);
+		assertEquals("event: jobs\ndata: {}\n\n:\n\n", output.getWritten());
+		assertEquals(0, client.getPendingCount());
+	}
+
+	@Test
+	public void testFullQueueClosesClient() throws IOException {
+		output.setReady(false);
+		for (int i = 0; i < EventStreamClient.MAX_PENDING_EVENTS; i++) {
+			assertTrue(client.send("tasks", "{}"));
+		}
+
+		assertFalse(client.send("tasks", "{}"));
+		assertTrue(client.isClosed());
+		assertEquals(1, context.completed);
+		assertFalse(client.keepAlive());
+	}
+}
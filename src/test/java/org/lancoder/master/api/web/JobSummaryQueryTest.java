@@ -0,0 +1,87 @@
+package org.lancoder.master.api.web;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.lancoder.common.FakeInfo;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.network.messages.web.JobSummary;
+import org.lancoder.common.network.messages.web.JobSummaryPage;
+import org.lancoder.common.status.JobState;
+import org.lancoder.master.JobInitiator;
+import org.lancoder.master.MasterConfig;
+
+public class JobSummaryQueryTest {
+
+	private ArrayList<Job> jobs = new ArrayList<>();
+
+	@Before
+	public void setUp() {
+		MasterConfig config = new MasterConfig();
+		config.setAbsoluteSharedFolder("/shared");
+		config.setTempEncodingFolder("/tmp");
+		JobInitiator initiator = new JobInitiator(null, config);
+
+		for (int i = 0; i < 5; i++) {
+			String name = "job-" + i;
+			Job job = initiator.createJob(FakeInfo.fakeAudioEncodeRequest(name), name, new File("source.mkv"),
+					new File("encodes", name), FakeInfo.fakeFileInfo());
+			job.setTimeAdded(1000 + i);
+			jobs.add(job);
+		}
+		jobs.get(1).complete();
+		jobs.get(3).complete();
+	}
+
+	@Test
+	public void testPagination() {
+		JobSummaryPage page = new JobSummaryQuery(null, null, 2, 2).apply(jobs);
+
+		assertEquals(5, page.getTotal());
+		assertEquals(2, page.getCompleted());
+		assertEquals(2, page.getJobs().size());
+		assertEquals("job-2", page.getJobs().get(0).getJobName());
+		assertEquals("job-3", page.getJobs().get(1).getJobName());
+
+		assertTrue(new JobSummaryQuery(null, null, 10, 2).apply(jobs).getJobs().isEmpty());
+	}
+
+	@Test
+	public void testStateFilterAndSort() {
+		JobSummaryPage page = new JobSummaryQuery("completed", "-added", 0, 10).apply(jobs);
+
+		assertEquals(2, page.getTotal());
+		assertEquals(2, page.getCompleted());
+		assertEquals("job-3", page.getJobs().get(0).getJobName());
+		assertEquals("job-1", page.getJobs().get(1).getJobName());
+		for (JobSummary summary : page.getJobs()) {
+			assertEquals(JobState.JOB_COMPLETED, summary.getJobStatus());
+			assertEquals(summary.getTaskCount(), summary.getCompletedTasks());
+			assertEquals(100, summary.getProgress(), 0);
+		}
+	}
+
+	@Test
+	public void testSummaryCounts() {
+		JobSummary summary = new JobSummary(jobs.get(0));
+
+		assertEquals(jobs.get(0).getTaskCount(), summary.getTaskCount());
+		assertEquals(0, summary.getCompletedTasks());
+		assertEquals(0, summary.getProgress(), 0);
+		assertEquals(-1, summary.getTimeEstimated());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownState() {
+		new JobSummaryQuery("sleeping", null, 0, 10);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownSortKey() {
+		new JobSummaryQuery(null, "size", 0, 10);
+	}
+}
@@ -0,0 +1,176 @@
+package org.lancoder.master.api.web;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+public class SnapshotCacheTest {
+
+	private static class CountingRenderer implements SnapshotCache.Renderer {
+
+		private int renders;
+		private String json;
+
+		public CountingRenderer(String json) {
+			this.json = json;
+		}
+
+		@Override
+		public String render() {
+			renders++;
+			return json;
+		}
+	}
+
+	@Test
+	public void testRenderedOncePerVersion() {
+		SnapshotCache cache = new SnapshotCache(false);
+		CountingRenderer renderer = new CountingRenderer("[1]");
+
+		RenderedSnapshot first = cache.get("nodes", 1, renderer);
+		assertSame(first, cache.get("nodes", 1, renderer));
+		assertEquals(1, renderer.renders);
+
+		RenderedSnapshot second = cache.get("nodes", 2, renderer);
+		assertEquals(2, renderer.renders);
+		assertNotSame(first, second);
+		// same content, same tag
+		assertEquals(first.getTag(false), second.getTag(false));
+
+		renderer.json = "[1,2]";
+		assertNotEquals(second.getTag(false), cache.get("nodes", 3, renderer).getTag(false));
+	}
+
+	@Test
+	public void testKeysAreSeparate() {
+		SnapshotCache cache = new SnapshotCache(false);
+		CountingRenderer renderer = new CountingRenderer("[]");
+
+		cache.get("jobs", 1, renderer);
+		cache.get("jobs/summary?offset=0", 1, renderer);
+		assertEquals(2, renderer.renders);
+	}
+
+	/**
+	 * Renders once the test releases it
+	 */
+	private static class BlockingRenderer implements SnapshotCache.Renderer {
+
+		private final CountDownLatch started = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final AtomicInteger renders = new AtomicInteger();
+
+		@Override
+		public String render() {
+			renders.incrementAndGet();
+			started.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return "[]";
+		}
+	}
+
+	private static Thread getInBackground(final SnapshotCache cache, final String key, final long version,
+			final SnapshotCache.Renderer renderer) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				cache.get(key, version, renderer);
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	@Test(timeout = 10000)
+	public void testRenderDoesNotBlockOtherKeys() throws InterruptedException {
+		SnapshotCache cache = new SnapshotCache(false);
+		BlockingRenderer blocking = new BlockingRenderer();
+		Thread reader = getInBackground(cache, "jobs", 1, blocking);
+		blocking.started.await();
+
+		CountingRenderer renderer = new CountingRenderer("[1]");
+		assertEquals("[1]", new String(cache.get("nodes", 1, renderer).getBody(false), StandardCharsets.UTF_8));
+
+		blocking.release.countDown();
+		reader.join();
+	}
+
+	@Test(timeout = 10000)
+	public void testConcurrentReadersShareRender() throws InterruptedException {
+		SnapshotCache cache = new SnapshotCache(false);
+		BlockingRenderer blocking = new BlockingRenderer();
+		Thread first = getInBackground(cache, "jobs", 1, blocking);
+		blocking.started.await();
+		Thread second = getInBackground(cache, "jobs", 1, blocking);
+
+		blocking.release.countDown();
+		first.join();
+		second.join();
+		assertEquals(1, blocking.renders.get());
+	}
+
+	@Test
+	public void testFailedRenderIsRetried() {
+		SnapshotCache cache = new SnapshotCache(false);
+		try {
+			cache.get("jobs", 1, new SnapshotCache.Renderer() {
+				@Override
+				public String render() {
+					throw new IllegalStateException("unavailable");
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("unavailable", e.getMessage());
+		}
+
+		CountingRenderer renderer = new CountingRenderer("[]");
+		cache.get("jobs", 1, renderer);
+		assertEquals(1, renderer.renders);
+	}
+
+	@Test
+	public void testCompression() throws IOException {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < 500; i++) {
+			sb.append(i).append(',');
+		}
+		String json = sb.append("0]").toString();
+
+		RenderedSnapshot small = new RenderedSnapshot(1, "[]", true, 0);
+		assertFalse(small.isCompressed());
+		assertArrayEquals(small.getBody(false), small.getBody(true));
+
+		RenderedSnapshot large = new RenderedSnapshot(1, json, true, 0);
+		assertTrue(large.isCompressed());
+		assertNotEquals(large.getTag(false), large.getTag(true));
+		assertArrayEquals(large.getBody(false), gunzip(large.getBody(true)));
+
+		assertFalse(new RenderedSnapshot(1, json, false, 0).isCompressed());
+	}
+
+	private static byte[] gunzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,171 @@
+package org.lancoder.muxer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.lancoder.common.FakeInfo;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.file_components.FileInfo;
+import org.lancoder.common.file_components.streams.AudioStream;
+import org.lancoder.common.file_components.streams.Stream;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.job.OutputFormat;
+import org.lancoder.common.network.messages.web.ApiJobRequest;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.master.JobInitiator;
+import org.lancoder.master.MasterConfig;
+
+public class HlsMuxerTest {
+
+	private static Job createJob(ApiJobRequest request) {
+		request.setOutputFormat(OutputFormat.HLS);
+		MasterConfig config = new MasterConfig();
+		return new JobInitiator(null, config).createJob(request, "job", new File("source.mkv"), new File("encodes",
+				"job"), FakeInfo.fakeFileInfo());
+	}
+
+	private static ArrayList<Stream> getSortedStreams(Job job) {
+		ArrayList<Stream> streams = new ArrayList<>(job.getStreams());
+		Collections.sort(streams);
+		return streams;
+	}
+
+	private static Stream getAudioStream(Job job) {
+		for (Stream stream : job.getStreams()) {
+			if (stream instanceof AudioStream) {
+				return stream;
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testVideoStreamSelection() {
+		Job job = createJob(FakeInfo.fakeAudioEncodeRequest());
+		Stream videoStream = HlsMuxer.getVideoStream(getSortedStreams(job));
+
+		assertNotNull(videoStream);
+		assertTrue(HlsMuxer.hasSegmentableParts(videoStream));
+	}
+
+	@Test
+	public void testNoVideoStream() {
+		Job job = createJob(FakeInfo.fakeAudioEncodeRequest());
+		ArrayList<Stream> streams = new ArrayList<>();
+		streams.add(getAudioStream(job));
+
+		assertNull(HlsMuxer.getVideoStream(streams));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonTransportStreamVideoIsRejected() {
+		ApiJobRequest request = FakeInfo.fakeAudioEncodeRequest();
+		request.setVideoCodec(CodecEnum.VP8);
+		createJob(request);
+	}
+
+	@Test
+	public void testNonTransportStreamVideoIsNotSegmentable() {
+		ApiJobRequest request = FakeInfo.fakeAudioEncodeRequest();
+		request.setVideoCodec(CodecEnum.VP8);
+		Job job = new JobInitiator(null, new MasterConfig()).createJob(request, "job", new File("source.mkv"),
+				new File("encodes", "job"), FakeInfo.fakeFileInfo());
+
+		assertFalse(HlsMuxer.hasSegmentableParts(HlsMuxer.getVideoStream(getSortedStreams(job))));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAudioOnlySourceIsRejected() {
+		ApiJobRequest request = FakeInfo.fakeAudioEncodeRequest();
+		request.setOutputFormat(OutputFormat.HLS);
+		FileInfo fileInfo = FakeInfo.fakeFileInfo();
+		fileInfo.getStreams().removeAll(fileInfo.getVideoStreams());
+		new JobInitiator(null, new MasterConfig()).createJob(request, "job", new File("source.mkv"), new File(
+				"encodes", "job"), fileInfo);
+	}
+
+	@Test
+	public void testIncompatibleAudioIsTranscoded() {
+		assertFalse(HlsMuxer.canCopyAudio(getAudioStream(createJob(FakeInfo.fakeAudioEncodeRequest()))));
+		assertFalse(HlsMuxer.canCopyAudio(getAudioStream(createJob(FakeInfo.fakeAudioCopyRequest()))));
+
+		ApiJobRequest request = FakeInfo.fakeAudioEncodeRequest();
+		request.setAudioCodec(CodecEnum.AAC);
+		assertTrue(HlsMuxer.canCopyAudio(getAudioStream(createJob(request))));
+	}
+
+	@Test
+	public void testDurations() {
+		Job job = createJob(FakeInfo.fakeAudioEncodeRequest());
+		Stream videoStream = HlsMuxer.getVideoStream(getSortedStreams(job));
+		ArrayList<ClientTask> tasks = job.getTasksForStream(videoStream);
+
+		double[] durations = HlsMuxer.getDurations(tasks, job.getLengthOfJob());
+
+		assertEquals(2, durations.length);
+		assertEquals(300.0, durations[0], 0.001);
+		// The last part is clamped to the length of the job
+		assertEquals((job.getLengthOfJob() - 300000) / 1000d, durations[1], 0.001);
+		assertEquals("300.000", HlsMuxer.getSegmentTimes(durations));
+	}
+
+	@Test
+	public void testSegmentTimes() {
+		assertEquals("", HlsMuxer.getSegmentTimes(new double[] { 12.5 }));
+		assertEquals("10.000,22.500", HlsMuxer.getSegmentTimes(new double[] { 10, 12.5, 4 }));
+	}
+
+	@Test
+	public void testMediaPlaylist() {
+		String playlist = HlsMuxer.getMediaPlaylist(Arrays.asList("video-00000.ts", "video-00001.ts"), new double[] {
+				300, 296.4616 });
+
+		String expected = "#EXTM3U\n" +
+				"#EXT-X-VERSION:3\n" +
+				"#EXT-X-TARGETDURATION:300\n" +
+				"#EXT-X-MEDIA-SEQUENCE:0\n" +
+				"#EXT-X-PLAYLIST-TYPE:VOD\n" +
+				"#EXTINF:300.000,\n" +
+				"video-00000.ts\n" +
+				"#EXT-X-DISCONTINUITY\n" +
+				"#EXTINF:296.462,\n" +
+				"video-00001.ts\n" +
+				"#EXT-X-ENDLIST\n";
+		assertEquals(expected, playlist);
+	}
+
+	@Test
+	public void testMediaPlaylistTargetDurationRoundsUp() {
+		String playlist = HlsMuxer.getMediaPlaylist(Arrays.asList("audio-1-00000.ts"), new double[] { 4.2 });
+
+		assertTrue(playlist.contains("#EXT-X-TARGETDURATION:5\n"));
+		assertFalse(playlist.contains("#EXT-X-DISCONTINUITY"));
+	}
+
+	@Test
+	public void testMasterPlaylist() {
+		String playlist = HlsMuxer.getMasterPlaylist(Arrays.asList("audio-1.m3u8", "audio-2.m3u8"), 2500000);
+
+		String expected = "#EXTM3U\n" +
+				"#EXT-X-VERSION:3\n" +
+				"#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio\",NAME=\"Audio 1\",DEFAULT=YES,AUTOSELECT=YES," +
+				"URI=\"audio-1.m3u8\"\n" +
+				"#EXT-X-MEDIA:TYPE=AUDIO,GROUP-ID=\"audio\",NAME=\"Audio 2\",DEFAULT=NO,AUTOSELECT=YES," +
+				"URI=\"audio-2.m3u8\"\n" +
+				"#EXT-X-STREAM-INF:BANDWIDTH=2500000,AUDIO=\"audio\"\n" +
+				"video.m3u8\n";
+		assertEquals(expected, playlist);
+	}
+
+	@Test
+	public void testMasterPlaylistWithoutAudio() {
+		String playlist = HlsMuxer.getMasterPlaylist(new ArrayList<String>(), 0);
+
+		assertEquals("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-STREAM-INF:BANDWIDTH=1\nvideo.m3u8\n", playlist);
+	}
+}
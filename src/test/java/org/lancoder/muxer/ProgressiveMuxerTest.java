@@ -0,0 +1,149 @@
+package org.lancoder.muxer;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lancoder.common.FakeInfo;
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.file_components.streams.Stream;
+import org.lancoder.common.file_components.streams.VideoStream;
+import org.lancoder.common.job.Job;
+import org.lancoder.common.task.ClientTask;
+import org.lancoder.master.JobInitiator;
+import org.lancoder.master.MasterConfig;
+
+public class ProgressiveMuxerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FilePathManager filePathManager;
+	private ProgressiveMuxer progressiveMuxer;
+	private Job job;
+	private Stream stream;
+	private ArrayList<ClientTask> tasks;
+
+	@Before
+	public void setUp() {
+		MasterConfig config = new MasterConfig();
+		config.setAbsoluteSharedFolder(folder.getRoot().getAbsolutePath());
+		filePathManager = new FilePathManager(config);
+		progressiveMuxer = new ProgressiveMuxer(filePathManager);
+
+		job = new JobInitiator(null, config).createJob(FakeInfo.fakeAudioEncodeRequest(), "job",
+				new File("source.mkv"), new File("encodes", "job"), FakeInfo.fakeFileInfo());
+		for (Stream jobStream : job.getStreams()) {
+			if (jobStream instanceof VideoStream) {
+				stream = jobStream;
+			}
+		}
+		tasks = job.getTasksForStream(stream);
+		assertTrue(ProgressiveMuxer.supports(job, stream));
+		assertEquals(2, tasks.size());
+	}
+
+	private void completePart(int index, String content) throws IOException {
+		File part = filePathManager.getSharedFinalFile(tasks.get(index));
+		part.getParentFile().mkdirs();
+		Files.write(part.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		tasks.get(index).completed();
+	}
+
+	private String readIntermediateFile() throws IOException {
+		File file = filePathManager.getSharedProgressiveFile(job, stream);
+		if (!file.exists()) {
+			return null;
+		}
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testPartsAreAppendedInOrder() throws IOException {
+		completePart(1, "second");
+		progressiveMuxer.appendCompletedParts(job);
+
+		// The first part is missing, nothing can be joined yet
+		assertNull(readIntermediateFile());
+		assertNull(progressiveMuxer.complete(job, stream));
+
+		completePart(0, "first-");
+		progressiveMuxer.appendCompletedParts(job);
+
+		assertEquals("first-second", readIntermediateFile());
+		assertEquals(filePathManager.getSharedProgressiveFile(job, stream), progressiveMuxer.complete(job, stream));
+	}
+
+	@Test
+	public void testLeadingPartIsAppendedOnce() throws IOException {
+		completePart(0, "first-");
+		progressiveMuxer.appendCompletedParts(job);
+		progressiveMuxer.appendCompletedParts(job);
+
+		assertEquals("first-", readIntermediateFile());
+		assertNull(progressiveMuxer.complete(job, stream));
+
+		completePart(1, "second");
+		assertNotNull(progressiveMuxer.complete(job, stream));
+		assertEquals("first-second", readIntermediateFile());
+	}
+
+	@Test
+	public void testResetPartIsTruncated() throws IOException {
+		completePart(0, "first-");
+		completePart(1, "second");
+		progressiveMuxer.appendCompletedParts(job);
+
+		tasks.get(1).reset();
+		progressiveMuxer.appendCompletedParts(job);
+
+		assertEquals("first-", readIntermediateFile());
+		assertNull(progressiveMuxer.complete(job, stream));
+	}
+
+	@Test
+	public void testReencodedPartIsJoinedAgain() throws IOException {
+		completePart(0, "first-");
+		completePart(1, "second");
+		progressiveMuxer.appendCompletedParts(job);
+
+		// The first part is reset and encoded again before the next append
+		tasks.get(0).reset();
+		completePart(0, "new first-");
+
+		assertNotNull(progressiveMuxer.complete(job, stream));
+		assertEquals("new first-second", readIntermediateFile());
+	}
+
+	@Test
+	public void testInterruptedAppendIsDropped() throws IOException {
+		completePart(0, "first-");
+		progressiveMuxer.appendCompletedParts(job);
+
+		// Bytes written after the last successful append
+		File file = filePathManager.getSharedProgressiveFile(job, stream);
+		Files.write(file.toPath(), "first-garbage".getBytes(StandardCharsets.UTF_8));
+
+		completePart(1, "second");
+		progressiveMuxer.appendCompletedParts(job);
+
+		assertEquals("first-second", readIntermediateFile());
+	}
+
+	@Test
+	public void testCanceledJobIsNotAppended() throws IOException {
+		completePart(0, "first-");
+		job.cancel();
+		progressiveMuxer.appendCompletedParts(job);
+
+		assertNull(readIntermediateFile());
+	}
+}
@@ -0,0 +1,54 @@
+package org.lancoder.tools.simulator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.lancoder.master.DispatchPolicy;
+
+public class SimulationTest {
+
+	private static ArrivalTrace trace() {
+		return ArrivalTrace.synthetic(6, 60, 600, 1800, 7);
+	}
+
+	@Test
+	public void testAllJobsComplete() {
+		ArrayList<NodeModel> models = NodeModel.parse("2x240,2x60", 60, 0);
+		SimulationResult result = new Simulation(DispatchPolicy.PRIORITY, trace(), models, 10, 1).run();
+
+		assertEquals(6, result.getJobsCompleted());
+		assertEquals(0, result.getTasksFailed());
+		assertTrue(result.getMakespan() > 0);
+		assertTrue(result.getLatencyAtQuantile(1) <= result.getMakespan());
+		assertEquals(4, result.getUtilization().size());
+	}
+
+	@Test
+	public void testDeterministic() {
+		ArrayList<NodeModel> models = NodeModel.parse("1x240,3x90", 60, 0.05);
+		SimulationResult first = new Simulation(DispatchPolicy.SPECULATIVE, trace(), models, 10, 3).run();
+		SimulationResult second = new Simulation(DispatchPolicy.SPECULATIVE, trace(), models, 10, 3).run();
+
+		assertEquals(first.getMakespan(), second.getMakespan());
+		assertEquals(first.getLatencies(), second.getLatencies());
+		assertEquals(first.getTasksFailed(), second.getTasksFailed());
+		assertEquals(first.getTasksMoved(), second.getTasksMoved());
+	}
+
+	@Test
+	public void testSpeculativeMovesStragglers() {
+		ArrayList<JobArrival> arrivals = new ArrayList<>();
+		arrivals.add(new JobArrival(0, "single", 600, 0));
+		ArrivalTrace trace = new ArrivalTrace(arrivals);
+		ArrayList<NodeModel> models = NodeModel.parse("1x20,1x400", 60, 0);
+
+		SimulationResult priority = new Simulation(DispatchPolicy.PRIORITY, trace, models, 0, 1).run();
+		SimulationResult speculative = new Simulation(DispatchPolicy.SPECULATIVE, trace, models, 0, 1).run();
+
+		assertEquals(0, priority.getTasksMoved());
+		assertTrue(speculative.getTasksMoved() > 0);
+		assertTrue(speculative.getMakespan() < priority.getMakespan());
+	}
+}
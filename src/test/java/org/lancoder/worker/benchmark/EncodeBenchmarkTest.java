@@ -0,0 +1,40 @@
+package org.lancoder.worker.benchmark;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.EncodeSpeed;
+
+public class EncodeBenchmarkTest {
+
+	@Test
+	public void testCacheRoundTrip() throws IOException {
+		File file = File.createTempFile("encode-benchmark", ".properties");
+		file.deleteOnExit();
+
+		ArrayList<EncodeSpeed> speeds = new ArrayList<>();
+		speeds.add(new EncodeSpeed(CodecEnum.H264, 1920, 1080, "medium", 48.5));
+		speeds.add(new EncodeSpeed(CodecEnum.VP8, 1280, 720, null, 30.25));
+		EncodeBenchmark.store(file, speeds);
+
+		ArrayList<EncodeSpeed> loaded = EncodeBenchmark.load(file);
+		assertEquals(2, loaded.size());
+		for (EncodeSpeed speed : loaded) {
+			if (speed.getCodec() == CodecEnum.H264) {
+				assertEquals("1920x1080", speed.getResolution());
+				assertEquals("medium", speed.getPreset());
+				assertEquals(48.5, speed.getFps(), 0);
+			} else {
+				assertEquals(CodecEnum.VP8, speed.getCodec());
+				assertEquals("1280x720", speed.getResolution());
+				assertNull(speed.getPreset());
+				assertEquals(30.25, speed.getFps(), 0);
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.lancoder.worker.capacity;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CapacityDetectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testCgroupV2Limits() throws IOException {
+		File root = folder.newFolder("v2");
+		File proc = new File(root, "proc");
+		write(proc, "0::/\n");
+		write(new File(root, "cpu.max"), "150000 100000\n");
+		write(new File(root, "memory.max"), String.valueOf(512L * 1024 * 1024));
+
+		CapacityDetector detector = new CapacityDetector(root, proc);
+		assertEquals(1.5, detector.getCpuQuota(), 0.001);
+		assertEquals(512L * 1024 * 1024, detector.getMemoryLimit());
+		assertTrue(detector.detectMemory() <= 512);
+	}
+
+	@Test
+	public void testCgroupV2Unlimited() throws IOException {
+		File root = folder.newFolder("unlimited");
+		File proc = new File(root, "proc");
+		write(proc, "0::/\n");
+		write(new File(root, "cpu.max"), "max 100000\n");
+		write(new File(root, "memory.max"), "max\n");
+
+		CapacityDetector detector = new CapacityDetector(root, proc);
+		assertEquals(0, detector.getCpuQuota(), 0);
+		assertEquals(0, detector.getMemoryLimit());
+		assertEquals(Runtime.getRuntime().availableProcessors(), detector.detectCpus());
+	}
+
+	@Test
+	public void testCgroupV1NestedCgroup() throws IOException {
+		File root = folder.newFolder("v1");
+		File proc = new File(root, "proc");
+		write(proc, "4:memory:/docker/abc\n2:cpu,cpuacct:/docker/abc\n");
+		write(new File(root, "cpu/docker/abc/cpu.cfs_quota_us"), "200000\n");
+		write(new File(root, "cpu/docker/abc/cpu.cfs_period_us"), "100000\n");
+		write(new File(root, "memory/docker/abc/memory.limit_in_bytes"), String.valueOf(1024L * 1024 * 1024));
+
+		CapacityDetector detector = new CapacityDetector(root, proc);
+		assertEquals(2, detector.getCpuQuota(), 0.001);
+		assertEquals(1024L * 1024 * 1024, detector.getMemoryLimit());
+	}
+
+	@Test
+	public void testCgroupV1Unlimited() throws IOException {
+		File root = folder.newFolder("v1unlimited");
+		File proc = new File(root, "proc");
+		write(proc, "4:memory:/\n2:cpu,cpuacct:/\n");
+		write(new File(root, "cpu/cpu.cfs_quota_us"), "-1\n");
+		write(new File(root, "cpu/cpu.cfs_period_us"), "100000\n");
+		write(new File(root, "memory/memory.limit_in_bytes"), "9223372036854771712\n");
+
+		CapacityDetector detector = new CapacityDetector(root, proc);
+		assertEquals(0, detector.getCpuQuota(), 0);
+		assertEquals(0, detector.getMemoryLimit());
+	}
+
+	@Test
+	public void testPhysicalMemoryFromMeminfo() throws IOException {
+		File root = folder.newFolder("meminfo");
+		File proc = new File(root, "proc");
+		File meminfo = new File(root, "meminfo");
+		write(proc, "0::/\n");
+		write(meminfo, "MemTotal:        2097152 kB\nMemFree:          524288 kB\nMemAvailable:    1048576 kB\n");
+
+		CapacityDetector detector = new CapacityDetector(root, proc, meminfo);
+		assertEquals(2048L * 1024 * 1024, detector.getPhysicalMemory());
+		assertEquals(2048, detector.detectMemory());
+
+		// The cgroup limit is honored when it is lower
+		write(new File(root, "memory.max"), String.valueOf(512L * 1024 * 1024));
+		assertEquals(512, detector.detectMemory());
+	}
+
+	@Test
+	public void testNoCgroup() {
+		File missing = new File(folder.getRoot(), "missing");
+		CapacityDetector detector = new CapacityDetector(missing, missing);
+		assertEquals(Runtime.getRuntime().availableProcessors(), detector.detectCpus());
+		assertEquals(0, detector.getMemoryLimit());
+		assertEquals(0, new CapacityDetector(missing, missing, missing).detectMemory());
+	}
+}
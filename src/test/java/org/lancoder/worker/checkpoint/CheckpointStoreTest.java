@@ -0,0 +1,72 @@
+package org.lancoder.worker.checkpoint;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.task.TaskCheckpoint;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.task.video.VideoTask;
+import org.lancoder.worker.WorkerConfig;
+
+public class CheckpointStoreTest {
+
+	private static final String JOB_ID = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FilePathManager filePathManager;
+	private CheckpointStore store;
+
+	@Before
+	public void setUp() {
+		WorkerConfig config = new WorkerConfig();
+		config.setTempEncodingFolder(folder.getRoot().getAbsolutePath());
+		filePathManager = new FilePathManager(config);
+		store = new CheckpointStore(filePathManager);
+	}
+
+	private ClientVideoTask videoTask(int taskId, int steps, long end) {
+		ClientVideoTask task = new ClientVideoTask(new VideoTask(taskId, JOB_ID, steps, 0, end, 1500, Unit.FRAMES,
+				null, null), null);
+		filePathManager.getLocalTempFolder(task).mkdirs();
+		return task;
+	}
+
+	@Test
+	public void testResumeAfterCompletedPasses() {
+		ClientVideoTask task = videoTask(2, 2, 60000);
+		assertEquals(0, store.getCompletedSteps(task));
+
+		assertTrue(store.save(task, 1));
+		assertEquals(1, store.getCompletedSteps(task));
+
+		ArrayList<TaskCheckpoint> checkpoints = store.list();
+		assertEquals(1, checkpoints.size());
+		assertTrue(checkpoints.get(0).isOf(task));
+		assertEquals(1, checkpoints.get(0).getCompletedSteps());
+	}
+
+	@Test
+	public void testCheckpointOfAnotherRangeIsIgnored() {
+		store.save(videoTask(2, 2, 60000), 1);
+
+		assertEquals(0, store.getCompletedSteps(videoTask(2, 2, 30000)));
+		assertEquals(0, store.getCompletedSteps(videoTask(2, 3, 60000)));
+	}
+
+	@Test
+	public void testLastPassIsNeverSkipped() {
+		ClientVideoTask task = videoTask(2, 2, 60000);
+		store.save(task, 2);
+
+		assertEquals(0, store.getCompletedSteps(task));
+	}
+}
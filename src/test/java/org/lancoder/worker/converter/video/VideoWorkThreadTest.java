@@ -0,0 +1,92 @@
+package org.lancoder.worker.converter.video;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.lancoder.common.FilePathManager;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.CodecLoader;
+import org.lancoder.common.file_components.streams.VideoStream;
+import org.lancoder.common.file_components.streams.original.OriginalVideoStream;
+import org.lancoder.common.job.FFmpegPreset;
+import org.lancoder.common.job.RateControlType;
+import org.lancoder.common.strategies.stream.VideoEncodeStrategy;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.task.video.VideoStreamConfig;
+import org.lancoder.common.task.video.VideoTask;
+import org.lancoder.common.third_parties.FFmpeg;
+import org.lancoder.worker.WorkerConfig;
+
+import com.google.gson.JsonObject;
+
+public class VideoWorkThreadTest {
+
+	private static final String JOB_ID = "job";
+
+	private WorkerConfig config() {
+		WorkerConfig config = new WorkerConfig();
+		config.setAbsoluteSharedFolder("/shared");
+		config.setTempEncodingFolder("/tmp/lancoder");
+		return config;
+	}
+
+	private ClientVideoTask videoTask(CodecEnum codec, String container) {
+		JsonObject json = new JsonObject();
+		json.addProperty("index", 0);
+		json.addProperty("codec_name", "h264");
+		json.addProperty("r_frame_rate", "25/1");
+		json.addProperty("width", 1920);
+		json.addProperty("height", 1080);
+		OriginalVideoStream original = new OriginalVideoStream(json, "input.mkv", 60);
+
+		VideoEncodeStrategy strategy = new VideoEncodeStrategy(CodecLoader.fromCodec(codec), RateControlType.CRF, 23,
+				0, FFmpegPreset.MEDIUM, 0, 0, 1);
+		VideoStreamConfig streamConfig = new VideoStreamConfig(JOB_ID, new ArrayList<String>(), 1, original,
+				new VideoStream(strategy, original, 0));
+		File finalFile = new File("encodes/job/parts/0", "part-0." + container);
+		return new ClientVideoTask(new VideoTask(0, JOB_ID, 1, 0, 60000, 1500, Unit.FRAMES, new File(JOB_ID + "/0",
+				"part-0." + container), finalFile), streamConfig);
+	}
+
+	private ArrayList<String> getPassArgs(ClientVideoTask task, boolean encodeToSharedFolder) {
+		WorkerConfig config = config();
+		VideoWorkThread thread = new VideoWorkThread(null, new FilePathManager(config), new FFmpeg(config),
+				encodeToSharedFolder, 4);
+		// The thread of the worker is not started, the task is only kept
+		assertTrue(thread.handle(task));
+		return thread.getPassArgs("00:00:00", "00:01:00");
+	}
+
+	@Test
+	public void testPartialOutputKeepsContainerExtension() {
+		ClientVideoTask task = videoTask(CodecEnum.H265, "mkv");
+		ArrayList<String> args = getPassArgs(task, true);
+
+		String output = args.get(args.size() - 1);
+		assertEquals(new File("/shared/encodes/job/parts/0/part-0.partial.mkv").getAbsolutePath(), output);
+		assertEquals(new File(output), new FilePathManager(config()).getSharedPartialFile(task));
+		// ffmpeg picks the output format from the extension
+		assertFalse(args.contains("-f"));
+		assertEquals("libx265", args.get(args.indexOf("-c:v") + 1));
+	}
+
+	@Test
+	public void testLocalOutput() {
+		ArrayList<String> args = getPassArgs(videoTask(CodecEnum.VP9, "webm"), false);
+
+		assertEquals(new File("/tmp/lancoder/job/0/part-0.webm").getAbsolutePath(), args.get(args.size() - 1));
+		assertFalse(args.contains("-f"));
+	}
+
+	@Test
+	public void testH264PartsAreTransportStreams() {
+		ArrayList<String> args = getPassArgs(videoTask(CodecEnum.H264, "mkv"), true);
+
+		assertEquals("mpegts", args.get(args.indexOf("-f") + 1));
+		assertTrue(args.get(args.size() - 1).endsWith("part-0.partial.mkv"));
+	}
+}
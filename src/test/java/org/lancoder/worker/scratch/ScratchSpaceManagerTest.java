@@ -0,0 +1,123 @@
+package org.lancoder.worker.scratch;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lancoder.common.codecs.CodecEnum;
+import org.lancoder.common.codecs.CodecLoader;
+import org.lancoder.common.file_components.streams.VideoStream;
+import org.lancoder.common.file_components.streams.original.OriginalVideoStream;
+import org.lancoder.common.job.FFmpegPreset;
+import org.lancoder.common.job.RateControlType;
+import org.lancoder.common.strategies.stream.VideoEncodeStrategy;
+import org.lancoder.common.task.Unit;
+import org.lancoder.common.task.video.ClientVideoTask;
+import org.lancoder.common.task.video.VideoStreamConfig;
+import org.lancoder.common.task.video.VideoTask;
+import org.lancoder.worker.checkpoint.CheckpointStore;
+
+import com.google.gson.JsonObject;
+
+public class ScratchSpaceManagerTest {
+
+	private static final String JOB_ID = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ClientVideoTask videoTask(int taskId, RateControlType rateControl, int rate) {
+		JsonObject json = new JsonObject();
+		json.addProperty("index", 0);
+		json.addProperty("codec_name", "h264");
+		json.addProperty("r_frame_rate", "25/1");
+		json.addProperty("width", 1920);
+		json.addProperty("height", 1080);
+		OriginalVideoStream original = new OriginalVideoStream(json, "input.mkv", 60);
+
+		VideoEncodeStrategy strategy = new VideoEncodeStrategy(CodecLoader.fromCodec(CodecEnum.H264), rateControl,
+				rate, 0, FFmpegPreset.MEDIUM, 0, 0, 1);
+		VideoStreamConfig config = new VideoStreamConfig(JOB_ID, new ArrayList<String>(), 1, original,
+				new VideoStream(strategy, original, 0));
+		return new ClientVideoTask(new VideoTask(taskId, JOB_ID, 1, 0, 60000, 1500, Unit.FRAMES, null, null), config);
+	}
+
+	@Test
+	public void testEstimateFromBitrateAndDuration() {
+		// 4000 kbps for 60 seconds is 28.6 MiB, with the safety factor and the overhead
+		assertEquals(59, ScratchSpaceManager.estimate(videoTask(0, RateControlType.VBR, 4000)));
+		// 1080p at 25 fps and constant quality is guessed at 7776 kbps
+		assertEquals(100, ScratchSpaceManager.estimate(videoTask(1, RateControlType.CRF, 23)));
+	}
+
+	@Test
+	public void testReserveRefusesTasksLargerThanTheDisk() {
+		ScratchSpaceManager manager = new ScratchSpaceManager(folder.getRoot());
+		ClientVideoTask huge = videoTask(0, RateControlType.VBR, Integer.MAX_VALUE);
+		ClientVideoTask small = videoTask(1, RateControlType.VBR, 4000);
+
+		assertFalse(manager.reserve(huge));
+		assertTrue(manager.reserve(small));
+		assertTrue(manager.getFreeSpace() >= 0);
+		manager.release(small);
+		manager.release(huge);
+	}
+
+	@Test
+	public void testOnlyJobFoldersAreCleaned() throws IOException {
+		File jobFolder = new File(folder.getRoot(), JOB_ID + "/3");
+		jobFolder.mkdirs();
+		new File(jobFolder, "part-3.mkv").createNewFile();
+		File other = folder.newFolder("other");
+		File file = folder.newFile(JOB_ID.substring(1) + "0");
+
+		ScratchSpaceManager manager = new ScratchSpaceManager(folder.getRoot());
+		assertEquals(1, manager.cleanOrphans());
+		assertFalse(new File(folder.getRoot(), JOB_ID).exists());
+		assertTrue(other.exists());
+		assertTrue(file.exists());
+	}
+
+	@Test
+	public void testWrittenSpaceIsNotReservedTwice() throws IOException {
+		ScratchSpaceManager manager = new ScratchSpaceManager(folder.getRoot());
+		ClientVideoTask task = videoTask(2, RateControlType.VBR, 4000);
+		long estimate = ScratchSpaceManager.estimate(task);
+
+		assertTrue(manager.reserve(task));
+		assertEquals(estimate, manager.getReservedSpace());
+
+		// The written part is already counted by the usable space of the disk
+		File taskFolder = new File(folder.getRoot(), JOB_ID + "/2");
+		taskFolder.mkdirs();
+		try (RandomAccessFile part = new RandomAccessFile(new File(taskFolder, "part-2.mkv"), "rw")) {
+			part.setLength(10 * 1024 * 1024);
+			assertEquals(estimate - 10, manager.getReservedSpace());
+
+			// Writing more than the estimate does not free space of the other tasks
+			part.setLength((estimate + 10) * 1024 * 1024);
+			assertEquals(0, manager.getReservedSpace());
+		}
+		manager.release(task);
+	}
+
+	@Test
+	public void testCheckpointedTaskFoldersAreKept() throws IOException {
+		File checkpointed = new File(folder.getRoot(), JOB_ID + "/3");
+		File orphan = new File(folder.getRoot(), JOB_ID + "/4");
+		checkpointed.mkdirs();
+		orphan.mkdirs();
+		new File(checkpointed, CheckpointStore.FILE_NAME).createNewFile();
+
+		ScratchSpaceManager manager = new ScratchSpaceManager(folder.getRoot());
+		assertEquals(1, manager.cleanOrphans());
+		assertTrue(checkpointed.exists());
+		assertFalse(orphan.exists());
+	}
+}
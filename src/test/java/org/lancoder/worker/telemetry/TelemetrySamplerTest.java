@@ -0,0 +1,54 @@
+package org.lancoder.worker.telemetry;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lancoder.common.telemetry.NodeTelemetry;
+import org.lancoder.worker.scratch.ScratchSpaceManager;
+
+public class TelemetrySamplerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private void write(File file, String content) throws IOException {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testCpuUsageIsMeasuredBetweenSamples() throws IOException {
+		File proc = folder.newFolder("proc");
+		TelemetrySampler sampler = new TelemetrySampler(proc, new ScratchSpaceManager(folder.getRoot()), 10);
+
+		// user nice system idle iowait irq softirq steal guest
+		write(new File(proc, "stat"), "cpu  100 0 100 700 100 0 0 0 50\ncpu0 100 0 100 700 100 0 0 0 50\n");
+		sampler.sample();
+		write(new File(proc, "stat"), "cpu  400 0 100 900 600 0 0 0 50\ncpu0 400 0 100 900 600 0 0 0 50\n");
+		NodeTelemetry telemetry = sampler.sample();
+
+		assertEquals(0.3, telemetry.getCpuUsage(), 0.001);
+		assertEquals(0.5, telemetry.getIoWait(), 0.001);
+	}
+
+	@Test
+	public void testMemoryAndDisk() throws IOException {
+		File proc = folder.newFolder("proc");
+		write(new File(proc, "meminfo"), "MemTotal:        2097152 kB\nMemFree:          102400 kB\n"
+				+ "MemAvailable:     524288 kB\n");
+		TelemetrySampler sampler = new TelemetrySampler(proc, new ScratchSpaceManager(new File(folder
+				.getRoot(), "not/created")), 10);
+		NodeTelemetry telemetry = sampler.sample();
+
+		assertEquals(2048, telemetry.getMemoryTotal());
+		assertEquals(512, telemetry.getMemoryAvailable());
+		assertTrue(telemetry.getDiskFree() >= 0);
+		assertEquals(-1, telemetry.getCpuUsage(), 0);
+	}
+}